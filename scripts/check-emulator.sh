@@ -0,0 +1,17 @@
+#!/usr/bin/env bash
+# Fails with a hint when nothing listens on the Bigtable emulator address the cds training run starts against.
+#   scripts/check-emulator.sh host:port
+set -euo pipefail
+
+address=${1:?usage: check-emulator.sh host:port}
+host=${address%:*}
+port=${address##*:}
+host=${host#[}
+host=${host%]}
+
+if ! (exec 3<>"/dev/tcp/$host/$port") 2>/dev/null; then
+  echo "No Bigtable emulator on $address, the cds training run needs one. Start it with" >&2
+  echo "  gcloud beta emulators bigtable start --host-port=$address" >&2
+  echo "or point the build at a running one with -Dcds.emulatorHost=host:port" >&2
+  exit 1
+fi
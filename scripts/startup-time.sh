@@ -0,0 +1,31 @@
+#!/usr/bin/env bash
+# Prints the milliseconds from launch until the first api response for one startup variant, any status counts since
+# a missing row still means the request went through the whole stack.
+#   scripts/startup-time.sh jar|cds|native url
+# jar needs mvn package, cds needs mvn -Pcds package and native needs mvn -Pnative package.
+set -euo pipefail
+
+variant=${1:?usage: startup-time.sh jar|cds|native url}
+url=${2:?usage: startup-time.sh jar|cds|native url}
+jar=$(ls target/gcp-kv-crud-rest-api-*.jar | grep -v original | head -1)
+
+case "$variant" in
+  jar)    cmd=(java -Dspring.profiles.active=prod -jar "$jar") ;;
+  cds)    cmd=(java -XX:SharedArchiveFile=target/app.jsa -Xshare:auto -Dspring.profiles.active=prod -jar "$jar") ;;
+  native) cmd=(target/gcp-kv-crud-rest-api -Dspring.profiles.active=prod) ;;
+  *)      echo "unknown variant $variant" >&2; exit 1 ;;
+esac
+
+start=$(date +%s%3N)
+"${cmd[@]}" > "target/startup-$variant.log" 2>&1 &
+pid=$!
+trap 'kill $pid 2>/dev/null || true' EXIT
+
+until [ "$(curl -s -o /dev/null -w '%{http_code}' "$url")" != "000" ]; do
+  if ! kill -0 $pid 2>/dev/null; then
+    echo "$variant exited before serving, see target/startup-$variant.log" >&2
+    exit 1
+  fi
+  sleep 0.05
+done
+echo "$variant first request after $(( $(date +%s%3N) - start )) ms"
@@ -0,0 +1,509 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+
+package com.gcp.kvlookup.bulkimport;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.gcp.kvlookup.cache.LookupCache;
+import com.gcp.kvlookup.compression.ValueCompressor;
+import com.gcp.kvlookup.dataaccess.BloomFilterIndex;
+import com.gcp.kvlookup.dataaccess.RowKeyEncoder;
+import com.gcp.kvlookup.dataaccess.SecondaryIndexes;
+import com.gcp.kvlookup.datasource.connection.BigtableClientRouter;
+import com.gcp.kvlookup.exception.KVLookUpException;
+import com.gcp.kvlookup.hotkey.HotKeyTracker;
+import com.gcp.kvlookup.model.ImportJob;
+import com.gcp.kvlookup.model.ImportRequest;
+import com.google.api.gax.batching.Batcher;
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.models.RowMutationEntry;
+import com.google.protobuf.ByteString;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/*
+    Imports local CSV, NDJSON or Avro files. The file is cut into byte range chunks (line aligned for text, Avro sync
+    markers for Avro) that are parsed in parallel, each row goes from its parsed fields straight into a RowMutationEntry
+    and a per chunk bulk mutation batcher, whose flow control blocks parsing while too many mutations are in flight.
+    A chunk is checkpointed once its batcher has been closed without failures, so resuming a job only replays the
+    chunks that were not. The read caches drop the rows of a chunk once its batcher is closed.
+*/
+@Component
+@ConditionalOnProperty(name = "gcp.bigtable.import.enabled", havingValue = "true")
+public class BulkImporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkImporter.class);
+
+    private static final int PROGRESS_INTERVAL = 1000;
+
+    private final Map<String, BigtableDataClient> dataClient;
+    private BigtableClientRouter clientRouter;
+    private final Path directory;
+    private final Path checkpointDirectory;
+    private final long chunkSizeInBytes;
+    private final String columnFamily;
+    private final long jobRetentionInMillis;
+    private final ExecutorService importExecutor;
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+
+    private RowKeyEncoder rowKeyEncoder = new RowKeyEncoder(List.of());
+
+    private BloomFilterIndex bloomFilterIndex;
+    private ValueCompressor valueCompressor = ValueCompressor.PASS_THROUGH;
+    private LookupCache lookupCache;
+    private HotKeyTracker hotKeyTracker;
+    private SecondaryIndexes secondaryIndexes;
+
+    public BulkImporter(Map<String, BigtableDataClient> dataClient,
+                        @Value("${gcp.bigtable.import.directory}") String directory,
+                        @Value("${gcp.bigtable.import.checkpointDirectory}") String checkpointDirectory,
+                        @Value("${gcp.bigtable.import.parallelism}") int parallelism,
+                        @Value("${gcp.bigtable.import.chunkSizeInMB}") int chunkSizeInMB,
+                        @Value("${gcp.bigtable.column.family}") String columnFamily,
+                        @Value("${gcp.bigtable.import.jobRetentionInMinutes}") long jobRetentionInMinutes) {
+        this.dataClient = dataClient;
+        this.clientRouter = new BigtableClientRouter(dataClient);
+        this.directory = Paths.get(directory).toAbsolutePath().normalize();
+        this.checkpointDirectory = Paths.get(checkpointDirectory);
+        this.chunkSizeInBytes = chunkSizeInMB * 1024L * 1024L;
+        this.columnFamily = columnFamily;
+        this.jobRetentionInMillis = TimeUnit.MINUTES.toMillis(jobRetentionInMinutes);
+        this.importExecutor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "bulk-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Autowired
+    public void setRowKeyEncoder(RowKeyEncoder rowKeyEncoder) {
+        this.rowKeyEncoder = rowKeyEncoder;
+    }
+
+    @Autowired
+    public void setClientRouter(BigtableClientRouter clientRouter) {
+        this.clientRouter = clientRouter;
+    }
+
+    // only present when gcp.bigtable.bloomFilter.enabled is set
+    @Autowired(required = false)
+    public void setBloomFilterIndex(BloomFilterIndex bloomFilterIndex) {
+        this.bloomFilterIndex = bloomFilterIndex;
+    }
+
+    // only present when gcp.bigtable.valueCompression.enabled is set
+    @Autowired(required = false)
+    public void setValueCompressor(ValueCompressor valueCompressor) {
+        this.valueCompressor = valueCompressor;
+    }
+
+    // only present when gcp.bigtable.cache.type is memory or redis
+    @Autowired(required = false)
+    public void setLookupCache(LookupCache lookupCache) {
+        this.lookupCache = lookupCache;
+    }
+
+    // only present when gcp.bigtable.hotKeys.enabled is set
+    @Autowired(required = false)
+    public void setHotKeyTracker(HotKeyTracker hotKeyTracker) {
+        this.hotKeyTracker = hotKeyTracker;
+    }
+
+    // only present when gcp.bigtable.index.enabled is set
+    @Autowired(required = false)
+    public void setSecondaryIndexes(SecondaryIndexes secondaryIndexes) {
+        this.secondaryIndexes = secondaryIndexes;
+    }
+
+    public ImportJob start(String instanceID, ImportRequest request) throws IOException {
+        checkInstance(instanceID);
+        if (Objects.isNull(request.getFormat()) || !StringUtils.hasText(request.getTableName())) {
+            throw new KVLookUpException("An import needs a tableName and a format", HttpStatus.BAD_REQUEST);
+        }
+        checkNotIndexed(instanceID, request.getTableName());
+        Path file = resolve(request.getFileName());
+        // rejects a bad mapping before a checkpoint is written for it
+        new ColumnMapping(request.getRowKeyField(), request.getColumns(), columnFamily);
+
+        ImportCheckpoint.State state = new ImportCheckpoint.State();
+        state.setRequest(request);
+        state.setFileSize(Files.size(file));
+        state.setChunkSizeInBytes(chunkSizeInBytes);
+        state.setTimestampMicros(TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis()));
+        String jobId = UUID.randomUUID().toString();
+        ImportCheckpoint checkpoint = ImportCheckpoint.create(checkpointDirectory.resolve(instanceID).resolve(jobId), state);
+        return run(instanceID, jobId, checkpoint);
+    }
+
+    public ImportJob resume(String instanceID, String jobId) throws IOException {
+        // both ids become checkpoint directory names
+        checkInstance(instanceID);
+        checkJobId(jobId);
+        ImportJob running = jobs.get(jobId);
+        if (Objects.nonNull(running) && ImportJob.RUNNING.equals(running.getStatus())) {
+            throw new KVLookUpException("Import " + jobId + " is still running", HttpStatus.CONFLICT);
+        }
+        Path jobDirectory = checkpointDirectory.resolve(instanceID).resolve(jobId);
+        if (!Files.isDirectory(jobDirectory)) {
+            throw new KVLookUpException("NOT FOUND", HttpStatus.NOT_FOUND);
+        }
+        ImportCheckpoint checkpoint = ImportCheckpoint.open(jobDirectory);
+        // the index may have been declared since the import started
+        checkNotIndexed(instanceID, checkpoint.getState().getRequest().getTableName());
+        Path file = resolve(checkpoint.getState().getRequest().getFileName());
+        if (Files.size(file) != checkpoint.getState().getFileSize()) {
+            throw new KVLookUpException("File " + file.getFileName() + " changed since import " + jobId + " started", HttpStatus.CONFLICT);
+        }
+        return run(instanceID, jobId, checkpoint);
+    }
+
+    public Optional<ImportJob> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    private void checkInstance(String instanceID) {
+        if (!dataClient.containsKey(instanceID)) {
+            throw new KVLookUpException("Unknown instance " + instanceID, HttpStatus.BAD_REQUEST, false);
+        }
+    }
+
+    // chunks are written in bulk without the read of the replaced values an index update needs
+    private void checkNotIndexed(String instanceID, String tableName) {
+        if (Objects.nonNull(secondaryIndexes) && secondaryIndexes.isIndexed(instanceID, tableName)) {
+            throw new KVLookUpException("Table " + tableName + " has a secondary index and can not be bulk imported",
+                    HttpStatus.BAD_REQUEST, false);
+        }
+    }
+
+    private static void checkJobId(String jobId) {
+        try {
+            if (Objects.nonNull(jobId) && UUID.fromString(jobId).toString().equals(jobId)) {
+                return;
+            }
+        } catch (IllegalArgumentException e) {
+            // falls through to the rejection below
+        }
+        throw new KVLookUpException("Invalid import jobId " + jobId, HttpStatus.BAD_REQUEST, false);
+    }
+
+    // finished jobs stay visible to importStatus for jobRetentionInMinutes, their checkpoints stay on disk for resumeImport
+    private void evictFinishedJobs() {
+        long oldestFinishedAtMillis = System.currentTimeMillis() - jobRetentionInMillis;
+        jobs.values().removeIf(job -> !ImportJob.RUNNING.equals(job.getStatus()) && job.getFinishedAtMillis() < oldestFinishedAtMillis);
+    }
+
+    private ImportJob run(String instanceID, String jobId, ImportCheckpoint checkpoint) throws IOException {
+        ImportCheckpoint.State state = checkpoint.getState();
+        ImportRequest request = state.getRequest();
+        ColumnMapping mapping = new ColumnMapping(request.getRowKeyField(), request.getColumns(), columnFamily);
+        Path file = resolve(request.getFileName());
+        ImportJob job = new ImportJob(jobId, instanceID, request.getTableName());
+
+        int[] csvPositions = null;
+        long firstChunkStart = 0;
+        if (request.getFormat() == ImportRequest.Format.CSV) {
+            try (LineReader headerReader = new LineReader(file, 0, 1)) {
+                String header = headerReader.next();
+                if (Objects.isNull(header)) {
+                    throw new KVLookUpException("File " + file.getFileName() + " has no header", HttpStatus.BAD_REQUEST);
+                }
+                csvPositions = mapping.positions(CsvLineParser.split(header, delimiter(request)));
+                firstChunkStart = header.getBytes(StandardCharsets.UTF_8).length + 1;
+            }
+        }
+
+        long fileSize = state.getFileSize();
+        long chunkSize = state.getChunkSizeInBytes();
+        int chunkCount = (int) Math.max(1, (fileSize + chunkSize - 1) / chunkSize);
+        Set<Integer> completed = checkpoint.completedChunks();
+        job.setChunks(chunkCount, completed.size());
+        evictFinishedJobs();
+        jobs.put(jobId, job);
+        logger.info("Importing {} into table {} in {} chunks, {} already done", kv("fileName", request.getFileName()),
+                kv("tableName", request.getTableName()), kv("chunks", chunkCount), kv("chunksResumed", completed.size()));
+
+        BigtableDataClient client = clientRouter.get(instanceID, BigtableClientRouter.Operation.BULK_WRITE);
+        List<CompletableFuture<Void>> chunkImports = new ArrayList<>();
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            if (completed.contains(chunk)) {
+                continue;
+            }
+            int chunkIndex = chunk;
+            long start = Math.max(chunk * chunkSize, chunk == 0 ? firstChunkStart : 0);
+            long end = Math.min(fileSize, (chunk + 1) * chunkSize);
+            int[] positions = csvPositions;
+            chunkImports.add(CompletableFuture.runAsync(() -> {
+                importChunk(job, client, request, mapping, positions, file, start, end, state.getTimestampMicros());
+                try {
+                    checkpoint.chunkCompleted(chunkIndex);
+                } catch (IOException e) {
+                    throw new KVLookUpException("Error occurred when checkpointing chunk " + chunkIndex + " " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+                }
+                job.chunkCompleted();
+            }, importExecutor));
+        }
+        CompletableFuture.allOf(chunkImports.toArray(new CompletableFuture[0])).whenComplete((ignored, error) -> {
+            if (error != null) {
+                job.finish(ImportJob.FAILED, error.getMessage());
+                logger.error("Import {} into table {} failed, resume it to retry the remaining chunks",
+                        kv("jobId", jobId), kv("tableName", request.getTableName()), error);
+                return;
+            }
+            job.finish(ImportJob.COMPLETED, null);
+            logger.info("Import {} into table {} completed with {} rows at {} rows/sec", kv("jobId", jobId),
+                    kv("tableName", request.getTableName()), kv("rowsImported", job.getRowsImported()), kv("rowsPerSecond", job.getRowsPerSecond()));
+        });
+        return job;
+    }
+
+    private void importChunk(ImportJob job, BigtableDataClient client, ImportRequest request, ColumnMapping mapping,
+                             int[] csvPositions, Path file, long start, long end, long timestampMicros) {
+        ChunkWriter writer = new ChunkWriter(job, client.newBulkMutationBatcher(request.getTableName()), request.getTableName(), timestampMicros);
+        try {
+            switch (request.getFormat()) {
+                case CSV:
+                    importCsv(writer, mapping, csvPositions, delimiter(request), file, start, end);
+                    break;
+                case NDJSON:
+                    importNdjson(writer, mapping, file, start, end);
+                    break;
+                case AVRO:
+                    importAvro(writer, mapping, file, start, end);
+                    break;
+            }
+        } catch (IOException e) {
+            throw new KVLookUpException("Error occurred when reading " + file.getFileName() + " " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void importCsv(ChunkWriter writer, ColumnMapping mapping, int[] positions, char delimiter, Path file,
+                           long start, long end) throws IOException {
+        try (LineReader reader = new LineReader(file, start, end)) {
+            String line;
+            while ((line = reader.next()) != null) {
+                List<String> fields = CsvLineParser.split(line, delimiter);
+                ByteString[] values = new ByteString[mapping.size()];
+                for (int slot = 0; slot < values.length; slot++) {
+                    int position = positions[slot];
+                    if (position >= 0 && position < fields.size() && !fields.get(position).isEmpty()) {
+                        values[slot] = ByteString.copyFromUtf8(fields.get(position));
+                    }
+                }
+                writer.write(values, mapping);
+            }
+        }
+    }
+
+    private void importNdjson(ChunkWriter writer, ColumnMapping mapping, Path file, long start, long end) throws IOException {
+        try (LineReader reader = new LineReader(file, start, end)) {
+            String line;
+            while ((line = reader.next()) != null) {
+                ByteString[] values = new ByteString[mapping.size()];
+                try (JsonParser parser = jsonFactory.createParser(line)) {
+                    if (parser.nextToken() != JsonToken.START_OBJECT) {
+                        writer.reject();
+                        continue;
+                    }
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        int slot = mapping.slot(parser.getCurrentName());
+                        JsonToken value = parser.nextToken();
+                        if (value.isStructStart()) {
+                            parser.skipChildren();
+                        } else if (slot >= 0 && value != JsonToken.VALUE_NULL) {
+                            values[slot] = ByteString.copyFromUtf8(parser.getText());
+                        }
+                    }
+                } catch (IOException e) {
+                    writer.reject();
+                    continue;
+                }
+                writer.write(values, mapping);
+            }
+        }
+    }
+
+    private void importAvro(ChunkWriter writer, ColumnMapping mapping, Path file, long start, long end) throws IOException {
+        try (DataFileReader<GenericRecord> reader = new DataFileReader<>(file.toFile(), new GenericDatumReader<>())) {
+            reader.sync(start);
+            GenericRecord record = null;
+            while (reader.hasNext() && !reader.pastSync(end)) {
+                record = reader.next(record);
+                ByteString[] values = new ByteString[mapping.size()];
+                for (int slot = 0; slot < values.length; slot++) {
+                    values[slot] = toByteString(record.get(mapping.field(slot)));
+                }
+                writer.write(values, mapping);
+            }
+        }
+    }
+
+    private static ByteString toByteString(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof ByteBuffer) {
+            return ByteString.copyFrom(((ByteBuffer) value).duplicate());
+        }
+        return ByteString.copyFromUtf8(value.toString());
+    }
+
+    private static char delimiter(ImportRequest request) {
+        return StringUtils.hasLength(request.getDelimiter()) ? request.getDelimiter().charAt(0) : ',';
+    }
+
+    // only files under gcp.bigtable.import.directory can be imported
+    private Path resolve(String fileName) {
+        if (!StringUtils.hasText(fileName)) {
+            throw new KVLookUpException("An import needs a fileName", HttpStatus.BAD_REQUEST);
+        }
+        Path file = directory.resolve(fileName).normalize();
+        if (!file.startsWith(directory) || !Files.isRegularFile(file)) {
+            throw new KVLookUpException("File " + fileName + " not found in the import directory", HttpStatus.NOT_FOUND);
+        }
+        return file;
+    }
+
+    private class ChunkWriter {
+
+        private final ImportJob job;
+        private final Batcher<RowMutationEntry, Void> batcher;
+        private final String tableName;
+        private final long timestampMicros;
+        private final List<String> rowIds = new ArrayList<>();
+        private long imported;
+        private long rejected;
+
+        ChunkWriter(ImportJob job, Batcher<RowMutationEntry, Void> batcher, String tableName, long timestampMicros) {
+            this.job = job;
+            this.batcher = batcher;
+            this.tableName = tableName;
+            this.timestampMicros = timestampMicros;
+        }
+
+        void write(ByteString[] values, ColumnMapping mapping) {
+            RowMutationEntry entry = null;
+            String encodedRowKey = null;
+            ByteString rowKey = values[ColumnMapping.ROW_KEY];
+            if (rowKey != null) {
+                encodedRowKey = rowKeyEncoder.encode(tableName, rowKey.toStringUtf8());
+                for (int slot = 1; slot < values.length; slot++) {
+                    if (values[slot] != null) {
+                        values[slot] = valueCompressor.encode(job.getInstanceId(), tableName, mapping.family(slot), values[slot]);
+                    }
+                }
+                entry = mapping.toEntry(encodedRowKey, values, timestampMicros);
+            }
+            if (entry == null) {
+                reject();
+                return;
+            }
+            // blocks while the batcher's flow control limits are reached
+            batcher.add(entry);
+            if (Objects.nonNull(bloomFilterIndex)) {
+                bloomFilterIndex.put(job.getInstanceId(), tableName, encodedRowKey);
+            }
+            if (Objects.nonNull(lookupCache) || Objects.nonNull(hotKeyTracker)) {
+                rowIds.add(rowKey.toStringUtf8());
+            }
+            if (++imported == PROGRESS_INTERVAL) {
+                report();
+            }
+        }
+
+        void reject() {
+            rejected++;
+        }
+
+        private void report() {
+            job.addRows(imported, rejected);
+            imported = 0;
+            rejected = 0;
+        }
+
+        // throws BatchingException when any mutation of the chunk failed, the chunk is then not checkpointed
+        void close() {
+            try {
+                batcher.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new KVLookUpException("Interrupted when flushing import chunk", HttpStatus.INTERNAL_SERVER_ERROR);
+            } finally {
+                report();
+                // also after a failed close, some of the chunk's mutations may have landed
+                invalidateCaches();
+            }
+        }
+
+        private void invalidateCaches() {
+            if (rowIds.isEmpty()) {
+                return;
+            }
+            if (Objects.nonNull(lookupCache)) {
+                List<String> cacheKeys = new ArrayList<>(rowIds.size());
+                for (String rowId : rowIds) {
+                    cacheKeys.add(LookupCache.key(job.getInstanceId(), tableName, rowId));
+                }
+                lookupCache.invalidate(cacheKeys);
+            }
+            if (Objects.nonNull(hotKeyTracker)) {
+                hotKeyTracker.invalidate(job.getInstanceId(), tableName, rowIds);
+            }
+            rowIds.clear();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        importExecutor.shutdownNow();
+    }
+}
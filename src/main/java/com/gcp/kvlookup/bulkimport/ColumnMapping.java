@@ -0,0 +1,109 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+
+package com.gcp.kvlookup.bulkimport;
+
+import com.gcp.kvlookup.exception.KVLookUpException;
+import com.google.cloud.bigtable.data.v2.models.RowMutationEntry;
+import com.google.protobuf.ByteString;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    Resolved column mapping of an import. Source fields are numbered once so parsers fill a plain ByteString[] per row
+    (slot 0 is the row key) and the mutation is built straight from it.
+*/
+class ColumnMapping {
+
+    static final int ROW_KEY = 0;
+
+    private final String[] fields;
+    private final String[] families;
+    private final ByteString[] qualifiers;
+    private final Map<String, Integer> slots = new HashMap<>();
+
+    ColumnMapping(String rowKeyField, Map<String, String> columns, String defaultColumnFamily) {
+        if (!StringUtils.hasText(rowKeyField) || CollectionUtils.isEmpty(columns)) {
+            throw new KVLookUpException("An import needs a rowKeyField and at least one column", HttpStatus.BAD_REQUEST);
+        }
+        int size = columns.size() + 1;
+        fields = new String[size];
+        families = new String[size];
+        qualifiers = new ByteString[size];
+        fields[ROW_KEY] = rowKeyField;
+        slots.put(rowKeyField, ROW_KEY);
+        int slot = 1;
+        for (Map.Entry<String, String> column : columns.entrySet()) {
+            String target = column.getValue();
+            int separator = target.indexOf(':');
+            fields[slot] = column.getKey();
+            families[slot] = separator < 0 ? defaultColumnFamily : target.substring(0, separator);
+            qualifiers[slot] = ByteString.copyFromUtf8(target.substring(separator + 1));
+            slots.putIfAbsent(column.getKey(), slot);
+            slot++;
+        }
+    }
+
+    int size() {
+        return fields.length;
+    }
+
+    String field(int slot) {
+        return fields[slot];
+    }
+
+    String family(int slot) {
+        return families[slot];
+    }
+
+    // -1 for fields that are not imported
+    int slot(String field) {
+        return slots.getOrDefault(field, -1);
+    }
+
+    // slot to position of the field in a csv header, -1 when the header does not have it
+    int[] positions(List<String> header) {
+        int[] positions = new int[fields.length];
+        for (int slot = 0; slot < fields.length; slot++) {
+            positions[slot] = header.indexOf(fields[slot]);
+        }
+        if (positions[ROW_KEY] < 0) {
+            throw new KVLookUpException("Row key field " + fields[ROW_KEY] + " is not in the file header", HttpStatus.BAD_REQUEST);
+        }
+        return positions;
+    }
+
+    // null when the row has no key or no mapped value, such rows are counted as rejected
+    RowMutationEntry toEntry(String encodedRowKey, ByteString[] values, long timestampMicros) {
+        RowMutationEntry entry = null;
+        for (int slot = 1; slot < values.length; slot++) {
+            if (values[slot] == null) {
+                continue;
+            }
+            if (entry == null) {
+                entry = RowMutationEntry.create(encodedRowKey);
+            }
+            entry.setCell(families[slot], qualifiers[slot], timestampMicros, values[slot]);
+        }
+        return entry;
+    }
+}
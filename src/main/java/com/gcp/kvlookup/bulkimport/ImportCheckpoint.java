@@ -0,0 +1,122 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+
+package com.gcp.kvlookup.bulkimport;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gcp.kvlookup.model.ImportRequest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+
+/*
+    On disk state of an import job: the request with the chunk plan it was started with, and one line per chunk whose
+    mutations were all acknowledged. Cells are written with the timestamp of the first run, so replaying a chunk that
+    was cut short rewrites the same cells instead of adding versions.
+*/
+class ImportCheckpoint {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Path jobFile;
+    private final Path completedFile;
+    private final State state;
+
+    private ImportCheckpoint(Path directory, State state) {
+        this.jobFile = directory.resolve("job.json");
+        this.completedFile = directory.resolve("completed");
+        this.state = state;
+    }
+
+    static ImportCheckpoint create(Path directory, State state) throws IOException {
+        Files.createDirectories(directory);
+        ImportCheckpoint checkpoint = new ImportCheckpoint(directory, state);
+        objectMapper.writeValue(checkpoint.jobFile.toFile(), state);
+        return checkpoint;
+    }
+
+    static ImportCheckpoint open(Path directory) throws IOException {
+        State state = objectMapper.readValue(directory.resolve("job.json").toFile(), State.class);
+        return new ImportCheckpoint(directory, state);
+    }
+
+    State getState() {
+        return state;
+    }
+
+    Set<Integer> completedChunks() throws IOException {
+        Set<Integer> completed = new HashSet<>();
+        if (Files.exists(completedFile)) {
+            for (String line : Files.readAllLines(completedFile, StandardCharsets.UTF_8)) {
+                if (!line.isBlank()) {
+                    completed.add(Integer.parseInt(line.trim()));
+                }
+            }
+        }
+        return completed;
+    }
+
+    synchronized void chunkCompleted(int chunk) throws IOException {
+        Files.write(completedFile, (chunk + "\n").getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+    }
+
+    static class State {
+
+        private ImportRequest request;
+        private long fileSize;
+        private long chunkSizeInBytes;
+        private long timestampMicros;
+
+        public ImportRequest getRequest() {
+            return request;
+        }
+
+        public void setRequest(ImportRequest request) {
+            this.request = request;
+        }
+
+        public long getFileSize() {
+            return fileSize;
+        }
+
+        public void setFileSize(long fileSize) {
+            this.fileSize = fileSize;
+        }
+
+        public long getChunkSizeInBytes() {
+            return chunkSizeInBytes;
+        }
+
+        public void setChunkSizeInBytes(long chunkSizeInBytes) {
+            this.chunkSizeInBytes = chunkSizeInBytes;
+        }
+
+        public long getTimestampMicros() {
+            return timestampMicros;
+        }
+
+        public void setTimestampMicros(long timestampMicros) {
+            this.timestampMicros = timestampMicros;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+
+package com.gcp.kvlookup.bulkimport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/*
+    Reads the lines of one byte range of a file. A line belongs to the range its first byte falls in, so a reader that
+    starts mid line skips to the next one and the last line is read past the end of the range.
+*/
+class LineReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final InputStream inputStream;
+    private final long end;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int bufferPosition;
+    private int bufferLength;
+    private byte[] line = new byte[256];
+    private long position;
+
+    LineReader(Path file, long start, long end) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.end = end;
+        // starting one byte early tells whether start is itself the beginning of a line
+        this.position = Math.max(0, start - 1);
+        channel.position(position);
+        this.inputStream = Channels.newInputStream(channel);
+        if (start > 0) {
+            readLine();
+        }
+    }
+
+    // null once the next line starts at or past the end of the range
+    String next() throws IOException {
+        while (position < end) {
+            String next = readLine();
+            if (next == null) {
+                return null;
+            }
+            if (!next.isEmpty()) {
+                return next;
+            }
+        }
+        return null;
+    }
+
+    private String readLine() throws IOException {
+        int length = 0;
+        boolean newline = false;
+        while (!newline) {
+            if (bufferPosition == bufferLength) {
+                bufferLength = inputStream.read(buffer);
+                bufferPosition = 0;
+                if (bufferLength <= 0) {
+                    bufferLength = 0;
+                    if (length == 0) {
+                        return null;
+                    }
+                    break;
+                }
+            }
+            byte read = buffer[bufferPosition++];
+            position++;
+            if (read == '\n') {
+                newline = true;
+            } else {
+                if (length == line.length) {
+                    line = Arrays.copyOf(line, length * 2);
+                }
+                line[length++] = read;
+            }
+        }
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+}
@@ -0,0 +1,80 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.gcp.kvlookup.cache;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+// embedded implementation used for local runs and tests, entries are only shared within the pod. Once maxEntries is
+// reached each put drops the least recently used entry, expired entries are dropped when they are read
+public class InMemoryLookupCache implements LookupCache {
+
+    private final Map<String, CacheEntry> entries;
+    private final long ttlInMillis;
+
+    public InMemoryLookupCache(long ttlInSeconds, int maxEntries) {
+        this.ttlInMillis = TimeUnit.SECONDS.toMillis(ttlInSeconds);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public synchronized String get(String key) {
+        CacheEntry entry = entries.get(key);
+        if (Objects.isNull(entry)) {
+            return null;
+        }
+        if (entry.expiresAtMillis < System.currentTimeMillis()) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    @Override
+    public synchronized void put(String key, String value) {
+        entries.put(key, new CacheEntry(value, System.currentTimeMillis() + ttlInMillis));
+    }
+
+    @Override
+    public synchronized void invalidate(List<String> keys) {
+        for (String key : keys) {
+            entries.remove(key);
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static final class CacheEntry {
+        private final String value;
+        private final long expiresAtMillis;
+
+        private CacheEntry(String value, long expiresAtMillis) {
+            this.value = value;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
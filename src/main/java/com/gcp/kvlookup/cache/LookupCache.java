@@ -0,0 +1,36 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.gcp.kvlookup.cache;
+
+import java.util.List;
+
+/*
+    Second level cache of cell values sitting between KVLookUpService and BigTableDataAccessOperation.
+    Implementations must not fail the lookup when the cache backend is unavailable.
+*/
+public interface LookupCache {
+
+    String get(String key);
+
+    void put(String key, String value);
+
+    void invalidate(List<String> keys);
+
+    static String key(String instanceID, String tableName, String rowId) {
+        return instanceID + ":" + tableName + ":" + rowId;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.gcp.kvlookup.cache;
+
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.SocketOptions;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.sync.RedisCommands;
+import io.lettuce.core.codec.StringCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/*
+    Shared cache across pods, redis errors are logged and treated as a cache miss. The connection is opened in the
+    background on first use so the app starts while redis is down and no request waits for it, requests skip the cache
+    until it is established. Failed attempts are retried at most once per RECONNECT_INTERVAL_MILLIS and lettuce
+    reconnects an established connection by itself.
+*/
+public class RedisLookupCache implements LookupCache, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisLookupCache.class);
+
+    private static final long RECONNECT_INTERVAL_MILLIS = 1000;
+
+    private final RedisClient redisClient;
+    private final RedisURI uri;
+    private final String redisUri;
+    private final long ttlInSeconds;
+    private volatile StatefulRedisConnection<String, String> connection;
+    private boolean connecting;
+    private long lastFailedConnectMillis;
+
+    public RedisLookupCache(String redisUri, long ttlInSeconds, long timeoutInMillis, long connectTimeoutInMillis) {
+        this.uri = RedisURI.create(redisUri);
+        this.uri.setTimeout(Duration.ofMillis(timeoutInMillis));
+        this.redisClient = RedisClient.create(uri);
+        this.redisClient.setOptions(ClientOptions.builder()
+                .socketOptions(SocketOptions.builder().connectTimeout(Duration.ofMillis(connectTimeoutInMillis)).build())
+                .build());
+        this.redisUri = redisUri;
+        this.ttlInSeconds = ttlInSeconds;
+    }
+
+    // null until the connection is established, the caller skips the cache meanwhile
+    private RedisCommands<String, String> commands() {
+        StatefulRedisConnection<String, String> current = connection;
+        if (Objects.nonNull(current)) {
+            return current.sync();
+        }
+        connectInBackground();
+        return null;
+    }
+
+    private synchronized void connectInBackground() {
+        if (connecting || Objects.nonNull(connection)
+                || System.currentTimeMillis() - lastFailedConnectMillis < RECONNECT_INTERVAL_MILLIS) {
+            return;
+        }
+        connecting = true;
+        logger.info("Establishing connection to redis cache {}", kv("redisUri", redisUri));
+        redisClient.connectAsync(StringCodec.UTF8, uri).whenComplete((established, e) -> {
+            synchronized (this) {
+                connecting = false;
+                if (Objects.isNull(e)) {
+                    connection = established;
+                } else {
+                    lastFailedConnectMillis = System.currentTimeMillis();
+                    logger.error("Error occurred when connecting to redis cache {} " + e.getMessage(), kv("redisUri", redisUri));
+                }
+            }
+        });
+    }
+
+    @Override
+    public String get(String key) {
+        try {
+            RedisCommands<String, String> commands = commands();
+            return Objects.isNull(commands) ? null : commands.get(key);
+        } catch (Exception e) {
+            logger.error("Error occurred when reading from redis cache " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void put(String key, String value) {
+        try {
+            RedisCommands<String, String> commands = commands();
+            if (Objects.nonNull(commands)) {
+                commands.setex(key, ttlInSeconds, value);
+            }
+        } catch (Exception e) {
+            logger.error("Error occurred when writing to redis cache " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void invalidate(List<String> keys) {
+        try {
+            RedisCommands<String, String> commands = commands();
+            if (Objects.nonNull(commands)) {
+                commands.del(keys.toArray(new String[0]));
+            }
+        } catch (Exception e) {
+            logger.error("Error occurred when invalidating redis cache " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (Objects.nonNull(connection)) {
+            connection.close();
+        }
+        redisClient.shutdown();
+    }
+}
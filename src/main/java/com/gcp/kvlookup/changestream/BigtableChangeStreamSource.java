@@ -0,0 +1,254 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.gcp.kvlookup.changestream;
+
+import com.gcp.kvlookup.compression.ValueCompressor;
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.models.ChangeStreamContinuationToken;
+import com.google.cloud.bigtable.data.v2.models.ChangeStreamMutation;
+import com.google.cloud.bigtable.data.v2.models.ChangeStreamRecord;
+import com.google.cloud.bigtable.data.v2.models.CloseStream;
+import com.google.cloud.bigtable.data.v2.models.DeleteCells;
+import com.google.cloud.bigtable.data.v2.models.DeleteFamily;
+import com.google.cloud.bigtable.data.v2.models.Entry;
+import com.google.cloud.bigtable.data.v2.models.Heartbeat;
+import com.google.cloud.bigtable.data.v2.models.Range;
+import com.google.cloud.bigtable.data.v2.models.Range.ByteStringRange;
+import com.google.cloud.bigtable.data.v2.models.Range.TimestampRange;
+import com.google.cloud.bigtable.data.v2.models.ReadChangeStreamQuery;
+import com.google.cloud.bigtable.data.v2.models.SetCell;
+import com.google.protobuf.ByteString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+@Component
+@ConditionalOnProperty(name = "gcp.bigtable.changeStream.enabled", havingValue = "true")
+public class BigtableChangeStreamSource implements ChangeStreamSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(BigtableChangeStreamSource.class);
+
+    private static final long RETRY_BACKOFF_MILLIS = 1000;
+
+    private final Map<String, BigtableDataClient> dataClient;
+    private final Set<String> activePartitions = ConcurrentHashMap.newKeySet();
+    private final Map<String, Map<ByteString, ChangeStreamContinuationToken>> pendingPartitions = new HashMap<>();
+    private final ExecutorService readers = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "change-stream-reader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean running = true;
+    private ValueCompressor valueCompressor = ValueCompressor.PASS_THROUGH;
+
+    public BigtableChangeStreamSource(Map<String, BigtableDataClient> dataClient) {
+        this.dataClient = dataClient;
+    }
+
+    // only present when gcp.bigtable.valueCompression.enabled is set
+    @Autowired(required = false)
+    public void setValueCompressor(ValueCompressor valueCompressor) {
+        this.valueCompressor = valueCompressor;
+    }
+
+    @Override
+    public void subscribe(String instanceID, String tableName, Consumer<RowChange> consumer) {
+        BigtableDataClient client = dataClient.get(instanceID);
+        for (ByteStringRange partition : client.generateInitialChangeStreamPartitions(tableName)) {
+            ReadChangeStreamQuery query = ReadChangeStreamQuery.create(tableName).streamPartition(partition);
+            startReader(client, instanceID, tableName, partition, query, consumer);
+        }
+    }
+
+    private void startReader(BigtableDataClient client, String instanceID, String tableName, ByteStringRange partition,
+                             ReadChangeStreamQuery query, Consumer<RowChange> consumer) {
+        String partitionKey = partitionKey(instanceID, tableName, partition);
+        if (activePartitions.add(partitionKey)) {
+            readers.execute(() -> {
+                try {
+                    readPartition(client, instanceID, tableName, partition, query, consumer);
+                } finally {
+                    activePartitions.remove(partitionKey);
+                }
+            });
+        }
+    }
+
+    // a merged partition is announced by every closed parent, each with the token of its own range only. The reader
+    // is started once the tokens of all the parents cover the new partition, otherwise the other parents' changes are lost
+    private void continueOnNewPartitions(BigtableDataClient client, String instanceID, String tableName, CloseStream closeStream,
+                                         Consumer<RowChange> consumer) {
+        for (ByteStringRange newPartition : closeStream.getNewPartitions()) {
+            List<ChangeStreamContinuationToken> tokens = collectTokens(instanceID, tableName, newPartition,
+                    closeStream.getChangeStreamContinuationTokens());
+            if (Objects.nonNull(tokens)) {
+                ReadChangeStreamQuery nextQuery = ReadChangeStreamQuery.create(tableName)
+                        .streamPartition(newPartition)
+                        .continuationTokens(tokens);
+                startReader(client, instanceID, tableName, newPartition, nextQuery, consumer);
+            }
+        }
+    }
+
+    private synchronized List<ChangeStreamContinuationToken> collectTokens(String instanceID, String tableName, ByteStringRange newPartition,
+                                                                           List<ChangeStreamContinuationToken> tokens) {
+        String partitionKey = partitionKey(instanceID, tableName, newPartition);
+        Map<ByteString, ChangeStreamContinuationToken> collected = pendingPartitions.computeIfAbsent(partitionKey, key -> new HashMap<>());
+        for (ChangeStreamContinuationToken token : tokens) {
+            if (encloses(newPartition, token.getPartition())) {
+                collected.put(boundary(token.getPartition().getStart()), token);
+            }
+        }
+        if (!covers(newPartition, collected)) {
+            return null;
+        }
+        pendingPartitions.remove(partitionKey);
+        return new ArrayList<>(collected.values());
+    }
+
+    // walks the collected ranges from the start of the partition, each one has to begin where the previous one ended
+    private static boolean covers(ByteStringRange partition, Map<ByteString, ChangeStreamContinuationToken> tokensByStart) {
+        ByteString position = boundary(partition.getStart());
+        for (int i = 0; i < tokensByStart.size(); i++) {
+            ChangeStreamContinuationToken token = tokensByStart.get(position);
+            if (Objects.isNull(token)) {
+                return false;
+            }
+            position = boundary(token.getPartition().getEnd());
+            if (position.equals(boundary(partition.getEnd()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // an empty start or end is unbounded
+    private static boolean encloses(ByteStringRange outer, ByteStringRange inner) {
+        ByteString outerEnd = boundary(outer.getEnd());
+        ByteString innerEnd = boundary(inner.getEnd());
+        boolean startInside = compare(boundary(outer.getStart()), boundary(inner.getStart())) <= 0;
+        boolean endInside = outerEnd.isEmpty() || (!innerEnd.isEmpty() && compare(innerEnd, outerEnd) <= 0);
+        return startInside && endInside;
+    }
+
+    private static ByteString boundary(ByteString boundary) {
+        return Objects.isNull(boundary) ? ByteString.EMPTY : boundary;
+    }
+
+    private static int compare(ByteString left, ByteString right) {
+        return ByteString.unsignedLexicographicalComparator().compare(left, right);
+    }
+
+    private void readPartition(BigtableDataClient client, String instanceID, String tableName, ByteStringRange partition,
+                               ReadChangeStreamQuery query, Consumer<RowChange> consumer) {
+        ReadChangeStreamQuery currentQuery = query;
+        while (running) {
+            ChangeStreamContinuationToken lastToken = null;
+            try {
+                for (ChangeStreamRecord record : client.readChangeStream(currentQuery)) {
+                    if (!running) {
+                        return;
+                    }
+                    if (record instanceof ChangeStreamMutation) {
+                        ChangeStreamMutation mutation = (ChangeStreamMutation) record;
+                        toRowChange(instanceID, tableName, mutation).ifPresent(consumer);
+                        lastToken = ChangeStreamContinuationToken.create(partition, mutation.getToken());
+                    } else if (record instanceof Heartbeat) {
+                        lastToken = ((Heartbeat) record).getChangeStreamContinuationToken();
+                    } else if (record instanceof CloseStream) {
+                        // the partition was split or merged, continue on the new partitions
+                        continueOnNewPartitions(client, instanceID, tableName, (CloseStream) record, consumer);
+                        return;
+                    }
+                }
+            } catch (Exception e) {
+                logger.error("Error occurred when reading change stream of table {} " + e.getMessage(), kv("tableName", tableName));
+                sleepBeforeRetry();
+            }
+            if (Objects.nonNull(lastToken)) {
+                currentQuery = ReadChangeStreamQuery.create(tableName)
+                        .streamPartition(partition)
+                        .continuationTokens(List.of(lastToken));
+            }
+        }
+    }
+
+    // versions removed by the table's gc rules are skipped, they are never the latest value of a cell
+    Optional<RowChange> toRowChange(String instanceID, String tableName, ChangeStreamMutation mutation) {
+        if (mutation.getType() == ChangeStreamMutation.MutationType.GARBAGE_COLLECTION) {
+            return Optional.empty();
+        }
+        List<RowChange.CellChange> cellChanges = new ArrayList<>();
+        for (Entry entry : mutation.getEntries()) {
+            if (entry instanceof SetCell) {
+                SetCell setCell = (SetCell) entry;
+                cellChanges.add(new RowChange.CellChange(setCell.getFamilyName(), setCell.getQualifier().toStringUtf8(),
+                        valueCompressor.decodeToString(instanceID, tableName, setCell.getValue()), setCell.getTimestamp()));
+            } else if (entry instanceof DeleteCells) {
+                DeleteCells deleteCells = (DeleteCells) entry;
+                TimestampRange range = deleteCells.getTimestampRange();
+                long startMicros = range.getStartBound() == Range.BoundType.UNBOUNDED ? 0 : range.getStart();
+                long endMicros = range.getEndBound() == Range.BoundType.UNBOUNDED ? 0 : range.getEnd();
+                cellChanges.add(RowChange.CellChange.deleted(deleteCells.getFamilyName(), deleteCells.getQualifier().toStringUtf8(), startMicros, endMicros));
+            } else if (entry instanceof DeleteFamily) {
+                cellChanges.add(new RowChange.CellChange(((DeleteFamily) entry).getFamilyName(), null, null));
+            }
+        }
+        return Optional.of(new RowChange(mutation.getRowKey().toStringUtf8(), cellChanges));
+    }
+
+    private static String partitionKey(String instanceID, String tableName, ByteStringRange partition) {
+        return instanceID + "/" + tableName + "/" + toKey(partition.getStart()) + "/" + toKey(partition.getEnd());
+    }
+
+    private static String toKey(ByteString boundary) {
+        return Objects.isNull(boundary) ? "" : boundary.toStringUtf8();
+    }
+
+    private void sleepBeforeRetry() {
+        try {
+            Thread.sleep(RETRY_BACKOFF_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    @Override
+    @PreDestroy
+    public void close() {
+        running = false;
+        readers.shutdownNow();
+    }
+}
@@ -0,0 +1,251 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.gcp.kvlookup.changestream;
+
+import com.gcp.kvlookup.cache.LookupCache;
+import com.gcp.kvlookup.compression.ValueCompressor;
+import com.gcp.kvlookup.dataaccess.RowKeyEncoder;
+import com.gcp.kvlookup.datasource.connection.BigtableClientRouter;
+import com.google.api.gax.rpc.ServerStream;
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.models.Filters;
+import com.google.cloud.bigtable.data.v2.models.Query;
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.cloud.bigtable.data.v2.models.RowCell;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static com.google.cloud.bigtable.data.v2.models.Filters.FILTERS;
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/*
+    Applies bigtable change streams of the configured tables to the read cache so writes made by other services are
+    picked up, and keeps a fully materialized replica of the lookup column for small tables listed as replicated.
+    Tables are configured as instanceId/tableName.
+*/
+@Component
+@ConditionalOnProperty(name = "gcp.bigtable.changeStream.enabled", havingValue = "true")
+public class ChangeStreamCacheSynchronizer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeStreamCacheSynchronizer.class);
+
+    private final ChangeStreamSource changeStreamSource;
+    private BigtableClientRouter clientRouter;
+    private final Set<String> tables;
+    private final Set<String> replicatedTables;
+    private final String columnFamily;
+    private final String columnQualifierName;
+    private final Map<String, Map<String, ReplicaCell>> replicas = new ConcurrentHashMap<>();
+    private final Set<String> loadedReplicas = ConcurrentHashMap.newKeySet();
+    // changes received while a replica is scanned, applied in order once the scan is done
+    private final Map<String, List<RowChange>> bufferedChanges = new ConcurrentHashMap<>();
+
+    private LookupCache lookupCache;
+    private RowKeyEncoder rowKeyEncoder = new RowKeyEncoder(List.of());
+    private ValueCompressor valueCompressor = ValueCompressor.PASS_THROUGH;
+
+    public ChangeStreamCacheSynchronizer(ChangeStreamSource changeStreamSource, Map<String, BigtableDataClient> dataClient,
+                                         @Value("#{'${gcp.bigtable.changeStream.tables:}'.split(',')}") List<String> tables,
+                                         @Value("#{'${gcp.bigtable.changeStream.replicatedTables:}'.split(',')}") List<String> replicatedTables,
+                                         @Value("${gcp.bigtable.column.family}") String columnFamily,
+                                         @Value("${gcp.bigtable.column.QualifierName}") String columnQualifierName) {
+        this.changeStreamSource = changeStreamSource;
+        this.clientRouter = new BigtableClientRouter(dataClient);
+        this.replicatedTables = toTableSet(replicatedTables);
+        this.tables = new LinkedHashSet<>(toTableSet(tables));
+        this.tables.addAll(this.replicatedTables);
+        this.columnFamily = columnFamily;
+        this.columnQualifierName = columnQualifierName;
+    }
+
+    @Autowired(required = false)
+    public void setLookupCache(LookupCache lookupCache) {
+        this.lookupCache = lookupCache;
+    }
+
+    @Autowired
+    public void setRowKeyEncoder(RowKeyEncoder rowKeyEncoder) {
+        this.rowKeyEncoder = rowKeyEncoder;
+    }
+
+    @Autowired
+    public void setClientRouter(BigtableClientRouter clientRouter) {
+        this.clientRouter = clientRouter;
+    }
+
+    // only present when gcp.bigtable.valueCompression.enabled is set
+    @Autowired(required = false)
+    public void setValueCompressor(ValueCompressor valueCompressor) {
+        this.valueCompressor = valueCompressor;
+    }
+
+    @PostConstruct
+    public void start() {
+        for (String table : tables) {
+            String[] instanceAndTable = table.split("/", 2);
+            String instanceID = instanceAndTable[0];
+            String tableName = instanceAndTable[1];
+            logger.info("Subscribing to change stream {} {}", kv("instanceId", instanceID), kv("tableName", tableName));
+            // the subscription starts before the replica scan so no change made during the scan is lost
+            if (replicatedTables.contains(table)) {
+                replicas.put(table, new ConcurrentHashMap<>());
+                bufferedChanges.put(table, new ArrayList<>());
+            }
+            changeStreamSource.subscribe(instanceID, tableName, rowChange -> onRowChange(instanceID, tableName, rowChange));
+            if (replicatedTables.contains(table)) {
+                loadReplica(instanceID, tableName);
+            }
+        }
+    }
+
+    public boolean isReplicated(String instanceID, String tableName) {
+        return loadedReplicas.contains(instanceID + "/" + tableName);
+    }
+
+    public String readReplica(String instanceID, String tableName, String rowId) {
+        ReplicaCell cell = replicas.get(instanceID + "/" + tableName).get(rowId);
+        return Objects.isNull(cell) ? null : cell.value;
+    }
+
+    void onRowChange(String instanceID, String tableName, RowChange rowChange) {
+        String table = instanceID + "/" + tableName;
+        Map<String, ReplicaCell> replica = replicas.get(table);
+        if (Objects.nonNull(replica) && !loadedReplicas.contains(table)) {
+            synchronized (replica) {
+                if (!loadedReplicas.contains(table)) {
+                    bufferedChanges.get(table).add(rowChange);
+                    return;
+                }
+            }
+        }
+        applyRowChange(instanceID, tableName, replica, rowChange);
+    }
+
+    private void applyRowChange(String instanceID, String tableName, Map<String, ReplicaCell> replica, RowChange rowChange) {
+        RowChange.CellChange lookupChange = null;
+        for (RowChange.CellChange cellChange : rowChange.getCellChanges()) {
+            if (!columnFamily.equals(cellChange.getColumnFamily())) {
+                continue;
+            }
+            if (Objects.isNull(cellChange.getColumnName()) || columnQualifierName.equals(cellChange.getColumnName())) {
+                lookupChange = cellChange;
+            }
+        }
+        if (Objects.isNull(lookupChange)) {
+            return;
+        }
+        String rowId = rowKeyEncoder.decode(tableName, rowChange.getRowKey());
+        if (Objects.nonNull(replica)) {
+            if (lookupChange.isDelete()) {
+                ReplicaCell held = replica.get(rowId);
+                // deleting older versions leaves the served one, otherwise an older version may now be the latest
+                if (Objects.nonNull(held) && lookupChange.covers(held.timestampMicros)) {
+                    reloadReplicaRow(instanceID, tableName, replica, rowChange.getRowKey(), rowId);
+                }
+            } else {
+                replica.merge(rowId, new ReplicaCell(lookupChange.getColumnValue(), lookupChange.getTimestampMicros()),
+                        (held, next) -> next.isAtLeastAsNewAs(held) ? next : held);
+            }
+        }
+        if (Objects.nonNull(lookupCache)) {
+            String cacheKey = LookupCache.key(instanceID, tableName, rowId);
+            if (lookupChange.isDelete()) {
+                lookupCache.invalidate(List.of(cacheKey));
+            } else {
+                lookupCache.put(cacheKey, lookupChange.getColumnValue());
+            }
+        }
+    }
+
+    private void reloadReplicaRow(String instanceID, String tableName, Map<String, ReplicaCell> replica, String rowKey, String rowId) {
+        Row row = clientRouter.get(instanceID, BigtableClientRouter.Operation.POINT_READ).readRow(tableName, rowKey, lookupColumnFilter());
+        List<RowCell> cells = Objects.isNull(row) ? List.of() : row.getCells(columnFamily, columnQualifierName);
+        if (CollectionUtils.isEmpty(cells)) {
+            replica.remove(rowId);
+        } else {
+            replica.put(rowId, new ReplicaCell(valueCompressor.decodeToString(instanceID, tableName, cells.get(0).getValue()), cells.get(0).getTimestamp()));
+        }
+    }
+
+    private Filters.Filter lookupColumnFilter() {
+        return FILTERS.chain()
+                .filter(FILTERS.family().exactMatch(columnFamily))
+                .filter(FILTERS.qualifier().exactMatch(columnQualifierName))
+                .filter(FILTERS.limit().cellsPerColumn(1));
+    }
+
+    private void loadReplica(String instanceID, String tableName) {
+        String table = instanceID + "/" + tableName;
+        Map<String, ReplicaCell> replica = replicas.get(table);
+        Query query = Query.create(tableName).filter(lookupColumnFilter());
+        ServerStream<Row> rows = clientRouter.get(instanceID, BigtableClientRouter.Operation.SCAN).readRows(query);
+        for (Row row : rows) {
+            List<RowCell> cells = row.getCells(columnFamily, columnQualifierName);
+            if (!CollectionUtils.isEmpty(cells)) {
+                replica.put(rowKeyEncoder.decode(tableName, row.getKey().toStringUtf8()),
+                        new ReplicaCell(valueCompressor.decodeToString(instanceID, tableName, cells.get(0).getValue()), cells.get(0).getTimestamp()));
+            }
+        }
+        // changes made during the scan are replayed on top of it, so a row deleted while scanning stays deleted
+        synchronized (replica) {
+            List<RowChange> changes = bufferedChanges.remove(table);
+            for (RowChange rowChange : changes) {
+                applyRowChange(instanceID, tableName, replica, rowChange);
+            }
+            loadedReplicas.add(table);
+            logger.info("Loaded replica of table {} with {} rows after {} buffered changes", kv("tableName", tableName),
+                    kv("rowCount", replica.size()), kv("bufferedChangeCount", changes.size()));
+        }
+    }
+
+    private static final class ReplicaCell {
+        private final String value;
+        private final long timestampMicros;
+
+        private ReplicaCell(String value, long timestampMicros) {
+            this.value = value;
+            this.timestampMicros = timestampMicros;
+        }
+
+        private boolean isAtLeastAsNewAs(ReplicaCell other) {
+            return timestampMicros == RowChange.CellChange.UNKNOWN_TIMESTAMP || timestampMicros >= other.timestampMicros;
+        }
+    }
+
+    private static Set<String> toTableSet(List<String> tables) {
+        return tables.stream()
+                .map(String::trim)
+                .filter(table -> StringUtils.hasText(table) && table.contains("/"))
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+}
@@ -0,0 +1,27 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.gcp.kvlookup.changestream;
+
+import java.util.function.Consumer;
+
+// source of row changes for a table, starting from the time of the subscription
+public interface ChangeStreamSource {
+
+    void subscribe(String instanceID, String tableName, Consumer<RowChange> consumer);
+
+    void close();
+}
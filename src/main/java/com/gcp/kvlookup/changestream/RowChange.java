@@ -0,0 +1,122 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.gcp.kvlookup.changestream;
+
+import java.util.List;
+
+public class RowChange {
+
+    private final String rowKey;
+    private final List<CellChange> cellChanges;
+
+    public RowChange(String rowKey, List<CellChange> cellChanges) {
+        this.rowKey = rowKey;
+        this.cellChanges = cellChanges;
+    }
+
+    public String getRowKey() {
+        return rowKey;
+    }
+
+    public List<CellChange> getCellChanges() {
+        return cellChanges;
+    }
+
+    @Override
+    public String toString() {
+        return "RowChange{" +
+                "rowKey='" + rowKey + '\'' +
+                ", cellChanges=" + cellChanges +
+                '}';
+    }
+
+    // a null qualifier stands for the whole family and a null value for deleted cells
+    public static class CellChange {
+
+        public static final long UNKNOWN_TIMESTAMP = -1;
+
+        private final String columnFamily;
+        private final String columnName;
+        private final String columnValue;
+        private final long timestampMicros;
+        // deleted versions are [deleteStartMicros, deleteEndMicros), an end of 0 has no upper bound
+        private final long deleteStartMicros;
+        private final long deleteEndMicros;
+
+        public CellChange(String columnFamily, String columnName, String columnValue) {
+            this(columnFamily, columnName, columnValue, UNKNOWN_TIMESTAMP, 0, 0);
+        }
+
+        public CellChange(String columnFamily, String columnName, String columnValue, long timestampMicros) {
+            this(columnFamily, columnName, columnValue, timestampMicros, 0, 0);
+        }
+
+        private CellChange(String columnFamily, String columnName, String columnValue, long timestampMicros,
+                           long deleteStartMicros, long deleteEndMicros) {
+            this.columnFamily = columnFamily;
+            this.columnName = columnName;
+            this.columnValue = columnValue;
+            this.timestampMicros = timestampMicros;
+            this.deleteStartMicros = deleteStartMicros;
+            this.deleteEndMicros = deleteEndMicros;
+        }
+
+        public static CellChange deleted(String columnFamily, String columnName, long deleteStartMicros, long deleteEndMicros) {
+            return new CellChange(columnFamily, columnName, null, UNKNOWN_TIMESTAMP, deleteStartMicros, deleteEndMicros);
+        }
+
+        public boolean isDelete() {
+            return columnValue == null;
+        }
+
+        // whether this delete removes the version written at timestampMicros, unknown versions count as removed
+        public boolean covers(long versionMicros) {
+            if (versionMicros == UNKNOWN_TIMESTAMP) {
+                return true;
+            }
+            return versionMicros >= deleteStartMicros && (deleteEndMicros == 0 || versionMicros < deleteEndMicros);
+        }
+
+        public long getTimestampMicros() {
+            return timestampMicros;
+        }
+
+        public String getColumnFamily() {
+            return columnFamily;
+        }
+
+        public String getColumnName() {
+            return columnName;
+        }
+
+        public String getColumnValue() {
+            return columnValue;
+        }
+
+        @Override
+        public String toString() {
+            return "CellChange{" +
+                    "columnFamily='" + columnFamily + '\'' +
+                    ", columnName='" + columnName + '\'' +
+                    ", columnValue='" + columnValue + '\'' +
+                    ", timestampMicros=" + timestampMicros +
+                    ", deleteStartMicros=" + deleteStartMicros +
+                    ", deleteEndMicros=" + deleteEndMicros +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+
+package com.gcp.kvlookup.compression;
+
+import com.gcp.kvlookup.exception.KVLookUpException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Objects;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/*
+    Inflates gzip and deflate request bodies so bulk inserts can be sent compressed. The inflated size is capped to
+    keep a small compressed body from expanding into an unbounded one.
+ */
+@Component
+@ConditionalOnProperty(name = "app.requestDecompression.enabled", havingValue = "true")
+public class RequestDecompressionFilter extends OncePerRequestFilter {
+
+    private final long maxInflatedBytes;
+
+    public RequestDecompressionFilter(@Value("${app.requestDecompression.maxSizeInMB}") long maxSizeInMB) {
+        this.maxInflatedBytes = maxSizeInMB * 1024 * 1024;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        String contentEncoding = request.getHeader(HttpHeaders.CONTENT_ENCODING);
+        if (Objects.isNull(contentEncoding) || "identity".equalsIgnoreCase(contentEncoding.trim())) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        ServletInputStream compressed = request.getInputStream();
+        InputStream inflated;
+        switch (contentEncoding.trim().toLowerCase()) {
+            case "gzip":
+            case "x-gzip":
+                try {
+                    // reads the gzip header right away
+                    inflated = new GZIPInputStream(compressed);
+                } catch (ZipException | EOFException e) {
+                    reject(response, HttpStatus.BAD_REQUEST, "Malformed gzip request body: " + e.getMessage());
+                    return;
+                }
+                break;
+            case "deflate":
+                inflated = new InflaterInputStream(compressed);
+                break;
+            default:
+                reject(response, HttpStatus.UNSUPPORTED_MEDIA_TYPE, "Unsupported Content-Encoding " + contentEncoding);
+                return;
+        }
+        filterChain.doFilter(new DecompressedRequest(request, compressed, new LimitedInputStream(inflated, maxInflatedBytes)), response);
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.getWriter().write(message);
+    }
+
+    private static class DecompressedRequest extends HttpServletRequestWrapper {
+        private final ServletInputStream inputStream;
+
+        DecompressedRequest(HttpServletRequest request, ServletInputStream compressed, InputStream inflated) {
+            super(request);
+            this.inputStream = new ServletInputStream() {
+                private boolean finished;
+
+                @Override
+                public int read() throws IOException {
+                    int value = inflated.read();
+                    finished = value < 0;
+                    return value;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int read = inflated.read(buffer, offset, length);
+                    finished = read < 0;
+                    return read;
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return finished;
+                }
+
+                // once the compressed body is fully received the rest of the inflated body is read without blocking
+                @Override
+                public boolean isReady() {
+                    return finished || compressed.isFinished() || compressed.isReady();
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    compressed.setReadListener(new ReadListener() {
+                        @Override
+                        public void onDataAvailable() throws IOException {
+                            readListener.onDataAvailable();
+                        }
+
+                        @Override
+                        public void onAllDataRead() throws IOException {
+                            // inflated bytes can still be buffered when the last compressed bytes have been consumed
+                            if (!finished) {
+                                readListener.onDataAvailable();
+                            }
+                            readListener.onAllDataRead();
+                        }
+
+                        @Override
+                        public void onError(Throwable t) {
+                            readListener.onError(t);
+                        }
+                    });
+                }
+            };
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            return inputStream;
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            Charset charset = Objects.isNull(getCharacterEncoding()) ? StandardCharsets.UTF_8 : Charset.forName(getCharacterEncoding());
+            return new BufferedReader(new InputStreamReader(inputStream, charset));
+        }
+
+        @Override
+        public int getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return -1;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name) || HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name) ? null : super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            return HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name) || HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+        }
+    }
+
+    static class LimitedInputStream extends InputStream {
+        private final InputStream inputStream;
+        private final long maxBytes;
+        private long readBytes;
+
+        LimitedInputStream(InputStream inputStream, long maxBytes) {
+            this.inputStream = inputStream;
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = inputStream.read();
+            if (value >= 0) {
+                count(1);
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = inputStream.read(buffer, offset, length);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            inputStream.close();
+        }
+
+        // surfaces as a 413 through the controllers and GlobalExceptionHandler rather than as an unreadable body
+        private void count(int bytes) {
+            readBytes += bytes;
+            if (readBytes > maxBytes) {
+                throw new KVLookUpException("Decompressed request body is larger than " + maxBytes + " bytes", HttpStatus.PAYLOAD_TOO_LARGE, false);
+            }
+        }
+    }
+}
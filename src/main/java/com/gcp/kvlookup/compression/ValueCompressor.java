@@ -0,0 +1,374 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+
+package com.gcp.kvlookup.compression;
+
+import com.gcp.kvlookup.datasource.connection.BigtableClientRouter;
+import com.gcp.kvlookup.exception.KVLookUpException;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.github.luben.zstd.ZstdException;
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.models.Query;
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.cloud.bigtable.data.v2.models.RowCell;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.google.cloud.bigtable.data.v2.models.Filters.FILTERS;
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/*
+    Compresses cell values of the configured tables (instanceId/tableName:zstd or instanceId/tableName:lz4). A compressed
+    value starts with a codec byte, 0xF5 or 0xF6, and only values of listed tables are decoded, so other tables may hold
+    any bytes. In a listed table a value starting with either byte is taken as compressed; they never start a UTF-8
+    string, so values written before compression was enabled are read back as they are. A table whose compression is
+    turned off stays listed as instanceId/tableName:none, its values are decoded but no longer compressed. Zstd values can use a dictionary trained per column family from sampled values; the
+    dictionary id is part of the zstd frame so values written with an older dictionary stay readable after retraining.
+    A frame whose dictionary is not loaded, because another pod trained it, is decoded after looking the dictionary up
+    in the shared dictionary directory.
+*/
+@Component
+@ConditionalOnProperty(name = "gcp.bigtable.valueCompression.enabled", havingValue = "true")
+public class ValueCompressor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ValueCompressor.class);
+
+    // leaves every value as it is, used by components when no compressor is configured
+    public static final ValueCompressor PASS_THROUGH = new ValueCompressor(Map.of(), new SimpleMeterRegistry(), List.of(),
+            3, Integer.MAX_VALUE, "", 0, 0);
+
+    static final byte ZSTD_HEADER = (byte) 0xF5;
+    static final byte LZ4_HEADER = (byte) 0xF6;
+    private static final int LZ4_HEADER_SIZE = 1 + Integer.BYTES;
+    // largest cell Bigtable accepts
+    private static final int MAX_VALUE_SIZE = 100 * 1024 * 1024;
+    private static final String DICTIONARY_SUFFIX = ".dict";
+    // how often the dictionary directory is searched again for a dictionary id that was not found
+    private static final long DICTIONARY_RECHECK_MILLIS = 1000;
+    private static final int MAX_DICTIONARY_MISSES = 1000;
+
+    public enum Codec {
+        ZSTD, LZ4
+    }
+
+    private BigtableClientRouter clientRouter;
+    private final Map<String, Codec> codecs = new HashMap<>();
+    // tables whose values are decoded, the compressed ones and those listed with none
+    private final Set<String> decodedTables = new HashSet<>();
+    private final int zstdLevel;
+    private final int minSizeInBytes;
+    private final Path dictionaryDirectory;
+    private final int dictionarySizeInBytes;
+    private final int dictionarySampleRows;
+    // instanceId/tableName/columnFamily to the dictionary new values are compressed with
+    private final Map<String, ZstdDictCompress> compressDictionaries = new ConcurrentHashMap<>();
+    private final Map<Long, ZstdDictDecompress> decompressDictionaries = new ConcurrentHashMap<>();
+    // dictionary id to when the directory was last searched for it in vain
+    private final Map<Long, Long> dictionaryMisses = new ConcurrentHashMap<>();
+    private final LZ4Compressor lz4Compressor = LZ4Factory.fastestInstance().fastCompressor();
+    private final LZ4SafeDecompressor lz4Decompressor = LZ4Factory.fastestInstance().safeDecompressor();
+    private final Map<Codec, Counter> inputBytes = new EnumMap<>(Codec.class);
+    private final Map<Codec, Counter> outputBytes = new EnumMap<>(Codec.class);
+
+    public ValueCompressor(Map<String, BigtableDataClient> dataClient, MeterRegistry meterRegistry,
+                           @Value("#{'${gcp.bigtable.valueCompression.tables:}'.split(',')}") List<String> tables,
+                           @Value("${gcp.bigtable.valueCompression.zstdLevel}") int zstdLevel,
+                           @Value("${gcp.bigtable.valueCompression.minSizeInBytes}") int minSizeInBytes,
+                           @Value("${gcp.bigtable.valueCompression.dictionaryDirectory:}") String dictionaryDirectory,
+                           @Value("${gcp.bigtable.valueCompression.dictionarySizeInKB}") int dictionarySizeInKB,
+                           @Value("${gcp.bigtable.valueCompression.dictionarySampleRows}") int dictionarySampleRows) {
+        this.clientRouter = new BigtableClientRouter(dataClient);
+        this.zstdLevel = zstdLevel;
+        this.minSizeInBytes = minSizeInBytes;
+        this.dictionaryDirectory = StringUtils.hasText(dictionaryDirectory) ? Paths.get(dictionaryDirectory) : null;
+        this.dictionarySizeInBytes = dictionarySizeInKB * 1024;
+        this.dictionarySampleRows = dictionarySampleRows;
+        for (String table : tables) {
+            if (!StringUtils.hasText(table)) {
+                continue;
+            }
+            int separator = table.lastIndexOf(':');
+            if (separator < 0 || !table.substring(0, separator).contains("/")) {
+                throw new IllegalArgumentException("Compressed table " + table + " is not instanceId/tableName:codec");
+            }
+            String instanceAndTable = table.substring(0, separator).trim();
+            String codec = table.substring(separator + 1).trim().toUpperCase();
+            if (!"NONE".equals(codec)) {
+                codecs.put(instanceAndTable, Codec.valueOf(codec));
+            }
+            decodedTables.add(instanceAndTable);
+        }
+        for (Codec codec : Codec.values()) {
+            String name = codec.name().toLowerCase();
+            inputBytes.put(codec, Counter.builder("kvlookup.compression.input.bytes").tag("codec", name).register(meterRegistry));
+            outputBytes.put(codec, Counter.builder("kvlookup.compression.output.bytes").tag("codec", name).register(meterRegistry));
+        }
+    }
+
+    @Autowired
+    public void setClientRouter(BigtableClientRouter clientRouter) {
+        this.clientRouter = clientRouter;
+    }
+
+    // dictionaries are <directory>/<instanceId>/<tableName>/<columnFamily>-<dictionaryId>.dict, the newest one per family is used for writes
+    @PostConstruct
+    public void loadDictionaries() throws IOException {
+        if (Objects.isNull(dictionaryDirectory) || !Files.isDirectory(dictionaryDirectory)) {
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(dictionaryDirectory, 3)) {
+            files = paths.filter(path -> path.getFileName().toString().endsWith(DICTIONARY_SUFFIX)
+                            && dictionaryDirectory.relativize(path).getNameCount() == 3)
+                    .sorted(Comparator.comparing(path -> path.toFile().lastModified()))
+                    .collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            register(file);
+        }
+        logger.info("Loaded {} compression dictionaries", kv("dictionaryCount", files.size()));
+    }
+
+    private boolean register(Path file) throws IOException {
+        Path relative = dictionaryDirectory.relativize(file);
+        String fileName = relative.getFileName().toString();
+        int separator = fileName.lastIndexOf('-');
+        if (separator < 0) {
+            return false;
+        }
+        register(relative.getName(0) + "/" + relative.getName(1) + "/" + fileName.substring(0, separator), Files.readAllBytes(file));
+        return true;
+    }
+
+    // a dictionary that was not there at startup was trained since, so it also becomes the one its family is written with
+    private ZstdDictDecompress findDictionary(long dictionaryId) {
+        ZstdDictDecompress dictionary = decompressDictionaries.get(dictionaryId);
+        if (Objects.nonNull(dictionary) || Objects.isNull(dictionaryDirectory)) {
+            return dictionary;
+        }
+        long now = System.currentTimeMillis();
+        Long lastMiss = dictionaryMisses.get(dictionaryId);
+        if (Objects.nonNull(lastMiss) && now - lastMiss < DICTIONARY_RECHECK_MILLIS) {
+            return null;
+        }
+        synchronized (dictionaryMisses) {
+            dictionary = decompressDictionaries.get(dictionaryId);
+            if (Objects.nonNull(dictionary)) {
+                return dictionary;
+            }
+            String suffix = "-" + dictionaryId + DICTIONARY_SUFFIX;
+            try (Stream<Path> paths = Files.find(dictionaryDirectory, 3, (path, attributes) -> attributes.isRegularFile()
+                    && path.getFileName().toString().endsWith(suffix) && dictionaryDirectory.relativize(path).getNameCount() == 3)) {
+                Optional<Path> file = paths.findFirst();
+                if (file.isPresent() && register(file.get())) {
+                    logger.info("Loaded compression dictionary {} from {}", kv("dictionaryId", dictionaryId), kv("file", file.get()));
+                    dictionaryMisses.remove(dictionaryId);
+                    return decompressDictionaries.get(dictionaryId);
+                }
+            } catch (IOException | UncheckedIOException e) {
+                logger.error("Error occurred when looking up compression dictionary {}", kv("dictionaryId", dictionaryId), e);
+            }
+            if (dictionaryMisses.size() >= MAX_DICTIONARY_MISSES) {
+                dictionaryMisses.clear();
+            }
+            dictionaryMisses.put(dictionaryId, now);
+            return null;
+        }
+    }
+
+    public Codec getCodec(String instanceID, String tableName) {
+        return codecs.get(instanceID + "/" + tableName);
+    }
+
+    public ByteString encode(String instanceID, String tableName, String columnFamily, String value) {
+        return encode(instanceID, tableName, columnFamily, ByteString.copyFromUtf8(value));
+    }
+
+    // the value as it is when its table is not compressed, it is small or it does not get smaller
+    public ByteString encode(String instanceID, String tableName, String columnFamily, ByteString value) {
+        Codec codec = codecs.get(instanceID + "/" + tableName);
+        if (Objects.isNull(codec) || value.size() < minSizeInBytes) {
+            return value;
+        }
+        byte[] raw = value.toByteArray();
+        byte[] compressed = codec == Codec.LZ4 ? compressLz4(raw)
+                : compressZstd(compressDictionaries.get(instanceID + "/" + tableName + "/" + columnFamily), raw);
+        inputBytes.get(codec).increment(raw.length);
+        if (compressed.length >= raw.length) {
+            outputBytes.get(codec).increment(raw.length);
+            return value;
+        }
+        outputBytes.get(codec).increment(compressed.length);
+        return UnsafeByteOperations.unsafeWrap(compressed);
+    }
+
+    // the value as it is unless its table is listed
+    public ByteString decode(String instanceID, String tableName, ByteString value) {
+        if (!decodedTables.contains(instanceID + "/" + tableName) || value.isEmpty() || (value.byteAt(0) != ZSTD_HEADER && value.byteAt(0) != LZ4_HEADER)) {
+            return value;
+        }
+        try {
+            return UnsafeByteOperations.unsafeWrap(value.byteAt(0) == LZ4_HEADER ? decompressLz4(value.toByteArray())
+                    : decompressZstd(value.substring(1).toByteArray()));
+        } catch (ZstdException | LZ4Exception e) {
+            logger.error("Error occurred when decompressing a cell value " + e.getMessage());
+            throw new KVLookUpException("Cell value could not be decompressed", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    public String decodeToString(String instanceID, String tableName, ByteString value) {
+        return decode(instanceID, tableName, value).toStringUtf8();
+    }
+
+    // trains a zstd dictionary from the latest values of up to dictionarySampleRows rows and uses it for new writes
+    public long trainDictionary(String instanceID, String tableName, String columnFamily) throws IOException {
+        if (Objects.isNull(dictionaryDirectory)) {
+            throw new KVLookUpException("gcp.bigtable.valueCompression.dictionaryDirectory is not configured", HttpStatus.BAD_REQUEST);
+        }
+        if (getCodec(instanceID, tableName) != Codec.ZSTD) {
+            throw new KVLookUpException("Table " + tableName + " is not compressed with zstd", HttpStatus.BAD_REQUEST);
+        }
+        Query query = Query.create(tableName)
+                .filter(FILTERS.chain()
+                        .filter(FILTERS.family().exactMatch(columnFamily))
+                        .filter(FILTERS.limit().cellsPerColumn(1)))
+                .limit(dictionarySampleRows);
+        // zstd recommends about a hundred times the dictionary size of samples
+        ZstdDictTrainer trainer = new ZstdDictTrainer(dictionarySizeInBytes * 100, dictionarySizeInBytes);
+        int samples = 0;
+        for (Row row : clientRouter.get(instanceID, BigtableClientRouter.Operation.SCAN).readRows(query)) {
+            for (RowCell cell : row.getCells()) {
+                // samples past the end of the sample buffer are dropped
+                if (trainer.addSample(decode(instanceID, tableName, cell.getValue()).toByteArray())) {
+                    samples++;
+                }
+            }
+        }
+        byte[] dictionary;
+        try {
+            dictionary = trainer.trainSamples();
+        } catch (ZstdException e) {
+            throw new KVLookUpException("Could not train a dictionary from " + samples + " values: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+        long dictionaryId = Zstd.getDictIdFromDict(dictionary);
+        Path tableDirectory = Files.createDirectories(dictionaryDirectory.resolve(instanceID).resolve(tableName));
+        Path temporary = tableDirectory.resolve(columnFamily + "-" + dictionaryId + DICTIONARY_SUFFIX + ".inprogress");
+        Files.write(temporary, dictionary);
+        Files.move(temporary, tableDirectory.resolve(columnFamily + "-" + dictionaryId + DICTIONARY_SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+        register(instanceID + "/" + tableName + "/" + columnFamily, dictionary);
+        logger.info("Trained compression dictionary {} for table {} family {} from {} values", kv("dictionaryId", dictionaryId),
+                kv("tableName", tableName), kv("columnFamily", columnFamily), kv("sampleCount", samples));
+        return dictionaryId;
+    }
+
+    private void register(String family, byte[] dictionary) {
+        decompressDictionaries.put(Zstd.getDictIdFromDict(dictionary), new ZstdDictDecompress(dictionary));
+        compressDictionaries.put(family, new ZstdDictCompress(dictionary, zstdLevel));
+    }
+
+    private byte[] compressZstd(ZstdDictCompress dictionary, byte[] raw) {
+        byte[] frame = Objects.isNull(dictionary) ? Zstd.compress(raw, zstdLevel) : Zstd.compress(raw, dictionary);
+        byte[] compressed = new byte[frame.length + 1];
+        compressed[0] = ZSTD_HEADER;
+        System.arraycopy(frame, 0, compressed, 1, frame.length);
+        return compressed;
+    }
+
+    private byte[] decompressZstd(byte[] frame) {
+        long size = Zstd.decompressedSize(frame);
+        if (size <= 0 || size > MAX_VALUE_SIZE) {
+            throw new KVLookUpException("Compressed cell value has an invalid size " + size, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        long dictionaryId = Zstd.getDictIdFromFrame(frame);
+        if (dictionaryId == 0) {
+            return Zstd.decompress(frame, (int) size);
+        }
+        ZstdDictDecompress dictionary = findDictionary(dictionaryId);
+        if (Objects.isNull(dictionary)) {
+            throw new KVLookUpException("Compression dictionary " + dictionaryId + " is not loaded", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        return Zstd.decompress(frame, dictionary, (int) size);
+    }
+
+    // the original length is kept after the codec byte since the lz4 block format does not record it
+    private byte[] compressLz4(byte[] raw) {
+        int maxLength = lz4Compressor.maxCompressedLength(raw.length);
+        byte[] compressed = new byte[LZ4_HEADER_SIZE + maxLength];
+        compressed[0] = LZ4_HEADER;
+        compressed[1] = (byte) (raw.length >>> 24);
+        compressed[2] = (byte) (raw.length >>> 16);
+        compressed[3] = (byte) (raw.length >>> 8);
+        compressed[4] = (byte) raw.length;
+        int length = lz4Compressor.compress(raw, 0, raw.length, compressed, LZ4_HEADER_SIZE, maxLength);
+        return Arrays.copyOf(compressed, LZ4_HEADER_SIZE + length);
+    }
+
+    private byte[] decompressLz4(byte[] compressed) {
+        if (compressed.length < LZ4_HEADER_SIZE) {
+            throw new KVLookUpException("Compressed cell value is truncated", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        int size = (compressed[1] & 0xFF) << 24 | (compressed[2] & 0xFF) << 16 | (compressed[3] & 0xFF) << 8 | (compressed[4] & 0xFF);
+        if (size < 0 || size > MAX_VALUE_SIZE) {
+            throw new KVLookUpException("Compressed cell value has an invalid size " + size, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        byte[] raw = new byte[size];
+        int length = lz4Decompressor.decompress(compressed, LZ4_HEADER_SIZE, compressed.length - LZ4_HEADER_SIZE, raw, 0, size);
+        if (length != size) {
+            throw new KVLookUpException("Compressed cell value is truncated", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        return raw;
+    }
+}
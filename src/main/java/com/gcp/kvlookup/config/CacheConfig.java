@@ -0,0 +1,46 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.gcp.kvlookup.config;
+
+import com.gcp.kvlookup.cache.InMemoryLookupCache;
+import com.gcp.kvlookup.cache.LookupCache;
+import com.gcp.kvlookup.cache.RedisLookupCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class CacheConfig {
+
+    @Value("${gcp.bigtable.cache.ttlInSeconds}")
+    private long ttlInSeconds;
+
+    @Bean
+    @ConditionalOnProperty(name = "gcp.bigtable.cache.type", havingValue = "memory")
+    public LookupCache inMemoryLookupCache(@Value("${gcp.bigtable.cache.maxEntries}") int maxEntries) {
+        return new InMemoryLookupCache(ttlInSeconds, maxEntries);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "gcp.bigtable.cache.type", havingValue = "redis")
+    public LookupCache redisLookupCache(@Value("${gcp.bigtable.cache.redis.uri}") String redisUri,
+                                        @Value("${gcp.bigtable.cache.redis.timeoutInMillis}") long timeoutInMillis,
+                                        @Value("${gcp.bigtable.cache.redis.connectTimeoutInMillis}") long connectTimeoutInMillis) {
+        return new RedisLookupCache(redisUri, ttlInSeconds, timeoutInMillis, connectTimeoutInMillis);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+
+package com.gcp.kvlookup.config;
+
+import com.gcp.kvlookup.tracing.InMemorySpanExporter;
+import com.gcp.kvlookup.tracing.Spans;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.exporter.otlp.trace.OtlpGrpcSpanExporter;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SdkTracerProviderBuilder;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+@Configuration
+public class TracingConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(TracingConfig.class);
+
+    @Value("${spring.application.name}")
+    private String applicationName;
+
+    @Value("${app.tracing.enabled}")
+    private boolean enabled;
+
+    @Value("${app.tracing.sampleRatio}")
+    private double sampleRatio;
+
+    @Value("${app.tracing.exporter}")
+    private String exporter;
+
+    @Value("${app.tracing.otlp.endpoint}")
+    private String otlpEndpoint;
+
+    @Value("${app.tracing.otlp.plaintext}")
+    private boolean otlpPlaintext;
+
+    @Bean
+    @ConditionalOnProperty(name = "app.tracing.exporter", havingValue = "memory")
+    public InMemorySpanExporter inMemorySpanExporter() {
+        return new InMemorySpanExporter();
+    }
+
+    @Bean
+    public OpenTelemetry openTelemetry() {
+        if (!enabled) {
+            return OpenTelemetry.noop();
+        }
+        SdkTracerProviderBuilder tracerProviderBuilder = SdkTracerProvider.builder()
+                .setResource(Resource.getDefault().merge(Resource.create(Attributes.of(AttributeKey.stringKey("service.name"), applicationName))))
+                .setSampler(Sampler.parentBased(Sampler.traceIdRatioBased(sampleRatio)));
+        if ("otlp".equals(exporter)) {
+            ManagedChannelBuilder<?> channelBuilder = ManagedChannelBuilder.forTarget(otlpEndpoint);
+            if (otlpPlaintext) {
+                channelBuilder.usePlaintext();
+            }
+            ManagedChannel channel = channelBuilder.build();
+            tracerProviderBuilder.addSpanProcessor(BatchSpanProcessor.builder(OtlpGrpcSpanExporter.builder().setChannel(channel).build()).build());
+        } else if ("memory".equals(exporter)) {
+            tracerProviderBuilder.addSpanProcessor(SimpleSpanProcessor.create(inMemorySpanExporter()));
+        }
+        OpenTelemetrySdk openTelemetrySdk = OpenTelemetrySdk.builder()
+                .setTracerProvider(tracerProviderBuilder.build())
+                .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+                .build();
+        try {
+            // the opencensus shim parents the bigtable client's spans through the global instance
+            GlobalOpenTelemetry.set(openTelemetrySdk);
+        } catch (IllegalStateException e) {
+            logger.warn("GlobalOpenTelemetry was already set, bigtable client spans use the existing instance");
+        }
+        logger.info("Tracing enabled {} {}", kv("exporter", exporter), kv("sampleRatio", sampleRatio));
+        return openTelemetrySdk;
+    }
+
+    @Bean
+    public Tracer tracer(OpenTelemetry openTelemetry) {
+        return openTelemetry.getTracer(Spans.INSTRUMENTATION_NAME);
+    }
+}
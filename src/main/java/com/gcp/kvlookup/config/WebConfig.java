@@ -0,0 +1,45 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+
+package com.gcp.kvlookup.config;
+
+import com.gcp.kvlookup.ratelimit.RateLimitInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.Objects;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    private RateLimitInterceptor rateLimitInterceptor;
+
+    // only present when gcp.bigtable.rateLimit.enabled is set
+    @Autowired(required = false)
+    public void setRateLimitInterceptor(RateLimitInterceptor rateLimitInterceptor) {
+        this.rateLimitInterceptor = rateLimitInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (Objects.nonNull(rateLimitInterceptor)) {
+            registry.addInterceptor(rateLimitInterceptor).addPathPatterns("/v1/**");
+        }
+    }
+}
@@ -17,12 +17,24 @@
 package com.gcp.kvlookup.controller;
 
 import com.gcp.kvlookup.exception.KVLookUpException;
+import com.gcp.kvlookup.model.BigtableDeleteData;
 import com.gcp.kvlookup.model.BigtableTableData;
+import com.gcp.kvlookup.model.CellVersion;
+import com.gcp.kvlookup.model.ExportJob;
 import com.gcp.kvlookup.model.GCPBigtableTable;
+import com.gcp.kvlookup.model.ImportJob;
+import com.gcp.kvlookup.model.ImportRequest;
+import com.gcp.kvlookup.model.RowPayload;
 import com.gcp.kvlookup.model.TableConfig;
+import com.gcp.kvlookup.model.TableOperationResult;
+import com.gcp.kvlookup.profiling.Stages;
+import com.gcp.kvlookup.profiling.Stages.Stage;
+import com.gcp.kvlookup.scheduling.RequestLanes;
 import com.gcp.kvlookup.service.KVLookUpService;
+import com.gcp.kvlookup.tracing.Spans;
 import com.google.api.gax.rpc.NotFoundException;
 import com.google.cloud.bigtable.admin.v2.BigtableTableAdminClient;
+import io.opentelemetry.api.trace.Tracer;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -30,14 +42,19 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.CollectionUtils;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static net.logstash.logback.argument.StructuredArguments.kv;
 
@@ -52,12 +69,33 @@ public class KVLookUpController {
 
     private Map<String, BigtableTableAdminClient> bigtableTableAdminClientMap;
 
+    private Tracer tracer = Spans.NOOP_TRACER;
+
+    private RequestLanes requestLanes = RequestLanes.DIRECT;
+
+    private RowPayloadParser rowPayloadParser = new RowPayloadParser(10000, 10, 32);
 
     public KVLookUpController(KVLookUpService UMAAFeatureLookUpService, Map<String, BigtableTableAdminClient> bigtableTableAdminClientMap) {
         this.UMAAFeatureLookUpService = UMAAFeatureLookUpService;
         this.bigtableTableAdminClientMap = bigtableTableAdminClientMap;
     }
 
+    @Autowired
+    public void setTracer(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    // only present when app.lanes.enabled is set
+    @Autowired(required = false)
+    public void setRequestLanes(RequestLanes requestLanes) {
+        this.requestLanes = requestLanes;
+    }
+
+    @Autowired
+    public void setRowPayloadParser(RowPayloadParser rowPayloadParser) {
+        this.rowPayloadParser = rowPayloadParser;
+    }
+
     @Operation(summary = "Gets the data from given table for the given member id")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "retrieved data for given member id",
@@ -68,22 +106,87 @@ public class KVLookUpController {
             @ApiResponse(responseCode = "500", description = "Internal Server error",
                     content = @Content)})
     @GetMapping("/{instanceID}/readCellData")
-    public ResponseEntity<String> retrieveDataFromGivenTableForGivenId(@PathVariable String instanceID, @RequestParam String tableName, @RequestParam(name = "id") String id) {
-        try {
-            logger.info("Retrieving data from table {} for given id {}", kv("tableName", tableName), kv("id", id));
-            String cellData = UMAAFeatureLookUpService.readCellDataById(instanceID, tableName, id);
-            return ResponseEntity.ok().contentType(MediaType.TEXT_PLAIN).body(cellData);
-        } catch (KVLookUpException umfe) {
-            return ResponseEntity.status(umfe.getStatus()).contentType(MediaType.TEXT_PLAIN).body(umfe.getMessage());
-        } catch (Exception e) {
-            e.printStackTrace();
-            if (e instanceof NotFoundException) {
-                logger.error("Error occurred when getting tableName, Table not found in the bigtable");
+    public CompletableFuture<ResponseEntity<String>> retrieveDataFromGivenTableForGivenId(@PathVariable String instanceID, @RequestParam String tableName, @RequestParam(name = "id") String id) {
+        return requestLanes.submit(RequestLanes.Lane.ONLINE, () -> {
+            try {
+                logger.info("Retrieving data from table {} for given id {}", kv("tableName", tableName), kv("id", id));
+                Optional<String> cellData = Stages.inStage(Stage.CONTROLLER, "readCellData", instanceID, tableName,
+                        () -> Spans.inSpan(tracer, "KVLookUpController.readCellData", instanceID, tableName,
+                                () -> UMAAFeatureLookUpService.findCellDataById(instanceID, tableName, id)));
+                if (cellData.isEmpty()) {
+                    return ResponseEntity.status(HttpStatus.NOT_FOUND).contentType(MediaType.TEXT_PLAIN).body("NOT FOUND");
+                }
+                return ResponseEntity.ok().contentType(MediaType.TEXT_PLAIN).body(cellData.get());
+            } catch (KVLookUpException umfe) {
+                return ResponseEntity.status(umfe.getStatus()).contentType(MediaType.TEXT_PLAIN).body(umfe.getMessage());
+            } catch (Exception e) {
+                if (e instanceof NotFoundException) {
+                    logger.error("Error occurred when getting tableName, Table not found in the bigtable");
+                    return ResponseEntity.status(HttpStatus.NOT_FOUND).contentType(MediaType.TEXT_PLAIN).body("NOT FOUND");
+                } else {
+                    logger.error("Error occurred when reading data from table {} for given id {}", kv("tableName", tableName), kv("id", id), e);
+                    return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
+                }
+            }
+        });
+    }
+
+    @Operation(summary = "Gets the versions of the data from given table for the given member id within a time range")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "retrieved versions with their timestamps, newest first"),
+            @ApiResponse(responseCode = "400", description = "Invalid time range or maxVersions"),
+            @ApiResponse(responseCode = "404", description = "No Data Present for the given RowID in the time range",
+                    content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal Server error",
+                    content = @Content)})
+    @GetMapping("/{instanceID}/readCellVersions")
+    public CompletableFuture<ResponseEntity<Object>> readCellVersions(@PathVariable String instanceID, @RequestParam String tableName, @RequestParam(name = "id") String id,
+                                                                      @RequestParam(required = false) Long startTimestampMicros,
+                                                                      @RequestParam(required = false) Long endTimestampMicros,
+                                                                      @RequestParam(name = "maxVersions", defaultValue = "1") int maxVersions) {
+        return requestLanes.submit(RequestLanes.Lane.BATCH, () -> {
+            try {
+                logger.info("Retrieving versions from table {} for given id {}", kv("tableName", tableName), kv("id", id));
+                List<CellVersion> versions = UMAAFeatureLookUpService.readCellVersions(instanceID, tableName, id,
+                        startTimestampMicros, endTimestampMicros, maxVersions);
+                if (versions.isEmpty()) {
+                    return ResponseEntity.status(HttpStatus.NOT_FOUND).contentType(MediaType.TEXT_PLAIN).body("NOT FOUND");
+                }
+                return ResponseEntity.ok(versions);
+            } catch (KVLookUpException umfe) {
+                return ResponseEntity.status(umfe.getStatus()).contentType(MediaType.TEXT_PLAIN).body(umfe.getMessage());
+            } catch (NotFoundException e) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).contentType(MediaType.TEXT_PLAIN).body("NOT FOUND");
-            } else {
+            } catch (Exception e) {
+                logger.error("Error occurred when reading versions from table {} for given id {}", kv("tableName", tableName), kv("id", id), e);
                 return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
             }
-        }
+        });
+    }
+
+    @Operation(summary = "Gets the rows whose indexed column holds the given value")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "matching row ids with the value of the default column"),
+            @ApiResponse(responseCode = "400", description = "Secondary indexes are not enabled or the column has no index"),
+            @ApiResponse(responseCode = "404", description = "Table not found in the bigtable"),
+            @ApiResponse(responseCode = "500", description = "Internal Server error")})
+    @GetMapping("/{instanceID}/queryByIndex")
+    public CompletableFuture<ResponseEntity<Object>> queryByIndex(@PathVariable String instanceID, @RequestParam String tableName,
+                                                                  @RequestParam String column, @RequestParam String value,
+                                                                  @RequestParam(name = "limit", defaultValue = "100") int limit) {
+        return requestLanes.submit(RequestLanes.Lane.BATCH, () -> {
+            try {
+                logger.info("Querying table {} by index on {}", kv("tableName", tableName), kv("column", column));
+                return ResponseEntity.ok(UMAAFeatureLookUpService.findByIndex(instanceID, tableName, column, value, limit));
+            } catch (KVLookUpException umfe) {
+                return ResponseEntity.status(umfe.getStatus()).contentType(MediaType.TEXT_PLAIN).body(umfe.getMessage());
+            } catch (NotFoundException e) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).contentType(MediaType.TEXT_PLAIN).body("NOT FOUND");
+            } catch (Exception e) {
+                logger.error("Error occurred when querying table {} by index on {}", kv("tableName", tableName), kv("column", column), e);
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
+            }
+        });
     }
 
     @Operation(summary = "create table in GCP Bigtable")
@@ -93,57 +196,285 @@ public class KVLookUpController {
             @ApiResponse(responseCode = "500", description = "Internal Server error",
                     content = @Content)})
     @PostMapping(value = "/{instanceID}/createTable")
-    public ResponseEntity<Object> createTable(@PathVariable String instanceID, @RequestBody GCPBigtableTable gcpBigtableTable) throws Exception {
-        try {
-            String tableName = gcpBigtableTable.getTableName();
-            if (!bigtableTableAdminClientMap.get(instanceID).exists(tableName)) {
-                logger.info("Creating table {}", kv("table", tableName));
-                UMAAFeatureLookUpService.createTable(instanceID, gcpBigtableTable);
-                return ResponseEntity.status(HttpStatus.OK).build();
-            } else {
-                return ResponseEntity.status(HttpStatus.IM_USED).body("Table with same name exists in bigtable already");
+    public CompletableFuture<ResponseEntity<Object>> createTable(@PathVariable String instanceID, @RequestBody GCPBigtableTable gcpBigtableTable) {
+        return requestLanes.submit(RequestLanes.Lane.ADMIN, () -> {
+            try {
+                String tableName = gcpBigtableTable.getTableName();
+                if (!bigtableTableAdminClientMap.get(instanceID).exists(tableName)) {
+                    logger.info("Creating table {}", kv("table", tableName));
+                    UMAAFeatureLookUpService.createTable(instanceID, gcpBigtableTable);
+                    return ResponseEntity.status(HttpStatus.OK).build();
+                } else {
+                    return ResponseEntity.status(HttpStatus.IM_USED).body("Table with same name exists in bigtable already");
+                }
+            } catch (Exception e) {
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
             }
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
-        }
+        });
+    }
+
+    @Operation(summary = "create multiple tables in GCP Bigtable")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Tables created successfully"),
+            @ApiResponse(responseCode = "207", description = "Some of the tables were not created, see status per table"),
+            @ApiResponse(responseCode = "400", description = "Empty list passed in for table creation"),
+            @ApiResponse(responseCode = "500", description = "Internal Server error",
+                    content = @Content)})
+    @PostMapping(value = "/{instanceID}/createTables")
+    public CompletableFuture<ResponseEntity<Object>> createTables(@PathVariable String instanceID, @RequestBody List<GCPBigtableTable> gcpBigtableTables) {
+        return requestLanes.submit(RequestLanes.Lane.ADMIN, () -> {
+            if (CollectionUtils.isEmpty(gcpBigtableTables)) {
+                logger.info("cannot create Bigtable tables with no valid data");
+                return ResponseEntity.badRequest().build();
+            }
+            try {
+                logger.info("Creating tables {}", kv("tables", gcpBigtableTables));
+                List<TableOperationResult> results = UMAAFeatureLookUpService.createTables(instanceID, gcpBigtableTables);
+                return ResponseEntity.status(toStatus(results)).body(results);
+            } catch (Exception e) {
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
+            }
+        });
     }
 
     @Operation(summary = "Deletes table from GCP Bigtable")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Table Deleted successfully"),
+            @ApiResponse(responseCode = "207", description = "Some of the tables were not deleted, see status per table"),
             @ApiResponse(responseCode = "400", description = "Empty list passed in for table Deletion"),
             @ApiResponse(responseCode = "500", description = "Internal Server error")})
     @DeleteMapping(value = "/{instanceID}/deleteTable")
-    public ResponseEntity<Object> deleteTable(@PathVariable String instanceID, @RequestBody TableConfig tableConfig) {
-        List<String> tableList = tableConfig.getTableList();
-        if (!CollectionUtils.isEmpty(tableList)) {
-            logger.info("deleting tables {}", kv("tables", tableConfig));
-            UMAAFeatureLookUpService.deleteTable(instanceID, tableList);
-            return ResponseEntity.status(HttpStatus.OK).build();
-        } else {
-            logger.info("cannot create Bigtable table with no valid data");
-            return ResponseEntity.badRequest().build();
-        }
-
+    public CompletableFuture<ResponseEntity<Object>> deleteTable(@PathVariable String instanceID, @RequestBody TableConfig tableConfig) {
+        return requestLanes.submit(RequestLanes.Lane.ADMIN, () -> {
+            List<String> tableList = tableConfig.getTableList();
+            if (!CollectionUtils.isEmpty(tableList)) {
+                logger.info("deleting tables {}", kv("tables", tableConfig));
+                List<TableOperationResult> results = UMAAFeatureLookUpService.deleteTable(instanceID, tableList);
+                return ResponseEntity.status(toStatus(results)).body(results);
+            } else {
+                logger.info("cannot create Bigtable table with no valid data");
+                return ResponseEntity.badRequest().build();
+            }
+        });
     }
 
     @Operation(summary = "Inserts a new record to GCP Bigtable")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "row inserted successfully"),
+            @ApiResponse(responseCode = "202", description = "row accepted by the write behind queue"),
+            @ApiResponse(responseCode = "400", description = "Malformed row or missing table, row id or column parts"),
+            @ApiResponse(responseCode = "413", description = "Row exceeds the column count or size limits"),
+            @ApiResponse(responseCode = "503", description = "write behind queue is full"),
             @ApiResponse(responseCode = "500", description = "Internal Server error")})
+    @io.swagger.v3.oas.annotations.parameters.RequestBody(required = true,
+            content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = BigtableTableData.class)))
     @PostMapping(value = "/{instanceID}/insertData")
-    public ResponseEntity<Object> writeDataToTable(@PathVariable String instanceID, @RequestBody BigtableTableData tableData) {
+    public CompletableFuture<ResponseEntity<Object>> writeDataToTable(@PathVariable String instanceID, HttpServletRequest request,
+                                                                      @RequestParam(name = "async", defaultValue = "false") boolean async) {
+        RowPayload row;
         try {
-            logger.info("writing data to table {} with id {}", kv("tableName", tableData.getTableName()), kv("id", tableData.getRowKeyId()));
-            UMAAFeatureLookUpService.insertDataToTable(instanceID, tableData);
-            return ResponseEntity.status(HttpStatus.OK).build();
+            // the body is streamed into the row on the request thread, which owns the input stream
+            row = Stages.inStage(Stage.SERIALIZATION, "parseInsertData", instanceID, null, () -> rowPayloadParser.parse(request.getInputStream()));
+        } catch (KVLookUpException umfe) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(umfe.getStatus()).contentType(MediaType.TEXT_PLAIN).body(umfe.getMessage()));
+        } catch (IOException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST).contentType(MediaType.TEXT_PLAIN)
+                    .body("Malformed insertData body: " + e.getMessage()));
+        }
+        return requestLanes.submit(RequestLanes.Lane.WRITE, () -> {
+            try {
+                logger.info("writing data to table {} with id {}", kv("tableName", row.getTableName()), kv("id", row.getRowKeyId()));
+                if (async) {
+                    UMAAFeatureLookUpService.insertDataToTableAsync(instanceID, row);
+                    return ResponseEntity.status(HttpStatus.ACCEPTED).build();
+                }
+                Stages.runInStage(Stage.CONTROLLER, "insertData", instanceID, row.getTableName(),
+                        () -> Spans.runInSpan(tracer, "KVLookUpController.insertData", instanceID, row.getTableName(),
+                                () -> UMAAFeatureLookUpService.insertDataToTable(instanceID, row)));
+                return ResponseEntity.status(HttpStatus.OK).build();
+            } catch (KVLookUpException umfe) {
+                return ResponseEntity.status(umfe.getStatus()).contentType(MediaType.TEXT_PLAIN).body(umfe.getMessage());
+            } catch (Exception e) {
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
+            }
+        });
+    }
+
+    @Operation(summary = "Deletes rows, column families or cells from GCP Bigtable")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "data deleted successfully"),
+            @ApiResponse(responseCode = "400", description = "Empty list passed in for data deletion"),
+            @ApiResponse(responseCode = "404", description = "Table not found in the bigtable"),
+            @ApiResponse(responseCode = "500", description = "Internal Server error")})
+    @DeleteMapping(value = "/{instanceID}/deleteData")
+    public CompletableFuture<ResponseEntity<Object>> deleteDataFromTable(@PathVariable String instanceID, @RequestBody BigtableDeleteData deleteData) {
+        return requestLanes.submit(RequestLanes.Lane.WRITE, () -> {
+            try {
+                logger.info("deleting data from table {} with ids {}", kv("tableName", deleteData.getTableName()), kv("ids", deleteData.getRowKeyIds()));
+                UMAAFeatureLookUpService.deleteDataFromTable(instanceID, deleteData);
+                return ResponseEntity.status(HttpStatus.OK).build();
+            } catch (KVLookUpException umfe) {
+                return ResponseEntity.status(umfe.getStatus()).contentType(MediaType.TEXT_PLAIN).body(umfe.getMessage());
+            } catch (Exception e) {
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
+            }
+        });
+    }
+
+    @Operation(summary = "Updates the GC policy of a column family in GCP Bigtable")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "GC policy updated successfully"),
+            @ApiResponse(responseCode = "400", description = "No GC rule passed in for update"),
+            @ApiResponse(responseCode = "404", description = "Table not found in the bigtable"),
+            @ApiResponse(responseCode = "500", description = "Internal Server error")})
+    @PutMapping(value = "/{instanceID}/updateGCPolicy")
+    public CompletableFuture<ResponseEntity<Object>> updateGCPolicy(@PathVariable String instanceID, @RequestBody GCPBigtableTable gcpBigtableTable) {
+        return requestLanes.submit(RequestLanes.Lane.ADMIN, () -> {
+            try {
+                logger.info("updating GC policy {}", kv("table", gcpBigtableTable));
+                UMAAFeatureLookUpService.updateColumnFamilyGCRule(instanceID, gcpBigtableTable);
+                return ResponseEntity.status(HttpStatus.OK).build();
+            } catch (KVLookUpException umfe) {
+                return ResponseEntity.status(umfe.getStatus()).contentType(MediaType.TEXT_PLAIN).body(umfe.getMessage());
+            } catch (Exception e) {
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
+            }
+        });
+    }
+
+    @Operation(summary = "Trains a zstd dictionary for a column family of a compressed table from sampled values")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "dictionary trained, new writes to the family use it"),
+            @ApiResponse(responseCode = "400", description = "Value compression is not enabled or the table is not compressed with zstd"),
+            @ApiResponse(responseCode = "404", description = "Table not found in the bigtable"),
+            @ApiResponse(responseCode = "500", description = "Internal Server error")})
+    @PostMapping(value = "/{instanceID}/trainCompressionDictionary")
+    public CompletableFuture<ResponseEntity<Object>> trainCompressionDictionary(@PathVariable String instanceID, @RequestParam String tableName,
+                                                                                @RequestParam String columnFamily) {
+        return requestLanes.submit(RequestLanes.Lane.BATCH, () -> {
+            try {
+                logger.info("training compression dictionary {} {}", kv("tableName", tableName), kv("columnFamily", columnFamily));
+                long dictionaryId = UMAAFeatureLookUpService.trainCompressionDictionary(instanceID, tableName, columnFamily);
+                return ResponseEntity.status(HttpStatus.OK).body(Map.of("dictionaryId", dictionaryId));
+            } catch (KVLookUpException umfe) {
+                return ResponseEntity.status(umfe.getStatus()).contentType(MediaType.TEXT_PLAIN).body(umfe.getMessage());
+            } catch (NotFoundException e) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).contentType(MediaType.TEXT_PLAIN).body("NOT FOUND");
+            } catch (Exception e) {
+                logger.error("Error occurred when training compression dictionary {}", kv("tableName", tableName), e);
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
+            }
+        });
+    }
+
+    @Operation(summary = "Exports a table to local Avro files with a parallel scan")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "export started, poll exportStatus with the returned job id"),
+            @ApiResponse(responseCode = "400", description = "Table export is not enabled"),
+            @ApiResponse(responseCode = "404", description = "Table not found in the bigtable"),
+            @ApiResponse(responseCode = "500", description = "Internal Server error")})
+    @PostMapping(value = "/{instanceID}/exportTable")
+    public CompletableFuture<ResponseEntity<Object>> exportTable(@PathVariable String instanceID, @RequestParam String tableName) {
+        return requestLanes.submit(RequestLanes.Lane.BATCH, () -> {
+            try {
+                logger.info("exporting table {}", kv("tableName", tableName));
+                ExportJob job = UMAAFeatureLookUpService.exportTable(instanceID, tableName);
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+            } catch (KVLookUpException umfe) {
+                return ResponseEntity.status(umfe.getStatus()).contentType(MediaType.TEXT_PLAIN).body(umfe.getMessage());
+            } catch (NotFoundException e) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).contentType(MediaType.TEXT_PLAIN).body("NOT FOUND");
+            } catch (Exception e) {
+                logger.error("Error occurred when exporting table {}", kv("tableName", tableName), e);
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
+            }
+        });
+    }
+
+    @Operation(summary = "Gets the progress of a table export")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "export progress, rows exported and rows per second"),
+            @ApiResponse(responseCode = "400", description = "Table export is not enabled"),
+            @ApiResponse(responseCode = "404", description = "No export with the given job id")})
+    @GetMapping(value = "/{instanceID}/exportStatus")
+    public ResponseEntity<Object> exportStatus(@PathVariable String instanceID, @RequestParam String jobId) {
+        try {
+            Optional<ExportJob> job = UMAAFeatureLookUpService.getExportJob(jobId);
+            if (job.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).contentType(MediaType.TEXT_PLAIN).body("NOT FOUND");
+            }
+            return ResponseEntity.ok(job.get());
+        } catch (KVLookUpException umfe) {
+            return ResponseEntity.status(umfe.getStatus()).contentType(MediaType.TEXT_PLAIN).body(umfe.getMessage());
+        }
+    }
+
+    @Operation(summary = "Imports a local CSV, NDJSON or Avro file into a table with batched mutations")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "import started, poll importStatus with the returned job id"),
+            @ApiResponse(responseCode = "400", description = "Bulk import is not enabled or the column mapping is invalid"),
+            @ApiResponse(responseCode = "404", description = "File not found in the import directory"),
+            @ApiResponse(responseCode = "500", description = "Internal Server error")})
+    @PostMapping(value = "/{instanceID}/importData")
+    public CompletableFuture<ResponseEntity<Object>> importData(@PathVariable String instanceID, @RequestBody ImportRequest importRequest) {
+        return requestLanes.submit(RequestLanes.Lane.BATCH, () -> {
+            try {
+                logger.info("importing data {}", kv("import", importRequest));
+                ImportJob job = UMAAFeatureLookUpService.importData(instanceID, importRequest);
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+            } catch (KVLookUpException umfe) {
+                return ResponseEntity.status(umfe.getStatus()).contentType(MediaType.TEXT_PLAIN).body(umfe.getMessage());
+            } catch (Exception e) {
+                logger.error("Error occurred when importing data {}", kv("import", importRequest), e);
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
+            }
+        });
+    }
+
+    @Operation(summary = "Resumes an import from its last checkpoint")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "import resumed, only chunks without a checkpoint are replayed"),
+            @ApiResponse(responseCode = "404", description = "No import with the given job id"),
+            @ApiResponse(responseCode = "409", description = "Import is still running or its file changed"),
+            @ApiResponse(responseCode = "500", description = "Internal Server error")})
+    @PostMapping(value = "/{instanceID}/resumeImport")
+    public CompletableFuture<ResponseEntity<Object>> resumeImport(@PathVariable String instanceID, @RequestParam String jobId) {
+        return requestLanes.submit(RequestLanes.Lane.BATCH, () -> {
+            try {
+                logger.info("resuming import {}", kv("jobId", jobId));
+                ImportJob job = UMAAFeatureLookUpService.resumeImport(instanceID, jobId);
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+            } catch (KVLookUpException umfe) {
+                return ResponseEntity.status(umfe.getStatus()).contentType(MediaType.TEXT_PLAIN).body(umfe.getMessage());
+            } catch (Exception e) {
+                logger.error("Error occurred when resuming import {}", kv("jobId", jobId), e);
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
+            }
+        });
+    }
+
+    @Operation(summary = "Gets the progress of an import")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "import progress, rows imported and rows per second"),
+            @ApiResponse(responseCode = "400", description = "Bulk import is not enabled"),
+            @ApiResponse(responseCode = "404", description = "No import with the given job id")})
+    @GetMapping(value = "/{instanceID}/importStatus")
+    public ResponseEntity<Object> importStatus(@PathVariable String instanceID, @RequestParam String jobId) {
+        try {
+            Optional<ImportJob> job = UMAAFeatureLookUpService.getImportJob(jobId);
+            if (job.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).contentType(MediaType.TEXT_PLAIN).body("NOT FOUND");
+            }
+            return ResponseEntity.ok(job.get());
         } catch (KVLookUpException umfe) {
             return ResponseEntity.status(umfe.getStatus()).contentType(MediaType.TEXT_PLAIN).body(umfe.getMessage());
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
         }
     }
 
+    private HttpStatus toStatus(List<TableOperationResult> results) {
+        return results.stream().allMatch(TableOperationResult::isSuccessful) ? HttpStatus.OK : HttpStatus.MULTI_STATUS;
+    }
+
 //    @Operation(summary = "creates Instance in GCP Bigtable")
 //    @ApiResponses(value = {
 //            @ApiResponse(responseCode = "200", description = "Instance created successfully")})
@@ -0,0 +1,298 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+
+package com.gcp.kvlookup.controller;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.gcp.kvlookup.exception.KVLookUpException;
+import com.gcp.kvlookup.model.RowPayload;
+import com.google.protobuf.ByteString;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    Reads an insertData body token by token into a RowPayload. Column names and values are encoded from the parser's
+    character buffer straight into ByteStrings, so no String, ColumnData or intermediate tree is allocated per cell,
+    and the cell count, value size and row size limits are checked as each cell is read. The body itself is capped too,
+    since the parser buffers a whole token (a value or an ignored field) before its length can be checked.
+*/
+@Component
+public class RowPayloadParser {
+
+    // room for the json around the values, field names and escapes, on top of the row size
+    private static final long BODY_OVERHEAD_IN_BYTES = 64 * 1024;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final int maxCells;
+    private final int maxValueSizeInBytes;
+    private final long maxRowSizeInBytes;
+    private final long maxBodySizeInBytes;
+
+    public RowPayloadParser(@Value("${gcp.bigtable.insert.maxCells:10000}") int maxCells,
+                            @Value("${gcp.bigtable.insert.maxValueSizeInMB:10}") int maxValueSizeInMB,
+                            @Value("${gcp.bigtable.insert.maxRowSizeInMB:32}") int maxRowSizeInMB) {
+        this.maxCells = maxCells;
+        this.maxValueSizeInBytes = maxValueSizeInMB * 1024 * 1024;
+        this.maxRowSizeInBytes = maxRowSizeInMB * 1024L * 1024;
+        this.maxBodySizeInBytes = 2 * maxRowSizeInBytes + BODY_OVERHEAD_IN_BYTES;
+    }
+
+    public RowPayload parse(InputStream inputStream) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(new BoundedInputStream(inputStream, maxBodySizeInBytes))) {
+            return new RowReader(parser).read();
+        }
+    }
+
+    private static KVLookUpException badRequest(String message) {
+        return new KVLookUpException(message, HttpStatus.BAD_REQUEST, false);
+    }
+
+    private static KVLookUpException tooLarge(String message) {
+        return new KVLookUpException(message, HttpStatus.PAYLOAD_TOO_LARGE, false);
+    }
+
+    private static boolean matches(String text, char[] chars, int offset, int length) {
+        if (text.length() != length) {
+            return false;
+        }
+        for (int index = 0; index < length; index++) {
+            if (text.charAt(index) != chars[offset + index]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class BoundedInputStream extends InputStream {
+
+        private final InputStream inputStream;
+        private final long maxBytes;
+        private long readBytes;
+
+        BoundedInputStream(InputStream inputStream, long maxBytes) {
+            this.inputStream = inputStream;
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = inputStream.read();
+            if (value >= 0) {
+                count(1);
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = inputStream.read(buffer, offset, length);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            inputStream.close();
+        }
+
+        // thrown through the parser unchanged, so the controller answers 413 like for the other limits
+        private void count(int bytes) {
+            readBytes += bytes;
+            if (readBytes > maxBytes) {
+                throw tooLarge("An insertData body can be at most " + maxBytes + " bytes");
+            }
+        }
+    }
+
+    private class RowReader {
+
+        private final JsonParser parser;
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final List<String> families = new ArrayList<>();
+        private final List<ByteString> qualifiers = new ArrayList<>();
+        private final List<ByteString> values = new ArrayList<>();
+        private ByteBuffer buffer = ByteBuffer.allocate(1024);
+        private String lastFamily;
+        private long sizeInBytes;
+
+        RowReader(JsonParser parser) {
+            this.parser = parser;
+        }
+
+        RowPayload read() throws IOException {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw badRequest("insertData expects a JSON object");
+            }
+            String tableName = null;
+            String rowKeyId = null;
+            // field names come from the parser's symbol table, comparing them does not allocate
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                switch (field) {
+                    case "tableName":
+                        tableName = text(token);
+                        break;
+                    case "rowKeyId":
+                        rowKeyId = text(token);
+                        break;
+                    case "data":
+                        readCells(token);
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            if (!StringUtils.hasText(tableName) || !StringUtils.hasText(rowKeyId)) {
+                throw badRequest("tableName and rowKeyId are required");
+            }
+            if (values.isEmpty()) {
+                throw badRequest(RowPayload.NO_COLUMNS);
+            }
+            return new RowPayload(tableName, rowKeyId, families, qualifiers, values);
+        }
+
+        private void readCells(JsonToken token) throws IOException {
+            if (token == JsonToken.VALUE_NULL) {
+                return;
+            }
+            if (token != JsonToken.START_ARRAY) {
+                throw badRequest("data must be an array of columns");
+            }
+            while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                if (values.size() == maxCells) {
+                    throw tooLarge("A row can have at most " + maxCells + " columns");
+                }
+                readCell();
+            }
+            if (token != JsonToken.END_ARRAY) {
+                throw badRequest("data must be an array of columns");
+            }
+        }
+
+        private void readCell() throws IOException {
+            String family = null;
+            ByteString qualifier = null;
+            ByteString value = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                switch (field) {
+                    case "columnFamily":
+                        family = family(token);
+                        break;
+                    case "columnName":
+                        qualifier = bytes(token);
+                        break;
+                    case "columnValue":
+                        value = bytes(token);
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            if (family == null || qualifier == null || value == null) {
+                throw badRequest(RowPayload.MISSING_COLUMN_PART);
+            }
+            sizeInBytes += qualifier.size() + value.size();
+            if (sizeInBytes > maxRowSizeInBytes) {
+                throw tooLarge("A row can be at most " + maxRowSizeInBytes + " bytes");
+            }
+            families.add(family);
+            qualifiers.add(qualifier);
+            values.add(value);
+        }
+
+        private String text(JsonToken token) throws IOException {
+            if (token == JsonToken.VALUE_NULL) {
+                return null;
+            }
+            if (!token.isScalarValue()) {
+                throw badRequest("Expected a string but found " + token);
+            }
+            return parser.getText();
+        }
+
+        // rows name the same few families over and over, the previous one is reused when it matches
+        private String family(JsonToken token) throws IOException {
+            if (token == JsonToken.VALUE_NULL) {
+                return null;
+            }
+            if (!token.isScalarValue()) {
+                throw badRequest("Expected a string but found " + token);
+            }
+            if (lastFamily != null && matches(lastFamily, parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength())) {
+                return lastFamily;
+            }
+            lastFamily = parser.getText();
+            return lastFamily;
+        }
+
+        private ByteString bytes(JsonToken token) throws IOException {
+            if (token == JsonToken.VALUE_NULL) {
+                return null;
+            }
+            if (!token.isScalarValue()) {
+                throw badRequest("Expected a string but found " + token);
+            }
+            // every char takes at least one byte, so values that are too long are rejected before they are encoded
+            int length = parser.getTextLength();
+            if (length > maxValueSizeInBytes) {
+                throw tooLarge("A column value can be at most " + maxValueSizeInBytes + " bytes");
+            }
+            CharBuffer chars = CharBuffer.wrap(parser.getTextCharacters(), parser.getTextOffset(), length);
+            buffer.clear();
+            encoder.reset();
+            while (encoder.encode(chars, buffer, true).isOverflow()) {
+                grow();
+            }
+            while (encoder.flush(buffer).isOverflow()) {
+                grow();
+            }
+            buffer.flip();
+            if (buffer.remaining() > maxValueSizeInBytes) {
+                throw tooLarge("A column value can be at most " + maxValueSizeInBytes + " bytes");
+            }
+            return ByteString.copyFrom(buffer);
+        }
+
+        // the buffer is kept for the rest of the request, so it only grows to the largest value of the row
+        private void grow() {
+            ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+            buffer.flip();
+            buffer = larger.put(buffer);
+        }
+    }
+}
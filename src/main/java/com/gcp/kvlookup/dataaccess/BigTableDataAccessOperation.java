@@ -16,36 +16,67 @@
 
 package com.gcp.kvlookup.dataaccess;
 
+import com.gcp.kvlookup.compression.ValueCompressor;
+import com.gcp.kvlookup.datasource.connection.BigtableClientRouter;
 import com.gcp.kvlookup.exception.KVLookUpException;
+import com.gcp.kvlookup.model.BigtableDeleteData;
 import com.gcp.kvlookup.model.BigtableTableData;
-import com.gcp.kvlookup.model.ColumnData;
+import com.gcp.kvlookup.model.CellVersion;
 import com.gcp.kvlookup.model.GCPBigtableTable;
+import com.gcp.kvlookup.model.RowPayload;
+import com.gcp.kvlookup.model.TableOperationResult;
+import com.gcp.kvlookup.profiling.Stages;
+import com.gcp.kvlookup.profiling.Stages.Stage;
+import com.gcp.kvlookup.tracing.Spans;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.rpc.AlreadyExistsException;
 import com.google.api.gax.rpc.NotFoundException;
 import com.google.api.gax.rpc.ServerStream;
 import com.google.cloud.bigtable.admin.v2.BigtableInstanceAdminClient;
 import com.google.cloud.bigtable.admin.v2.BigtableTableAdminClient;
 import com.google.cloud.bigtable.admin.v2.models.CreateInstanceRequest;
 import com.google.cloud.bigtable.admin.v2.models.CreateTableRequest;
+import com.google.cloud.bigtable.admin.v2.models.GCRules;
+import com.google.cloud.bigtable.admin.v2.models.GCRules.GCRule;
 import com.google.cloud.bigtable.admin.v2.models.Instance;
+import com.google.cloud.bigtable.admin.v2.models.ModifyColumnFamiliesRequest;
 import com.google.cloud.bigtable.admin.v2.models.StorageType;
 import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.models.BulkMutation;
+import com.google.cloud.bigtable.data.v2.models.Filters;
+import com.google.cloud.bigtable.data.v2.models.Mutation;
 import com.google.cloud.bigtable.data.v2.models.Query;
 import com.google.cloud.bigtable.data.v2.models.Row;
 import com.google.cloud.bigtable.data.v2.models.RowCell;
 import com.google.cloud.bigtable.data.v2.models.RowMutation;
 import com.google.common.collect.Streams;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.protobuf.ByteString;
+import io.opentelemetry.api.trace.Tracer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
 
+import static com.google.cloud.bigtable.data.v2.models.Filters.FILTERS;
 import static net.logstash.logback.argument.StructuredArguments.kv;
 
 @Component
@@ -58,24 +89,155 @@ public class BigTableDataAccessOperation {
     @Value("${gcp.bigtable.column.family}")
     private String columnFamily;   // GCP_BIGTABLE_COLUMN_FAMILY
 
+    @Value("${gcp.bigtable.admin.parallelism:8}")
+    private int adminParallelism = 8;   // GCP_BIGTABLE_ADMIN_PARALLELISM
+
+    @Value("${gcp.bigtable.read.maxVersionsLimit:100}")
+    private int maxVersionsLimit = 100;   // GCP_BIGTABLE_READ_MAXVERSIONSLIMIT
+
     private Map<String, BigtableTableAdminClient> adminClient;
     private Map<String, BigtableDataClient> dataClient;
     private BigtableInstanceAdminClient instanceAdminClient;
+    private RowKeyEncoder rowKeyEncoder = new RowKeyEncoder(List.of());
+    private BloomFilterIndex bloomFilterIndex;
+    private SecondaryIndexes secondaryIndexes;
+    private ValueCompressor valueCompressor = ValueCompressor.PASS_THROUGH;
+    private BigtableClientRouter clientRouter;
+    private Tracer tracer = Spans.NOOP_TRACER;
 
     public BigTableDataAccessOperation(Map<String, BigtableTableAdminClient> adminClient, Map<String, BigtableDataClient> dataClient, BigtableInstanceAdminClient instanceAdminClient) {
         this.adminClient = adminClient;
         this.dataClient = dataClient;
         this.instanceAdminClient = instanceAdminClient;
+        this.clientRouter = new BigtableClientRouter(dataClient);
     }
 
     public void createTable(String instanceID, GCPBigtableTable gcpBigtableTable) {
         String tableName = gcpBigtableTable.getTableName();
         logger.info("creating table: {}", kv("table", tableName));
-        CreateTableRequest createTableRequest = CreateTableRequest.of(tableName).addFamily(gcpBigtableTable.getColumnFamily());
-        adminClient.get(instanceID).createTable(createTableRequest);
+        adminClient.get(instanceID).createTable(buildCreateTableRequest(gcpBigtableTable));
         logger.info("Table created successfully {}", kv("table", tableName));
     }
 
+    public List<TableOperationResult> createTables(String instanceID, List<GCPBigtableTable> gcpBigtableTables) {
+        logger.info("creating {} tables", kv("tableCount", gcpBigtableTables.size()));
+        List<String> tableNames = new ArrayList<>();
+        for (GCPBigtableTable gcpBigtableTable : gcpBigtableTables) {
+            tableNames.add(gcpBigtableTable.getTableName());
+        }
+        return runTableOperations(tableNames, TableOperationResult.CREATED,
+                index -> adminClient.get(instanceID).createTableAsync(buildCreateTableRequest(gcpBigtableTables.get(index))));
+    }
+
+    public List<TableOperationResult> deleteTables(String instanceID, List<String> tableIds) {
+        logger.info("deleting {} tables", kv("tableCount", tableIds.size()));
+        return runTableOperations(tableIds, TableOperationResult.DELETED,
+                index -> adminClient.get(instanceID).deleteTableAsync(tableIds.get(index)));
+    }
+
+    // issues the async admin calls with at most adminParallelism in flight and collects a status per table
+    private List<TableOperationResult> runTableOperations(List<String> tableNames, String successStatus, IntFunction<ApiFuture<?>> operation) {
+        Semaphore permits = new Semaphore(adminParallelism);
+        List<ApiFuture<?>> futures = new ArrayList<>();
+        for (int index = 0; index < tableNames.size(); index++) {
+            permits.acquireUninterruptibly();
+            ApiFuture<?> future;
+            try {
+                future = operation.apply(index);
+            } catch (RuntimeException e) {
+                future = ApiFutures.immediateFailedFuture(e);
+            }
+            future.addListener(permits::release, MoreExecutors.directExecutor());
+            futures.add(future);
+        }
+        List<TableOperationResult> results = new ArrayList<>();
+        for (int index = 0; index < tableNames.size(); index++) {
+            String tableName = tableNames.get(index);
+            try {
+                futures.get(index).get();
+                results.add(new TableOperationResult(tableName, successStatus, null));
+            } catch (ExecutionException e) {
+                results.add(toFailedResult(tableName, e.getCause()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results.add(toFailedResult(tableName, e));
+            }
+        }
+        logger.info("table operations completed {}", kv("results", results));
+        return results;
+    }
+
+    private TableOperationResult toFailedResult(String tableName, Throwable cause) {
+        if (cause instanceof NotFoundException) {
+            logger.error("Table operation failed on a non-existent table {}", kv("table", tableName));
+            return new TableOperationResult(tableName, TableOperationResult.NOT_FOUND, cause.getMessage());
+        } else if (cause instanceof AlreadyExistsException) {
+            return new TableOperationResult(tableName, TableOperationResult.ALREADY_EXISTS, "Table with same name exists in bigtable already");
+        }
+        logger.error("Table operation failed {} " + cause.getMessage(), kv("table", tableName));
+        return new TableOperationResult(tableName, TableOperationResult.FAILED, cause.getMessage());
+    }
+
+    private CreateTableRequest buildCreateTableRequest(GCPBigtableTable gcpBigtableTable) {
+        CreateTableRequest createTableRequest = CreateTableRequest.of(gcpBigtableTable.getTableName());
+        GCRule gcRule = buildGCRule(gcpBigtableTable);
+        if (Objects.isNull(gcRule)) {
+            createTableRequest.addFamily(gcpBigtableTable.getColumnFamily());
+        } else {
+            createTableRequest.addFamily(gcpBigtableTable.getColumnFamily(), gcRule);
+        }
+        for (String splitKey : buildSplitKeys(gcpBigtableTable)) {
+            createTableRequest.addSplit(ByteString.copyFromUtf8(splitKey));
+        }
+        return createTableRequest;
+    }
+
+    // explicit split keys win over a split count, the count splits the hex key space written by hash prefixed tables
+    private List<String> buildSplitKeys(GCPBigtableTable gcpBigtableTable) {
+        if (!CollectionUtils.isEmpty(gcpBigtableTable.getSplitKeys())) {
+            return gcpBigtableTable.getSplitKeys();
+        }
+        Integer splitCount = gcpBigtableTable.getSplitCount();
+        if (Objects.nonNull(splitCount) && splitCount > 1) {
+            return RowKeyEncoder.uniformSplits(splitCount);
+        }
+        return List.of();
+    }
+
+    public void updateColumnFamilyGCRule(String instanceID, GCPBigtableTable gcpBigtableTable) {
+        String tableName = gcpBigtableTable.getTableName();
+        GCRule gcRule = buildGCRule(gcpBigtableTable);
+        if (Objects.isNull(gcRule)) {
+            throw new KVLookUpException("maxVersions or maxAgeInSeconds is required to update GC policy", HttpStatus.BAD_REQUEST);
+        }
+        logger.info("updating GC policy of table {} family {}", kv("table", tableName), kv("columnFamily", gcpBigtableTable.getColumnFamily()));
+        try {
+            ModifyColumnFamiliesRequest modifyRequest = ModifyColumnFamiliesRequest.of(tableName)
+                    .updateFamily(gcpBigtableTable.getColumnFamily(), gcRule);
+            adminClient.get(instanceID).modifyFamilies(modifyRequest);
+            logger.info("GC policy updated successfully {}", kv("table", tableName));
+        } catch (NotFoundException e) {
+            logger.error("Tried to update GC policy of a table that doesn't exist " + e.getMessage());
+            throw new KVLookUpException("Tried to update GC policy of a table that doesn't exist", HttpStatus.NOT_FOUND);
+        }
+    }
+
+    // max versions and max age are combined as a union so cells are collected when either limit is exceeded
+    private GCRule buildGCRule(GCPBigtableTable gcpBigtableTable) {
+        Integer maxVersions = gcpBigtableTable.getMaxVersions();
+        Long maxAgeInSeconds = gcpBigtableTable.getMaxAgeInSeconds();
+        if (Objects.nonNull(maxVersions) && Objects.nonNull(maxAgeInSeconds)) {
+            return GCRules.GCRULES.union()
+                    .rule(GCRules.GCRULES.maxVersions(maxVersions))
+                    .rule(GCRules.GCRULES.maxAge(maxAgeInSeconds, TimeUnit.SECONDS));
+        } else if (Objects.nonNull(maxVersions)) {
+            return GCRules.GCRULES.maxVersions(maxVersions);
+        } else if (Objects.nonNull(maxAgeInSeconds)) {
+            return GCRules.GCRULES.maxAge(maxAgeInSeconds, TimeUnit.SECONDS);
+        }
+        return null;
+    }
+
     public void deleteTable(String instanceID, String tableId) {
         logger.info("Deleting table: " + tableId);
         try {
@@ -87,17 +249,38 @@ public class BigTableDataAccessOperation {
     }
 
     public void writeToTable(String instanceID, BigtableTableData bigtableTableData) {
+        writeToTable(instanceID, RowPayload.of(bigtableTableData));
+    }
+
+    public void writeToTable(String instanceID, RowPayload row) {
+        Spans.runInSpan(tracer, "BigTableDataAccessOperation.writeToTable", instanceID, row.getTableName(),
+                () -> Stages.runInStage(Stage.DATA_ACCESS, "writeToTable", instanceID, row.getTableName(), () -> writeRow(instanceID, row)));
+    }
+
+    private void writeRow(String instanceID, RowPayload row) {
         try {
-            if (adminClient.get(instanceID).exists(bigtableTableData.getTableName())) {
+            boolean tableExists = Spans.inSpan(tracer, "BigtableTableAdminClient.exists", instanceID, row.getTableName(),
+                    () -> Stages.inStage(Stage.BIGTABLE_RPC, "exists", instanceID, row.getTableName(), () -> adminClient.get(instanceID).exists(row.getTableName())));
+            if (tableExists) {
                 logger.info("Writing data to the table");
-                String tableName = bigtableTableData.getTableName();
-                String rowKeyId = bigtableTableData.getRowKeyId();
-                List<ColumnData> data = bigtableTableData.getData();
-                for (ColumnData columnData : data) {
-                    RowMutation rowMutation = RowMutation.create(tableName, rowKeyId)
-                            .setCell(columnData.getColumnFamily(), columnData.getColumnName(), columnData.getColumnValue());
-                    dataClient.get(instanceID).mutateRow(rowMutation);
-                    logger.info("Wrote data to table successfully");
+                String tableName = row.getTableName();
+                String rowKeyId = rowKeyEncoder.encode(tableName, row.getRowKeyId());
+                SecondaryIndexes.IndexUpdate indexUpdate = Objects.nonNull(secondaryIndexes) && secondaryIndexes.isIndexed(instanceID, tableName)
+                        ? secondaryIndexes.prepareWrite(instanceID, tableName, rowKeyId, row.toTableData().getData()) : SecondaryIndexes.IndexUpdate.NONE;
+                // all columns go in one mutation so the row is written atomically in a single call
+                RowMutation rowMutation = Stages.inStage(Stage.SERIALIZATION, "encodeRow", instanceID, tableName, () -> {
+                    RowMutation mutation = RowMutation.create(tableName, rowKeyId);
+                    for (int cell = 0; cell < row.getCellCount(); cell++) {
+                        String family = row.getFamily(cell);
+                        mutation.setCell(family, row.getQualifier(cell), valueCompressor.encode(instanceID, tableName, family, row.getValue(cell)));
+                    }
+                    return mutation;
+                });
+                Stages.runInStage(Stage.BIGTABLE_RPC, "mutateRow", instanceID, tableName, () -> dataClient.get(instanceID).mutateRow(rowMutation));
+                logger.info("Wrote data to table successfully {}", kv("cellCount", row.getCellCount()));
+                indexUpdate.commit();
+                if (Objects.nonNull(bloomFilterIndex)) {
+                    bloomFilterIndex.put(instanceID, tableName, rowKeyId);
                 }
             } else {
                 throw new KVLookUpException("Tried to insert data into table that doesn't exist", HttpStatus.NOT_FOUND);
@@ -108,19 +291,150 @@ public class BigTableDataAccessOperation {
         }
     }
 
+    public void deleteFromTable(String instanceID, BigtableDeleteData deleteData) {
+        String tableName = deleteData.getTableName();
+        List<String> rowKeyIds = deleteData.getRowKeyIds();
+        if (CollectionUtils.isEmpty(rowKeyIds)) {
+            throw new KVLookUpException("No row ids passed in for deletion", HttpStatus.BAD_REQUEST);
+        }
+        Mutation mutation = buildDeleteMutation(deleteData);
+        try {
+            SecondaryIndexes.IndexUpdate indexUpdate = SecondaryIndexes.IndexUpdate.NONE;
+            if (Objects.nonNull(secondaryIndexes)) {
+                List<String> rowKeys = rowKeyIds.stream().map(rowKeyId -> rowKeyEncoder.encode(tableName, rowKeyId)).collect(Collectors.toList());
+                indexUpdate = secondaryIndexes.prepareDelete(instanceID, tableName, rowKeys, deleteData.getColumnFamily(), deleteData.getColumnName());
+            }
+            if (rowKeyIds.size() == 1) {
+                logger.info("Deleting data from table {} for id {}", kv("tableName", tableName), kv("id", rowKeyIds.get(0)));
+                dataClient.get(instanceID).mutateRow(RowMutation.create(tableName, rowKeyEncoder.encode(tableName, rowKeyIds.get(0)), mutation));
+            } else {
+                logger.info("Deleting data from table {} for {} ids", kv("tableName", tableName), kv("rowCount", rowKeyIds.size()));
+                BulkMutation bulkMutation = BulkMutation.create(tableName);
+                for (String rowKeyId : rowKeyIds) {
+                    bulkMutation.add(rowKeyEncoder.encode(tableName, rowKeyId), mutation);
+                }
+                clientRouter.get(instanceID, BigtableClientRouter.Operation.BULK_WRITE).bulkMutateRows(bulkMutation);
+            }
+            indexUpdate.commit();
+            logger.info("Deleted data from table successfully");
+        } catch (NotFoundException e) {
+            logger.error("Error occurred when deleting data from table" + e.getMessage());
+            throw new KVLookUpException("Tried to delete data from table that doesn't exist", HttpStatus.NOT_FOUND);
+        }
+    }
+
+    private Mutation buildDeleteMutation(BigtableDeleteData deleteData) {
+        if (!StringUtils.hasText(deleteData.getColumnFamily())) {
+            return Mutation.create().deleteRow();
+        } else if (!StringUtils.hasText(deleteData.getColumnName())) {
+            return Mutation.create().deleteFamily(deleteData.getColumnFamily());
+        }
+        return Mutation.create().deleteCells(deleteData.getColumnFamily(), deleteData.getColumnName());
+    }
+
     public String readCellDataById(String instanceID, String tableName, String rowId) {
+        return findCellDataById(instanceID, tableName, rowId).orElseThrow(KVLookUpException::notFound);
+    }
+
+    public Optional<String> findCellDataById(String instanceID, String tableName, String rowId) {
+        return Spans.inSpan(tracer, "BigTableDataAccessOperation.findCellDataById", instanceID, tableName,
+                () -> Stages.inStage(Stage.DATA_ACCESS, "findCellDataById", instanceID, tableName, () -> readCellData(instanceID, tableName, rowId)));
+    }
+
+    private Optional<String> readCellData(String instanceID, String tableName, String rowId) {
         logger.info("Reading specific cells by tableName {} and id {}", kv("tableName", tableName), kv("keyId", rowId));
-        Row row = dataClient.get(instanceID).readRow(tableName, rowId);
+        String rowKey = rowKeyEncoder.encode(tableName, rowId);
+        if (Objects.nonNull(bloomFilterIndex) && !bloomFilterIndex.mightContain(instanceID, tableName, rowKey)) {
+            logger.info("Bloom filter has no entry for the given tableName {} and id {}", kv("tableName", tableName), kv("keyId", rowId));
+            return Optional.empty();
+        }
+        // only the latest version of the served column is transferred, not every version of the row
+        Row row = Stages.inStage(Stage.BIGTABLE_RPC, "readRow", instanceID, tableName,
+                () -> clientRouter.get(instanceID, BigtableClientRouter.Operation.POINT_READ).readRow(tableName, rowKey,
+                        FILTERS.chain().filter(columnFilter()).filter(FILTERS.limit().cellsPerColumn(1))));
         if (Objects.isNull(row)) {
             logger.info("No Data returned for the given tableName {} and id {}", kv("tableName", tableName), kv("keyId", rowId));
-            throw new KVLookUpException("NOT FOUND", HttpStatus.NOT_FOUND);
+            return Optional.empty();
         }
         logger.info("Row: " + row.getKey().toStringUtf8());
         List<RowCell> cells = row.getCells(columnFamily, columnQualifierName);
         if (CollectionUtils.isEmpty(cells)) {
-            throw new KVLookUpException("NOT FOUND", HttpStatus.NOT_FOUND);
+            return Optional.empty();
+        }
+        return Optional.of(Stages.inStage(Stage.SERIALIZATION, "decodeValue", instanceID, tableName,
+                () -> valueCompressor.decodeToString(instanceID, tableName, cells.get(0).getValue())));
+    }
+
+    // versions of the served column written in [startTimestampMicros, endTimestampMicros), newest first
+    public List<CellVersion> readCellVersions(String instanceID, String tableName, String rowId, Long startTimestampMicros,
+                                              Long endTimestampMicros, int maxVersions) {
+        if (maxVersions < 1 || maxVersions > maxVersionsLimit) {
+            throw new KVLookUpException("maxVersions must be between 1 and " + maxVersionsLimit, HttpStatus.BAD_REQUEST);
+        }
+        if (Objects.nonNull(startTimestampMicros) && Objects.nonNull(endTimestampMicros) && startTimestampMicros >= endTimestampMicros) {
+            throw new KVLookUpException("startTimestampMicros must be before endTimestampMicros", HttpStatus.BAD_REQUEST);
+        }
+        Filters.TimestampRangeFilter timestampRange = FILTERS.timestamp().range();
+        if (Objects.nonNull(startTimestampMicros)) {
+            timestampRange.startClosed(startTimestampMicros);
         }
-        return cells.get(0).getValue().toStringUtf8();
+        if (Objects.nonNull(endTimestampMicros)) {
+            timestampRange.endOpen(endTimestampMicros);
+        }
+        // the range has to come before the limit so the limit counts versions inside the range
+        Filters.Filter filter = FILTERS.chain()
+                .filter(columnFilter())
+                .filter(timestampRange)
+                .filter(FILTERS.limit().cellsPerColumn(maxVersions));
+        String rowKey = rowKeyEncoder.encode(tableName, rowId);
+        Row row = Stages.inStage(Stage.BIGTABLE_RPC, "readRow", instanceID, tableName,
+                () -> clientRouter.get(instanceID, BigtableClientRouter.Operation.POINT_READ).readRow(tableName, rowKey, filter));
+        List<CellVersion> versions = new ArrayList<>();
+        if (Objects.nonNull(row)) {
+            for (RowCell cell : row.getCells(columnFamily, columnQualifierName)) {
+                versions.add(new CellVersion(valueCompressor.decodeToString(instanceID, tableName, cell.getValue()), cell.getTimestamp()));
+            }
+        }
+        return versions;
+    }
+
+    private Filters.Filter columnFilter() {
+        return FILTERS.chain()
+                .filter(FILTERS.family().exactMatch(columnFamily))
+                .filter(FILTERS.qualifier().exactMatch(columnQualifierName));
+    }
+
+    // rows whose indexed column holds the value, by row id, with the value of the default column
+    public Map<String, String> findByIndex(String instanceID, String tableName, String column, String value, int limit) {
+        if (Objects.isNull(secondaryIndexes)) {
+            throw new KVLookUpException("Secondary indexes are not enabled", HttpStatus.BAD_REQUEST);
+        }
+        SecondaryIndexes.IndexDefinition index = secondaryIndexes.getIndex(instanceID, tableName, column);
+        List<String> rowKeys = secondaryIndexes.lookUp(instanceID, index, value, limit);
+        Map<String, String> rows = new LinkedHashMap<>();
+        if (rowKeys.isEmpty()) {
+            return rows;
+        }
+        Query query = Query.create(tableName).filter(FILTERS.chain()
+                .filter(FILTERS.interleave()
+                        .filter(FILTERS.chain()
+                                .filter(FILTERS.family().exactMatch(index.getFamily()))
+                                .filter(FILTERS.qualifier().exactMatch(index.getQualifier())))
+                        .filter(columnFilter()))
+                .filter(FILTERS.limit().cellsPerColumn(1)));
+        rowKeys.forEach(query::rowKey);
+        ByteString expected = ByteString.copyFromUtf8(value);
+        for (Row row : clientRouter.get(instanceID, BigtableClientRouter.Operation.POINT_READ).readRows(query)) {
+            List<RowCell> indexedCells = row.getCells(index.getFamily(), index.getQualifier());
+            // index entries are removed after the base write, so a hit may be stale
+            if (indexedCells.isEmpty() || !valueCompressor.decode(instanceID, tableName, indexedCells.get(0).getValue()).equals(expected)) {
+                continue;
+            }
+            List<RowCell> cells = row.getCells(columnFamily, columnQualifierName);
+            rows.put(rowKeyEncoder.decode(tableName, row.getKey().toStringUtf8()),
+                    cells.isEmpty() ? null : valueCompressor.decodeToString(instanceID, tableName, cells.get(0).getValue()));
+        }
+        return rows;
     }
 
     public void createInstance(String instanceId, String clusterName) {
@@ -143,7 +457,7 @@ public class BigTableDataAccessOperation {
 
     public long countRecords(String instanceID, String tableName) throws IOException {
         Query query = Query.create(tableName);
-        ServerStream<Row> rows = dataClient.get(instanceID).readRows(query);
+        ServerStream<Row> rows = clientRouter.get(instanceID, BigtableClientRouter.Operation.SCAN).readRows(query);
 
         System.out.println("retrieved data");
         long count = Streams.stream(rows).count();
@@ -151,10 +465,51 @@ public class BigTableDataAccessOperation {
         return count;
     }
 
+    @Autowired
+    public void setRowKeyEncoder(RowKeyEncoder rowKeyEncoder) {
+        this.rowKeyEncoder = rowKeyEncoder;
+    }
+
+    @Autowired
+    public void setTracer(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Autowired
+    public void setClientRouter(BigtableClientRouter clientRouter) {
+        this.clientRouter = clientRouter;
+    }
+
+    public void setAdminParallelism(int adminParallelism) {
+        this.adminParallelism = adminParallelism;
+    }
+
+    // only present when gcp.bigtable.bloomFilter.enabled is set
+    @Autowired(required = false)
+    public void setBloomFilterIndex(BloomFilterIndex bloomFilterIndex) {
+        this.bloomFilterIndex = bloomFilterIndex;
+    }
+
+    // only present when gcp.bigtable.index.enabled is set
+    @Autowired(required = false)
+    public void setSecondaryIndexes(SecondaryIndexes secondaryIndexes) {
+        this.secondaryIndexes = secondaryIndexes;
+    }
+
+    // only present when gcp.bigtable.valueCompression.enabled is set
+    @Autowired(required = false)
+    public void setValueCompressor(ValueCompressor valueCompressor) {
+        this.valueCompressor = valueCompressor;
+    }
+
     public void setColumnFamily(String columnFamily) {
         this.columnFamily = columnFamily;
     }
 
+    public void setMaxVersionsLimit(int maxVersionsLimit) {
+        this.maxVersionsLimit = maxVersionsLimit;
+    }
+
     public void setColumnQualifierName(String columnQualifierName) {
         this.columnQualifierName = columnQualifierName;
     }
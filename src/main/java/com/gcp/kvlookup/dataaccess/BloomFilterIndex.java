@@ -0,0 +1,223 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.gcp.kvlookup.dataaccess;
+
+import com.gcp.kvlookup.changestream.ChangeStreamSource;
+import com.gcp.kvlookup.changestream.RowChange;
+import com.gcp.kvlookup.datasource.connection.BigtableClientRouter;
+import com.google.api.gax.rpc.ServerStream;
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.models.Query;
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.google.cloud.bigtable.data.v2.models.Filters.FILTERS;
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/*
+    Per table bloom filter of existing row keys so reads of ids that were never written return NOT FOUND without a
+    bigtable call. Filters are built by a key only scan, updated by writes through this api and rebuilt periodically.
+    Each pod holds its own filters, so rows written through other pods or services are taken from the change stream
+    when it is enabled. Without it only a single replica may serve the listed tables (instanceId/tableName).
+*/
+@Component
+@ConditionalOnProperty(name = "gcp.bigtable.bloomFilter.enabled", havingValue = "true")
+public class BloomFilterIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(BloomFilterIndex.class);
+
+    private BigtableClientRouter clientRouter;
+    private final List<String> tables;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+    private final long rebuildIntervalInMinutes;
+    private final boolean singleReplica;
+    private ChangeStreamSource changeStreamSource;
+    private final Map<String, TableFilter> filters = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService rebuildScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "bloom-filter-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public BloomFilterIndex(Map<String, BigtableDataClient> dataClient, MeterRegistry meterRegistry,
+                            @Value("#{'${gcp.bigtable.bloomFilter.tables:}'.split(',')}") List<String> tables,
+                            @Value("${gcp.bigtable.bloomFilter.expectedInsertions}") long expectedInsertions,
+                            @Value("${gcp.bigtable.bloomFilter.falsePositiveRate}") double falsePositiveRate,
+                            @Value("${gcp.bigtable.bloomFilter.rebuildIntervalInMinutes}") long rebuildIntervalInMinutes,
+                            @Value("${gcp.bigtable.bloomFilter.singleReplica}") boolean singleReplica) {
+        this.clientRouter = new BigtableClientRouter(dataClient);
+        this.tables = tables.stream()
+                .map(String::trim)
+                .filter(table -> StringUtils.hasText(table) && table.contains("/"))
+                .collect(Collectors.toList());
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.rebuildIntervalInMinutes = rebuildIntervalInMinutes;
+        this.singleReplica = singleReplica;
+        for (String table : this.tables) {
+            TableFilter tableFilter = new TableFilter(meterRegistry.counter("kvlookup.bloomfilter.shortcircuited", Tags.of("table", table)));
+            Gauge.builder("kvlookup.bloomfilter.keys", tableFilter, filter -> Objects.isNull(filter.current) ? 0 : filter.current.approximateElementCount())
+                    .tags(Tags.of("table", table)).register(meterRegistry);
+            Gauge.builder("kvlookup.bloomfilter.fpp", tableFilter, filter -> Objects.isNull(filter.current) ? 0 : filter.current.expectedFpp())
+                    .tags(Tags.of("table", table)).register(meterRegistry);
+            filters.put(table, tableFilter);
+        }
+    }
+
+    @Autowired
+    public void setClientRouter(BigtableClientRouter clientRouter) {
+        this.clientRouter = clientRouter;
+    }
+
+    // only present when gcp.bigtable.changeStream.enabled is set
+    @Autowired(required = false)
+    public void setChangeStreamSource(ChangeStreamSource changeStreamSource) {
+        this.changeStreamSource = changeStreamSource;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (Objects.isNull(changeStreamSource)) {
+            if (!singleReplica) {
+                throw new IllegalStateException("Bloom filters miss rows written through other replicas, enable "
+                        + "gcp.bigtable.changeStream.enabled or set gcp.bigtable.bloomFilter.singleReplica");
+            }
+        } else {
+            // subscribed before the first scan so no row written in between is missed
+            for (String table : tables) {
+                String[] instanceAndTable = table.split("/", 2);
+                changeStreamSource.subscribe(instanceAndTable[0], instanceAndTable[1],
+                        rowChange -> onRowChange(instanceAndTable[0], instanceAndTable[1], rowChange));
+            }
+        }
+        rebuildScheduler.scheduleWithFixedDelay(this::rebuildAll, 0, rebuildIntervalInMinutes, TimeUnit.MINUTES);
+    }
+
+    // false only when the row key was definitely never written, always true until the first build completes
+    public boolean mightContain(String instanceID, String tableName, String rowKey) {
+        TableFilter tableFilter = filters.get(instanceID + "/" + tableName);
+        if (Objects.isNull(tableFilter) || Objects.isNull(tableFilter.current)) {
+            return true;
+        }
+        if (tableFilter.current.mightContain(rowKey)) {
+            return true;
+        }
+        tableFilter.shortCircuited.increment();
+        return false;
+    }
+
+    // called once the row is written, so a rebuild started later is guaranteed to see the row in its scan
+    public void put(String instanceID, String tableName, String rowKey) {
+        TableFilter tableFilter = filters.get(instanceID + "/" + tableName);
+        if (Objects.isNull(tableFilter)) {
+            return;
+        }
+        synchronized (tableFilter) {
+            if (Objects.nonNull(tableFilter.building)) {
+                tableFilter.building.put(rowKey);
+            }
+            if (Objects.nonNull(tableFilter.current)) {
+                tableFilter.current.put(rowKey);
+            }
+        }
+    }
+
+    void onRowChange(String instanceID, String tableName, RowChange rowChange) {
+        if (rowChange.getCellChanges().stream().anyMatch(cellChange -> !cellChange.isDelete())) {
+            put(instanceID, tableName, rowChange.getRowKey());
+        }
+    }
+
+    private void rebuildAll() {
+        for (String table : tables) {
+            String[] instanceAndTable = table.split("/", 2);
+            try {
+                rebuild(instanceAndTable[0], instanceAndTable[1]);
+            } catch (Exception e) {
+                logger.error("Error occurred when building bloom filter of table {} " + e.getMessage(), kv("table", table));
+            }
+        }
+    }
+
+    public void rebuild(String instanceID, String tableName) {
+        TableFilter tableFilter = filters.get(instanceID + "/" + tableName);
+        long startMillis = System.currentTimeMillis();
+        BloomFilter<CharSequence> building = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), expectedInsertions, falsePositiveRate);
+        // writes made while scanning go to both filters so the new one misses nothing
+        synchronized (tableFilter) {
+            tableFilter.building = building;
+        }
+        try {
+            Query query = Query.create(tableName).filter(FILTERS.chain()
+                    .filter(FILTERS.limit().cellsPerRow(1))
+                    .filter(FILTERS.value().strip()));
+            ServerStream<Row> rows = clientRouter.get(instanceID, BigtableClientRouter.Operation.SCAN).readRows(query);
+            for (Row row : rows) {
+                building.put(row.getKey().toStringUtf8());
+            }
+            synchronized (tableFilter) {
+                tableFilter.current = building;
+            }
+        } finally {
+            synchronized (tableFilter) {
+                tableFilter.building = null;
+            }
+        }
+        logger.info("Bloom filter of table {} rebuilt with {} keys in {} ms", kv("tableName", tableName),
+                kv("keyCount", building.approximateElementCount()), kv("durationMillis", System.currentTimeMillis() - startMillis));
+    }
+
+    @PreDestroy
+    public void stop() {
+        rebuildScheduler.shutdownNow();
+    }
+
+    private static final class TableFilter {
+        private final Counter shortCircuited;
+        private volatile BloomFilter<CharSequence> current;
+        private volatile BloomFilter<CharSequence> building;
+
+        private TableFilter(Counter shortCircuited) {
+            this.shortCircuited = shortCircuited;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+
+package com.gcp.kvlookup.dataaccess;
+
+import com.gcp.kvlookup.compression.ValueCompressor;
+import com.gcp.kvlookup.datasource.connection.BigtableClientRouter;
+import com.gcp.kvlookup.exception.KVLookUpException;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.models.Filters;
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.cloud.bigtable.data.v2.models.RowCell;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.cloud.bigtable.data.v2.models.Filters.FILTERS;
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/*
+    Reads a row from a group of replicated instances. The first instance of the group is asked first, the next one is
+    asked when it fails or hasn't answered within hedgeDelayInMillis, and the first answer wins.
+ */
+@Component
+@ConditionalOnProperty(name = "gcp.bigtable.instanceGroup.enabled", havingValue = "true")
+public class InstanceGroupReader {
+
+    private static final Logger logger = LoggerFactory.getLogger(InstanceGroupReader.class);
+
+    private final Map<String, List<String>> groups = new HashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final long hedgeDelayInMillis;
+    private final long timeoutInMillis;
+    private final String columnFamily;
+    private final String columnQualifierName;
+    // only the latest version of the lookup column is read, like readCellData on a single instance
+    private final Filters.Filter lookupFilter;
+    private final ScheduledThreadPoolExecutor hedgeScheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "instance-group-hedge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private BigtableClientRouter clientRouter;
+    private BloomFilterIndex bloomFilterIndex;
+    private RowKeyEncoder rowKeyEncoder = new RowKeyEncoder(List.of());
+    private ValueCompressor valueCompressor = ValueCompressor.PASS_THROUGH;
+
+    public InstanceGroupReader(Map<String, BigtableDataClient> dataClient, MeterRegistry meterRegistry,
+                               @Value("#{'${gcp.bigtable.instanceGroup.groups:}'.split(',')}") List<String> groups,
+                               @Value("${gcp.bigtable.instanceGroup.hedgeDelayInMillis}") long hedgeDelayInMillis,
+                               @Value("${gcp.bigtable.instanceGroup.timeoutInMillis}") long timeoutInMillis,
+                               @Value("${gcp.bigtable.column.family}") String columnFamily,
+                               @Value("${gcp.bigtable.column.QualifierName}") String columnQualifierName) {
+        this.clientRouter = new BigtableClientRouter(dataClient);
+        this.meterRegistry = meterRegistry;
+        this.hedgeDelayInMillis = hedgeDelayInMillis;
+        this.timeoutInMillis = timeoutInMillis;
+        this.columnFamily = columnFamily;
+        this.columnQualifierName = columnQualifierName;
+        this.lookupFilter = FILTERS.chain()
+                .filter(FILTERS.family().exactMatch(columnFamily))
+                .filter(FILTERS.qualifier().exactMatch(columnQualifierName))
+                .filter(FILTERS.limit().cellsPerColumn(1));
+        // hedges cancelled because the first read answered are dropped from the queue instead of waiting out their delay
+        this.hedgeScheduler.setRemoveOnCancelPolicy(true);
+        for (String group : groups) {
+            String[] groupAndInstances = group.trim().split("/");
+            if (!StringUtils.hasText(groupAndInstances[0]) || groupAndInstances.length < 2) {
+                continue;
+            }
+            List<String> instances = new ArrayList<>(Arrays.asList(groupAndInstances).subList(1, groupAndInstances.length));
+            for (String instanceID : instances) {
+                if (!dataClient.containsKey(instanceID)) {
+                    throw new IllegalArgumentException("Instance group " + groupAndInstances[0] + " refers to unknown instance " + instanceID);
+                }
+            }
+            this.groups.put(groupAndInstances[0], instances);
+        }
+    }
+
+    @Autowired
+    public void setClientRouter(BigtableClientRouter clientRouter) {
+        this.clientRouter = clientRouter;
+    }
+
+    @Autowired
+    public void setRowKeyEncoder(RowKeyEncoder rowKeyEncoder) {
+        this.rowKeyEncoder = rowKeyEncoder;
+    }
+
+    // only present when gcp.bigtable.valueCompression.enabled is set
+    @Autowired(required = false)
+    public void setValueCompressor(ValueCompressor valueCompressor) {
+        this.valueCompressor = valueCompressor;
+    }
+
+    // only present when gcp.bigtable.bloomFilter.enabled is set
+    @Autowired(required = false)
+    public void setBloomFilterIndex(BloomFilterIndex bloomFilterIndex) {
+        this.bloomFilterIndex = bloomFilterIndex;
+    }
+
+    public boolean isGroup(String instanceID) {
+        return groups.containsKey(instanceID);
+    }
+
+    // the instance asked first, whose snapshots, replicas, caches and bloom filters also answer for the group
+    public String getPrimaryInstance(String group) {
+        return groups.get(group).get(0);
+    }
+
+    public Optional<String> read(String group, String tableName, String rowId) {
+        String rowKey = rowKeyEncoder.encode(tableName, rowId);
+        if (Objects.nonNull(bloomFilterIndex) && !bloomFilterIndex.mightContain(getPrimaryInstance(group), tableName, rowKey)) {
+            return Optional.empty();
+        }
+        GroupRead groupRead = new GroupRead(group, groups.get(group), tableName, rowKey);
+        groupRead.launchNext();
+        try {
+            return groupRead.result.get(timeoutInMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            groupRead.cancel();
+            throw new KVLookUpException("Timed out reading from instance group " + group, HttpStatus.GATEWAY_TIMEOUT);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new KVLookUpException(e.getCause().getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            groupRead.cancel();
+            throw new KVLookUpException("Interrupted reading from instance group " + group, HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        hedgeScheduler.shutdownNow();
+    }
+
+    private Optional<String> toCellData(String instanceID, String tableName, Row row) {
+        if (Objects.isNull(row)) {
+            return Optional.empty();
+        }
+        List<RowCell> cells = row.getCells(columnFamily, columnQualifierName);
+        if (cells.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(valueCompressor.decodeToString(instanceID, tableName, cells.get(0).getValue()));
+    }
+
+    private class GroupRead {
+        private final String group;
+        private final List<String> instances;
+        private final String tableName;
+        private final String rowKey;
+        private final CompletableFuture<Optional<String>> result = new CompletableFuture<>();
+        private final AtomicInteger launched = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final List<ApiFuture<Row>> inFlight = new CopyOnWriteArrayList<>();
+        private final List<ScheduledFuture<?>> hedges = new CopyOnWriteArrayList<>();
+
+        GroupRead(String group, List<String> instances, String tableName, String rowKey) {
+            this.group = group;
+            this.instances = instances;
+            this.tableName = tableName;
+            this.rowKey = rowKey;
+        }
+
+        // called for the preferred instance, then by the hedge timer or a failed read, whichever comes first
+        void launchNext() {
+            if (result.isDone()) {
+                return;
+            }
+            int index = launched.getAndIncrement();
+            if (index >= instances.size()) {
+                return;
+            }
+            String instanceID = instances.get(index);
+            if (index > 0) {
+                meterRegistry.counter("kvlookup.instancegroup.hedged", Tags.of("group", group)).increment();
+            }
+            ApiFuture<Row> future;
+            try {
+                future = clientRouter.get(instanceID, BigtableClientRouter.Operation.POINT_READ).readRowAsync(tableName, rowKey, lookupFilter);
+            } catch (RuntimeException e) {
+                future = ApiFutures.immediateFailedFuture(e);
+            }
+            inFlight.add(future);
+            ApiFutures.addCallback(future, new ApiFutureCallback<Row>() {
+                @Override
+                public void onSuccess(Row row) {
+                    if (result.complete(toCellData(instanceID, tableName, row))) {
+                        meterRegistry.counter("kvlookup.instancegroup.reads", Tags.of("group", group, "instance", instanceID)).increment();
+                        cancel();
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    if (result.isDone()) {
+                        return;
+                    }
+                    logger.warn("Read from instance group member failed {} {} {}", kv("group", group), kv("instanceId", instanceID), kv("error", t.getMessage()));
+                    if (failed.incrementAndGet() >= instances.size()) {
+                        result.completeExceptionally(t);
+                        cancel();
+                    } else {
+                        launchNext();
+                    }
+                }
+            }, MoreExecutors.directExecutor());
+            if (index + 1 < instances.size()) {
+                hedges.add(hedgeScheduler.schedule(this::launchNext, hedgeDelayInMillis, TimeUnit.MILLISECONDS));
+                // the read may have answered before the hedge was added, cancel() would have missed it
+                if (result.isDone()) {
+                    cancel();
+                }
+            }
+        }
+
+        void cancel() {
+            for (ScheduledFuture<?> hedge : hedges) {
+                hedge.cancel(false);
+            }
+            for (ApiFuture<Row> future : inFlight) {
+                future.cancel(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.gcp.kvlookup.dataaccess;
+
+import com.google.common.hash.Hashing;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/*
+    Prefixes row keys of the configured tables with 4 hex characters of their hash so sequential ids are spread
+    evenly over the key space. The prefix is derived from the id itself, point reads and writes stay transparent.
+*/
+@Component
+public class RowKeyEncoder {
+
+    static final int PREFIX_LENGTH = 4;
+    private static final int KEY_SPACE = 1 << (PREFIX_LENGTH * 4);
+    private static final char SEPARATOR = '#';
+
+    private final Set<String> hashPrefixedTables;
+
+    public RowKeyEncoder(@Value("#{'${gcp.bigtable.rowKey.hashPrefixedTables:}'.split(',')}") List<String> hashPrefixedTables) {
+        this.hashPrefixedTables = hashPrefixedTables.stream()
+                .filter(StringUtils::hasText)
+                .map(String::trim)
+                .collect(Collectors.toSet());
+    }
+
+    public boolean isHashPrefixed(String tableName) {
+        return hashPrefixedTables.contains(tableName);
+    }
+
+    public String encode(String tableName, String rowKey) {
+        if (!isHashPrefixed(tableName)) {
+            return rowKey;
+        }
+        int hash = Hashing.murmur3_32_fixed().hashString(rowKey, StandardCharsets.UTF_8).asInt() & (KEY_SPACE - 1);
+        return String.format("%04x", hash) + SEPARATOR + rowKey;
+    }
+
+    public String decode(String tableName, String rowKey) {
+        if (!isHashPrefixed(tableName) || rowKey.length() <= PREFIX_LENGTH) {
+            return rowKey;
+        }
+        return rowKey.substring(PREFIX_LENGTH + 1);
+    }
+
+    // boundaries splitting the 4 hex character prefix space into splitCount tablets of equal width
+    public static List<String> uniformSplits(int splitCount) {
+        List<String> splits = new ArrayList<>();
+        int tablets = Math.min(splitCount, KEY_SPACE);
+        for (int i = 1; i < tablets; i++) {
+            splits.add(String.format("%04x", (int) ((long) i * KEY_SPACE / tablets)));
+        }
+        return splits;
+    }
+}
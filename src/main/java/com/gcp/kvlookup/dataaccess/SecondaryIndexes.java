@@ -0,0 +1,322 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+
+package com.gcp.kvlookup.dataaccess;
+
+import com.gcp.kvlookup.compression.ValueCompressor;
+import com.gcp.kvlookup.datasource.connection.BigtableClientRouter;
+import com.gcp.kvlookup.exception.KVLookUpException;
+import com.gcp.kvlookup.model.ColumnData;
+import com.google.cloud.bigtable.admin.v2.BigtableTableAdminClient;
+import com.google.cloud.bigtable.admin.v2.models.CreateTableRequest;
+import com.google.cloud.bigtable.admin.v2.models.GCRules;
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.models.BulkMutation;
+import com.google.cloud.bigtable.data.v2.models.Filters;
+import com.google.cloud.bigtable.data.v2.models.Mutation;
+import com.google.cloud.bigtable.data.v2.models.Query;
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.cloud.bigtable.data.v2.models.RowCell;
+import com.google.protobuf.ByteString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import static com.google.cloud.bigtable.data.v2.models.Filters.FILTERS;
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/*
+    Secondary indexes declared as instanceId/tableName/columnFamily:columnName/indexTableName. An index table has one
+    empty row per base row keyed by value + 0x00 + base row key, so a lookup by value is a prefix scan. Entries for new
+    values are written before the base row and stale entries removed after it, so an index may briefly hold extra
+    entries but never misses a row; lookups drop hits whose base row no longer holds the value.
+*/
+@Component
+@ConditionalOnProperty(name = "gcp.bigtable.index.enabled", havingValue = "true")
+public class SecondaryIndexes {
+
+    private static final Logger logger = LoggerFactory.getLogger(SecondaryIndexes.class);
+
+    public static final String INDEX_FAMILY = "idx";
+    private static final ByteString SEPARATOR = ByteString.copyFrom(new byte[]{0});
+
+    private final Map<String, BigtableTableAdminClient> adminClient;
+    private BigtableClientRouter clientRouter;
+    private final int maxResults;
+    private final Map<String, List<IndexDefinition>> indexes = new HashMap<>();
+    private ValueCompressor valueCompressor = ValueCompressor.PASS_THROUGH;
+
+    public SecondaryIndexes(Map<String, BigtableTableAdminClient> adminClient, Map<String, BigtableDataClient> dataClient,
+                            @Value("#{'${gcp.bigtable.index.definitions:}'.split(',')}") List<String> definitions,
+                            @Value("${gcp.bigtable.index.maxResults}") int maxResults) {
+        this.adminClient = adminClient;
+        this.maxResults = maxResults;
+        this.clientRouter = new BigtableClientRouter(dataClient);
+        for (String definition : definitions) {
+            if (!StringUtils.hasText(definition)) {
+                continue;
+            }
+            IndexDefinition index = IndexDefinition.parse(definition.trim());
+            indexes.computeIfAbsent(index.instanceId + "/" + index.tableName, key -> new ArrayList<>()).add(index);
+        }
+    }
+
+    @Autowired
+    public void setClientRouter(BigtableClientRouter clientRouter) {
+        this.clientRouter = clientRouter;
+    }
+
+    // only present when gcp.bigtable.valueCompression.enabled is set
+    @Autowired(required = false)
+    public void setValueCompressor(ValueCompressor valueCompressor) {
+        this.valueCompressor = valueCompressor;
+    }
+
+    @PostConstruct
+    public void createIndexTables() {
+        for (List<IndexDefinition> tableIndexes : indexes.values()) {
+            for (IndexDefinition index : tableIndexes) {
+                try {
+                    BigtableTableAdminClient tableAdminClient = adminClient.get(index.instanceId);
+                    if (!tableAdminClient.exists(index.indexTable)) {
+                        tableAdminClient.createTable(CreateTableRequest.of(index.indexTable).addFamily(INDEX_FAMILY, GCRules.GCRULES.maxVersions(1)));
+                        logger.info("Created index table {}", kv("indexTable", index.indexTable));
+                    }
+                } catch (Exception e) {
+                    logger.error("Error occurred when creating index table {} " + e.getMessage(), kv("indexTable", index.indexTable));
+                }
+            }
+        }
+    }
+
+    public boolean isIndexed(String instanceID, String tableName) {
+        return indexes.containsKey(instanceID + "/" + tableName);
+    }
+
+    public IndexDefinition getIndex(String instanceID, String tableName, String column) {
+        return indexes.getOrDefault(instanceID + "/" + tableName, List.of()).stream()
+                .filter(index -> index.column().equals(column))
+                .findFirst()
+                .orElseThrow(() -> new KVLookUpException("No index on column " + column + " of table " + tableName, HttpStatus.BAD_REQUEST));
+    }
+
+    // adds the entries for the written values and returns the removal of the entries they replace
+    public IndexUpdate prepareWrite(String instanceID, String tableName, String rowKey, List<ColumnData> data) {
+        Map<IndexDefinition, ByteString> newValues = new LinkedHashMap<>();
+        for (IndexDefinition index : indexes.getOrDefault(instanceID + "/" + tableName, List.of())) {
+            for (ColumnData columnData : data) {
+                if (index.family.equals(columnData.getColumnFamily()) && index.qualifier.equals(columnData.getColumnName())) {
+                    newValues.put(index, ByteString.copyFromUtf8(columnData.getColumnValue()));
+                }
+            }
+        }
+        if (newValues.isEmpty()) {
+            return IndexUpdate.NONE;
+        }
+        List<IndexDefinition> touched = new ArrayList<>(newValues.keySet());
+        Map<IndexDefinition, ByteString> oldValues = readIndexedValues(instanceID, tableName, List.of(rowKey), touched)
+                .getOrDefault(rowKey, Map.of());
+
+        Map<String, BulkMutation> additions = new LinkedHashMap<>();
+        List<IndexEntry> removals = new ArrayList<>();
+        for (Map.Entry<IndexDefinition, ByteString> newValue : newValues.entrySet()) {
+            IndexDefinition index = newValue.getKey();
+            // rewritten even when unchanged, a concurrent write may be about to remove it
+            additions.computeIfAbsent(index.indexTable, BulkMutation::create)
+                    .add(indexRowKey(newValue.getValue(), rowKey), Mutation.create().setCell(INDEX_FAMILY, ByteString.EMPTY, ByteString.EMPTY));
+            ByteString oldValue = oldValues.get(index);
+            if (Objects.nonNull(oldValue) && !oldValue.equals(newValue.getValue())) {
+                removals.add(new IndexEntry(index, rowKey, oldValue));
+            }
+        }
+        BigtableDataClient client = clientRouter.get(instanceID, BigtableClientRouter.Operation.BULK_WRITE);
+        additions.values().forEach(client::bulkMutateRows);
+        return new IndexUpdate(this, instanceID, tableName, removals);
+    }
+
+    // returns the removal of the entries of the values that the delete of the given rows, family or column drops
+    public IndexUpdate prepareDelete(String instanceID, String tableName, List<String> rowKeys, String columnFamily, String columnName) {
+        List<IndexDefinition> touched = indexes.getOrDefault(instanceID + "/" + tableName, List.of()).stream()
+                .filter(index -> !StringUtils.hasText(columnFamily) || (index.family.equals(columnFamily)
+                        && (!StringUtils.hasText(columnName) || index.qualifier.equals(columnName))))
+                .collect(Collectors.toList());
+        if (touched.isEmpty()) {
+            return IndexUpdate.NONE;
+        }
+        List<IndexEntry> removals = new ArrayList<>();
+        readIndexedValues(instanceID, tableName, rowKeys, touched).forEach((rowKey, values) ->
+                values.forEach((index, value) -> removals.add(new IndexEntry(index, rowKey, value))));
+        return new IndexUpdate(this, instanceID, tableName, removals);
+    }
+
+    // base row keys of the first limit (at most maxResults) entries for the value, possibly stale
+    public List<String> lookUp(String instanceID, IndexDefinition index, String value, int limit) {
+        ByteString prefix = ByteString.copyFromUtf8(value).concat(SEPARATOR);
+        Query query = Query.create(index.indexTable).prefix(prefix).limit(Math.max(1, Math.min(limit, maxResults)))
+                .filter(FILTERS.chain().filter(FILTERS.limit().cellsPerRow(1)).filter(FILTERS.value().strip()));
+        List<String> rowKeys = new ArrayList<>();
+        for (Row row : clientRouter.get(instanceID, BigtableClientRouter.Operation.SCAN).readRows(query)) {
+            rowKeys.add(row.getKey().substring(prefix.size()).toStringUtf8());
+        }
+        return rowKeys;
+    }
+
+    private Map<String, Map<IndexDefinition, ByteString>> readIndexedValues(String instanceID, String tableName,
+                                                                          Collection<String> rowKeys, List<IndexDefinition> touched) {
+        Query query = Query.create(tableName).filter(FILTERS.chain()
+                .filter(columnsFilter(touched))
+                .filter(FILTERS.limit().cellsPerColumn(1)));
+        rowKeys.forEach(query::rowKey);
+        Map<String, Map<IndexDefinition, ByteString>> values = new HashMap<>();
+        for (Row row : clientRouter.get(instanceID, BigtableClientRouter.Operation.POINT_READ).readRows(query)) {
+            Map<IndexDefinition, ByteString> rowValues = new HashMap<>();
+            for (IndexDefinition index : touched) {
+                List<RowCell> cells = row.getCells(index.family, index.qualifier);
+                if (!cells.isEmpty()) {
+                    rowValues.put(index, valueCompressor.decode(instanceID, tableName, cells.get(0).getValue()));
+                }
+            }
+            values.put(row.getKey().toStringUtf8(), rowValues);
+        }
+        return values;
+    }
+
+    // entries whose value the base row holds again, through a concurrent write, are kept
+    private void removeStale(String instanceID, String tableName, List<IndexEntry> removals) {
+        List<IndexDefinition> touched = removals.stream().map(entry -> entry.index).distinct().collect(Collectors.toList());
+        Map<String, Map<IndexDefinition, ByteString>> current = readIndexedValues(instanceID, tableName,
+                removals.stream().map(entry -> entry.rowKey).collect(Collectors.toSet()), touched);
+        Map<String, BulkMutation> deletes = new LinkedHashMap<>();
+        for (IndexEntry entry : removals) {
+            if (entry.value.equals(current.getOrDefault(entry.rowKey, Map.of()).get(entry.index))) {
+                continue;
+            }
+            deletes.computeIfAbsent(entry.index.indexTable, BulkMutation::create)
+                    .add(indexRowKey(entry.value, entry.rowKey), Mutation.create().deleteRow());
+        }
+        BigtableDataClient client = clientRouter.get(instanceID, BigtableClientRouter.Operation.BULK_WRITE);
+        deletes.values().forEach(client::bulkMutateRows);
+    }
+
+    static Filters.Filter columnsFilter(List<IndexDefinition> columns) {
+        Filters.InterleaveFilter interleave = FILTERS.interleave();
+        for (IndexDefinition index : columns) {
+            interleave.filter(FILTERS.chain()
+                    .filter(FILTERS.family().exactMatch(index.family))
+                    .filter(FILTERS.qualifier().exactMatch(index.qualifier)));
+        }
+        return interleave;
+    }
+
+    private static ByteString indexRowKey(ByteString value, String rowKey) {
+        return value.concat(SEPARATOR).concat(ByteString.copyFromUtf8(rowKey));
+    }
+
+    public static class IndexDefinition {
+
+        private final String instanceId;
+        private final String tableName;
+        private final String family;
+        private final String qualifier;
+        private final String indexTable;
+
+        IndexDefinition(String instanceId, String tableName, String family, String qualifier, String indexTable) {
+            this.instanceId = instanceId;
+            this.tableName = tableName;
+            this.family = family;
+            this.qualifier = qualifier;
+            this.indexTable = indexTable;
+        }
+
+        static IndexDefinition parse(String definition) {
+            String[] parts = definition.split("/");
+            int separator = parts.length == 4 ? parts[2].indexOf(':') : -1;
+            if (separator < 0) {
+                throw new IllegalArgumentException("Index " + definition + " is not instanceId/tableName/columnFamily:columnName/indexTableName");
+            }
+            return new IndexDefinition(parts[0], parts[1], parts[2].substring(0, separator), parts[2].substring(separator + 1), parts[3]);
+        }
+
+        public String getFamily() {
+            return family;
+        }
+
+        public String getQualifier() {
+            return qualifier;
+        }
+
+        public String getIndexTable() {
+            return indexTable;
+        }
+
+        String column() {
+            return family + ":" + qualifier;
+        }
+    }
+
+    private static class IndexEntry {
+
+        private final IndexDefinition index;
+        private final String rowKey;
+        private final ByteString value;
+
+        IndexEntry(IndexDefinition index, String rowKey, ByteString value) {
+            this.index = index;
+            this.rowKey = rowKey;
+            this.value = value;
+        }
+    }
+
+    public static class IndexUpdate {
+
+        public static final IndexUpdate NONE = new IndexUpdate(null, null, null, List.of());
+
+        private final SecondaryIndexes secondaryIndexes;
+        private final String instanceID;
+        private final String tableName;
+        private final List<IndexEntry> removals;
+
+        private IndexUpdate(SecondaryIndexes secondaryIndexes, String instanceID, String tableName, List<IndexEntry> removals) {
+            this.secondaryIndexes = secondaryIndexes;
+            this.instanceID = instanceID;
+            this.tableName = tableName;
+            this.removals = removals;
+        }
+
+        // run once the base write succeeded
+        public void commit() {
+            if (!removals.isEmpty()) {
+                secondaryIndexes.removeStale(instanceID, tableName, removals);
+            }
+        }
+    }
+}
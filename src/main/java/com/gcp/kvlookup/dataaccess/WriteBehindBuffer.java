@@ -0,0 +1,414 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.gcp.kvlookup.dataaccess;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.gcp.kvlookup.cache.LookupCache;
+import com.gcp.kvlookup.compression.ValueCompressor;
+import com.gcp.kvlookup.datasource.connection.BigtableClientRouter;
+import com.gcp.kvlookup.exception.KVLookUpException;
+import com.gcp.kvlookup.hotkey.HotKeyTracker;
+import com.gcp.kvlookup.model.BigtableTableData;
+import com.gcp.kvlookup.model.ColumnData;
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.models.BulkMutation;
+import com.google.cloud.bigtable.data.v2.models.Mutation;
+import com.google.protobuf.ByteString;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+@Component
+@ConditionalOnProperty(name = "gcp.bigtable.writeBehind.enabled", havingValue = "true")
+public class WriteBehindBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindBuffer.class);
+
+    private static final long RETRY_BACKOFF_MILLIS = 100;
+
+    private final Map<String, BigtableDataClient> dataClient;
+    private BigtableClientRouter clientRouter;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Path logPath;
+    private final Path deadLetterPath;
+    private final boolean forceOnAppend;
+    private final int logSizeInBytes;
+    private final int batchSize;
+    private final long flushIntervalInMillis;
+    private final int maxRetries;
+
+    private final BlockingQueue<PendingWrite> queue;
+    private final ExecutorService flusher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "write-behind-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Counter flushedCounter;
+    private final Counter queueFullCounter;
+    private final Counter deadLetteredCounter;
+    private final Counter flushFailedCounter;
+
+    private RowKeyEncoder rowKeyEncoder = new RowKeyEncoder(List.of());
+    private BloomFilterIndex bloomFilterIndex;
+    private ValueCompressor valueCompressor = ValueCompressor.PASS_THROUGH;
+    private LookupCache lookupCache;
+    private HotKeyTracker hotKeyTracker;
+    private SecondaryIndexes secondaryIndexes;
+    private WriteBehindLog log;
+    private volatile boolean running;
+
+    public WriteBehindBuffer(Map<String, BigtableDataClient> dataClient, MeterRegistry meterRegistry,
+                             @Value("${gcp.bigtable.writeBehind.logPath}") String logPath,
+                             @Value("${gcp.bigtable.writeBehind.deadLetterPath}") String deadLetterPath,
+                             @Value("${gcp.bigtable.writeBehind.forceOnAppend}") boolean forceOnAppend,
+                             @Value("${gcp.bigtable.writeBehind.logSizeInMB}") int logSizeInMB,
+                             @Value("${gcp.bigtable.writeBehind.queueCapacity}") int queueCapacity,
+                             @Value("${gcp.bigtable.writeBehind.batchSize}") int batchSize,
+                             @Value("${gcp.bigtable.writeBehind.flushIntervalInMillis}") long flushIntervalInMillis,
+                             @Value("${gcp.bigtable.writeBehind.maxRetries}") int maxRetries) {
+        this.dataClient = dataClient;
+        this.clientRouter = new BigtableClientRouter(dataClient);
+        this.logPath = Paths.get(logPath);
+        this.deadLetterPath = Paths.get(deadLetterPath);
+        this.forceOnAppend = forceOnAppend;
+        this.logSizeInBytes = logSizeInMB * 1024 * 1024;
+        this.batchSize = batchSize;
+        this.flushIntervalInMillis = flushIntervalInMillis;
+        this.maxRetries = maxRetries;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        Gauge.builder("kvlookup.writebehind.queue.depth", queue, BlockingQueue::size).register(meterRegistry);
+        Gauge.builder("kvlookup.writebehind.lag.millis", this, WriteBehindBuffer::lagInMillis).register(meterRegistry);
+        Gauge.builder("kvlookup.writebehind.log.used.bytes", this, buffer -> buffer.log == null ? 0 : buffer.log.usedBytes()).register(meterRegistry);
+        this.flushedCounter = meterRegistry.counter("kvlookup.writebehind.flushed");
+        this.queueFullCounter = meterRegistry.counter("kvlookup.writebehind.dropped", "reason", "queueFull");
+        this.deadLetteredCounter = meterRegistry.counter("kvlookup.writebehind.deadlettered");
+        this.flushFailedCounter = meterRegistry.counter("kvlookup.writebehind.flushfailed");
+    }
+
+    @Autowired
+    public void setClientRouter(BigtableClientRouter clientRouter) {
+        this.clientRouter = clientRouter;
+    }
+
+    @PostConstruct
+    public void start() throws IOException, InterruptedException {
+        if (Objects.nonNull(logPath.getParent())) {
+            Files.createDirectories(logPath.getParent());
+        }
+        if (Objects.nonNull(deadLetterPath.getParent())) {
+            Files.createDirectories(deadLetterPath.getParent());
+        }
+        log = new WriteBehindLog(logPath, logSizeInBytes);
+        running = true;
+        flusher.execute(this::flushLoop);
+
+        List<WriteBehindLog.Record> pendingRecords = log.readPending();
+        logger.info("Replaying write behind log {} {}", kv("logPath", logPath), kv("pendingWrites", pendingRecords.size()));
+        for (WriteBehindLog.Record record : pendingRecords) {
+            PendingWrite pendingWrite = deserialize(record.getPayload());
+            pendingWrite.logEndPosition = record.getEndPosition();
+            queue.put(pendingWrite);
+        }
+    }
+
+    public void enqueue(String instanceID, BigtableTableData tableData) {
+        if (!dataClient.containsKey(instanceID)) {
+            throw new KVLookUpException("Tried to insert data into instance that isn't configured", HttpStatus.NOT_FOUND);
+        }
+        // the flusher writes rows in bulk without the read of the replaced values an index update needs
+        if (Objects.nonNull(secondaryIndexes) && secondaryIndexes.isIndexed(instanceID, tableData.getTableName())) {
+            throw new KVLookUpException("Table " + tableData.getTableName() + " has a secondary index, write it with insertData",
+                    HttpStatus.BAD_REQUEST, false);
+        }
+        PendingWrite pendingWrite = new PendingWrite(instanceID, tableData, System.currentTimeMillis());
+        byte[] payload = serialize(pendingWrite);
+        // log order has to match queue order so the flusher can release the log sequentially
+        synchronized (this) {
+            if (!running || queue.remainingCapacity() == 0) {
+                queueFullCounter.increment();
+                throw new KVLookUpException("Write behind queue is full", HttpStatus.SERVICE_UNAVAILABLE);
+            }
+            int logEndPosition = log.append(payload);
+            if (logEndPosition < 0) {
+                queueFullCounter.increment();
+                throw new KVLookUpException("Write behind log is full", HttpStatus.SERVICE_UNAVAILABLE);
+            }
+            pendingWrite.logEndPosition = logEndPosition;
+            queue.add(pendingWrite);
+        }
+        // without the force an acknowledged row survives a process crash but not the loss of the node
+        if (forceOnAppend) {
+            log.force();
+        }
+    }
+
+    @Autowired
+    public void setRowKeyEncoder(RowKeyEncoder rowKeyEncoder) {
+        this.rowKeyEncoder = rowKeyEncoder;
+    }
+
+    @Autowired(required = false)
+    public void setBloomFilterIndex(BloomFilterIndex bloomFilterIndex) {
+        this.bloomFilterIndex = bloomFilterIndex;
+    }
+
+    // only present when gcp.bigtable.cache.type is memory or redis
+    @Autowired(required = false)
+    public void setLookupCache(LookupCache lookupCache) {
+        this.lookupCache = lookupCache;
+    }
+
+    // only present when gcp.bigtable.hotKeys.enabled is set
+    @Autowired(required = false)
+    public void setHotKeyTracker(HotKeyTracker hotKeyTracker) {
+        this.hotKeyTracker = hotKeyTracker;
+    }
+
+    // only present when gcp.bigtable.valueCompression.enabled is set
+    @Autowired(required = false)
+    public void setValueCompressor(ValueCompressor valueCompressor) {
+        this.valueCompressor = valueCompressor;
+    }
+
+    // only present when gcp.bigtable.index.enabled is set
+    @Autowired(required = false)
+    public void setSecondaryIndexes(SecondaryIndexes secondaryIndexes) {
+        this.secondaryIndexes = secondaryIndexes;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    private double lagInMillis() {
+        PendingWrite oldest = queue.peek();
+        return Objects.isNull(oldest) ? 0 : System.currentTimeMillis() - oldest.enqueuedAtMillis;
+    }
+
+    private void flushLoop() {
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(flushIntervalInMillis, TimeUnit.MILLISECONDS);
+                if (Objects.isNull(first)) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                try {
+                    flush(batch);
+                } catch (RuntimeException e) {
+                    // the rows are acknowledged, so they are kept in the dead letter file before the log is released.
+                    // tables of the batch that were already written show up there too, resubmitting them is harmless
+                    logger.error("Moving write behind batch to the dead letter file after an unexpected error {} {}",
+                            kv("rowCount", batch.size()), kv("deadLetterPath", deadLetterPath), e);
+                    flushFailedCounter.increment();
+                    deadLetter(batch);
+                    deadLetteredCounter.increment(batch.size());
+                }
+                log.release(batch.get(batch.size() - 1).logEndPosition);
+                log.force();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                // the batch was flushed or dead lettered by now, releasing or syncing the log failed
+                logger.error("Error occurred when flushing write behind batch " + e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingWrite> batch) throws InterruptedException {
+        Map<String, Map<String, BulkMutation>> mutationsByInstance = new LinkedHashMap<>();
+        for (PendingWrite pendingWrite : batch) {
+            BigtableTableData tableData = pendingWrite.tableData;
+            BulkMutation bulkMutation = mutationsByInstance
+                    .computeIfAbsent(pendingWrite.instanceID, instance -> new LinkedHashMap<>())
+                    .computeIfAbsent(tableData.getTableName(), BulkMutation::create);
+            // client side timestamps keep retries and log replays idempotent
+            long timestampMicros = TimeUnit.MILLISECONDS.toMicros(pendingWrite.enqueuedAtMillis);
+            Mutation mutation = Mutation.create();
+            for (ColumnData columnData : tableData.getData()) {
+                mutation.setCell(columnData.getColumnFamily(), ByteString.copyFromUtf8(columnData.getColumnName()), timestampMicros,
+                        valueCompressor.encode(pendingWrite.instanceID, tableData.getTableName(), columnData.getColumnFamily(), columnData.getColumnValue()));
+            }
+            bulkMutation.add(rowKeyEncoder.encode(tableData.getTableName(), tableData.getRowKeyId()), mutation);
+        }
+        for (Map.Entry<String, Map<String, BulkMutation>> instanceMutations : mutationsByInstance.entrySet()) {
+            for (Map.Entry<String, BulkMutation> tableMutation : instanceMutations.getValue().entrySet()) {
+                int rowCount = tableMutation.getValue().getEntryCount();
+                if (bulkMutateWithRetries(instanceMutations.getKey(), tableMutation.getValue())) {
+                    flushedCounter.increment(rowCount);
+                    addToBloomFilter(instanceMutations.getKey(), tableMutation.getKey(), batch);
+                    invalidateCaches(instanceMutations.getKey(), tableMutation.getKey(), batch);
+                } else {
+                    logger.error("Moving write behind rows to the dead letter file after retries {} {} {}", kv("tableName", tableMutation.getKey()),
+                            kv("rowCount", rowCount), kv("deadLetterPath", deadLetterPath));
+                    deadLetter(instanceMutations.getKey(), tableMutation.getKey(), batch);
+                    deadLetteredCounter.increment(rowCount);
+                }
+            }
+        }
+    }
+
+    // failed rows are appended as json lines in the log payload format so they can be inspected and resubmitted
+    private void deadLetter(String instanceID, String tableName, List<PendingWrite> batch) {
+        deadLetter(batch.stream()
+                .filter(pendingWrite -> instanceID.equals(pendingWrite.instanceID) && tableName.equals(pendingWrite.tableData.getTableName()))
+                .collect(Collectors.toList()));
+    }
+
+    private void deadLetter(List<PendingWrite> rows) {
+        ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        for (PendingWrite pendingWrite : rows) {
+            lines.writeBytes(serialize(pendingWrite));
+            lines.write('\n');
+        }
+        try (FileChannel channel = FileChannel.open(deadLetterPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(lines.toByteArray()));
+            channel.force(true);
+        } catch (IOException e) {
+            logger.error("Error occurred when writing the dead letter file, failed rows are {}", kv("rows", lines.toString(StandardCharsets.UTF_8)), e);
+        }
+    }
+
+    // the service invalidates on enqueue too, this catches values a read loaded from bigtable before the flush landed
+    private void invalidateCaches(String instanceID, String tableName, List<PendingWrite> batch) {
+        if (Objects.isNull(lookupCache) && Objects.isNull(hotKeyTracker)) {
+            return;
+        }
+        List<String> rowIds = new ArrayList<>();
+        List<String> cacheKeys = new ArrayList<>();
+        for (PendingWrite pendingWrite : batch) {
+            if (instanceID.equals(pendingWrite.instanceID) && tableName.equals(pendingWrite.tableData.getTableName())) {
+                rowIds.add(pendingWrite.tableData.getRowKeyId());
+                cacheKeys.add(LookupCache.key(instanceID, tableName, pendingWrite.tableData.getRowKeyId()));
+            }
+        }
+        if (Objects.nonNull(lookupCache)) {
+            lookupCache.invalidate(cacheKeys);
+        }
+        if (Objects.nonNull(hotKeyTracker)) {
+            hotKeyTracker.invalidate(instanceID, tableName, rowIds);
+        }
+    }
+
+    private void addToBloomFilter(String instanceID, String tableName, List<PendingWrite> batch) {
+        if (Objects.isNull(bloomFilterIndex)) {
+            return;
+        }
+        for (PendingWrite pendingWrite : batch) {
+            if (instanceID.equals(pendingWrite.instanceID) && tableName.equals(pendingWrite.tableData.getTableName())) {
+                bloomFilterIndex.put(instanceID, tableName, rowKeyEncoder.encode(tableName, pendingWrite.tableData.getRowKeyId()));
+            }
+        }
+    }
+
+    private boolean bulkMutateWithRetries(String instanceID, BulkMutation bulkMutation) throws InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                clientRouter.get(instanceID, BigtableClientRouter.Operation.BULK_WRITE).bulkMutateRows(bulkMutation);
+                return true;
+            } catch (Exception e) {
+                logger.error("Error occurred when flushing write behind rows to table " + e.getMessage());
+                if (attempt >= maxRetries) {
+                    return false;
+                }
+                Thread.sleep(RETRY_BACKOFF_MILLIS << attempt);
+            }
+        }
+    }
+
+    private byte[] serialize(PendingWrite pendingWrite) {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("instanceID", pendingWrite.instanceID);
+        node.put("enqueuedAtMillis", pendingWrite.enqueuedAtMillis);
+        node.set("tableData", objectMapper.valueToTree(pendingWrite.tableData));
+        try {
+            return objectMapper.writeValueAsBytes(node);
+        } catch (IOException e) {
+            throw new KVLookUpException(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    private PendingWrite deserialize(byte[] payload) throws IOException {
+        JsonNode node = objectMapper.readTree(payload);
+        BigtableTableData tableData = objectMapper.treeToValue(node.get("tableData"), BigtableTableData.class);
+        return new PendingWrite(node.get("instanceID").asText(), tableData, node.get("enqueuedAtMillis").asLong());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        running = false;
+        flusher.shutdown();
+        if (!flusher.awaitTermination(30, TimeUnit.SECONDS)) {
+            logger.error("Write behind queue not drained before shutdown, pending writes are replayed on next start {}", kv("pendingWrites", queue.size()));
+            flusher.shutdownNow();
+        }
+        log.close();
+    }
+
+    private static final class PendingWrite {
+        private final String instanceID;
+        private final BigtableTableData tableData;
+        private final long enqueuedAtMillis;
+        private int logEndPosition;
+
+        private PendingWrite(String instanceID, BigtableTableData tableData, long enqueuedAtMillis) {
+            this.instanceID = instanceID;
+            this.tableData = tableData;
+            this.enqueuedAtMillis = enqueuedAtMillis;
+        }
+    }
+}
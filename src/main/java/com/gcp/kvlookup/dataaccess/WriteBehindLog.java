@@ -0,0 +1,148 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.gcp.kvlookup.dataaccess;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    Memory-mapped ring log backing the write behind queue. Each record is an int length followed by the payload,
+    the header keeps the position of the oldest unflushed record (head) and the end of the last appended record (tail)
+    so pending records can be replayed after a restart.
+*/
+class WriteBehindLog implements Closeable {
+
+    private static final int HEAD_OFFSET = 0;
+    private static final int TAIL_OFFSET = 4;
+    private static final int HEADER_SIZE = 8;
+    private static final int WRAP_MARKER = -1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private int head;
+    private int tail;
+
+    WriteBehindLog(Path path, int capacity) throws IOException {
+        this.capacity = capacity;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        this.head = buffer.getInt(HEAD_OFFSET);
+        this.tail = buffer.getInt(TAIL_OFFSET);
+        if (head < HEADER_SIZE || tail < HEADER_SIZE || head > capacity || tail > capacity) {
+            // new file or a log written with a different size, nothing can be replayed
+            head = HEADER_SIZE;
+            tail = HEADER_SIZE;
+            buffer.putInt(HEAD_OFFSET, head);
+            buffer.putInt(TAIL_OFFSET, tail);
+        }
+    }
+
+    // returns the end position of the appended record or -1 when the log has no room left
+    synchronized int append(byte[] payload) {
+        int recordSize = Integer.BYTES + payload.length;
+        if (head == tail) {
+            head = HEADER_SIZE;
+            tail = HEADER_SIZE;
+            buffer.putInt(HEAD_OFFSET, head);
+        }
+        int position = tail;
+        if (tail >= head) {
+            if (tail + recordSize > capacity) {
+                if (HEADER_SIZE + recordSize >= head) {
+                    return -1;
+                }
+                if (tail + Integer.BYTES <= capacity) {
+                    buffer.putInt(tail, WRAP_MARKER);
+                }
+                position = HEADER_SIZE;
+            }
+        } else if (tail + recordSize >= head) {
+            return -1;
+        }
+        buffer.putInt(position, payload.length);
+        ByteBuffer view = buffer.duplicate();
+        view.position(position + Integer.BYTES);
+        view.put(payload);
+        tail = position + recordSize;
+        buffer.putInt(TAIL_OFFSET, tail);
+        return tail;
+    }
+
+    synchronized List<Record> readPending() {
+        List<Record> records = new ArrayList<>();
+        ByteBuffer view = buffer.duplicate();
+        int position = head;
+        while (position != tail) {
+            if (position + Integer.BYTES > capacity || buffer.getInt(position) == WRAP_MARKER) {
+                position = HEADER_SIZE;
+                continue;
+            }
+            byte[] payload = new byte[buffer.getInt(position)];
+            view.position(position + Integer.BYTES);
+            view.get(payload);
+            position += Integer.BYTES + payload.length;
+            records.add(new Record(payload, position));
+        }
+        return records;
+    }
+
+    // marks every record up to the given end position as flushed
+    synchronized void release(int endPosition) {
+        head = endPosition;
+        buffer.putInt(HEAD_OFFSET, head);
+    }
+
+    synchronized int usedBytes() {
+        return tail >= head ? tail - head : (capacity - head) + (tail - HEADER_SIZE);
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    static final class Record {
+        private final byte[] payload;
+        private final int endPosition;
+
+        Record(byte[] payload, int endPosition) {
+            this.payload = payload;
+            this.endPosition = endPosition;
+        }
+
+        byte[] getPayload() {
+            return payload;
+        }
+
+        int getEndPosition() {
+            return endPosition;
+        }
+    }
+}
@@ -18,6 +18,7 @@ package com.gcp.kvlookup.datasource.connection;
 
 import com.gcp.kvlookup.exception.BigtableAdminClientConnectionException;
 import com.gcp.kvlookup.exception.BigtableDataClientConnectionException;
+import com.google.api.gax.core.NoCredentialsProvider;
 import com.google.cloud.bigtable.admin.v2.BigtableInstanceAdminClient;
 import com.google.cloud.bigtable.admin.v2.BigtableInstanceAdminSettings;
 import com.google.cloud.bigtable.admin.v2.BigtableTableAdminClient;
@@ -29,10 +30,16 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static net.logstash.logback.argument.StructuredArguments.kv;
 
@@ -47,6 +54,14 @@ public class BigtableClientConnection {
     @Value("#{'${gcp.instanceId.list}'.split(',')}")
     private List<String> instanceIdList; // GCP_INSTANCEID_LIST
 
+    // instanceId/operation/appProfileId entries, operation is one of pointRead, scan or bulkWrite
+    @Value("#{'${gcp.bigtable.appProfile.routes:}'.split(',')}")
+    private List<String> appProfileRoutes;
+
+    // host:port of a local bigtable emulator, used for local runs and the load test instead of the GCP endpoints
+    @Value("${gcp.bigtable.emulatorHost:}")
+    private String emulatorHost;
+
     private Map<String, BigtableTableAdminClient> adminClientMap = new HashMap<>();
     ;
     private Map<String, BigtableDataClient> dataClientMap = new HashMap<>();
@@ -56,13 +71,13 @@ public class BigtableClientConnection {
     @Bean
     public Map<String, BigtableDataClient> getDataClientMap() {
         try {
-            for (String instanceId : instanceIdList) {
+            dataClientMap.putAll(createPerInstance(instanceId -> {
                 logger.info("Establishing connecting to Bigtable dataClient with params projectId and InstanceId {} {}", kv("projectId", projectId), kv("instanceId", instanceId));
-                BigtableDataSettings settings = BigtableDataSettings.newBuilder().setProjectId(projectId).setInstanceId(instanceId).build();
+                BigtableDataSettings settings = dataSettingsBuilder().setProjectId(projectId).setInstanceId(instanceId).build();
                 BigtableDataClient bigtableDataClient = BigtableDataClient.create(settings);
                 logger.info("connection established successfully with {} and {}", kv("projectId", projectId), kv("instanceId", instanceId));
-                dataClientMap.put(instanceId, bigtableDataClient);
-            }
+                return bigtableDataClient;
+            }));
         } catch (Exception e) {
             String errorMessage = "Error occurred when tried to create instance of BigtableDataClient using the given projectId and InstanceId";
             logger.error(errorMessage);
@@ -72,16 +87,47 @@ public class BigtableClientConnection {
     }
 
 
+    @Bean
+    public BigtableClientRouter getBigtableClientRouter(Map<String, BigtableDataClient> dataClientMap) {
+        BigtableClientRouter clientRouter = new BigtableClientRouter(dataClientMap);
+        Map<String, BigtableDataClient> profileClients = new HashMap<>();
+        for (String route : appProfileRoutes) {
+            String[] parts = route.trim().split("/");
+            if (parts.length != 3) {
+                continue;
+            }
+            String instanceId = parts[0];
+            String appProfileId = parts[2];
+            BigtableClientRouter.Operation operation = BigtableClientRouter.Operation.fromPropertyName(parts[1]);
+            try {
+                BigtableDataClient profileClient = profileClients.get(instanceId + "/" + appProfileId);
+                if (profileClient == null) {
+                    logger.info("Establishing connecting to Bigtable dataClient with app profile {} {} {}", kv("projectId", projectId), kv("instanceId", instanceId), kv("appProfileId", appProfileId));
+                    BigtableDataSettings settings = dataSettingsBuilder().setProjectId(projectId).setInstanceId(instanceId).setAppProfileId(appProfileId).build();
+                    profileClient = BigtableDataClient.create(settings);
+                    profileClients.put(instanceId + "/" + appProfileId, profileClient);
+                }
+                clientRouter.addRoute(instanceId, operation, profileClient);
+                logger.info("Routing {} operations of {} to {}", kv("operation", operation.getPropertyName()), kv("instanceId", instanceId), kv("appProfileId", appProfileId));
+            } catch (Exception e) {
+                String errorMessage = "Error occurred when tried to create instance of BigtableDataClient using the given InstanceId and app profile";
+                logger.error(errorMessage);
+                throw new BigtableDataClientConnectionException(errorMessage, e);
+            }
+        }
+        return clientRouter;
+    }
+
     @Bean
     public Map<String, BigtableTableAdminClient> getBigtableAdminClientMap() {
         try {
-            for (String instanceId : instanceIdList) {
+            adminClientMap.putAll(createPerInstance(instanceId -> {
                 logger.info("Establishing connecting to Bigtable adminClient with params projectId and InstanceId {} {}", kv("projectId", projectId), kv("instanceId", instanceId));
-                BigtableTableAdminSettings settings = BigtableTableAdminSettings.newBuilder().setProjectId(projectId).setInstanceId(instanceId).build();
+                BigtableTableAdminSettings settings = tableAdminSettingsBuilder().setProjectId(projectId).setInstanceId(instanceId).build();
                 BigtableTableAdminClient bigtableTableAdminClient = BigtableTableAdminClient.create(settings);
                 logger.info("connection established successfully with {} and {} ", kv("projectId", projectId), kv("instanceId", instanceId));
-                adminClientMap.put(instanceId, bigtableTableAdminClient);
-            }
+                return bigtableTableAdminClient;
+            }));
         } catch (Exception e) {
             String errorMessage = "Error occurred when tried to create instance of BigtableAdminClient using the given projectId and InstanceId";
             logger.error(errorMessage);
@@ -94,8 +140,12 @@ public class BigtableClientConnection {
     public BigtableInstanceAdminClient getBigtableInstanceAdminClient() {
         try {
             logger.info("Establishing connecting to Bigtable instanceAdminClient with projectId  {}", kv("projectId", projectId));
-            BigtableInstanceAdminSettings instanceAdminSettings =
-                    BigtableInstanceAdminSettings.newBuilder().setProjectId(projectId).build();
+            BigtableInstanceAdminSettings.Builder instanceAdminSettingsBuilder = BigtableInstanceAdminSettings.newBuilder().setProjectId(projectId);
+            if (StringUtils.hasText(emulatorHost)) {
+                // the emulator has no instance admin api, the client is only created so the bean graph is complete
+                instanceAdminSettingsBuilder.stubSettings().setCredentialsProvider(NoCredentialsProvider.create());
+            }
+            BigtableInstanceAdminSettings instanceAdminSettings = instanceAdminSettingsBuilder.build();
             bigtableInstanceAdminClient = BigtableInstanceAdminClient.create(instanceAdminSettings);
             logger.info("connection established successfully with {}", kv("projectId", projectId));
             return bigtableInstanceAdminClient;
@@ -106,4 +156,55 @@ public class BigtableClientConnection {
         }
     }
 
+    // clients of different instances are independent, creating them together keeps startup flat as instances are added
+    private <T> Map<String, T> createPerInstance(ClientFactory<T> factory) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, instanceIdList.size()));
+        try {
+            Map<String, Future<T>> pending = new LinkedHashMap<>();
+            for (String instanceId : instanceIdList) {
+                pending.put(instanceId, executor.submit(() -> factory.create(instanceId)));
+            }
+            Map<String, T> clients = new HashMap<>();
+            for (Map.Entry<String, Future<T>> entry : pending.entrySet()) {
+                try {
+                    clients.put(entry.getKey(), entry.getValue().get());
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+            return clients;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private interface ClientFactory<T> {
+        T create(String instanceId) throws Exception;
+    }
+
+    private BigtableDataSettings.Builder dataSettingsBuilder() {
+        if (StringUtils.hasText(emulatorHost)) {
+            return BigtableDataSettings.newBuilderForEmulator(emulatorHostName(), emulatorPort());
+        }
+        return BigtableDataSettings.newBuilder();
+    }
+
+    private BigtableTableAdminSettings.Builder tableAdminSettingsBuilder() {
+        if (StringUtils.hasText(emulatorHost)) {
+            return BigtableTableAdminSettings.newBuilderForEmulator(emulatorHostName(), emulatorPort());
+        }
+        return BigtableTableAdminSettings.newBuilder();
+    }
+
+    // the port follows the last colon so IPv6 hosts work, with ([::1]:8086) or without (::1:8086) brackets
+    private String emulatorHostName() {
+        String hostName = emulatorHost.trim().substring(0, emulatorHost.trim().lastIndexOf(':'));
+        // the client joins host and port into a grpc target, which needs IPv6 addresses in brackets
+        return hostName.contains(":") && !hostName.startsWith("[") ? "[" + hostName + "]" : hostName;
+    }
+
+    private int emulatorPort() {
+        return Integer.parseInt(emulatorHost.trim().substring(emulatorHost.trim().lastIndexOf(':') + 1));
+    }
+
 }
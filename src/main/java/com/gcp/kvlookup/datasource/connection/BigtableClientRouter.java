@@ -0,0 +1,81 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+
+package com.gcp.kvlookup.datasource.connection;
+
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/*
+    Picks the data client for an operation type so batch work can run on its own app profile, for example a single
+    cluster profile for scans and bulk writes and a multi cluster profile for online lookups. Operations without a route
+    use the instance's default client.
+ */
+public class BigtableClientRouter {
+
+    public enum Operation {
+        POINT_READ("pointRead"),
+        SCAN("scan"),
+        BULK_WRITE("bulkWrite");
+
+        private final String propertyName;
+
+        Operation(String propertyName) {
+            this.propertyName = propertyName;
+        }
+
+        public String getPropertyName() {
+            return propertyName;
+        }
+
+        public static Operation fromPropertyName(String propertyName) {
+            for (Operation operation : values()) {
+                if (operation.propertyName.equals(propertyName)) {
+                    return operation;
+                }
+            }
+            throw new IllegalArgumentException("Unknown Bigtable operation type " + propertyName);
+        }
+    }
+
+    private final Map<String, BigtableDataClient> defaultClients;
+
+    private final Map<String, Map<Operation, BigtableDataClient>> routes = new HashMap<>();
+
+    public BigtableClientRouter(Map<String, BigtableDataClient> defaultClients) {
+        this.defaultClients = defaultClients;
+    }
+
+    public void addRoute(String instanceID, Operation operation, BigtableDataClient client) {
+        routes.computeIfAbsent(instanceID, key -> new EnumMap<>(Operation.class)).put(operation, client);
+    }
+
+    public BigtableDataClient get(String instanceID, Operation operation) {
+        Map<Operation, BigtableDataClient> instanceRoutes = routes.get(instanceID);
+        if (Objects.nonNull(instanceRoutes)) {
+            BigtableDataClient client = instanceRoutes.get(operation);
+            if (Objects.nonNull(client)) {
+                return client;
+            }
+        }
+        return defaultClients.get(instanceID);
+    }
+}
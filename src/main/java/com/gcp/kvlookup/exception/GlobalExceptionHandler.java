@@ -16,22 +16,76 @@
 
 package com.gcp.kvlookup.exception;
 
+import com.google.api.gax.rpc.ApiException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 
+import java.util.Objects;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
 @ControllerAdvice
 public class GlobalExceptionHandler {
+    private static final Logger logger = LoggerFactory.getLogger(GlobalExceptionHandler.class);
 
     @ExceptionHandler(value = KVLookUpException.class)
-    public ResponseEntity blogNotFoundException(KVLookUpException exception) {
-        return new ResponseEntity<String>(exception.getMessage(), HttpStatus.NOT_FOUND);
+    public ResponseEntity<String> blogNotFoundException(KVLookUpException exception) {
+        HttpStatus status = Objects.isNull(exception.getStatus()) ? HttpStatus.NOT_FOUND : exception.getStatus();
+        return ResponseEntity.status(status).contentType(MediaType.TEXT_PLAIN).body(exception.getMessage());
+    }
+
+    @ExceptionHandler(value = ApiException.class)
+    public ResponseEntity<String> bigtableApiException(ApiException exception) {
+        HttpStatus status = toHttpStatus(exception);
+        if (status.is5xxServerError()) {
+            logger.error("Bigtable call failed with {}", kv("statusCode", exception.getStatusCode().getCode()), exception);
+        } else {
+            logger.info("Bigtable call rejected with {}", kv("statusCode", exception.getStatusCode().getCode()));
+        }
+        return ResponseEntity.status(status).contentType(MediaType.TEXT_PLAIN).body(status == HttpStatus.NOT_FOUND ? "NOT FOUND" : exception.getMessage());
+    }
+
+    @ExceptionHandler(value = HttpMessageNotReadableException.class)
+    public ResponseEntity<String> unreadableRequestBody(HttpMessageNotReadableException exception) {
+        logger.info("Rejected unreadable request body {}", kv("error", exception.getMostSpecificCause().getMessage()));
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).contentType(MediaType.TEXT_PLAIN).body("Request body could not be read");
     }
 
     @ExceptionHandler(value = Exception.class)
     public ResponseEntity<Object> databaseConnectionFailsException(Exception exception) {
+        logger.error("Unhandled error when performing an api call", exception);
         return new ResponseEntity<>("Error occurred when performing an api call", HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
+    static HttpStatus toHttpStatus(ApiException exception) {
+        switch (exception.getStatusCode().getCode()) {
+            case NOT_FOUND:
+                return HttpStatus.NOT_FOUND;
+            case ALREADY_EXISTS:
+                return HttpStatus.CONFLICT;
+            case INVALID_ARGUMENT:
+            case FAILED_PRECONDITION:
+            case OUT_OF_RANGE:
+                return HttpStatus.BAD_REQUEST;
+            case PERMISSION_DENIED:
+                return HttpStatus.FORBIDDEN;
+            case UNAUTHENTICATED:
+                return HttpStatus.UNAUTHORIZED;
+            case RESOURCE_EXHAUSTED:
+                return HttpStatus.TOO_MANY_REQUESTS;
+            case UNAVAILABLE:
+                return HttpStatus.SERVICE_UNAVAILABLE;
+            case DEADLINE_EXCEEDED:
+                return HttpStatus.GATEWAY_TIMEOUT;
+            default:
+                return HttpStatus.INTERNAL_SERVER_ERROR;
+        }
+    }
+
 }
@@ -21,6 +21,11 @@ import org.springframework.http.HttpStatus;
 public class KVLookUpException extends RuntimeException {
     private HttpStatus status;
 
+    // misses and validation failures are expected outcomes mapped straight to a response, so they skip the stack walk
+    public static KVLookUpException notFound() {
+        return new KVLookUpException("NOT FOUND", HttpStatus.NOT_FOUND, false);
+    }
+
     public KVLookUpException(String message) {
         super(message);
     }
@@ -30,6 +35,11 @@ public class KVLookUpException extends RuntimeException {
         this.status = status;
     }
 
+    public KVLookUpException(String message, HttpStatus status, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+        this.status = status;
+    }
+
     public KVLookUpException() {
     }
 
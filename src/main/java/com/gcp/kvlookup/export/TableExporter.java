@@ -0,0 +1,243 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+
+package com.gcp.kvlookup.export;
+
+import com.gcp.kvlookup.compression.ValueCompressor;
+import com.gcp.kvlookup.dataaccess.RowKeyEncoder;
+import com.gcp.kvlookup.datasource.connection.BigtableClientRouter;
+import com.gcp.kvlookup.exception.KVLookUpException;
+import com.gcp.kvlookup.model.ExportJob;
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.models.Query;
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.cloud.bigtable.data.v2.models.RowCell;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/*
+    Exports whole tables to local Avro files. The key space is split with sampleRowKeys and every shard is streamed
+    row by row into its own part file, so memory stays constant per shard. All jobs share one fixed pool of
+    parallelism threads, which bounds the scan load put on the cluster no matter how many exports are requested.
+*/
+@Component
+@ConditionalOnProperty(name = "gcp.bigtable.export.enabled", havingValue = "true")
+public class TableExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(TableExporter.class);
+
+    public static final Schema CELL_SCHEMA = SchemaBuilder.record("BigtableCell").namespace("com.gcp.kvlookup.export")
+            .fields()
+            .requiredString("family")
+            .requiredBytes("qualifier")
+            .requiredLong("timestamp")
+            .requiredBytes("value")
+            .endRecord();
+
+    public static final Schema ROW_SCHEMA = SchemaBuilder.record("BigtableRow").namespace("com.gcp.kvlookup.export")
+            .fields()
+            .requiredString("rowKey")
+            .name("cells").type().array().items(CELL_SCHEMA).noDefault()
+            .endRecord();
+
+    // bigtable table ids, which also keeps names with path separators or dot segments out of the export directory
+    private static final Pattern TABLE_ID = Pattern.compile("[_a-zA-Z0-9][-_.a-zA-Z0-9]{0,49}");
+
+    private final Map<String, BigtableDataClient> dataClient;
+    private BigtableClientRouter clientRouter;
+    private final Path directory;
+    private final long jobRetentionInMillis;
+    private final ExecutorService exportExecutor;
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+
+    private RowKeyEncoder rowKeyEncoder = new RowKeyEncoder(List.of());
+    private ValueCompressor valueCompressor = ValueCompressor.PASS_THROUGH;
+
+    public TableExporter(Map<String, BigtableDataClient> dataClient,
+                         @Value("${gcp.bigtable.export.directory}") String directory,
+                         @Value("${gcp.bigtable.export.parallelism}") int parallelism,
+                         @Value("${gcp.bigtable.export.jobRetentionInMinutes}") long jobRetentionInMinutes) {
+        this.dataClient = dataClient;
+        this.clientRouter = new BigtableClientRouter(dataClient);
+        this.directory = Paths.get(directory);
+        this.jobRetentionInMillis = TimeUnit.MINUTES.toMillis(jobRetentionInMinutes);
+        this.exportExecutor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "table-export");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Autowired
+    public void setRowKeyEncoder(RowKeyEncoder rowKeyEncoder) {
+        this.rowKeyEncoder = rowKeyEncoder;
+    }
+
+    @Autowired
+    public void setClientRouter(BigtableClientRouter clientRouter) {
+        this.clientRouter = clientRouter;
+    }
+
+    // only present when gcp.bigtable.valueCompression.enabled is set
+    @Autowired(required = false)
+    public void setValueCompressor(ValueCompressor valueCompressor) {
+        this.valueCompressor = valueCompressor;
+    }
+
+    public ExportJob export(String instanceID, String tableName) throws IOException {
+        // both names become directories, so they are checked before anything is created on disk
+        if (!dataClient.containsKey(instanceID)) {
+            throw new KVLookUpException("Unknown instance " + instanceID, HttpStatus.BAD_REQUEST, false);
+        }
+        if (Objects.isNull(tableName) || !TABLE_ID.matcher(tableName).matches()) {
+            throw new KVLookUpException("Invalid table name " + tableName, HttpStatus.BAD_REQUEST, false);
+        }
+        evictFinishedJobs();
+        ExportJob job = new ExportJob(UUID.randomUUID().toString(), instanceID, tableName);
+        BigtableDataClient client = clientRouter.get(instanceID, BigtableClientRouter.Operation.SCAN);
+        List<Query> shards = Query.create(tableName).shard(client.sampleRowKeys(tableName));
+        Path jobDirectory = directory.resolve(instanceID).resolve(tableName).resolve(job.getJobId());
+        Files.createDirectories(jobDirectory);
+        job.setShardsTotal(shards.size());
+        jobs.put(job.getJobId(), job);
+        logger.info("Exporting table {} in {} shards to {}", kv("tableName", tableName), kv("shards", shards.size()),
+                kv("directory", jobDirectory));
+
+        List<CompletableFuture<Void>> shardExports = new ArrayList<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            Path shardFile = jobDirectory.resolve(String.format("part-%05d.avro", shard));
+            Query shardQuery = shards.get(shard);
+            shardExports.add(CompletableFuture.runAsync(() -> exportShard(job, client, shardQuery, shardFile), exportExecutor));
+        }
+        CompletableFuture.allOf(shardExports.toArray(new CompletableFuture[0])).whenComplete((ignored, error) -> {
+            if (error != null) {
+                job.finish(ExportJob.FAILED, error.getMessage());
+                logger.error("Export {} of table {} failed", kv("jobId", job.getJobId()), kv("tableName", tableName), error);
+                return;
+            }
+            try {
+                Files.createFile(jobDirectory.resolve("_SUCCESS"));
+                job.finish(ExportJob.COMPLETED, null);
+                logger.info("Export {} of table {} completed with {} rows at {} rows/sec", kv("jobId", job.getJobId()),
+                        kv("tableName", tableName), kv("rowsExported", job.getRowsExported()), kv("rowsPerSecond", job.getRowsPerSecond()));
+            } catch (IOException e) {
+                job.finish(ExportJob.FAILED, e.getMessage());
+            }
+        });
+        return job;
+    }
+
+    public Optional<ExportJob> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    // finished jobs stay visible to exportStatus for jobRetentionInMinutes
+    private void evictFinishedJobs() {
+        long oldestFinishedAtMillis = System.currentTimeMillis() - jobRetentionInMillis;
+        jobs.values().removeIf(job -> !ExportJob.RUNNING.equals(job.getStatus()) && job.getFinishedAtMillis() < oldestFinishedAtMillis);
+    }
+
+    // rows are appended as they arrive and flushed in avro blocks, the part file only appears once the shard is complete
+    private void exportShard(ExportJob job, BigtableDataClient client, Query shardQuery, Path shardFile) {
+        Path inProgressFile = shardFile.resolveSibling(shardFile.getFileName() + ".inprogress");
+        String instanceID = job.getInstanceId();
+        String tableName = job.getTableName();
+        try (DataFileWriter<GenericRecord> writer = new DataFileWriter<GenericRecord>(new GenericDatumWriter<>(ROW_SCHEMA))
+                .setCodec(CodecFactory.deflateCodec(CodecFactory.DEFAULT_DEFLATE_LEVEL))
+                .create(ROW_SCHEMA, inProgressFile.toFile())) {
+            long rows = 0;
+            for (Row row : client.readRows(shardQuery)) {
+                writer.append(toRecord(instanceID, tableName, row));
+                if (++rows % 1000 == 0) {
+                    job.addRows(1000);
+                }
+            }
+            job.addRows(rows % 1000);
+        } catch (IOException | RuntimeException e) {
+            // the writer is closed by now, a failed shard leaves no partial file behind
+            try {
+                Files.deleteIfExists(inProgressFile);
+            } catch (IOException deleteError) {
+                e.addSuppressed(deleteError);
+            }
+            throw new KVLookUpException("Error occurred when exporting " + shardFile + " " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        try {
+            Files.move(inProgressFile, shardFile, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new KVLookUpException("Error occurred when exporting " + shardFile + " " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        job.shardCompleted(shardFile.toString());
+        logger.info("Export {} finished shard {} of {}", kv("jobId", job.getJobId()), kv("shardsCompleted", job.getShardsCompleted()),
+                kv("shardsTotal", job.getShardsTotal()));
+    }
+
+    private GenericRecord toRecord(String instanceID, String tableName, Row row) {
+        List<GenericRecord> cells = new ArrayList<>(row.getCells().size());
+        for (RowCell rowCell : row.getCells()) {
+            GenericRecord cell = new GenericData.Record(CELL_SCHEMA);
+            cell.put("family", rowCell.getFamily());
+            cell.put("qualifier", ByteBuffer.wrap(rowCell.getQualifier().toByteArray()));
+            cell.put("timestamp", rowCell.getTimestamp());
+            cell.put("value", ByteBuffer.wrap(valueCompressor.decode(instanceID, tableName, rowCell.getValue()).toByteArray()));
+            cells.add(cell);
+        }
+        GenericRecord record = new GenericData.Record(ROW_SCHEMA);
+        record.put("rowKey", rowKeyEncoder.decode(tableName, row.getKey().toStringUtf8()));
+        record.put("cells", cells);
+        return record;
+    }
+
+    @PreDestroy
+    public void stop() {
+        exportExecutor.shutdownNow();
+    }
+}
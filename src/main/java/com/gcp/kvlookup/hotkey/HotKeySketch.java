@@ -0,0 +1,147 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+
+package com.gcp.kvlookup.hotkey;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+    Approximate access counts of the keys of one table in fixed memory. A count-min sketch of DEPTH rows estimates
+    the count of any key, a space-saving style list of the capacity keys with the highest estimates keeps the top-K,
+    a new key only displaces the smallest tracked one once its estimate is larger. Estimates never undercount, keys
+    sharing counters with a hot key are typically overestimated by about the total divided by the width. Updates do not
+    lock, concurrent updates of the same tracked key can leave its estimate slightly behind the sketch.
+*/
+public class HotKeySketch {
+
+    private static final int DEPTH = 4;
+    // one seed per row so two keys colliding in one row are unlikely to collide in the others
+    private static final int[] ROW_SEEDS = {0x9E3779B9, 0x7F4A7C15, 0x85EBCA77, 0xC2B2AE3D};
+
+    private final AtomicLongArray counters;
+    private final int width;
+    private final int capacity;
+    private final Map<String, Long> tracked;
+    // smallest tracked estimate once the list is full, may be stale low which only costs an extra scan
+    private volatile long minimum;
+
+    public HotKeySketch(int width, int capacity) {
+        this.width = Integer.highestOneBit(Math.max(width, 16));
+        this.capacity = capacity;
+        this.counters = new AtomicLongArray(DEPTH * this.width);
+        this.tracked = new ConcurrentHashMap<>(capacity * 2);
+    }
+
+    public long add(String key) {
+        long estimate = increment(key);
+        Long current = tracked.get(key);
+        if (current != null) {
+            if (estimate > current) {
+                tracked.replace(key, current, estimate);
+            }
+        } else if (tracked.size() < capacity) {
+            tracked.putIfAbsent(key, estimate);
+        } else if (estimate > minimum) {
+            admit(key, estimate);
+        }
+        return estimate;
+    }
+
+    public long estimate(String key) {
+        int hash = key.hashCode();
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters.get(index(row, hash)));
+        }
+        return estimate;
+    }
+
+    // halves every count so the top-K follows recent traffic instead of all traffic since startup
+    public void decay() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, counters.get(i) >>> 1);
+        }
+        tracked.replaceAll((key, count) -> count >>> 1);
+        minimum = minimum >>> 1;
+    }
+
+    // tracked keys by descending estimate, at most limit of them
+    public Map<String, Long> top(int limit) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(tracked.entrySet());
+        entries.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()));
+        Map<String, Long> top = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : entries) {
+            if (top.size() >= limit) {
+                break;
+            }
+            top.put(entry.getKey(), entry.getValue());
+        }
+        return top;
+    }
+
+    private long increment(String key) {
+        int hash = key.hashCode();
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters.incrementAndGet(index(row, hash)));
+        }
+        return estimate;
+    }
+
+    private void admit(String key, long estimate) {
+        String smallestKey = null;
+        long smallest = Long.MAX_VALUE;
+        long secondSmallest = Long.MAX_VALUE;
+        for (Map.Entry<String, Long> entry : tracked.entrySet()) {
+            long count = entry.getValue();
+            if (count < smallest) {
+                secondSmallest = smallest;
+                smallest = count;
+                smallestKey = entry.getKey();
+            } else if (count < secondSmallest) {
+                secondSmallest = count;
+            }
+        }
+        if (smallestKey == null || estimate <= smallest) {
+            minimum = smallest;
+            return;
+        }
+        // another thread may have replaced or bumped the smallest key meanwhile, then this key waits for its next access
+        if (tracked.remove(smallestKey, smallest)) {
+            tracked.putIfAbsent(key, estimate);
+        }
+        minimum = Math.min(secondSmallest, estimate);
+    }
+
+    private int index(int row, int hash) {
+        return row * width + (mix(hash ^ ROW_SEEDS[row]) & (width - 1));
+    }
+
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,241 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+
+package com.gcp.kvlookup.hotkey;
+
+import com.gcp.kvlookup.cache.InMemoryLookupCache;
+import com.gcp.kvlookup.cache.LookupCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/*
+    Counts every row key read or written through KVLookUpService in a HotKeySketch per table, so the hottest keys
+    show up in /actuator/hotkeys before bigtable reports a hotspotted tablet. Memory is fixed by sketchWidth, topK and
+    maxTables whatever the number of keys. Keys are counted after their lookup or write went through, and a table without
+    traffic for a whole decayIntervalInSeconds is dropped, so made up table names can't hold on to the maxTables slots.
+    With the hot key cache enabled the cache.topN keys of each table whose
+    estimate reaches cache.minCount are served from a short lived per pod cache; writes through this pod invalidate
+    it, writes through other pods are visible after cache.ttlInSeconds.
+*/
+@Component
+@ConditionalOnProperty(name = "gcp.bigtable.hotKeys.enabled", havingValue = "true")
+public class HotKeyTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(HotKeyTracker.class);
+
+    private final Map<String, Map<String, TableKeys>> tables = new ConcurrentHashMap<>();
+    private final AtomicInteger tableCount = new AtomicInteger();
+    private final int sketchWidth;
+    private final int topK;
+    private final int maxTables;
+    private final long decayIntervalInSeconds;
+    private final boolean cacheEnabled;
+    private final int cacheTopN;
+    private final long cacheMinCount;
+    private final long cacheRefreshIntervalInMillis;
+    private final InMemoryLookupCache hotKeyCache;
+    private final Counter cacheHits;
+    private final Counter untrackedTables;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "hot-key-tracker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public HotKeyTracker(MeterRegistry meterRegistry,
+                         @Value("${gcp.bigtable.hotKeys.sketchWidth}") int sketchWidth,
+                         @Value("${gcp.bigtable.hotKeys.topK}") int topK,
+                         @Value("${gcp.bigtable.hotKeys.maxTables}") int maxTables,
+                         @Value("${gcp.bigtable.hotKeys.decayIntervalInSeconds}") long decayIntervalInSeconds,
+                         @Value("${gcp.bigtable.hotKeys.cache.enabled}") boolean cacheEnabled,
+                         @Value("${gcp.bigtable.hotKeys.cache.topN}") int cacheTopN,
+                         @Value("${gcp.bigtable.hotKeys.cache.minCount}") long cacheMinCount,
+                         @Value("${gcp.bigtable.hotKeys.cache.ttlInSeconds}") long cacheTtlInSeconds,
+                         @Value("${gcp.bigtable.hotKeys.cache.refreshIntervalInMillis}") long cacheRefreshIntervalInMillis) {
+        this.sketchWidth = sketchWidth;
+        this.topK = topK;
+        this.maxTables = maxTables;
+        this.decayIntervalInSeconds = decayIntervalInSeconds;
+        this.cacheEnabled = cacheEnabled;
+        this.cacheTopN = Math.min(cacheTopN, topK);
+        this.cacheMinCount = cacheMinCount;
+        this.cacheRefreshIntervalInMillis = cacheRefreshIntervalInMillis;
+        this.hotKeyCache = new InMemoryLookupCache(cacheTtlInSeconds, Math.max(1, this.cacheTopN * maxTables));
+        this.cacheHits = meterRegistry.counter("kvlookup.hotkeys.cache.hits");
+        this.untrackedTables = meterRegistry.counter("kvlookup.hotkeys.untracked");
+        meterRegistry.gauge("kvlookup.hotkeys.tables", tableCount);
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::decay, decayIntervalInSeconds, decayIntervalInSeconds, TimeUnit.SECONDS);
+        if (cacheEnabled) {
+            scheduler.scheduleWithFixedDelay(this::refreshHotKeys, cacheRefreshIntervalInMillis, cacheRefreshIntervalInMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void recordRead(String instanceID, String tableName, String rowKey) {
+        TableKeys tableKeys = tableKeys(instanceID, tableName);
+        if (Objects.nonNull(tableKeys)) {
+            tableKeys.reads.increment();
+            tableKeys.sketch.add(rowKey);
+        }
+    }
+
+    public void recordWrite(String instanceID, String tableName, String rowKey) {
+        TableKeys tableKeys = tableKeys(instanceID, tableName);
+        if (Objects.nonNull(tableKeys)) {
+            tableKeys.writes.increment();
+            tableKeys.sketch.add(rowKey);
+        }
+    }
+
+    // cached value of a hot key, null for keys that are not hot right now or not cached yet
+    public String getCached(String instanceID, String tableName, String rowKey) {
+        if (!isHot(instanceID, tableName, rowKey)) {
+            return null;
+        }
+        String value = hotKeyCache.get(LookupCache.key(instanceID, tableName, rowKey));
+        if (Objects.nonNull(value)) {
+            cacheHits.increment();
+        }
+        return value;
+    }
+
+    public void cacheIfHot(String instanceID, String tableName, String rowKey, String value) {
+        if (isHot(instanceID, tableName, rowKey)) {
+            hotKeyCache.put(LookupCache.key(instanceID, tableName, rowKey), value);
+        }
+    }
+
+    public void invalidate(String instanceID, String tableName, List<String> rowKeys) {
+        if (!cacheEnabled) {
+            return;
+        }
+        List<String> cacheKeys = new ArrayList<>(rowKeys.size());
+        for (String rowKey : rowKeys) {
+            cacheKeys.add(LookupCache.key(instanceID, tableName, rowKey));
+        }
+        hotKeyCache.invalidate(cacheKeys);
+    }
+
+    // instanceId/tableName to the read and write totals since the table is tracked and the top keys with their decayed estimates
+    public Map<String, Object> getHotKeys() {
+        Map<String, Object> hotKeys = new TreeMap<>();
+        tables.forEach((instanceID, instanceTables) -> instanceTables.forEach((tableName, tableKeys) -> {
+            Map<String, Object> table = new LinkedHashMap<>();
+            table.put("reads", tableKeys.reads.sum());
+            table.put("writes", tableKeys.writes.sum());
+            table.put("topKeys", tableKeys.sketch.top(topK));
+            if (cacheEnabled) {
+                table.put("cachedKeys", tableKeys.hotKeys);
+            }
+            hotKeys.put(instanceID + "/" + tableName, table);
+        }));
+        return hotKeys;
+    }
+
+    private boolean isHot(String instanceID, String tableName, String rowKey) {
+        if (!cacheEnabled) {
+            return false;
+        }
+        Map<String, TableKeys> instanceTables = tables.get(instanceID);
+        TableKeys tableKeys = Objects.isNull(instanceTables) ? null : instanceTables.get(tableName);
+        return Objects.nonNull(tableKeys) && tableKeys.hotKeys.contains(rowKey);
+    }
+
+    // tables past maxTables are counted but not tracked so table names from requests can't grow memory without bound
+    private TableKeys tableKeys(String instanceID, String tableName) {
+        Map<String, TableKeys> instanceTables = tables.get(instanceID);
+        TableKeys tableKeys = Objects.isNull(instanceTables) ? null : instanceTables.get(tableName);
+        if (Objects.nonNull(tableKeys)) {
+            return tableKeys;
+        }
+        if (tableCount.get() >= maxTables) {
+            untrackedTables.increment();
+            return null;
+        }
+        return tables.computeIfAbsent(instanceID, id -> new ConcurrentHashMap<>()).computeIfAbsent(tableName, name -> {
+            tableCount.incrementAndGet();
+            return new TableKeys(new HotKeySketch(sketchWidth, topK));
+        });
+    }
+
+    void decay() {
+        tables.values().forEach(instanceTables -> instanceTables.values().removeIf(tableKeys -> {
+            long operations = tableKeys.reads.sum() + tableKeys.writes.sum();
+            if (operations == tableKeys.operationsAtLastDecay) {
+                tableCount.decrementAndGet();
+                return true;
+            }
+            tableKeys.operationsAtLastDecay = operations;
+            tableKeys.sketch.decay();
+            return false;
+        }));
+    }
+
+    void refreshHotKeys() {
+        tables.forEach((instanceID, instanceTables) -> instanceTables.forEach((tableName, tableKeys) -> {
+            Map<String, Long> top = tableKeys.sketch.top(cacheTopN);
+            top.values().removeIf(count -> count < cacheMinCount);
+            if (!top.keySet().equals(tableKeys.hotKeys)) {
+                logger.info("Hot keys of table {} are now {}", kv("table", instanceID + "/" + tableName), kv("hotKeys", top));
+            }
+            tableKeys.hotKeys = Set.copyOf(top.keySet());
+        }));
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    private static final class TableKeys {
+        private final HotKeySketch sketch;
+        private final LongAdder reads = new LongAdder();
+        private final LongAdder writes = new LongAdder();
+        private volatile Set<String> hotKeys = Set.of();
+        private long operationsAtLastDecay;
+
+        private TableKeys(HotKeySketch sketch) {
+            this.sketch = sketch;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.gcp.kvlookup.model;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotEmpty;
+import java.util.List;
+
+public class BigtableDeleteData {
+
+    @NotBlank
+    private String tableName;
+    @NotEmpty
+    private List<String> rowKeyIds;
+    // when columnFamily is empty the whole row is deleted, when columnName is empty the whole family is deleted
+    private String columnFamily;
+    private String columnName;
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public void setTableName(String tableName) {
+        this.tableName = tableName;
+    }
+
+    public List<String> getRowKeyIds() {
+        return rowKeyIds;
+    }
+
+    public void setRowKeyIds(List<String> rowKeyIds) {
+        this.rowKeyIds = rowKeyIds;
+    }
+
+    public String getColumnFamily() {
+        return columnFamily;
+    }
+
+    public void setColumnFamily(String columnFamily) {
+        this.columnFamily = columnFamily;
+    }
+
+    public String getColumnName() {
+        return columnName;
+    }
+
+    public void setColumnName(String columnName) {
+        this.columnName = columnName;
+    }
+
+    @Override
+    public String toString() {
+        return "BigtableDeleteData{" +
+                "tableName='" + tableName + '\'' +
+                ", rowKeyIds=" + rowKeyIds +
+                ", columnFamily='" + columnFamily + '\'' +
+                ", columnName='" + columnName + '\'' +
+                '}';
+    }
+}
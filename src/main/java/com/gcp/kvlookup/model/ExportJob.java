@@ -0,0 +1,130 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+
+package com.gcp.kvlookup.model;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ExportJob {
+
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String FAILED = "FAILED";
+
+    private final String jobId;
+    private final String instanceId;
+    private final String tableName;
+    private final long startedAtMillis;
+    private final AtomicInteger shardsCompleted = new AtomicInteger();
+    private final AtomicLong rowsExported = new AtomicLong();
+    private final List<String> files = new CopyOnWriteArrayList<>();
+    private volatile String status = RUNNING;
+    private volatile int shardsTotal;
+    private volatile long finishedAtMillis;
+    private volatile String message;
+
+    public ExportJob(String jobId, String instanceId, String tableName) {
+        this.jobId = jobId;
+        this.instanceId = instanceId;
+        this.tableName = tableName;
+        this.startedAtMillis = System.currentTimeMillis();
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public int getShardsTotal() {
+        return shardsTotal;
+    }
+
+    public int getShardsCompleted() {
+        return shardsCompleted.get();
+    }
+
+    public long getRowsExported() {
+        return rowsExported.get();
+    }
+
+    public double getRowsPerSecond() {
+        long endMillis = finishedAtMillis > 0 ? finishedAtMillis : System.currentTimeMillis();
+        return rowsExported.get() * 1000.0 / Math.max(1, endMillis - startedAtMillis);
+    }
+
+    public long getStartedAtMillis() {
+        return startedAtMillis;
+    }
+
+    public long getFinishedAtMillis() {
+        return finishedAtMillis;
+    }
+
+    public List<String> getFiles() {
+        return files;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setShardsTotal(int shardsTotal) {
+        this.shardsTotal = shardsTotal;
+    }
+
+    public void addRows(long rows) {
+        rowsExported.addAndGet(rows);
+    }
+
+    public void shardCompleted(String file) {
+        files.add(file);
+        shardsCompleted.incrementAndGet();
+    }
+
+    public void finish(String status, String message) {
+        this.finishedAtMillis = System.currentTimeMillis();
+        this.message = message;
+        this.status = status;
+    }
+
+    @Override
+    public String toString() {
+        return "ExportJob{" +
+                "jobId='" + jobId + '\'' +
+                ", instanceId='" + instanceId + '\'' +
+                ", tableName='" + tableName + '\'' +
+                ", status='" + status + '\'' +
+                ", shardsCompleted=" + shardsCompleted +
+                ", shardsTotal=" + shardsTotal +
+                ", rowsExported=" + rowsExported +
+                '}';
+    }
+}
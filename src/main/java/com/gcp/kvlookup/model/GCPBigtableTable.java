@@ -17,12 +17,19 @@
 package com.gcp.kvlookup.model;
 
 import javax.validation.constraints.NotBlank;
+import java.util.List;
 
 public class GCPBigtableTable {
     @NotBlank
     private String tableName;
     @NotBlank
     private String columnFamily;
+    // optional GC policy for the column family, cells matching either limit are garbage collected
+    private Integer maxVersions;
+    private Long maxAgeInSeconds;
+    // optional initial split points, either explicit row keys or a number of uniform splits over the hex key space
+    private List<String> splitKeys;
+    private Integer splitCount;
 
     public String getTableName() {
         return tableName;
@@ -40,11 +47,47 @@ public class GCPBigtableTable {
         this.columnFamily = columnFamily;
     }
 
+    public Integer getMaxVersions() {
+        return maxVersions;
+    }
+
+    public void setMaxVersions(Integer maxVersions) {
+        this.maxVersions = maxVersions;
+    }
+
+    public Long getMaxAgeInSeconds() {
+        return maxAgeInSeconds;
+    }
+
+    public void setMaxAgeInSeconds(Long maxAgeInSeconds) {
+        this.maxAgeInSeconds = maxAgeInSeconds;
+    }
+
+    public List<String> getSplitKeys() {
+        return splitKeys;
+    }
+
+    public void setSplitKeys(List<String> splitKeys) {
+        this.splitKeys = splitKeys;
+    }
+
+    public Integer getSplitCount() {
+        return splitCount;
+    }
+
+    public void setSplitCount(Integer splitCount) {
+        this.splitCount = splitCount;
+    }
+
     @Override
     public String toString() {
         return "GCPBigtableTable{" +
                 "tableName='" + tableName + '\'' +
                 ", columnFamily='" + columnFamily + '\'' +
+                ", maxVersions=" + maxVersions +
+                ", maxAgeInSeconds=" + maxAgeInSeconds +
+                ", splitKeys=" + splitKeys +
+                ", splitCount=" + splitCount +
                 '}';
     }
 }
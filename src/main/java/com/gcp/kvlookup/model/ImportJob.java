@@ -0,0 +1,136 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+
+package com.gcp.kvlookup.model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ImportJob {
+
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String FAILED = "FAILED";
+
+    private final String jobId;
+    private final String instanceId;
+    private final String tableName;
+    private final long startedAtMillis;
+    private final AtomicInteger chunksCompleted = new AtomicInteger();
+    private final AtomicLong rowsImported = new AtomicLong();
+    private final AtomicLong rowsRejected = new AtomicLong();
+    private volatile String status = RUNNING;
+    private volatile int chunksTotal;
+    private volatile int chunksResumed;
+    private volatile long finishedAtMillis;
+    private volatile String message;
+
+    public ImportJob(String jobId, String instanceId, String tableName) {
+        this.jobId = jobId;
+        this.instanceId = instanceId;
+        this.tableName = tableName;
+        this.startedAtMillis = System.currentTimeMillis();
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public int getChunksTotal() {
+        return chunksTotal;
+    }
+
+    public int getChunksCompleted() {
+        return chunksCompleted.get();
+    }
+
+    // chunks skipped because a previous run of the job had already checkpointed them
+    public int getChunksResumed() {
+        return chunksResumed;
+    }
+
+    public long getRowsImported() {
+        return rowsImported.get();
+    }
+
+    public long getRowsRejected() {
+        return rowsRejected.get();
+    }
+
+    public double getRowsPerSecond() {
+        long endMillis = finishedAtMillis > 0 ? finishedAtMillis : System.currentTimeMillis();
+        return rowsImported.get() * 1000.0 / Math.max(1, endMillis - startedAtMillis);
+    }
+
+    public long getStartedAtMillis() {
+        return startedAtMillis;
+    }
+
+    public long getFinishedAtMillis() {
+        return finishedAtMillis;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setChunks(int chunksTotal, int chunksResumed) {
+        this.chunksTotal = chunksTotal;
+        this.chunksResumed = chunksResumed;
+        this.chunksCompleted.set(chunksResumed);
+    }
+
+    public void addRows(long imported, long rejected) {
+        rowsImported.addAndGet(imported);
+        rowsRejected.addAndGet(rejected);
+    }
+
+    public void chunkCompleted() {
+        chunksCompleted.incrementAndGet();
+    }
+
+    public void finish(String status, String message) {
+        this.finishedAtMillis = System.currentTimeMillis();
+        this.message = message;
+        this.status = status;
+    }
+
+    @Override
+    public String toString() {
+        return "ImportJob{" +
+                "jobId='" + jobId + '\'' +
+                ", instanceId='" + instanceId + '\'' +
+                ", tableName='" + tableName + '\'' +
+                ", status='" + status + '\'' +
+                ", chunksCompleted=" + chunksCompleted +
+                ", chunksTotal=" + chunksTotal +
+                ", rowsImported=" + rowsImported +
+                '}';
+    }
+}
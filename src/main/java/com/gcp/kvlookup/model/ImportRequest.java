@@ -0,0 +1,99 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+
+package com.gcp.kvlookup.model;
+
+import javax.validation.constraints.NotBlank;
+import java.util.Map;
+
+public class ImportRequest {
+
+    public enum Format {
+        CSV, NDJSON, AVRO
+    }
+
+    @NotBlank
+    private String tableName;
+    // relative to gcp.bigtable.import.directory
+    @NotBlank
+    private String fileName;
+    private Format format;
+    @NotBlank
+    private String rowKeyField;
+    // source field name to "columnFamily:columnName", a bare column name uses gcp.bigtable.column.family
+    private Map<String, String> columns;
+    private String delimiter = ",";
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public void setTableName(String tableName) {
+        this.tableName = tableName;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public void setFormat(Format format) {
+        this.format = format;
+    }
+
+    public String getRowKeyField() {
+        return rowKeyField;
+    }
+
+    public void setRowKeyField(String rowKeyField) {
+        this.rowKeyField = rowKeyField;
+    }
+
+    public Map<String, String> getColumns() {
+        return columns;
+    }
+
+    public void setColumns(Map<String, String> columns) {
+        this.columns = columns;
+    }
+
+    public String getDelimiter() {
+        return delimiter;
+    }
+
+    public void setDelimiter(String delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    @Override
+    public String toString() {
+        return "ImportRequest{" +
+                "tableName='" + tableName + '\'' +
+                ", fileName='" + fileName + '\'' +
+                ", format=" + format +
+                ", rowKeyField='" + rowKeyField + '\'' +
+                ", columns=" + columns +
+                '}';
+    }
+}
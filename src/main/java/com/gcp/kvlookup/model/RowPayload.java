@@ -0,0 +1,130 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+
+package com.gcp.kvlookup.model;
+
+import com.gcp.kvlookup.exception.KVLookUpException;
+import com.google.protobuf.ByteString;
+import org.springframework.http.HttpStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    A row to insert with its qualifiers and values kept as the UTF-8 bytes written to bigtable. Built by the streaming
+    insertData parser so wide rows are not bound into a list of ColumnData strings first.
+*/
+public class RowPayload {
+
+    public static final String NO_COLUMNS = "At least one column is required";
+    public static final String MISSING_COLUMN_PART = "Every column needs a columnFamily, columnName and columnValue";
+
+    private final String tableName;
+    private final String rowKeyId;
+    private final List<String> families;
+    private final List<ByteString> qualifiers;
+    private final List<ByteString> values;
+    private final long sizeInBytes;
+
+    public RowPayload(String tableName, String rowKeyId, List<String> families, List<ByteString> qualifiers, List<ByteString> values) {
+        this.tableName = tableName;
+        this.rowKeyId = rowKeyId;
+        this.families = families;
+        this.qualifiers = qualifiers;
+        this.values = values;
+        long size = 0;
+        for (int cell = 0; cell < values.size(); cell++) {
+            size += qualifiers.get(cell).size() + values.get(cell).size();
+        }
+        this.sizeInBytes = size;
+    }
+
+    public static RowPayload of(BigtableTableData tableData) {
+        List<ColumnData> data = tableData.getData();
+        if (data == null || data.isEmpty()) {
+            throw new KVLookUpException(NO_COLUMNS, HttpStatus.BAD_REQUEST, false);
+        }
+        List<String> families = new ArrayList<>(data.size());
+        List<ByteString> qualifiers = new ArrayList<>(data.size());
+        List<ByteString> values = new ArrayList<>(data.size());
+        for (ColumnData columnData : data) {
+            if (columnData.getColumnFamily() == null || columnData.getColumnName() == null || columnData.getColumnValue() == null) {
+                throw new KVLookUpException(MISSING_COLUMN_PART, HttpStatus.BAD_REQUEST, false);
+            }
+            families.add(columnData.getColumnFamily());
+            qualifiers.add(ByteString.copyFromUtf8(columnData.getColumnName()));
+            values.add(ByteString.copyFromUtf8(columnData.getColumnValue()));
+        }
+        return new RowPayload(tableData.getTableName(), tableData.getRowKeyId(), families, qualifiers, values);
+    }
+
+    // only for the paths that still work on strings, the write behind log and secondary indexes
+    public BigtableTableData toTableData() {
+        List<ColumnData> data = new ArrayList<>(values.size());
+        for (int cell = 0; cell < values.size(); cell++) {
+            ColumnData columnData = new ColumnData();
+            columnData.setColumnFamily(families.get(cell));
+            columnData.setColumnName(qualifiers.get(cell).toStringUtf8());
+            columnData.setColumnValue(values.get(cell).toStringUtf8());
+            data.add(columnData);
+        }
+        BigtableTableData tableData = new BigtableTableData();
+        tableData.setTableName(tableName);
+        tableData.setRowKeyId(rowKeyId);
+        tableData.setData(data);
+        return tableData;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getRowKeyId() {
+        return rowKeyId;
+    }
+
+    public int getCellCount() {
+        return values.size();
+    }
+
+    public String getFamily(int cell) {
+        return families.get(cell);
+    }
+
+    public ByteString getQualifier(int cell) {
+        return qualifiers.get(cell);
+    }
+
+    public ByteString getValue(int cell) {
+        return values.get(cell);
+    }
+
+    // qualifiers and values, the part of the row that the size limits apply to
+    public long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "RowPayload{" +
+                "tableName='" + tableName + '\'' +
+                ", rowKeyId='" + rowKeyId + '\'' +
+                ", cellCount=" + values.size() +
+                ", sizeInBytes=" + sizeInBytes +
+                '}';
+    }
+}
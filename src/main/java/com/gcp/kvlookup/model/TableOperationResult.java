@@ -0,0 +1,76 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.gcp.kvlookup.model;
+
+public class TableOperationResult {
+
+    public static final String CREATED = "CREATED";
+    public static final String DELETED = "DELETED";
+    public static final String NOT_FOUND = "NOT_FOUND";
+    public static final String ALREADY_EXISTS = "ALREADY_EXISTS";
+    public static final String FAILED = "FAILED";
+
+    private String tableName;
+    private String status;
+    private String message;
+
+    public TableOperationResult() {
+    }
+
+    public TableOperationResult(String tableName, String status, String message) {
+        this.tableName = tableName;
+        this.status = status;
+        this.message = message;
+    }
+
+    public boolean isSuccessful() {
+        return CREATED.equals(status) || DELETED.equals(status);
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public void setTableName(String tableName) {
+        this.tableName = tableName;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    @Override
+    public String toString() {
+        return "TableOperationResult{" +
+                "tableName='" + tableName + '\'' +
+                ", status='" + status + '\'' +
+                ", message='" + message + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,150 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+
+package com.gcp.kvlookup.profiling;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/*
+    Flight recordings of a live pod without attaching an agent. POST /actuator/profiling starts a recording with the
+    configured jfr settings plus the StageEvents, it stops by itself after maxDurationInSeconds and keeps at most
+    maxSizeInMB. DELETE stops it and returns the .jfr file, GET shows its state. One recording at a time, the last dump
+    is kept in the directory until the next one replaces it.
+*/
+@Component
+@Endpoint(id = "profiling")
+@ConditionalOnProperty(name = "app.profiling.enabled", havingValue = "true")
+public class ProfilingEndpoint {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProfilingEndpoint.class);
+
+    private final Configuration configuration;
+    private final Duration maxDuration;
+    private final long maxSizeInBytes;
+    private final Duration stageThreshold;
+    private final Path directory;
+    private Recording recording;
+    private Path lastDump;
+
+    public ProfilingEndpoint(@Value("${app.profiling.settings}") String settings,
+                             @Value("${app.profiling.maxDurationInSeconds}") long maxDurationInSeconds,
+                             @Value("${app.profiling.maxSizeInMB}") long maxSizeInMB,
+                             @Value("${app.profiling.stageThresholdInMillis}") long stageThresholdInMillis,
+                             @Value("${app.profiling.directory}") String directory) {
+        try {
+            this.configuration = Configuration.getConfiguration(settings);
+        } catch (IOException | ParseException e) {
+            throw new IllegalStateException("Unknown flight recorder settings " + settings, e);
+        }
+        this.maxDuration = Duration.ofSeconds(maxDurationInSeconds);
+        this.maxSizeInBytes = maxSizeInMB * 1024 * 1024;
+        this.stageThreshold = Duration.ofMillis(stageThresholdInMillis);
+        this.directory = Paths.get(directory);
+    }
+
+    @ReadOperation
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        if (Objects.isNull(recording)) {
+            status.put("state", "NONE");
+            return status;
+        }
+        status.put("state", recording.getState().name());
+        status.put("startTime", String.valueOf(recording.getStartTime()));
+        status.put("maxDurationInSeconds", recording.getDuration().getSeconds());
+        status.put("sizeInBytes", recording.getSize());
+        return status;
+    }
+
+    // durationInSeconds is capped at maxDurationInSeconds
+    @WriteOperation
+    public synchronized WebEndpointResponse<Map<String, Object>> start(@Nullable Long durationInSeconds) {
+        if (Objects.nonNull(recording) && recording.getState() == RecordingState.RUNNING) {
+            return new WebEndpointResponse<>(status(), HttpStatus.CONFLICT.value());
+        }
+        closeRecording();
+        Duration duration = Objects.isNull(durationInSeconds) || durationInSeconds <= 0
+                ? maxDuration : Duration.ofSeconds(Math.min(durationInSeconds, maxDuration.getSeconds()));
+        Recording next = new Recording(configuration);
+        next.setName("kvlookup-profiling");
+        next.enable(StageEvent.class).withThreshold(stageThreshold);
+        next.setDuration(duration);
+        next.setMaxSize(maxSizeInBytes);
+        next.setToDisk(true);
+        next.start();
+        recording = next;
+        logger.info("Started flight recording {} for {}", kv("settings", configuration.getName()), kv("durationInSeconds", duration.getSeconds()));
+        return new WebEndpointResponse<>(status());
+    }
+
+    @DeleteOperation
+    public synchronized WebEndpointResponse<Resource> stop() throws IOException {
+        if (Objects.isNull(recording)) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+        }
+        if (recording.getState() == RecordingState.RUNNING) {
+            recording.stop();
+        }
+        Files.createDirectories(directory);
+        if (Objects.nonNull(lastDump)) {
+            Files.deleteIfExists(lastDump);
+        }
+        Path dump = directory.resolve("kvlookup-" + System.currentTimeMillis() + ".jfr");
+        recording.dump(dump);
+        closeRecording();
+        lastDump = dump;
+        logger.info("Flight recording written to {} {}", kv("path", dump), kv("sizeInBytes", Files.size(dump)));
+        return new WebEndpointResponse<>(new FileSystemResource(dump));
+    }
+
+    @PreDestroy
+    public synchronized void closeRecording() {
+        if (Objects.nonNull(recording)) {
+            recording.close();
+            recording = null;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+
+package com.gcp.kvlookup.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// flight recorder event for the time one request spends in one stage, created through Stages
+@Name(StageEvent.NAME)
+@Label("KV Lookup Stage")
+@Category("KV Lookup")
+@Description("Time spent by a request in the controller, service, data access, bigtable rpc or serialization stage")
+@StackTrace(false)
+public class StageEvent extends Event {
+
+    public static final String NAME = "com.gcp.kvlookup.Stage";
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Instance")
+    String instance;
+
+    @Label("Table")
+    String table;
+
+    @Label("Outcome")
+    @Description("ok, miss for an empty result, the http status of a KVLookUpException or the exception class")
+    String outcome;
+}
@@ -0,0 +1,100 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+
+package com.gcp.kvlookup.profiling;
+
+import com.gcp.kvlookup.exception.KVLookUpException;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/*
+    Records the work of one request stage as a StageEvent, the flight recorder counterpart of Spans. While no recording
+    has the event enabled the work runs directly, so the stages cost next to nothing outside of a profiling session.
+*/
+public final class Stages {
+
+    public enum Stage {
+        CONTROLLER("controller"),
+        SERVICE("service"),
+        DATA_ACCESS("dataAccess"),
+        BIGTABLE_RPC("bigtableRpc"),
+        SERIALIZATION("serialization");
+
+        private final String eventName;
+
+        Stage(String eventName) {
+            this.eventName = eventName;
+        }
+    }
+
+    public static final String OK = "ok";
+    public static final String MISS = "miss";
+
+    private Stages() {
+    }
+
+    @FunctionalInterface
+    public interface Work<T, E extends Exception> {
+        T get() throws E;
+    }
+
+    @FunctionalInterface
+    public interface VoidWork<E extends Exception> {
+        void run() throws E;
+    }
+
+    public static <T, E extends Exception> T inStage(Stage stage, String operation, String instanceID, String tableName, Work<T, E> work) throws E {
+        StageEvent event = new StageEvent();
+        if (!event.isEnabled()) {
+            return work.get();
+        }
+        event.begin();
+        String outcome = OK;
+        try {
+            T result = work.get();
+            if (result instanceof Optional && ((Optional<?>) result).isEmpty()) {
+                outcome = MISS;
+            }
+            return result;
+        } catch (KVLookUpException e) {
+            outcome = Objects.isNull(e.getStatus()) ? e.getClass().getSimpleName() : String.valueOf(e.getStatus().value());
+            throw e;
+        } catch (Throwable e) {
+            // errors such as OutOfMemoryError are recorded under their class name as well, never as ok
+            outcome = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.stage = stage.eventName;
+                event.operation = operation;
+                event.instance = instanceID;
+                event.table = tableName;
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
+    }
+
+    public static <E extends Exception> void runInStage(Stage stage, String operation, String instanceID, String tableName, VoidWork<E> work) throws E {
+        inStage(stage, operation, instanceID, tableName, () -> {
+            work.run();
+            return null;
+        });
+    }
+}
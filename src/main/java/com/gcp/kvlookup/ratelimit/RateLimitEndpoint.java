@@ -0,0 +1,50 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+
+package com.gcp.kvlookup.ratelimit;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+// GET /actuator/ratelimits lists the limits, POST with scope, key, permitsPerSecond and burst changes one
+@Component
+@Endpoint(id = "ratelimits")
+@ConditionalOnProperty(name = "gcp.bigtable.rateLimit.enabled", havingValue = "true")
+public class RateLimitEndpoint {
+
+    private final RateLimiter rateLimiter;
+
+    public RateLimitEndpoint(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @ReadOperation
+    public Map<String, String> limits() {
+        return rateLimiter.getLimits();
+    }
+
+    @WriteOperation
+    public Map<String, String> setLimit(String scope, String key, double permitsPerSecond, int burst) {
+        rateLimiter.setLimit(scope, key, permitsPerSecond, burst);
+        return rateLimiter.getLimits();
+    }
+}
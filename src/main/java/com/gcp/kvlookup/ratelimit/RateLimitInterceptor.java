@@ -0,0 +1,79 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+
+package com.gcp.kvlookup.ratelimit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+@Component
+@ConditionalOnProperty(name = "gcp.bigtable.rateLimit.enabled", havingValue = "true")
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    private static final String ANONYMOUS_CLIENT = "anonymous";
+
+    private final RateLimiter rateLimiter;
+    private final String clientHeader;
+
+    public RateLimitInterceptor(RateLimiter rateLimiter, @Value("${gcp.bigtable.rateLimit.clientHeader}") String clientHeader) {
+        this.rateLimiter = rateLimiter;
+        this.clientHeader = clientHeader;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        // requests handed to a lane come back through an async dispatch that was already charged
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, String> pathVariables = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        if (Objects.isNull(pathVariables) || !pathVariables.containsKey("instanceID")) {
+            return true;
+        }
+        String clientId = request.getHeader(clientHeader);
+        if (!StringUtils.hasText(clientId)) {
+            clientId = ANONYMOUS_CLIENT;
+        }
+        // tableName is only known here when it is a query parameter, writes are limited per instance
+        long waitNanos = rateLimiter.acquire(clientId, pathVariables.get("instanceID"), request.getParameter("tableName"));
+        if (waitNanos == 0) {
+            return true;
+        }
+        long retryAfterSeconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.getWriter().write(HttpStatus.TOO_MANY_REQUESTS.getReasonPhrase());
+        return false;
+    }
+}
@@ -0,0 +1,187 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+
+package com.gcp.kvlookup.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/*
+    Token buckets per client id and per instance/table. Limits come from the defaults and overrides in
+    application.properties and can be changed at runtime through the ratelimits actuator endpoint.
+ */
+@Component
+@ConditionalOnProperty(name = "gcp.bigtable.rateLimit.enabled", havingValue = "true")
+public class RateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimiter.class);
+
+    public static final String CLIENT = "client";
+    public static final String TABLE = "table";
+    public static final String DEFAULT = "default";
+    // requests without a tableName parameter share one bucket per instance
+    private static final String ANY_TABLE = "*";
+    // a full map is trimmed by a tenth, so its buckets are scanned once per maxTrackedKeys / 10 new keys
+    private static final int EVICTION_DIVISOR = 10;
+
+    private final Map<String, TokenBucket> clientBuckets = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> tableBuckets = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket.Limit> overrides = new ConcurrentHashMap<>();
+    private final int maxTrackedKeys;
+    private final Counter clientRejections;
+    private final Counter tableRejections;
+    private volatile TokenBucket.Limit defaultClientLimit;
+    private volatile TokenBucket.Limit defaultTableLimit;
+
+    public RateLimiter(MeterRegistry meterRegistry,
+                       @Value("${gcp.bigtable.rateLimit.client.permitsPerSecond}") double clientPermitsPerSecond,
+                       @Value("${gcp.bigtable.rateLimit.client.burst}") int clientBurst,
+                       @Value("${gcp.bigtable.rateLimit.table.permitsPerSecond}") double tablePermitsPerSecond,
+                       @Value("${gcp.bigtable.rateLimit.table.burst}") int tableBurst,
+                       @Value("${gcp.bigtable.rateLimit.maxTrackedKeys}") int maxTrackedKeys,
+                       @Value("#{'${gcp.bigtable.rateLimit.overrides:}'.split(',')}") List<String> limitOverrides) {
+        this.defaultClientLimit = new TokenBucket.Limit(clientPermitsPerSecond, clientBurst);
+        this.defaultTableLimit = new TokenBucket.Limit(tablePermitsPerSecond, tableBurst);
+        this.maxTrackedKeys = maxTrackedKeys;
+        this.clientRejections = meterRegistry.counter("kvlookup.ratelimit.rejected", "scope", CLIENT);
+        this.tableRejections = meterRegistry.counter("kvlookup.ratelimit.rejected", "scope", TABLE);
+        // scope/key/permitsPerSecond/burst, the key of a table override is instanceId/tableName
+        for (String override : limitOverrides) {
+            String[] parts = override.trim().split("/");
+            if (parts.length < 4) {
+                continue;
+            }
+            String key = String.join("/", List.of(parts).subList(1, parts.length - 2));
+            setLimit(parts[0], key, Double.parseDouble(parts[parts.length - 2]), Integer.parseInt(parts[parts.length - 1]));
+        }
+    }
+
+    // returns 0 when the request may proceed, otherwise the nanos until the exhausted bucket has a permit again
+    public long acquire(String clientId, String instanceID, String tableName) {
+        long nowNanos = System.nanoTime();
+        TokenBucket clientBucket = bucket(clientBuckets, CLIENT, clientId, nowNanos);
+        long clientWaitNanos = clientBucket.tryAcquire(nowNanos);
+        if (clientWaitNanos > 0) {
+            clientRejections.increment();
+            return clientWaitNanos;
+        }
+        String table = instanceID + "/" + (StringUtils.hasText(tableName) ? tableName : ANY_TABLE);
+        long tableWaitNanos = bucket(tableBuckets, TABLE, table, nowNanos).tryAcquire(nowNanos);
+        if (tableWaitNanos > 0) {
+            tableRejections.increment();
+            // the request never ran, so it doesn't count against the client
+            clientBucket.release();
+        }
+        return tableWaitNanos;
+    }
+
+    public void setLimit(String scope, String key, double permitsPerSecond, int burst) {
+        TokenBucket.Limit limit = new TokenBucket.Limit(permitsPerSecond, burst);
+        Map<String, TokenBucket> buckets = buckets(scope);
+        logger.info("Setting rate limit {} {} {}", kv("scope", scope), kv("key", key), kv("limit", limit));
+        if (DEFAULT.equals(key)) {
+            if (CLIENT.equals(scope)) {
+                defaultClientLimit = limit;
+            } else {
+                defaultTableLimit = limit;
+            }
+            buckets.forEach((bucketKey, bucket) -> {
+                if (!overrides.containsKey(scope + "/" + bucketKey)) {
+                    bucket.setLimit(limit);
+                }
+            });
+            return;
+        }
+        overrides.put(scope + "/" + key, limit);
+        TokenBucket bucket = buckets.get(key);
+        if (Objects.nonNull(bucket)) {
+            bucket.setLimit(limit);
+        }
+    }
+
+    public Map<String, String> getLimits() {
+        Map<String, String> limits = new TreeMap<>();
+        limits.put(CLIENT + "/" + DEFAULT, defaultClientLimit.toString());
+        limits.put(TABLE + "/" + DEFAULT, defaultTableLimit.toString());
+        overrides.forEach((key, limit) -> limits.put(key, limit.toString()));
+        return limits;
+    }
+
+    private TokenBucket bucket(Map<String, TokenBucket> buckets, String scope, String key, long nowNanos) {
+        TokenBucket bucket = buckets.get(key);
+        if (Objects.nonNull(bucket)) {
+            return bucket;
+        }
+        if (buckets.size() >= maxTrackedKeys) {
+            synchronized (buckets) {
+                if (buckets.size() >= maxTrackedKeys) {
+                    evict(buckets, nowNanos);
+                }
+            }
+        }
+        return buckets.computeIfAbsent(key, newKey -> new TokenBucket(limitFor(scope, newKey), nowNanos));
+    }
+
+    // a refilled bucket is the same as a new one so dropping it changes no limit, busy buckets only go when that isn't enough
+    private void evict(Map<String, TokenBucket> buckets, long nowNanos) {
+        int target = maxTrackedKeys - Math.max(1, maxTrackedKeys / EVICTION_DIVISOR);
+        Iterator<TokenBucket> values = buckets.values().iterator();
+        while (buckets.size() > target && values.hasNext()) {
+            if (values.next().isFull(nowNanos)) {
+                values.remove();
+            }
+        }
+        Iterator<String> keys = buckets.keySet().iterator();
+        while (buckets.size() > target && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private TokenBucket.Limit limitFor(String scope, String key) {
+        TokenBucket.Limit override = overrides.get(scope + "/" + key);
+        if (Objects.nonNull(override)) {
+            return override;
+        }
+        return CLIENT.equals(scope) ? defaultClientLimit : defaultTableLimit;
+    }
+
+    private Map<String, TokenBucket> buckets(String scope) {
+        if (CLIENT.equals(scope)) {
+            return clientBuckets;
+        }
+        if (TABLE.equals(scope)) {
+            return tableBuckets;
+        }
+        throw new IllegalArgumentException("Unknown rate limit scope " + scope + ", expected client or table");
+    }
+}
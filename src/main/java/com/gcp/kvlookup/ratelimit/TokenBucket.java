@@ -0,0 +1,100 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+
+package com.gcp.kvlookup.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    Token bucket kept as a single theoretical arrival time (GCRA) so a permit is taken with one compare-and-set and no
+    lock. The limit can be swapped at runtime without losing the bucket's current fill.
+ */
+class TokenBucket {
+
+    private final AtomicLong theoreticalArrivalNanos;
+    private volatile Limit limit;
+
+    TokenBucket(Limit limit, long nowNanos) {
+        this.limit = limit;
+        this.theoreticalArrivalNanos = new AtomicLong(nowNanos);
+    }
+
+    // returns 0 when a permit was taken, otherwise the nanos until one is available
+    long tryAcquire(long nowNanos) {
+        Limit current = limit;
+        while (true) {
+            long theoreticalArrival = theoreticalArrivalNanos.get();
+            long start = Math.max(theoreticalArrival, nowNanos);
+            long waitNanos = start - nowNanos - current.burstToleranceNanos;
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+            if (theoreticalArrivalNanos.compareAndSet(theoreticalArrival, start + current.emissionIntervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    // gives back a permit taken by tryAcquire
+    void release() {
+        theoreticalArrivalNanos.addAndGet(-limit.emissionIntervalNanos);
+    }
+
+    boolean isFull(long nowNanos) {
+        return theoreticalArrivalNanos.get() <= nowNanos;
+    }
+
+    Limit getLimit() {
+        return limit;
+    }
+
+    void setLimit(Limit limit) {
+        this.limit = limit;
+    }
+
+    static class Limit {
+        private final double permitsPerSecond;
+        private final int burst;
+        private final long emissionIntervalNanos;
+        private final long burstToleranceNanos;
+
+        Limit(double permitsPerSecond, int burst) {
+            if (permitsPerSecond <= 0 || burst < 1) {
+                throw new IllegalArgumentException("permitsPerSecond must be positive and burst at least 1");
+            }
+            this.permitsPerSecond = permitsPerSecond;
+            this.burst = burst;
+            this.emissionIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+            // the first permit is always free, burst - 1 more can be taken back to back
+            this.burstToleranceNanos = emissionIntervalNanos * (burst - 1);
+        }
+
+        double getPermitsPerSecond() {
+            return permitsPerSecond;
+        }
+
+        int getBurst() {
+            return burst;
+        }
+
+        @Override
+        public String toString() {
+            return permitsPerSecond + "/" + burst;
+        }
+    }
+}
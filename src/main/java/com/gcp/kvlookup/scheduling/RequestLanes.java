@@ -0,0 +1,151 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+
+package com.gcp.kvlookup.scheduling;
+
+import com.gcp.kvlookup.exception.KVLookUpException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.opentelemetry.context.Context;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/*
+    Runs controller work on a bounded executor per lane instead of the shared Tomcat worker pool, so a burst of batch or
+    admin calls queues in its own lane and never delays readCellData. A lane's thread count caps how many of its calls
+    reach BigTable at once, and once its queue is full further calls are answered with 503 straight away.
+*/
+@Component
+@ConditionalOnProperty(name = "app.lanes.enabled", havingValue = "true")
+public class RequestLanes {
+
+    public enum Lane {
+        ONLINE("online"), WRITE("write"), BATCH("batch"), ADMIN("admin");
+
+        private final String propertyName;
+
+        Lane(String propertyName) {
+            this.propertyName = propertyName;
+        }
+
+        public String getPropertyName() {
+            return propertyName;
+        }
+    }
+
+    // runs every task on the calling thread, used when lanes are disabled
+    public static final RequestLanes DIRECT = new RequestLanes();
+
+    private final Map<Lane, LaneExecutor> executors = new EnumMap<>(Lane.class);
+
+    private RequestLanes() {
+    }
+
+    public RequestLanes(MeterRegistry meterRegistry,
+                        @Value("${app.lanes.online.threads}") int onlineThreads,
+                        @Value("${app.lanes.online.queueCapacity}") int onlineQueueCapacity,
+                        @Value("${app.lanes.write.threads}") int writeThreads,
+                        @Value("${app.lanes.write.queueCapacity}") int writeQueueCapacity,
+                        @Value("${app.lanes.batch.threads}") int batchThreads,
+                        @Value("${app.lanes.batch.queueCapacity}") int batchQueueCapacity,
+                        @Value("${app.lanes.admin.threads}") int adminThreads,
+                        @Value("${app.lanes.admin.queueCapacity}") int adminQueueCapacity) {
+        executors.put(Lane.ONLINE, new LaneExecutor(Lane.ONLINE, onlineThreads, onlineQueueCapacity, meterRegistry));
+        executors.put(Lane.WRITE, new LaneExecutor(Lane.WRITE, writeThreads, writeQueueCapacity, meterRegistry));
+        executors.put(Lane.BATCH, new LaneExecutor(Lane.BATCH, batchThreads, batchQueueCapacity, meterRegistry));
+        executors.put(Lane.ADMIN, new LaneExecutor(Lane.ADMIN, adminThreads, adminQueueCapacity, meterRegistry));
+    }
+
+    public <T> CompletableFuture<T> submit(Lane lane, Supplier<T> task) {
+        LaneExecutor executor = executors.get(lane);
+        if (Objects.isNull(executor)) {
+            return CompletableFuture.completedFuture(task.get());
+        }
+        return executor.submit(task);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executors.values().forEach(executor -> executor.threadPool.shutdownNow());
+    }
+
+    private static class LaneExecutor {
+
+        private final Lane lane;
+        private final ThreadPoolExecutor threadPool;
+        private final Timer queueTime;
+        private final Counter rejected;
+
+        LaneExecutor(Lane lane, int threads, int queueCapacity, MeterRegistry meterRegistry) {
+            this.lane = lane;
+            AtomicInteger threadCount = new AtomicInteger();
+            this.threadPool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                Thread thread = new Thread(runnable, "lane-" + lane.getPropertyName() + "-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.queueTime = Timer.builder("kvlookup.lane.queue.time")
+                    .tag("lane", lane.getPropertyName())
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry);
+            this.rejected = meterRegistry.counter("kvlookup.lane.rejected", "lane", lane.getPropertyName());
+            Gauge.builder("kvlookup.lane.queued", threadPool, pool -> pool.getQueue().size())
+                    .tag("lane", lane.getPropertyName()).register(meterRegistry);
+            Gauge.builder("kvlookup.lane.active", threadPool, ThreadPoolExecutor::getActiveCount)
+                    .tag("lane", lane.getPropertyName()).register(meterRegistry);
+        }
+
+        <T> CompletableFuture<T> submit(Supplier<T> task) {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            long enqueuedAt = System.nanoTime();
+            // the trace context of the request thread carries over to the lane thread
+            Runnable runnable = Context.current().wrap(() -> {
+                queueTime.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+                try {
+                    result.complete(task.get());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+            try {
+                threadPool.execute(runnable);
+            } catch (RejectedExecutionException e) {
+                rejected.increment();
+                result.completeExceptionally(new KVLookUpException("Too many " + lane.getPropertyName() + " requests queued",
+                        HttpStatus.SERVICE_UNAVAILABLE, false));
+            }
+            return result;
+        }
+    }
+}
@@ -16,18 +16,45 @@
 
 package com.gcp.kvlookup.service;
 
+import com.gcp.kvlookup.bulkimport.BulkImporter;
+import com.gcp.kvlookup.cache.LookupCache;
+import com.gcp.kvlookup.changestream.ChangeStreamCacheSynchronizer;
+import com.gcp.kvlookup.compression.ValueCompressor;
 import com.gcp.kvlookup.dataaccess.BigTableDataAccessOperation;
+import com.gcp.kvlookup.dataaccess.InstanceGroupReader;
+import com.gcp.kvlookup.dataaccess.WriteBehindBuffer;
+import com.gcp.kvlookup.exception.KVLookUpException;
+import com.gcp.kvlookup.export.TableExporter;
+import com.gcp.kvlookup.hotkey.HotKeyTracker;
 import com.gcp.kvlookup.controller.KVLookUpController;
+import com.gcp.kvlookup.model.BigtableDeleteData;
 import com.gcp.kvlookup.model.BigtableTableData;
+import com.gcp.kvlookup.model.CellVersion;
+import com.gcp.kvlookup.model.ExportJob;
 import com.gcp.kvlookup.model.GCPBigtableTable;
+import com.gcp.kvlookup.model.ImportJob;
+import com.gcp.kvlookup.model.ImportRequest;
+import com.gcp.kvlookup.model.RowPayload;
+import com.gcp.kvlookup.model.TableOperationResult;
+import com.gcp.kvlookup.profiling.Stages;
+import com.gcp.kvlookup.profiling.Stages.Stage;
+import com.gcp.kvlookup.snapshot.SnapshotStore;
+import com.gcp.kvlookup.tracing.Spans;
 import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.concurrent.ExecutionException;
 
 import static net.logstash.logback.argument.StructuredArguments.kv;
@@ -40,31 +67,248 @@ public class KVLookUpService {
 
     private final Map<String, BigtableDataClient> dataClient;
 
+    private WriteBehindBuffer writeBehindBuffer;
+
+    private LookupCache lookupCache;
+
+    private ChangeStreamCacheSynchronizer changeStreamCacheSynchronizer;
+
+    private SnapshotStore snapshotStore;
+
+    private InstanceGroupReader instanceGroupReader;
+
+    private TableExporter tableExporter;
+
+    private BulkImporter bulkImporter;
+
+    private ValueCompressor valueCompressor;
+
+    private HotKeyTracker hotKeyTracker;
+
+    private Tracer tracer = Spans.NOOP_TRACER;
+
     public KVLookUpService(BigTableDataAccessOperation tableCreationConfig, Map<String, BigtableDataClient> dataClient) {
         this.bigTableDataAccessOperation = tableCreationConfig;
         this.dataClient = dataClient;
     }
 
+    // only present when gcp.bigtable.writeBehind.enabled is set
+    @Autowired(required = false)
+    public void setWriteBehindBuffer(WriteBehindBuffer writeBehindBuffer) {
+        this.writeBehindBuffer = writeBehindBuffer;
+    }
+
+    // only present when gcp.bigtable.cache.type is memory or redis
+    @Autowired(required = false)
+    public void setLookupCache(LookupCache lookupCache) {
+        this.lookupCache = lookupCache;
+    }
+
+    // only present when gcp.bigtable.changeStream.enabled is set
+    @Autowired(required = false)
+    public void setChangeStreamCacheSynchronizer(ChangeStreamCacheSynchronizer changeStreamCacheSynchronizer) {
+        this.changeStreamCacheSynchronizer = changeStreamCacheSynchronizer;
+    }
+
+    // only present when gcp.bigtable.snapshot.enabled is set
+    @Autowired(required = false)
+    public void setSnapshotStore(SnapshotStore snapshotStore) {
+        this.snapshotStore = snapshotStore;
+    }
+
+    // only present when gcp.bigtable.instanceGroup.enabled is set
+    @Autowired(required = false)
+    public void setInstanceGroupReader(InstanceGroupReader instanceGroupReader) {
+        this.instanceGroupReader = instanceGroupReader;
+    }
+
+    // only present when gcp.bigtable.export.enabled is set
+    @Autowired(required = false)
+    public void setTableExporter(TableExporter tableExporter) {
+        this.tableExporter = tableExporter;
+    }
+
+    // only present when gcp.bigtable.import.enabled is set
+    @Autowired(required = false)
+    public void setBulkImporter(BulkImporter bulkImporter) {
+        this.bulkImporter = bulkImporter;
+    }
+
+    // only present when gcp.bigtable.valueCompression.enabled is set
+    @Autowired(required = false)
+    public void setValueCompressor(ValueCompressor valueCompressor) {
+        this.valueCompressor = valueCompressor;
+    }
+
+    // only present when gcp.bigtable.hotKeys.enabled is set
+    @Autowired(required = false)
+    public void setHotKeyTracker(HotKeyTracker hotKeyTracker) {
+        this.hotKeyTracker = hotKeyTracker;
+    }
+
+    @Autowired
+    public void setTracer(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
     public void createTable(String instanceID, GCPBigtableTable gcpBigtableTable) throws Exception {
         logger.info("creating table: " + gcpBigtableTable.getTableName());
         bigTableDataAccessOperation.createTable(instanceID, gcpBigtableTable);
     }
 
     public String readCellDataById(String instanceID, String tableName, String id) {
+        return findCellDataById(instanceID, tableName, id).orElseThrow(KVLookUpException::notFound);
+    }
+
+    public Optional<String> findCellDataById(String instanceID, String tableName, String id) {
+        return Spans.inSpan(tracer, "KVLookUpService.findCellDataById", instanceID, tableName,
+                () -> Stages.inStage(Stage.SERVICE, "findCellDataById", instanceID, tableName, () -> lookUpCellData(instanceID, tableName, id)));
+    }
+
+    // historical reads always go to bigtable, caches and snapshots only hold the latest version
+    public List<CellVersion> readCellVersions(String instanceID, String tableName, String id, Long startTimestampMicros,
+                                              Long endTimestampMicros, int maxVersions) {
+        rejectInstanceGroup(instanceID);
+        return Spans.inSpan(tracer, "KVLookUpService.readCellVersions", instanceID, tableName,
+                () -> Stages.inStage(Stage.SERVICE, "readCellVersions", instanceID, tableName,
+                        () -> bigTableDataAccessOperation.readCellVersions(instanceID, tableName, id, startTimestampMicros, endTimestampMicros, maxVersions)));
+    }
+
+    private Optional<String> lookUpCellData(String instanceOrGroupID, String tableName, String id) {
         logger.info("Reading specific cells by tableName and id");
-        String cellDataById = bigTableDataAccessOperation.readCellDataById(instanceID, tableName, id);
-        logger.info("cellData {} Retrieved for a given tableName {} and rowId {} ", kv("cellData", cellDataById), kv("tableName", tableName), kv("rowId", id));
-        return cellDataById;
+        // a group is served from the replica, snapshot and caches of its first instance, only the bigtable read is hedged
+        boolean groupRead = Objects.nonNull(instanceGroupReader) && instanceGroupReader.isGroup(instanceOrGroupID);
+        String instanceID = groupRead ? instanceGroupReader.getPrimaryInstance(instanceOrGroupID) : instanceOrGroupID;
+        Optional<String> cellData = lookUpCellData(instanceOrGroupID, groupRead, instanceID, tableName, id);
+        // counted once the lookup went through, a table that does not exist fails above and never takes a tracked slot
+        if (Objects.nonNull(hotKeyTracker)) {
+            hotKeyTracker.recordRead(instanceID, tableName, id);
+        }
+        return cellData;
     }
 
-    public void deleteTable(String instanceID, List<String> tableList) {
-        for (String table : tableList) {
-            bigTableDataAccessOperation.deleteTable(instanceID, table);
+    private Optional<String> lookUpCellData(String instanceOrGroupID, boolean groupRead, String instanceID, String tableName, String id) {
+        Span span = Span.current();
+        if (Objects.nonNull(changeStreamCacheSynchronizer) && changeStreamCacheSynchronizer.isReplicated(instanceID, tableName)) {
+            span.setAttribute(Spans.SOURCE, "replica");
+            return Optional.ofNullable(changeStreamCacheSynchronizer.readReplica(instanceID, tableName, id));
+        }
+        if (Objects.nonNull(snapshotStore) && snapshotStore.hasSnapshot(instanceID, tableName)) {
+            span.setAttribute(Spans.SOURCE, "snapshot");
+            return Optional.ofNullable(snapshotStore.read(instanceID, tableName, id));
+        }
+        if (Objects.nonNull(hotKeyTracker)) {
+            String hotCellData = hotKeyTracker.getCached(instanceID, tableName, id);
+            if (Objects.nonNull(hotCellData)) {
+                span.setAttribute(Spans.SOURCE, "hotKeyCache");
+                return Optional.of(hotCellData);
+            }
+        }
+        String cacheKey = LookupCache.key(instanceID, tableName, id);
+        if (Objects.nonNull(lookupCache)) {
+            String cachedCellData = lookupCache.get(cacheKey);
+            if (Objects.nonNull(cachedCellData)) {
+                logger.info("cellData Retrieved from cache for a given tableName {} and rowId {} ", kv("tableName", tableName), kv("rowId", id));
+                span.setAttribute(Spans.SOURCE, "cache");
+                cacheIfHot(instanceID, tableName, id, cachedCellData);
+                return Optional.of(cachedCellData);
+            }
+        }
+        Optional<String> cellDataById;
+        if (groupRead) {
+            span.setAttribute(Spans.SOURCE, "instanceGroup");
+            cellDataById = instanceGroupReader.read(instanceOrGroupID, tableName, id);
+        } else {
+            span.setAttribute(Spans.SOURCE, "bigtable");
+            cellDataById = bigTableDataAccessOperation.findCellDataById(instanceID, tableName, id);
         }
+        if (cellDataById.isPresent() && Objects.nonNull(lookupCache)) {
+            lookupCache.put(cacheKey, cellDataById.get());
+        }
+        cellDataById.ifPresent(cellData -> cacheIfHot(instanceID, tableName, id, cellData));
+        logger.info("cellData {} Retrieved for a given tableName {} and rowId {} ", kv("cellData", cellDataById.orElse(null)), kv("tableName", tableName), kv("rowId", id));
+        return cellDataById;
+    }
+
+    public List<TableOperationResult> createTables(String instanceID, List<GCPBigtableTable> gcpBigtableTables) {
+        return bigTableDataAccessOperation.createTables(instanceID, gcpBigtableTables);
+    }
+
+    public List<TableOperationResult> deleteTable(String instanceID, List<String> tableList) {
+        return bigTableDataAccessOperation.deleteTables(instanceID, tableList);
     }
 
     public void insertDataToTable(String instanceID, BigtableTableData bigtableTableData) {
-        bigTableDataAccessOperation.writeToTable(instanceID, bigtableTableData);
+        insertDataToTable(instanceID, RowPayload.of(bigtableTableData));
+    }
+
+    public void insertDataToTable(String instanceID, RowPayload row) {
+        rejectInstanceGroup(instanceID);
+        Spans.runInSpan(tracer, "KVLookUpService.insertDataToTable", instanceID, row.getTableName(),
+                () -> Stages.runInStage(Stage.SERVICE, "insertDataToTable", instanceID, row.getTableName(), () -> {
+                    bigTableDataAccessOperation.writeToTable(instanceID, row);
+                    recordWrite(instanceID, row.getTableName(), row.getRowKeyId());
+                    invalidateCache(instanceID, row.getTableName(), List.of(row.getRowKeyId()));
+                }));
+    }
+
+    // the write behind log stores rows as BigtableTableData json
+    public void insertDataToTableAsync(String instanceID, RowPayload row) {
+        insertDataToTableAsync(instanceID, row.toTableData());
+    }
+
+    public void insertDataToTableAsync(String instanceID, BigtableTableData bigtableTableData) {
+        rejectInstanceGroup(instanceID);
+        if (Objects.isNull(writeBehindBuffer)) {
+            throw new KVLookUpException("Write behind mode is not enabled", HttpStatus.BAD_REQUEST);
+        }
+        writeBehindBuffer.enqueue(instanceID, bigtableTableData);
+        recordWrite(instanceID, bigtableTableData.getTableName(), bigtableTableData.getRowKeyId());
+        invalidateCache(instanceID, bigtableTableData.getTableName(), List.of(bigtableTableData.getRowKeyId()));
+    }
+
+    public void deleteDataFromTable(String instanceID, BigtableDeleteData deleteData) {
+        rejectInstanceGroup(instanceID);
+        bigTableDataAccessOperation.deleteFromTable(instanceID, deleteData);
+        invalidateCache(instanceID, deleteData.getTableName(), deleteData.getRowKeyIds());
+    }
+
+    // groups only serve readCellData, reads and writes that bypass the hedged lookup have to name a single instance
+    private void rejectInstanceGroup(String instanceID) {
+        if (Objects.nonNull(instanceGroupReader) && instanceGroupReader.isGroup(instanceID)) {
+            throw new KVLookUpException("Instance group " + instanceID + " can only be used with readCellData", HttpStatus.BAD_REQUEST, false);
+        }
+    }
+
+    private void recordWrite(String instanceID, String tableName, String rowId) {
+        if (Objects.nonNull(hotKeyTracker)) {
+            hotKeyTracker.recordWrite(instanceID, tableName, rowId);
+        }
+    }
+
+    private void cacheIfHot(String instanceID, String tableName, String rowId, String cellData) {
+        if (Objects.nonNull(hotKeyTracker)) {
+            hotKeyTracker.cacheIfHot(instanceID, tableName, rowId, cellData);
+        }
+    }
+
+    private void invalidateCache(String instanceID, String tableName, List<String> rowIds) {
+        if (Objects.nonNull(hotKeyTracker)) {
+            hotKeyTracker.invalidate(instanceID, tableName, rowIds);
+        }
+        if (Objects.isNull(lookupCache)) {
+            return;
+        }
+        List<String> cacheKeys = new ArrayList<>(rowIds.size());
+        for (String rowId : rowIds) {
+            cacheKeys.add(LookupCache.key(instanceID, tableName, rowId));
+        }
+        lookupCache.invalidate(cacheKeys);
+    }
+
+    public void updateColumnFamilyGCRule(String instanceID, GCPBigtableTable gcpBigtableTable) {
+        logger.info("updating GC policy of table: " + gcpBigtableTable.getTableName());
+        bigTableDataAccessOperation.updateColumnFamilyGCRule(instanceID, gcpBigtableTable);
     }
 
     public void createInstance(String instanceId, String clusterName) throws IOException {
@@ -74,4 +318,54 @@ public class KVLookUpService {
     public long countRecords(String instanceID, String tableName) throws IOException, ExecutionException, InterruptedException {
         return bigTableDataAccessOperation.countRecords(instanceID, tableName);
     }
+
+    public Map<String, String> findByIndex(String instanceID, String tableName, String column, String value, int limit) {
+        rejectInstanceGroup(instanceID);
+        return Spans.inSpan(tracer, "KVLookUpService.findByIndex", instanceID, tableName,
+                () -> Stages.inStage(Stage.SERVICE, "findByIndex", instanceID, tableName,
+                        () -> bigTableDataAccessOperation.findByIndex(instanceID, tableName, column, value, limit)));
+    }
+
+    public ExportJob exportTable(String instanceID, String tableName) throws IOException {
+        rejectInstanceGroup(instanceID);
+        if (Objects.isNull(tableExporter)) {
+            throw new KVLookUpException("Table export is not enabled", HttpStatus.BAD_REQUEST);
+        }
+        return tableExporter.export(instanceID, tableName);
+    }
+
+    public Optional<ExportJob> getExportJob(String jobId) {
+        if (Objects.isNull(tableExporter)) {
+            throw new KVLookUpException("Table export is not enabled", HttpStatus.BAD_REQUEST);
+        }
+        return tableExporter.getJob(jobId);
+    }
+
+    public ImportJob importData(String instanceID, ImportRequest importRequest) throws IOException {
+        rejectInstanceGroup(instanceID);
+        return requireBulkImporter().start(instanceID, importRequest);
+    }
+
+    public ImportJob resumeImport(String instanceID, String jobId) throws IOException {
+        rejectInstanceGroup(instanceID);
+        return requireBulkImporter().resume(instanceID, jobId);
+    }
+
+    public Optional<ImportJob> getImportJob(String jobId) {
+        return requireBulkImporter().getJob(jobId);
+    }
+
+    public long trainCompressionDictionary(String instanceID, String tableName, String columnFamily) throws IOException {
+        if (Objects.isNull(valueCompressor)) {
+            throw new KVLookUpException("Value compression is not enabled", HttpStatus.BAD_REQUEST);
+        }
+        return valueCompressor.trainDictionary(instanceID, tableName, columnFamily);
+    }
+
+    private BulkImporter requireBulkImporter() {
+        if (Objects.isNull(bulkImporter)) {
+            throw new KVLookUpException("Bulk import is not enabled", HttpStatus.BAD_REQUEST);
+        }
+        return bulkImporter;
+    }
 }
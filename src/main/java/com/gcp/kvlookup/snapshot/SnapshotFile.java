@@ -0,0 +1,176 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.gcp.kvlookup.snapshot;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/*
+    Read only view of a snapshot written by SnapshotWriter. Lookups binary search the mapped index and compare keys in
+    place, the only allocation on a hit is the returned String.
+*/
+final class SnapshotFile {
+
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_MASK = SnapshotWriter.SEGMENT_SIZE - 1;
+    private static final ThreadLocal<byte[]> KEY_SCRATCH = ThreadLocal.withInitial(() -> new byte[256]);
+    private static final ThreadLocal<byte[]> VALUE_SCRATCH = ThreadLocal.withInitial(() -> new byte[4096]);
+
+    private final Path directory;
+    private final MappedByteBuffer[] dataSegments;
+    private final MappedByteBuffer[] indexSegments;
+    private final long rowCount;
+    private final long sizeInBytes;
+    private final long createdAtMillis;
+
+    private SnapshotFile(Path directory, MappedByteBuffer[] dataSegments, MappedByteBuffer[] indexSegments, long rowCount, long sizeInBytes) {
+        this.directory = directory;
+        this.dataSegments = dataSegments;
+        this.indexSegments = indexSegments;
+        this.rowCount = rowCount;
+        this.sizeInBytes = sizeInBytes;
+        this.createdAtMillis = Long.parseLong(directory.getFileName().toString());
+    }
+
+    static boolean isComplete(Path directory) {
+        return Files.exists(directory.resolve(SnapshotWriter.META_FILE));
+    }
+
+    static SnapshotFile open(Path directory) throws IOException {
+        long rowCount;
+        try (DataInputStream meta = new DataInputStream(Files.newInputStream(directory.resolve(SnapshotWriter.META_FILE)))) {
+            rowCount = meta.readLong();
+        }
+        Path dataFile = directory.resolve(SnapshotWriter.DATA_FILE);
+        Path indexFile = directory.resolve(SnapshotWriter.INDEX_FILE);
+        return new SnapshotFile(directory, map(dataFile), map(indexFile), rowCount, Files.size(dataFile) + Files.size(indexFile));
+    }
+
+    private static MappedByteBuffer[] map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int segmentCount = (int) ((size + SnapshotWriter.SEGMENT_SIZE - 1) / SnapshotWriter.SEGMENT_SIZE);
+            MappedByteBuffer[] segments = new MappedByteBuffer[segmentCount];
+            for (int segment = 0; segment < segmentCount; segment++) {
+                long start = (long) segment << SEGMENT_SHIFT;
+                segments[segment] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SnapshotWriter.SEGMENT_SIZE, size - start));
+            }
+            return segments;
+        }
+    }
+
+    String get(String rowKey) {
+        byte[] key = KEY_SCRATCH.get();
+        int keyLength = encodeUtf8(rowKey, key);
+        if (keyLength < 0) {
+            key = rowKey.getBytes(StandardCharsets.UTF_8);
+            keyLength = key.length;
+        }
+        long low = 0;
+        long high = rowCount - 1;
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            long indexPosition = middle * Long.BYTES;
+            long offset = indexSegments[(int) (indexPosition >>> SEGMENT_SHIFT)].getLong((int) (indexPosition & SEGMENT_MASK));
+            MappedByteBuffer segment = dataSegments[(int) (offset >>> SEGMENT_SHIFT)];
+            int position = (int) (offset & SEGMENT_MASK);
+            int recordKeyLength = segment.getShort(position) & 0xFFFF;
+            int comparison = compare(segment, position + SnapshotWriter.RECORD_HEADER_SIZE, recordKeyLength, key, keyLength);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                int valueLength = segment.getInt(position + Short.BYTES);
+                return decodeUtf8(segment, position + SnapshotWriter.RECORD_HEADER_SIZE + recordKeyLength, valueLength);
+            }
+        }
+        return null;
+    }
+
+    private static int compare(MappedByteBuffer segment, int position, int length, byte[] key, int keyLength) {
+        int common = Math.min(length, keyLength);
+        for (int i = 0; i < common; i++) {
+            int difference = (segment.get(position + i) & 0xFF) - (key[i] & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - keyLength;
+    }
+
+    // encodes ascii keys into the scratch buffer, returns -1 when the key needs the full utf-8 encoder
+    private static int encodeUtf8(String value, byte[] scratch) {
+        int length = value.length();
+        if (length > scratch.length) {
+            return -1;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                return -1;
+            }
+            scratch[i] = (byte) c;
+        }
+        return length;
+    }
+
+    private static String decodeUtf8(MappedByteBuffer segment, int position, int length) {
+        byte[] scratch = VALUE_SCRATCH.get();
+        if (scratch.length < length) {
+            scratch = new byte[length];
+            VALUE_SCRATCH.set(scratch);
+        }
+        for (int i = 0; i < length; i++) {
+            scratch[i] = segment.get(position + i);
+        }
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    long getRowCount() {
+        return rowCount;
+    }
+
+    long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    long getCreatedAtMillis() {
+        return createdAtMillis;
+    }
+
+    // the mapping stays valid for in flight lookups after the files are removed
+    void delete() throws IOException {
+        delete(directory);
+    }
+
+    static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
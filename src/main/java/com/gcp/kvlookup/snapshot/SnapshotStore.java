@@ -0,0 +1,267 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.gcp.kvlookup.snapshot;
+
+import com.gcp.kvlookup.compression.ValueCompressor;
+import com.gcp.kvlookup.dataaccess.RowKeyEncoder;
+import com.gcp.kvlookup.datasource.connection.BigtableClientRouter;
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.models.KeyOffset;
+import com.google.cloud.bigtable.data.v2.models.Query;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.google.cloud.bigtable.data.v2.models.Filters.FILTERS;
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/*
+    Serves small static tables from local memory-mapped snapshots. Each configured table (instanceId/tableName) is
+    exported with a parallel scan split by sampleRowKeys and the new snapshot is swapped in atomically once complete.
+*/
+@Component
+@ConditionalOnProperty(name = "gcp.bigtable.snapshot.enabled", havingValue = "true")
+public class SnapshotStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotStore.class);
+
+    private BigtableClientRouter clientRouter;
+    private final MeterRegistry meterRegistry;
+    private final List<String> tables;
+    private final Path directory;
+    private final long refreshIntervalInMinutes;
+    private final String columnFamily;
+    private final String columnQualifierName;
+    private final Map<String, AtomicReference<SnapshotFile>> snapshots = new ConcurrentHashMap<>();
+    private final ExecutorService exportExecutor;
+    private final ScheduledExecutorService refreshScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "snapshot-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private RowKeyEncoder rowKeyEncoder = new RowKeyEncoder(List.of());
+    private ValueCompressor valueCompressor = ValueCompressor.PASS_THROUGH;
+
+    public SnapshotStore(Map<String, BigtableDataClient> dataClient, MeterRegistry meterRegistry,
+                         @Value("#{'${gcp.bigtable.snapshot.tables:}'.split(',')}") List<String> tables,
+                         @Value("${gcp.bigtable.snapshot.directory}") String directory,
+                         @Value("${gcp.bigtable.snapshot.refreshIntervalInMinutes}") long refreshIntervalInMinutes,
+                         @Value("${gcp.bigtable.snapshot.parallelism}") int parallelism,
+                         @Value("${gcp.bigtable.column.family}") String columnFamily,
+                         @Value("${gcp.bigtable.column.QualifierName}") String columnQualifierName) {
+        this.clientRouter = new BigtableClientRouter(dataClient);
+        this.meterRegistry = meterRegistry;
+        this.tables = tables.stream()
+                .map(String::trim)
+                .filter(table -> StringUtils.hasText(table) && table.contains("/"))
+                .collect(Collectors.toList());
+        this.directory = Paths.get(directory);
+        this.refreshIntervalInMinutes = refreshIntervalInMinutes;
+        this.columnFamily = columnFamily;
+        this.columnQualifierName = columnQualifierName;
+        this.exportExecutor = Executors.newFixedThreadPool(parallelism);
+        for (String table : this.tables) {
+            snapshots.put(table, new AtomicReference<>());
+        }
+    }
+
+    @Autowired
+    public void setRowKeyEncoder(RowKeyEncoder rowKeyEncoder) {
+        this.rowKeyEncoder = rowKeyEncoder;
+    }
+
+    @Autowired
+    public void setClientRouter(BigtableClientRouter clientRouter) {
+        this.clientRouter = clientRouter;
+    }
+
+    // only present when gcp.bigtable.valueCompression.enabled is set
+    @Autowired(required = false)
+    public void setValueCompressor(ValueCompressor valueCompressor) {
+        this.valueCompressor = valueCompressor;
+    }
+
+    @PostConstruct
+    public void start() {
+        for (String table : tables) {
+            AtomicReference<SnapshotFile> snapshot = snapshots.get(table);
+            Tags tags = Tags.of("table", table);
+            Gauge.builder("kvlookup.snapshot.age.seconds", snapshot, ref -> Objects.isNull(ref.get()) ? -1
+                    : TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - ref.get().getCreatedAtMillis())).tags(tags).register(meterRegistry);
+            Gauge.builder("kvlookup.snapshot.size.bytes", snapshot, ref -> Objects.isNull(ref.get()) ? 0 : ref.get().getSizeInBytes()).tags(tags).register(meterRegistry);
+            Gauge.builder("kvlookup.snapshot.rows", snapshot, ref -> Objects.isNull(ref.get()) ? 0 : ref.get().getRowCount()).tags(tags).register(meterRegistry);
+            openLatestOnDisk(table, snapshot);
+        }
+        long refreshIntervalMillis = TimeUnit.MINUTES.toMillis(refreshIntervalInMinutes);
+        refreshScheduler.scheduleWithFixedDelay(this::refreshAll, initialRefreshDelayMillis(), refreshIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // a restart within the refresh interval keeps serving the snapshots on disk instead of exporting every table again
+    long initialRefreshDelayMillis() {
+        long refreshIntervalMillis = TimeUnit.MINUTES.toMillis(refreshIntervalInMinutes);
+        long delayMillis = refreshIntervalMillis;
+        for (AtomicReference<SnapshotFile> snapshot : snapshots.values()) {
+            if (Objects.isNull(snapshot.get())) {
+                return 0;
+            }
+            long ageMillis = System.currentTimeMillis() - snapshot.get().getCreatedAtMillis();
+            delayMillis = Math.min(delayMillis, Math.max(0, refreshIntervalMillis - ageMillis));
+        }
+        return delayMillis;
+    }
+
+    public boolean hasSnapshot(String instanceID, String tableName) {
+        AtomicReference<SnapshotFile> snapshot = snapshots.get(instanceID + "/" + tableName);
+        return Objects.nonNull(snapshot) && Objects.nonNull(snapshot.get());
+    }
+
+    public String read(String instanceID, String tableName, String rowId) {
+        return snapshots.get(instanceID + "/" + tableName).get().get(rowKeyEncoder.encode(tableName, rowId));
+    }
+
+    private void refreshAll() {
+        for (String table : tables) {
+            String[] instanceAndTable = table.split("/", 2);
+            try {
+                refresh(instanceAndTable[0], instanceAndTable[1]);
+            } catch (Exception e) {
+                logger.error("Error occurred when refreshing snapshot of table {} " + e.getMessage(), kv("table", table));
+            }
+        }
+    }
+
+    public void refresh(String instanceID, String tableName) throws IOException, InterruptedException, ExecutionException {
+        String table = instanceID + "/" + tableName;
+        long startMillis = System.currentTimeMillis();
+        Path snapshotDirectory = directory.resolve(instanceID).resolve(tableName).resolve(String.valueOf(startMillis));
+        Files.createDirectories(snapshotDirectory);
+        logger.info("Exporting snapshot of table {}", kv("table", table));
+        long rowCount;
+        try {
+            rowCount = export(instanceID, tableName, snapshotDirectory);
+            swap(table, SnapshotFile.open(snapshotDirectory));
+        } catch (IOException | InterruptedException | ExecutionException | RuntimeException e) {
+            SnapshotFile.delete(snapshotDirectory);
+            throw e;
+        }
+        logger.info("Snapshot of table {} refreshed with {} rows in {} ms", kv("table", table), kv("rowCount", rowCount),
+                kv("durationMillis", System.currentTimeMillis() - startMillis));
+    }
+
+    private long export(String instanceID, String tableName, Path snapshotDirectory) throws IOException, InterruptedException, ExecutionException {
+        BigtableDataClient client = clientRouter.get(instanceID, BigtableClientRouter.Operation.SCAN);
+        List<KeyOffset> keyOffsets = client.sampleRowKeys(tableName);
+        Query query = Query.create(tableName).filter(FILTERS.chain()
+                .filter(FILTERS.family().exactMatch(columnFamily))
+                .filter(FILTERS.qualifier().exactMatch(columnQualifierName))
+                .filter(FILTERS.limit().cellsPerColumn(1)));
+        List<Query> shards = query.shard(keyOffsets);
+
+        List<Path> shardFiles = new ArrayList<>();
+        List<Future<Long>> shardRowCounts = new ArrayList<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            Path shardFile = snapshotDirectory.resolve("shard-" + shard);
+            Query shardQuery = shards.get(shard);
+            shardFiles.add(shardFile);
+            shardRowCounts.add(exportExecutor.submit(() ->
+                    SnapshotWriter.writeShard(shardFile, client.readRows(shardQuery), instanceID, tableName, columnFamily,
+                            columnQualifierName, valueCompressor)));
+        }
+        List<Long> rowCounts = new ArrayList<>();
+        for (Future<Long> rowCount : shardRowCounts) {
+            rowCounts.add(rowCount.get());
+        }
+        long rowCount = SnapshotWriter.merge(shardFiles, rowCounts, snapshotDirectory);
+        for (Path shardFile : shardFiles) {
+            Files.deleteIfExists(shardFile);
+        }
+        return rowCount;
+    }
+
+    private void swap(String table, SnapshotFile snapshotFile) throws IOException {
+        SnapshotFile previous = snapshots.get(table).getAndSet(snapshotFile);
+        if (Objects.nonNull(previous)) {
+            previous.delete();
+        }
+    }
+
+    // serves the last complete snapshot left on disk until the first refresh finishes, older and unfinished ones are removed
+    private void openLatestOnDisk(String table, AtomicReference<SnapshotFile> snapshot) {
+        String[] instanceAndTable = table.split("/", 2);
+        Path tableDirectory = directory.resolve(instanceAndTable[0]).resolve(instanceAndTable[1]);
+        if (!Files.isDirectory(tableDirectory)) {
+            return;
+        }
+        try (Stream<Path> snapshotDirectories = Files.list(tableDirectory)) {
+            List<Path> candidates = snapshotDirectories
+                    .filter(path -> Files.isDirectory(path) && path.getFileName().toString().matches("\\d+"))
+                    .collect(Collectors.toList());
+            Optional<Path> latest = candidates.stream()
+                    .filter(SnapshotFile::isComplete)
+                    .max(Comparator.comparing(path -> Long.parseLong(path.getFileName().toString())));
+            if (latest.isPresent()) {
+                snapshot.set(SnapshotFile.open(latest.get()));
+                logger.info("Opened snapshot {} of table {}", kv("snapshot", latest.get()), kv("table", table));
+            }
+            for (Path candidate : candidates) {
+                if (!candidate.equals(latest.orElse(null))) {
+                    SnapshotFile.delete(candidate);
+                    logger.info("Deleted stale snapshot {} of table {}", kv("snapshot", candidate), kv("table", table));
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Error occurred when opening snapshot of table {} " + e.getMessage(), kv("table", table));
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        refreshScheduler.shutdownNow();
+        exportExecutor.shutdownNow();
+    }
+}
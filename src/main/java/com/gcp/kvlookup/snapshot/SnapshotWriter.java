@@ -0,0 +1,117 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package com.gcp.kvlookup.snapshot;
+
+import com.gcp.kvlookup.compression.ValueCompressor;
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.cloud.bigtable.data.v2.models.RowCell;
+import com.google.protobuf.ByteString;
+import org.springframework.util.CollectionUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+    Writes snapshot files. Every shard is streamed to its own file in key order, the shards are then concatenated into
+    data.bin with an index.bin of record offsets. Records never cross a segment boundary so the reader can map the data
+    file in fixed size segments. The meta file is written last and marks the snapshot as complete.
+*/
+final class SnapshotWriter {
+
+    static final int SEGMENT_SIZE = 1 << 30;
+    static final int RECORD_HEADER_SIZE = Short.BYTES + Integer.BYTES;
+    static final String DATA_FILE = "data.bin";
+    static final String INDEX_FILE = "index.bin";
+    static final String META_FILE = "snapshot.meta";
+
+    private SnapshotWriter() {
+    }
+
+    // values are stored decompressed so lookups read them straight from the mapped file
+    static long writeShard(Path shardFile, Iterable<Row> rows, String instanceID, String tableName, String columnFamily,
+                           String columnQualifierName, ValueCompressor valueCompressor) throws IOException {
+        long rowCount = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(shardFile)))) {
+            for (Row row : rows) {
+                List<RowCell> cells = row.getCells(columnFamily, columnQualifierName);
+                if (CollectionUtils.isEmpty(cells)) {
+                    continue;
+                }
+                ByteString key = row.getKey();
+                ByteString value = valueCompressor.decode(instanceID, tableName, cells.get(0).getValue());
+                out.writeShort(key.size());
+                out.writeInt(value.size());
+                key.writeTo(out);
+                value.writeTo(out);
+                rowCount++;
+            }
+        }
+        return rowCount;
+    }
+
+    static long merge(List<Path> shardFiles, List<Long> shardRowCounts, Path snapshotDirectory) throws IOException {
+        long position = 0;
+        long rowCount = 0;
+        byte[] buffer = new byte[8192];
+        byte[] previousKey = new byte[0];
+        try (DataOutputStream data = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(snapshotDirectory.resolve(DATA_FILE))));
+             DataOutputStream index = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(snapshotDirectory.resolve(INDEX_FILE))))) {
+            for (int shard = 0; shard < shardFiles.size(); shard++) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(shardFiles.get(shard))))) {
+                    for (long row = 0; row < shardRowCounts.get(shard); row++) {
+                        int keyLength = in.readUnsignedShort();
+                        int valueLength = in.readInt();
+                        int recordSize = RECORD_HEADER_SIZE + keyLength + valueLength;
+                        if (recordSize > SEGMENT_SIZE) {
+                            throw new IOException("Cell value is too large for a snapshot");
+                        }
+                        long segmentRemaining = SEGMENT_SIZE - (position % SEGMENT_SIZE);
+                        if (recordSize > segmentRemaining) {
+                            data.write(new byte[(int) segmentRemaining]);
+                            position += segmentRemaining;
+                        }
+                        if (buffer.length < recordSize) {
+                            buffer = new byte[recordSize];
+                        }
+                        in.readFully(buffer, 0, keyLength + valueLength);
+                        if (Arrays.compareUnsigned(previousKey, 0, previousKey.length, buffer, 0, keyLength) >= 0 && rowCount > 0) {
+                            throw new IOException("Snapshot shards are not in row key order");
+                        }
+                        previousKey = Arrays.copyOf(buffer, keyLength);
+                        index.writeLong(position);
+                        data.writeShort(keyLength);
+                        data.writeInt(valueLength);
+                        data.write(buffer, 0, keyLength + valueLength);
+                        position += recordSize;
+                        rowCount++;
+                    }
+                }
+            }
+        }
+        try (DataOutputStream meta = new DataOutputStream(Files.newOutputStream(snapshotDirectory.resolve(META_FILE)))) {
+            meta.writeLong(rowCount);
+        }
+        return rowCount;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+
+package com.gcp.kvlookup.startup;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/*
+    Reports how long the process took to become useful, from JVM start to ready and to the first served API request.
+    With warmUp set the controllers and everything they depend on are created before the readiness state flips, so
+    under lazy initialization the first request does not pay for creating the bigtable clients. exitAfterReady stops
+    the process once it is ready, which is what the class-data-sharing training run needs.
+*/
+@Component
+public class StartupReporter extends OncePerRequestFilter implements ApplicationListener<ApplicationReadyEvent> {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupReporter.class);
+
+    private final boolean warmUp;
+    private final boolean exitAfterReady;
+    private final long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+    private final AtomicBoolean firstRequestServed = new AtomicBoolean();
+    private volatile long readyMillis = -1;
+    private volatile long firstRequestMillis = -1;
+
+    public StartupReporter(MeterRegistry meterRegistry,
+                           @Value("${app.startup.warmUp:true}") boolean warmUp,
+                           @Value("${app.startup.exitAfterReady:false}") boolean exitAfterReady) {
+        this.warmUp = warmUp;
+        this.exitAfterReady = exitAfterReady;
+        Gauge.builder("kvlookup.startup.ready.seconds", this, reporter -> reporter.readyMillis / 1000.0).register(meterRegistry);
+        Gauge.builder("kvlookup.startup.first.request.seconds", this, reporter -> reporter.firstRequestMillis / 1000.0).register(meterRegistry);
+    }
+
+    // runs before the readiness state changes to accepting traffic
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        ConfigurableApplicationContext context = event.getApplicationContext();
+        if (warmUp) {
+            long startMillis = System.currentTimeMillis();
+            int controllers = context.getBeansWithAnnotation(RestController.class).size();
+            logger.info("Created {} controllers and their dependencies in {}", kv("controllerCount", controllers),
+                    kv("warmUpMillis", System.currentTimeMillis() - startMillis));
+        }
+        readyMillis = System.currentTimeMillis() - jvmStartMillis;
+        logger.info("Ready to serve requests {} after JVM start", kv("readyMillis", readyMillis));
+        if (exitAfterReady) {
+            System.exit(SpringApplication.exit(context));
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (!firstRequestServed.get() && firstRequestServed.compareAndSet(false, true)) {
+                firstRequestMillis = System.currentTimeMillis() - jvmStartMillis;
+                logger.info("Served first request {} after JVM start {}", kv("firstRequestMillis", firstRequestMillis), kv("path", request.getRequestURI()));
+            }
+        }
+    }
+
+    // health probes arrive before any real traffic and would hide the cost of the first api call
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().startsWith("/actuator");
+    }
+
+    public long getReadyMillis() {
+        return readyMillis;
+    }
+
+    public long getFirstRequestMillis() {
+        return firstRequestMillis;
+    }
+}
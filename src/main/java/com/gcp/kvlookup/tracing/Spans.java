@@ -0,0 +1,66 @@
+/*
+    Copyright 2024 CVS Health and/or one of its affiliates
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+
+package com.gcp.kvlookup.tracing;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+
+import java.util.function.Supplier;
+
+public final class Spans {
+
+    public static final String INSTRUMENTATION_NAME = "gcp-kv-crud-rest-api";
+
+    public static final AttributeKey<String> INSTANCE = AttributeKey.stringKey("bigtable.instance");
+    public static final AttributeKey<String> TABLE = AttributeKey.stringKey("bigtable.table");
+    public static final AttributeKey<String> SOURCE = AttributeKey.stringKey("kvlookup.source");
+
+    // used until spring injects the configured tracer, and by classes created directly in tests
+    public static final Tracer NOOP_TRACER = OpenTelemetry.noop().getTracer(INSTRUMENTATION_NAME);
+
+    private Spans() {
+    }
+
+    // runs work in a child span of the current one, tagged with the instance and table it touches
+    public static <T> T inSpan(Tracer tracer, String name, String instanceID, String tableName, Supplier<T> work) {
+        Span span = tracer.spanBuilder(name)
+                .setAttribute(INSTANCE, instanceID)
+                .setAttribute(TABLE, String.valueOf(tableName))
+                .startSpan();
+        try (Scope scope = span.makeCurrent()) {
+            return work.get();
+        } catch (RuntimeException e) {
+            span.recordException(e);
+            span.setStatus(StatusCode.ERROR);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    public static void runInSpan(Tracer tracer, String name, String instanceID, String tableName, Runnable work) {
+        inSpan(tracer, name, instanceID, tableName, () -> {
+            work.run();
+            return null;
+        });
+    }
+}
@@ -1,32 +1,42 @@
 package com.gcp.kvlookup;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.gcp.kvlookup.controller.KVLookUpController;
 import com.gcp.kvlookup.dataaccess.BigTableDataAccessOperation;
+import com.gcp.kvlookup.exception.GlobalExceptionHandler;
+import com.gcp.kvlookup.model.BigtableDeleteData;
 import com.gcp.kvlookup.model.BigtableTableData;
 import com.gcp.kvlookup.model.ColumnData;
 import com.gcp.kvlookup.model.GCPBigtableTable;
 import com.gcp.kvlookup.model.TableConfig;
+import com.gcp.kvlookup.scheduling.RequestLanes;
 import com.gcp.kvlookup.service.KVLookUpService;
 import com.google.cloud.bigtable.admin.v2.BigtableTableAdminClient;
 import com.google.cloud.bigtable.admin.v2.BigtableTableAdminSettings;
 import com.google.cloud.bigtable.data.v2.BigtableDataClient;
 import com.google.cloud.bigtable.data.v2.BigtableDataSettings;
 import com.google.cloud.bigtable.emulator.v2.BigtableEmulatorRule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.*;
 import org.junit.runner.RunWith;
 import org.mockito.MockitoAnnotations;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 public class KVLookUpAPITest {
@@ -116,6 +126,11 @@ public class KVLookUpAPITest {
         mockMvc = MockMvcBuilders.standaloneSetup(kvLookUpController).build();
     }
 
+    // every endpoint answers with a CompletableFuture, the status is only set once the async result is dispatched
+    private static MvcResult performAsync(RequestBuilder requestBuilder) throws Exception {
+        return mockMvc.perform(requestBuilder).andExpect(request().asyncStarted()).andReturn();
+    }
+
 
     @Test
     public void createTable() throws Exception {
@@ -124,9 +139,9 @@ public class KVLookUpAPITest {
         bigtable.setColumnFamily("cf1");
 
 
-        mockMvc.perform(post("/v1/test/createTable")
+        mockMvc.perform(asyncDispatch(performAsync(post("/v1/test/createTable")
                         .header("Content-Type", "application/json")
-                        .content(asJsonString(bigtable)))
+                        .content(asJsonString(bigtable)))))
                 .andExpect(status().is2xxSuccessful());
     }
 
@@ -144,16 +159,25 @@ public class KVLookUpAPITest {
 
         bigtableTableData.setData(List.of(columnData));
 
-        mockMvc.perform(post("/v1/test/insertData")
+        mockMvc.perform(asyncDispatch(performAsync(post("/v1/test/insertData")
                         .header("Content-Type", "application/json")
-                        .content(asJsonString(bigtableTableData)))
+                        .content(asJsonString(bigtableTableData)))))
                 .andExpect(status().is2xxSuccessful());
     }
 
+    @Test
+    public void insertDataRejectsColumnWithoutValue() throws Exception {
+        MvcResult result = performAsync(post("/v1/test/insertData")
+                .header("Content-Type", "application/json")
+                .content("{\"tableName\":\"testTable\",\"rowKeyId\":\"2\",\"data\":[{\"columnFamily\":\"cf1\",\"columnName\":\"name\"}]}"));
+
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isBadRequest());
+    }
+
     @Test
     public void readCellData() throws Exception {
 
-        mockMvc.perform(get("/v1/test/readCellData?tableName=testTable&id=0").header("accept", "application/json"))
+        mockMvc.perform(asyncDispatch(performAsync(get("/v1/test/readCellData?tableName=testTable&id=0").header("accept", "application/json"))))
                 .andExpect(status().is2xxSuccessful());
     }
 
@@ -163,10 +187,80 @@ public class KVLookUpAPITest {
 
         TableConfig tableConfig = new TableConfig();
         tableConfig.setTableList(List.of("tableToDelete"));
-        mockMvc.perform(delete("/v1/test/deleteTable")
+        mockMvc.perform(asyncDispatch(performAsync(delete("/v1/test/deleteTable")
+                        .header("Content-Type", "application/json")
+                        .content(asJsonString(tableConfig)))))
+                .andExpect(status().is2xxSuccessful());
+    }
+
+    @Test
+    public void deleteData() throws Exception {
+
+        BigtableDeleteData deleteData = new BigtableDeleteData();
+        deleteData.setTableName("testTable");
+        deleteData.setRowKeyIds(List.of("2"));
+        mockMvc.perform(asyncDispatch(performAsync(delete("/v1/test/deleteData")
+                        .header("Content-Type", "application/json")
+                        .content(asJsonString(deleteData)))))
+                .andExpect(status().is2xxSuccessful());
+    }
+
+    @Test
+    public void updateGCPolicy() throws Exception {
+        GCPBigtableTable bigtable = new GCPBigtableTable();
+        bigtable.setTableName("testTable");
+        bigtable.setColumnFamily("cf1");
+        bigtable.setMaxVersions(1);
+
+        mockMvc.perform(asyncDispatch(performAsync(put("/v1/test/updateGCPolicy")
                         .header("Content-Type", "application/json")
-                        .content(asJsonString(tableConfig)))
+                        .content(asJsonString(bigtable)))))
                 .andExpect(status().is2xxSuccessful());
     }
 
+    @Test
+    public void createTables() throws Exception {
+        GCPBigtableTable bigtable = new GCPBigtableTable();
+        bigtable.setTableName("bulkTable");
+        bigtable.setColumnFamily("cf1");
+
+        mockMvc.perform(asyncDispatch(performAsync(post("/v1/test/createTables")
+                        .header("Content-Type", "application/json")
+                        .content(asJsonString(List.of(bigtable))))))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void fullLaneAnswers503() throws Exception {
+        RequestLanes requestLanes = new RequestLanes(new SimpleMeterRegistry(), 1, 1, 1, 1, 1, 1, 1, 1);
+        KVLookUpController laneController = new KVLookUpController(service, adminClientMap);
+        laneController.setRequestLanes(requestLanes);
+        MockMvc laneMockMvc = MockMvcBuilders.standaloneSetup(laneController).setControllerAdvice(new GlobalExceptionHandler()).build();
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // one online call running and one queued fill the lane
+            CompletableFuture<Boolean> running = requestLanes.submit(RequestLanes.Lane.ONLINE, () -> awaitQuietly(release));
+            CompletableFuture<Boolean> queued = requestLanes.submit(RequestLanes.Lane.ONLINE, () -> true);
+
+            MvcResult result = laneMockMvc.perform(get("/v1/test/readCellData?tableName=testTable&id=0"))
+                    .andExpect(request().asyncStarted()).andReturn();
+
+            laneMockMvc.perform(asyncDispatch(result)).andExpect(status().isServiceUnavailable());
+            release.countDown();
+            Assert.assertTrue(running.get());
+            Assert.assertTrue(queued.get());
+        } finally {
+            release.countDown();
+            requestLanes.stop();
+        }
+    }
+
+    private static boolean awaitQuietly(CountDownLatch latch) {
+        try {
+            return latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
 }
@@ -0,0 +1,110 @@
+package com.gcp.kvlookup.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gcp.kvlookup.model.BigtableTableData;
+import com.gcp.kvlookup.model.ColumnData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/*
+    CPU cost of gzipping and inflating insertData payloads of different shapes. The bytes on the wire for each shape
+    are printed once per trial, next to the uncompressed size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+
+    @Param({"1", "10", "50"})
+    public int columns;
+
+    @Param({"32", "1024"})
+    public int valueSize;
+
+    @Param({"1", "6"})
+    public int level;
+
+    private byte[] payload;
+    private byte[] compressed;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        List<ColumnData> data = new ArrayList<>();
+        for (int i = 0; i < columns; i++) {
+            ColumnData columnData = new ColumnData();
+            columnData.setColumnFamily("cf1");
+            columnData.setColumnName("column" + i);
+            // a small alphabet approximates the redundancy of typical ids, codes and json values
+            StringBuilder value = new StringBuilder(valueSize);
+            for (int j = 0; j < valueSize; j++) {
+                value.append((char) ('a' + random.nextInt(16)));
+            }
+            columnData.setColumnValue(value.toString());
+            data.add(columnData);
+        }
+        BigtableTableData bigtableTableData = new BigtableTableData();
+        bigtableTableData.setTableName("benchmarkTable");
+        bigtableTableData.setRowKeyId("member-0001234567");
+        bigtableTableData.setData(data);
+        payload = new ObjectMapper().writeValueAsBytes(bigtableTableData);
+        compressed = gzip(payload, level);
+        System.out.printf("%ncolumns=%d valueSize=%d level=%d: %d bytes uncompressed, %d bytes gzipped (%.1f%%)%n",
+                columns, valueSize, level, payload.length, compressed.length, 100.0 * compressed.length / payload.length);
+    }
+
+    @Benchmark
+    public byte[] compress() throws IOException {
+        return gzip(payload, level);
+    }
+
+    @Benchmark
+    public byte[] decompress() throws IOException {
+        try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return inputStream.readAllBytes();
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes, int level) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(bytes.length / 2 + 64);
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream) {
+            {
+                def.setLevel(level);
+            }
+        }) {
+            gzipOutputStream.write(bytes);
+        }
+        return outputStream.toByteArray();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CompressionBenchmark.class.getSimpleName()).build()).run();
+    }
+}
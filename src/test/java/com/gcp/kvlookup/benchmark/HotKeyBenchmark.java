@@ -0,0 +1,72 @@
+package com.gcp.kvlookup.benchmark;
+
+import com.gcp.kvlookup.hotkey.HotKeySketch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Cost the hot key sketch adds to every read and write, with several threads updating one table's sketch. Keys
+    are skewed so a few of them take most of the accesses, like the traffic that makes a tablet hot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class HotKeyBenchmark {
+
+    @Param({"1000", "1000000"})
+    public int keyCount;
+
+    private HotKeySketch sketch;
+    private String[] keys;
+
+    @Setup
+    public void setUp() {
+        sketch = new HotKeySketch(2048, 20);
+        Random random = new Random(42);
+        keys = new String[1 << 16];
+        for (int i = 0; i < keys.length; i++) {
+            // squaring a uniform draw puts most of the accesses on the low ids
+            double skewed = random.nextDouble();
+            keys[i] = Integer.toString((int) (skewed * skewed * keyCount));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+    }
+
+    @Benchmark
+    public String pickKey(Cursor cursor) {
+        return keys[cursor.next++ & (keys.length - 1)];
+    }
+
+    @Benchmark
+    public long addToSketch(Cursor cursor) {
+        return sketch.add(keys[cursor.next++ & (keys.length - 1)]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(HotKeyBenchmark.class.getSimpleName()).build()).run();
+    }
+}
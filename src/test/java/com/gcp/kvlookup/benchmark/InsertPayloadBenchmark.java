@@ -0,0 +1,101 @@
+package com.gcp.kvlookup.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gcp.kvlookup.controller.RowPayloadParser;
+import com.gcp.kvlookup.model.BigtableTableData;
+import com.gcp.kvlookup.model.ColumnData;
+import com.gcp.kvlookup.model.RowPayload;
+import com.google.cloud.bigtable.data.v2.models.RowMutation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Time and allocation of turning an insertData body into mutations: binding it into BigtableTableData and setting
+    each column from strings, as insertData used to, against the streaming RowPayloadParser. Run with the gc profiler,
+    gc.alloc.rate.norm is the bytes allocated per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InsertPayloadBenchmark {
+
+    @Param({"1", "50", "500"})
+    public int columns;
+
+    @Param({"32", "1024"})
+    public int valueSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final RowPayloadParser rowPayloadParser = new RowPayloadParser(10000, 10, 32);
+    private byte[] payload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        List<ColumnData> data = new ArrayList<>();
+        for (int i = 0; i < columns; i++) {
+            ColumnData columnData = new ColumnData();
+            columnData.setColumnFamily("cf1");
+            columnData.setColumnName("column" + i);
+            StringBuilder value = new StringBuilder(valueSize);
+            for (int j = 0; j < valueSize; j++) {
+                value.append((char) ('a' + random.nextInt(26)));
+            }
+            columnData.setColumnValue(value.toString());
+            data.add(columnData);
+        }
+        BigtableTableData bigtableTableData = new BigtableTableData();
+        bigtableTableData.setTableName("benchmarkTable");
+        bigtableTableData.setRowKeyId("member-0001234567");
+        bigtableTableData.setData(data);
+        payload = objectMapper.writeValueAsBytes(bigtableTableData);
+    }
+
+    @Benchmark
+    public void bindThenSetStrings(Blackhole blackhole) throws IOException {
+        BigtableTableData tableData = objectMapper.readValue(new ByteArrayInputStream(payload), BigtableTableData.class);
+        for (ColumnData columnData : tableData.getData()) {
+            blackhole.consume(RowMutation.create(tableData.getTableName(), tableData.getRowKeyId())
+                    .setCell(columnData.getColumnFamily(), columnData.getColumnName(), columnData.getColumnValue()));
+        }
+    }
+
+    @Benchmark
+    public RowMutation streamingParse() throws IOException {
+        RowPayload row = rowPayloadParser.parse(new ByteArrayInputStream(payload));
+        RowMutation rowMutation = RowMutation.create(row.getTableName(), row.getRowKeyId());
+        for (int cell = 0; cell < row.getCellCount(); cell++) {
+            rowMutation.setCell(row.getFamily(cell), row.getQualifier(cell), row.getValue(cell));
+        }
+        return rowMutation;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(InsertPayloadBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class).build()).run();
+    }
+}
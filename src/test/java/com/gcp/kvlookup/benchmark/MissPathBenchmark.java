@@ -0,0 +1,108 @@
+package com.gcp.kvlookup.benchmark;
+
+import ch.qos.logback.classic.Level;
+import com.gcp.kvlookup.controller.KVLookUpController;
+import com.gcp.kvlookup.dataaccess.BigTableDataAccessOperation;
+import com.gcp.kvlookup.exception.KVLookUpException;
+import com.gcp.kvlookup.service.KVLookUpService;
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.models.Filters;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+
+/*
+    Compares the ways a read miss can travel back to the controller on the real read path: service and data access with
+    their stages and spans, over a stubbed data client that finds no row, mapped to the 404 response the controller
+    sends. The exception variants turn the empty result into a KVLookUpException with and without a stack trace,
+    readCellDataEndpoint is the whole endpoint as it is served.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MissPathBenchmark {
+
+    private static final String INSTANCE_ID = "benchmark";
+    private static final String TABLE_NAME = "benchmarkTable";
+    private static final String ROW_ID = "member-0001234567";
+
+    private KVLookUpController controller;
+    private KVLookUpService service;
+
+    @Setup
+    public void setUp() {
+        // the read path logs every lookup, console output would be measured instead of the miss
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+        BigtableDataClient dataClient = Mockito.mock(BigtableDataClient.class, Mockito.withSettings().stubOnly());
+        Mockito.when(dataClient.readRow(anyString(), anyString(), any(Filters.Filter.class))).thenReturn(null);
+        Map<String, BigtableDataClient> dataClientMap = Map.of(INSTANCE_ID, dataClient);
+        BigTableDataAccessOperation dataAccess = new BigTableDataAccessOperation(Map.of(), dataClientMap, null);
+        dataAccess.setColumnFamily("cf1");
+        dataAccess.setColumnQualifierName("name");
+        service = new KVLookUpService(dataAccess, dataClientMap);
+        controller = new KVLookUpController(service, Map.of());
+    }
+
+    @Benchmark
+    public ResponseEntity<String> exceptionWithStackTrace() {
+        try {
+            return ResponseEntity.ok().contentType(MediaType.TEXT_PLAIN).body(service.findCellDataById(INSTANCE_ID, TABLE_NAME, ROW_ID)
+                    .orElseThrow(() -> new KVLookUpException("NOT FOUND", HttpStatus.NOT_FOUND)));
+        } catch (KVLookUpException e) {
+            return ResponseEntity.status(e.getStatus()).contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
+        }
+    }
+
+    @Benchmark
+    public ResponseEntity<String> stacklessException() {
+        try {
+            return ResponseEntity.ok().contentType(MediaType.TEXT_PLAIN).body(service.readCellDataById(INSTANCE_ID, TABLE_NAME, ROW_ID));
+        } catch (KVLookUpException e) {
+            return ResponseEntity.status(e.getStatus()).contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
+        }
+    }
+
+    @Benchmark
+    public ResponseEntity<String> optionalResult() {
+        Optional<String> cellData = service.findCellDataById(INSTANCE_ID, TABLE_NAME, ROW_ID);
+        if (cellData.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).contentType(MediaType.TEXT_PLAIN).body("NOT FOUND");
+        }
+        return ResponseEntity.ok().contentType(MediaType.TEXT_PLAIN).body(cellData.get());
+    }
+
+    @Benchmark
+    public ResponseEntity<String> readCellDataEndpoint() {
+        return controller.retrieveDataFromGivenTableForGivenId(INSTANCE_ID, TABLE_NAME, ROW_ID).join();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(MissPathBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,107 @@
+package com.gcp.kvlookup.benchmark;
+
+import com.gcp.kvlookup.compression.ValueCompressor;
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.google.protobuf.ByteString;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+    CPU cost of compressing and decompressing cell values with each codec, with and without a trained zstd dictionary.
+    The values are JSON documents with repeated field names, the stored size of each is printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValueCompressionBenchmark {
+
+    private static final String[] FIELDS = {"memberId", "planCode", "effectiveDate", "status", "npi", "pharmacyId", "copay", "tier"};
+    private static final String[] STATUSES = {"ACTIVE", "TERMINATED", "PENDING", "SUSPENDED"};
+
+    @Param({"none", "lz4", "zstd", "zstd-dictionary"})
+    public String codec;
+
+    @Param({"2048", "20480"})
+    public int valueSize;
+
+    private ValueCompressor valueCompressor;
+    private ByteString value;
+    private ByteString stored;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        Path dictionaryDirectory = Files.createTempDirectory("dictionaries");
+        if (codec.equals("zstd-dictionary")) {
+            ZstdDictTrainer trainer = new ZstdDictTrainer(64 * 1024 * 100, 64 * 1024);
+            for (int i = 0; i < 2000; i++) {
+                trainer.addSample(document(random, valueSize).getBytes());
+            }
+            Path tableDirectory = Files.createDirectories(dictionaryDirectory.resolve("instance").resolve("table"));
+            Files.write(tableDirectory.resolve("cf1-1.dict"), trainer.trainSamples());
+        }
+        List<String> tables = codec.equals("none") ? List.of() : List.of("instance/table:" + codec.replace("-dictionary", ""));
+        valueCompressor = new ValueCompressor(Map.of(), new SimpleMeterRegistry(), tables, 3, 0,
+                dictionaryDirectory.toString(), 64, 0);
+        valueCompressor.loadDictionaries();
+        value = ByteString.copyFromUtf8(document(random, valueSize));
+        stored = valueCompressor.encode("instance", "table", "cf1", value);
+        System.out.printf("%ncodec=%s valueSize=%d: %d bytes stored (%.1f%%)%n",
+                codec, value.size(), stored.size(), 100.0 * stored.size() / value.size());
+    }
+
+    @Benchmark
+    public ByteString encode() {
+        return valueCompressor.encode("instance", "table", "cf1", value);
+    }
+
+    @Benchmark
+    public ByteString decode() {
+        return valueCompressor.decode("instance", "table", stored);
+    }
+
+    // an array of records with the same fields and values drawn from small domains, like typical lookup documents
+    private static String document(Random random, int size) {
+        StringBuilder document = new StringBuilder(size + 256).append('[');
+        while (document.length() < size) {
+            document.append('{');
+            for (int i = 0; i < FIELDS.length; i++) {
+                String fieldValue = FIELDS[i].equals("status") ? STATUSES[random.nextInt(STATUSES.length)]
+                        : Integer.toString(random.nextInt(1_000_000), 36);
+                document.append('"').append(FIELDS[i]).append("\":\"").append(fieldValue).append('"').append(i + 1 < FIELDS.length ? "," : "");
+            }
+            document.append("},");
+        }
+        document.setCharAt(document.length() - 1, ']');
+        return document.toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ValueCompressionBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,182 @@
+package com.gcp.kvlookup.bulkimport;
+
+import com.gcp.kvlookup.cache.InMemoryLookupCache;
+import com.gcp.kvlookup.cache.LookupCache;
+import com.gcp.kvlookup.dataaccess.SecondaryIndexes;
+import com.gcp.kvlookup.exception.KVLookUpException;
+import com.gcp.kvlookup.model.ImportJob;
+import com.gcp.kvlookup.model.ImportRequest;
+import com.google.cloud.bigtable.admin.v2.BigtableTableAdminClient;
+import com.google.cloud.bigtable.admin.v2.BigtableTableAdminSettings;
+import com.google.cloud.bigtable.admin.v2.models.CreateTableRequest;
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.BigtableDataSettings;
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.cloud.bigtable.emulator.v2.BigtableEmulatorRule;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.springframework.http.HttpStatus;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class BulkImporterTest {
+
+    @Rule
+    public final BigtableEmulatorRule bigtableEmulator = BigtableEmulatorRule.create();
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static final String TEST_INSTANCE_ID = "test";
+    private static final String TEST_PROJECT_ID = "test";
+    private Map<String, BigtableDataClient> dataClientMap = new HashMap<>();
+    private BigtableDataClient dataClient;
+    private Path importDirectory;
+    private BulkImporter bulkImporter;
+
+    @Before
+    public void setUp() throws IOException {
+        BigtableTableAdminSettings.Builder tableAdminSettings = BigtableTableAdminSettings.newBuilderForEmulator(bigtableEmulator.getPort());
+        tableAdminSettings.setProjectId(TEST_PROJECT_ID);
+        tableAdminSettings.setInstanceId(TEST_INSTANCE_ID);
+        BigtableTableAdminClient tableAdminClient = BigtableTableAdminClient.create(tableAdminSettings.build());
+        tableAdminClient.createTable(CreateTableRequest.of("importTable").addFamily("cf1").addFamily("cf2"));
+
+        BigtableDataSettings.Builder dataSettings = BigtableDataSettings.newBuilderForEmulator(bigtableEmulator.getPort());
+        dataSettings.setInstanceId(TEST_INSTANCE_ID);
+        dataSettings.setProjectId(TEST_PROJECT_ID);
+        dataClient = BigtableDataClient.create(dataSettings.build());
+        dataClientMap.put(TEST_INSTANCE_ID, dataClient);
+
+        importDirectory = temporaryFolder.newFolder("imports").toPath();
+        bulkImporter = new BulkImporter(dataClientMap, importDirectory.toString(),
+                temporaryFolder.newFolder("checkpoints").getPath(), 2, 64, "cf1", 60);
+    }
+
+    @After
+    public void tearDown() {
+        bulkImporter.stop();
+    }
+
+    @Test
+    public void importsCsvAndResumesFromCheckpoint() throws Exception {
+        StringBuilder csv = new StringBuilder("id,name,score\n");
+        for (int i = 0; i < 100; i++) {
+            csv.append("member").append(i).append(",\"name, ").append(i).append("\",").append(i * 10).append('\n');
+        }
+        csv.append(",missingKey,0\n");
+        Files.writeString(importDirectory.resolve("members.csv"), csv);
+
+        //call test method
+        ImportJob job = awaitCompletion(bulkImporter.start(TEST_INSTANCE_ID,
+                request("members.csv", ImportRequest.Format.CSV, Map.of("name", "name", "score", "cf2:score"))));
+
+        // assert
+        Assert.assertEquals(ImportJob.COMPLETED, job.getStatus());
+        Assert.assertEquals(100, job.getRowsImported());
+        Assert.assertEquals(1, job.getRowsRejected());
+        Row row = dataClient.readRow("importTable", "member42");
+        Assert.assertEquals("name, 42", row.getCells("cf1", "name").get(0).getValue().toStringUtf8());
+        Assert.assertEquals("420", row.getCells("cf2", "score").get(0).getValue().toStringUtf8());
+
+        // every chunk is checkpointed, so resuming replays nothing
+        ImportJob resumed = awaitCompletion(bulkImporter.resume(TEST_INSTANCE_ID, job.getJobId()));
+        Assert.assertEquals(ImportJob.COMPLETED, resumed.getStatus());
+        Assert.assertEquals(resumed.getChunksTotal(), resumed.getChunksResumed());
+        Assert.assertEquals(0, resumed.getRowsImported());
+    }
+
+    @Test
+    public void importsNdjson() throws Exception {
+        Files.writeString(importDirectory.resolve("members.ndjson"),
+                "{\"id\":\"member1\",\"name\":\"one\",\"nested\":{\"name\":\"ignored\"}}\n"
+                        + "not json\n"
+                        + "{\"id\":\"member2\",\"name\":\"two\"}\n");
+
+        //call test method
+        ImportJob job = awaitCompletion(bulkImporter.start(TEST_INSTANCE_ID,
+                request("members.ndjson", ImportRequest.Format.NDJSON, Map.of("name", "cf1:name"))));
+
+        // assert
+        Assert.assertEquals(ImportJob.COMPLETED, job.getStatus());
+        Assert.assertEquals(2, job.getRowsImported());
+        Assert.assertEquals(1, job.getRowsRejected());
+        Assert.assertEquals("one", dataClient.readRow("importTable", "member1").getCells("cf1", "name").get(0).getValue().toStringUtf8());
+        Assert.assertEquals("two", dataClient.readRow("importTable", "member2").getCells("cf1", "name").get(0).getValue().toStringUtf8());
+    }
+
+    @Test
+    public void rejectsFilesOutsideImportDirectory() {
+        assertThrows(KVLookUpException.class, () -> bulkImporter.start(TEST_INSTANCE_ID,
+                request("../checkpoints/job.json", ImportRequest.Format.NDJSON, Map.of("name", "name"))));
+    }
+
+    @Test
+    public void invalidatesCachedRowsOfFlushedChunks() throws Exception {
+        InMemoryLookupCache lookupCache = new InMemoryLookupCache(300, 100);
+        bulkImporter.setLookupCache(lookupCache);
+        lookupCache.put(LookupCache.key(TEST_INSTANCE_ID, "importTable", "member1"), "stale");
+        Files.writeString(importDirectory.resolve("members.ndjson"), "{\"id\":\"member1\",\"name\":\"one\"}\n");
+
+        //call test method
+        ImportJob job = awaitCompletion(bulkImporter.start(TEST_INSTANCE_ID,
+                request("members.ndjson", ImportRequest.Format.NDJSON, Map.of("name", "cf1:name"))));
+
+        // assert
+        Assert.assertEquals(ImportJob.COMPLETED, job.getStatus());
+        Assert.assertNull(lookupCache.get(LookupCache.key(TEST_INSTANCE_ID, "importTable", "member1")));
+    }
+
+    @Test
+    public void resumeRejectsJobIdsOutsideTheCheckpointDirectory() {
+        KVLookUpException traversal = assertThrows(KVLookUpException.class, () -> bulkImporter.resume(TEST_INSTANCE_ID, "../../etc"));
+        Assert.assertEquals(HttpStatus.BAD_REQUEST, traversal.getStatus());
+        KVLookUpException unknownInstance = assertThrows(KVLookUpException.class,
+                () -> bulkImporter.resume("..", "3f2a4a7e-6f4b-4c1e-9d55-0b8f6a1c2d3e"));
+        Assert.assertEquals(HttpStatus.BAD_REQUEST, unknownInstance.getStatus());
+    }
+
+    @Test
+    public void rejectsImportsIntoIndexedTables() throws Exception {
+        SecondaryIndexes secondaryIndexes = Mockito.mock(SecondaryIndexes.class);
+        Mockito.when(secondaryIndexes.isIndexed(TEST_INSTANCE_ID, "importTable")).thenReturn(true);
+        bulkImporter.setSecondaryIndexes(secondaryIndexes);
+        Files.writeString(importDirectory.resolve("members.ndjson"), "{\"id\":\"member1\",\"name\":\"one\"}\n");
+
+        KVLookUpException exception = assertThrows(KVLookUpException.class, () -> bulkImporter.start(TEST_INSTANCE_ID,
+                request("members.ndjson", ImportRequest.Format.NDJSON, Map.of("name", "cf1:name"))));
+
+        // assert
+        Assert.assertEquals(HttpStatus.BAD_REQUEST, exception.getStatus());
+        Assert.assertNull(dataClient.readRow("importTable", "member1"));
+    }
+
+    private ImportRequest request(String fileName, ImportRequest.Format format, Map<String, String> columns) {
+        ImportRequest request = new ImportRequest();
+        request.setTableName("importTable");
+        request.setFileName(fileName);
+        request.setFormat(format);
+        request.setRowKeyField("id");
+        request.setColumns(columns);
+        return request;
+    }
+
+    private ImportJob awaitCompletion(ImportJob job) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (ImportJob.RUNNING.equals(job.getStatus()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        return job;
+    }
+}
@@ -0,0 +1,24 @@
+package com.gcp.kvlookup.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InMemoryLookupCacheTest {
+
+    @Test
+    public void fullCacheDropsTheLeastRecentlyUsedEntry() {
+        InMemoryLookupCache inMemoryLookupCache = new InMemoryLookupCache(300, 2);
+        inMemoryLookupCache.put("test:testTable:1", "value1");
+        inMemoryLookupCache.put("test:testTable:2", "value2");
+        inMemoryLookupCache.get("test:testTable:1");
+
+        //call test method
+        inMemoryLookupCache.put("test:testTable:3", "value3");
+
+        // assert
+        Assert.assertEquals(2, inMemoryLookupCache.size());
+        Assert.assertEquals("value1", inMemoryLookupCache.get("test:testTable:1"));
+        Assert.assertNull(inMemoryLookupCache.get("test:testTable:2"));
+        Assert.assertEquals("value3", inMemoryLookupCache.get("test:testTable:3"));
+    }
+}
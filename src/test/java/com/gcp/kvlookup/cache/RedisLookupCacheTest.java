@@ -0,0 +1,48 @@
+package com.gcp.kvlookup.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.List;
+
+public class RedisLookupCacheTest {
+
+    @Test
+    public void unreachableRedisIsACacheMiss() throws IOException {
+        int unusedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            unusedPort = socket.getLocalPort();
+        }
+
+        RedisLookupCache redisLookupCache = new RedisLookupCache("redis://localhost:" + unusedPort, 300, 50, 1000);
+        try {
+            redisLookupCache.put("test:testTable:1", "value");
+            redisLookupCache.invalidate(List.of("test:testTable:1"));
+            Assert.assertNull(redisLookupCache.get("test:testTable:1"));
+        } finally {
+            redisLookupCache.close();
+        }
+    }
+
+    @Test
+    public void readsSkipTheCacheWhileConnecting() throws IOException {
+        // accepts the connection but never answers the handshake
+        try (ServerSocket silentRedis = new ServerSocket(0)) {
+            RedisLookupCache redisLookupCache = new RedisLookupCache("redis://localhost:" + silentRedis.getLocalPort(), 300, 10000, 10000);
+            try {
+                long startMillis = System.currentTimeMillis();
+
+                //call test methods
+                Assert.assertNull(redisLookupCache.get("test:testTable:1"));
+                Assert.assertNull(redisLookupCache.get("test:testTable:1"));
+
+                // assert
+                Assert.assertTrue(System.currentTimeMillis() - startMillis < 1000);
+            } finally {
+                redisLookupCache.close();
+            }
+        }
+    }
+}
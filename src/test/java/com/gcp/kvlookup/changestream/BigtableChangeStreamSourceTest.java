@@ -0,0 +1,139 @@
+package com.gcp.kvlookup.changestream;
+
+import com.google.api.gax.rpc.ServerStream;
+import com.google.bigtable.v2.ReadChangeStreamRequest;
+import com.google.bigtable.v2.ReadChangeStreamResponse;
+import com.google.bigtable.v2.RowRange;
+import com.google.bigtable.v2.StreamContinuationToken;
+import com.google.bigtable.v2.StreamPartition;
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.internal.RequestContext;
+import com.google.cloud.bigtable.data.v2.models.ChangeStreamMutation;
+import com.google.cloud.bigtable.data.v2.models.ChangeStreamRecord;
+import com.google.cloud.bigtable.data.v2.models.CloseStream;
+import com.google.cloud.bigtable.data.v2.models.DeleteCells;
+import com.google.cloud.bigtable.data.v2.models.Entry;
+import com.google.cloud.bigtable.data.v2.models.Range;
+import com.google.cloud.bigtable.data.v2.models.Range.ByteStringRange;
+import com.google.cloud.bigtable.data.v2.models.ReadChangeStreamQuery;
+import com.google.cloud.bigtable.data.v2.models.SetCell;
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.ByteString;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+
+public class BigtableChangeStreamSourceTest {
+
+    private static final String TEST_INSTANCE_ID = "test";
+
+    private final BigtableChangeStreamSource changeStreamSource = new BigtableChangeStreamSource(Map.of());
+
+    @Test
+    public void skipsGarbageCollectedVersions() {
+        ChangeStreamMutation mutation = mutation(ChangeStreamMutation.MutationType.GARBAGE_COLLECTION,
+                DeleteCells.create("cf1", ByteString.copyFromUtf8("name"), Range.TimestampRange.create(0, 2000)));
+
+        Assert.assertFalse(changeStreamSource.toRowChange(TEST_INSTANCE_ID, "testTable", mutation).isPresent());
+    }
+
+    @Test
+    public void keepsTimestampsOfUserMutations() {
+        ChangeStreamMutation mutation = mutation(ChangeStreamMutation.MutationType.USER,
+                SetCell.create("cf1", ByteString.copyFromUtf8("name"), 2000, ByteString.copyFromUtf8("latestValue")),
+                DeleteCells.create("cf1", ByteString.copyFromUtf8("name"), Range.TimestampRange.create(0, 2000)));
+
+        Optional<RowChange> rowChange = changeStreamSource.toRowChange(TEST_INSTANCE_ID, "testTable", mutation);
+
+        Assert.assertTrue(rowChange.isPresent());
+        Assert.assertEquals("1", rowChange.get().getRowKey());
+        RowChange.CellChange setCell = rowChange.get().getCellChanges().get(0);
+        Assert.assertEquals("latestValue", setCell.getColumnValue());
+        Assert.assertEquals(2000, setCell.getTimestampMicros());
+        RowChange.CellChange deleteCells = rowChange.get().getCellChanges().get(1);
+        Assert.assertTrue(deleteCells.isDelete());
+        Assert.assertTrue(deleteCells.covers(1000));
+        Assert.assertFalse(deleteCells.covers(2000));
+    }
+
+    @Test
+    public void unboundedDeleteCoversEveryVersion() {
+        ChangeStreamMutation mutation = mutation(ChangeStreamMutation.MutationType.USER,
+                DeleteCells.create("cf1", ByteString.copyFromUtf8("name"), Range.TimestampRange.unbounded()));
+
+        RowChange.CellChange deleteCells = changeStreamSource.toRowChange(TEST_INSTANCE_ID, "testTable", mutation).get().getCellChanges().get(0);
+
+        Assert.assertTrue(deleteCells.covers(0));
+        Assert.assertTrue(deleteCells.covers(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void startsOneReaderWithTheTokensOfEveryMergedParent() throws InterruptedException {
+        BigtableDataClient client = Mockito.mock(BigtableDataClient.class);
+        BigtableChangeStreamSource mergingSource = new BigtableChangeStreamSource(Map.of(TEST_INSTANCE_ID, client));
+        ServerStream<ByteStringRange> initialPartitions = stream(List.of(ByteStringRange.create("", "m"), ByteStringRange.create("m", "")));
+        Mockito.when(client.generateInitialChangeStreamPartitions("mergedTable")).thenReturn(initialPartitions);
+        CountDownLatch mergedReaderStarted = new CountDownLatch(1);
+        AtomicReference<ReadChangeStreamRequest> mergedRequest = new AtomicReference<>();
+        Mockito.when(client.readChangeStream(any(ReadChangeStreamQuery.class))).thenAnswer(invocation -> {
+            ReadChangeStreamQuery query = invocation.getArgument(0);
+            ReadChangeStreamRequest request = query.toProto(RequestContext.create("project", TEST_INSTANCE_ID, "default"));
+            RowRange rowRange = request.getPartition().getRowRange();
+            if (rowRange.getStartKeyClosed().isEmpty() && rowRange.getEndKeyOpen().isEmpty()) {
+                mergedRequest.set(request);
+                mergingSource.close();
+                mergedReaderStarted.countDown();
+                return stream(List.<ChangeStreamRecord>of());
+            }
+            // both parents close into the whole key space, each one only knows the token of its own range
+            return stream(List.<ChangeStreamRecord>of(closeStream(rowRange, rowRange.getStartKeyClosed().isEmpty() ? "leftToken" : "rightToken")));
+        });
+
+        //call test method
+        mergingSource.subscribe(TEST_INSTANCE_ID, "mergedTable", rowChange -> { });
+
+        // assert
+        Assert.assertTrue(mergedReaderStarted.await(10, TimeUnit.SECONDS));
+        Set<String> tokens = mergedRequest.get().getContinuationTokens().getTokensList().stream()
+                .map(StreamContinuationToken::getToken)
+                .collect(Collectors.toSet());
+        Assert.assertEquals(Set.of("leftToken", "rightToken"), tokens);
+        Mockito.verify(client, Mockito.times(3)).readChangeStream(any(ReadChangeStreamQuery.class));
+    }
+
+    private static CloseStream closeStream(RowRange parent, String token) {
+        StreamPartition merged = StreamPartition.newBuilder().setRowRange(RowRange.newBuilder()).build();
+        return CloseStream.fromProto(ReadChangeStreamResponse.CloseStream.newBuilder()
+                .addContinuationTokens(StreamContinuationToken.newBuilder()
+                        .setPartition(StreamPartition.newBuilder().setRowRange(parent))
+                        .setToken(token))
+                .addNewPartitions(merged)
+                .build());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> ServerStream<T> stream(List<T> items) {
+        ServerStream<T> stream = Mockito.mock(ServerStream.class);
+        Mockito.when(stream.iterator()).thenAnswer(invocation -> items.iterator());
+        return stream;
+    }
+
+    private static ChangeStreamMutation mutation(ChangeStreamMutation.MutationType type, Entry... entries) {
+        ChangeStreamMutation mutation = Mockito.mock(ChangeStreamMutation.class);
+        Mockito.when(mutation.getType()).thenReturn(type);
+        Mockito.when(mutation.getRowKey()).thenReturn(ByteString.copyFromUtf8("1"));
+        Mockito.when(mutation.getEntries()).thenReturn(ImmutableList.copyOf(entries));
+        return mutation;
+    }
+}
@@ -0,0 +1,160 @@
+package com.gcp.kvlookup.changestream;
+
+import com.gcp.kvlookup.cache.InMemoryLookupCache;
+import com.gcp.kvlookup.cache.LookupCache;
+import com.gcp.kvlookup.datasource.connection.BigtableClientRouter;
+import com.google.api.gax.rpc.ServerStream;
+import com.google.cloud.bigtable.admin.v2.BigtableTableAdminClient;
+import com.google.cloud.bigtable.admin.v2.BigtableTableAdminSettings;
+import com.google.cloud.bigtable.admin.v2.models.CreateTableRequest;
+import com.google.cloud.bigtable.admin.v2.models.GCRules;
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.BigtableDataSettings;
+import com.google.cloud.bigtable.data.v2.models.Query;
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.cloud.bigtable.data.v2.models.RowMutation;
+import com.google.cloud.bigtable.emulator.v2.BigtableEmulatorRule;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+
+public class ChangeStreamCacheSynchronizerTest {
+
+    // Initialize the emulator Rule
+    @Rule
+    public final BigtableEmulatorRule bigtableEmulator = BigtableEmulatorRule.create();
+
+    private static final String TEST_INSTANCE_ID = "test";
+    private static final String TEST_PROJECT_ID = "test";
+    private Map<String, BigtableDataClient> dataClientMap = new HashMap<>();
+    private FakeChangeStreamSource changeStreamSource = new FakeChangeStreamSource();
+    private InMemoryLookupCache lookupCache = new InMemoryLookupCache(60, 100);
+    private BigtableTableAdminClient tableAdminClient;
+    private BigtableDataClient dataClient;
+    private ChangeStreamCacheSynchronizer synchronizer;
+
+    @Before
+    public void setUp() throws IOException {
+        BigtableTableAdminSettings.Builder tableAdminSettings = BigtableTableAdminSettings.newBuilderForEmulator(bigtableEmulator.getPort());
+        tableAdminSettings.setProjectId(TEST_PROJECT_ID);
+        tableAdminSettings.setInstanceId(TEST_INSTANCE_ID);
+        tableAdminClient = BigtableTableAdminClient.create(tableAdminSettings.build());
+        tableAdminClient.createTable(CreateTableRequest.of("cachedTable").addFamily("cf1"));
+        tableAdminClient.createTable(CreateTableRequest.of("replicatedTable").addFamily("cf1"));
+
+        BigtableDataSettings.Builder dataSettings = BigtableDataSettings.newBuilderForEmulator(bigtableEmulator.getPort());
+        dataSettings.setInstanceId(TEST_INSTANCE_ID);
+        dataSettings.setProjectId(TEST_PROJECT_ID);
+        dataClient = BigtableDataClient.create(dataSettings.build());
+        dataClient.mutateRow(RowMutation.create("replicatedTable", "1").setCell("cf1", "name", "columnValue"));
+        dataClientMap.put("test", dataClient);
+
+        synchronizer = new ChangeStreamCacheSynchronizer(changeStreamSource, dataClientMap,
+                List.of("test/cachedTable"), List.of("test/replicatedTable"), "cf1", "name");
+        synchronizer.setLookupCache(lookupCache);
+        synchronizer.start();
+    }
+
+    @Test
+    public void refreshesAndInvalidatesCache() {
+        String cacheKey = LookupCache.key(TEST_INSTANCE_ID, "cachedTable", "1");
+
+        changeStreamSource.emit("test/cachedTable", new RowChange("1", List.of(new RowChange.CellChange("cf1", "name", "newValue"))));
+        Assert.assertEquals("newValue", lookupCache.get(cacheKey));
+
+        changeStreamSource.emit("test/cachedTable", new RowChange("1", List.of(new RowChange.CellChange("cf1", null, null))));
+        Assert.assertNull(lookupCache.get(cacheKey));
+    }
+
+    @Test
+    public void keepsReplicaCurrent() {
+        Assert.assertFalse(synchronizer.isReplicated(TEST_INSTANCE_ID, "cachedTable"));
+        Assert.assertTrue(synchronizer.isReplicated(TEST_INSTANCE_ID, "replicatedTable"));
+        Assert.assertEquals("columnValue", synchronizer.readReplica(TEST_INSTANCE_ID, "replicatedTable", "1"));
+
+        changeStreamSource.emit("test/replicatedTable", new RowChange("2", List.of(new RowChange.CellChange("cf1", "name", "otherValue"))));
+        dataClient.mutateRow(RowMutation.create("replicatedTable", "1").deleteRow());
+        changeStreamSource.emit("test/replicatedTable", new RowChange("1", List.of(new RowChange.CellChange("cf1", "name", null))));
+
+        Assert.assertEquals("otherValue", synchronizer.readReplica(TEST_INSTANCE_ID, "replicatedTable", "2"));
+        Assert.assertNull(synchronizer.readReplica(TEST_INSTANCE_ID, "replicatedTable", "1"));
+    }
+
+    @Test
+    public void deleteOfOlderVersionsKeepsLatestReplicaValue() {
+        tableAdminClient.createTable(CreateTableRequest.of("versionedTable").addFamily("cf1", GCRules.GCRULES.maxVersions(1)));
+        dataClient.mutateRow(RowMutation.create("versionedTable", "1").setCell("cf1", "name", 1000, "oldValue"));
+        dataClient.mutateRow(RowMutation.create("versionedTable", "1").setCell("cf1", "name", 2000, "latestValue"));
+        FakeChangeStreamSource versionedSource = new FakeChangeStreamSource();
+        ChangeStreamCacheSynchronizer versionedSynchronizer = new ChangeStreamCacheSynchronizer(versionedSource, dataClientMap,
+                List.of(), List.of("test/versionedTable"), "cf1", "name");
+        versionedSynchronizer.start();
+        Assert.assertEquals("latestValue", versionedSynchronizer.readReplica(TEST_INSTANCE_ID, "versionedTable", "1"));
+
+        // versions older than the one served are removed, like an explicit delete of the superseded cell
+        versionedSource.emit("test/versionedTable", new RowChange("1", List.of(RowChange.CellChange.deleted("cf1", "name", 0, 2000))));
+        Assert.assertEquals("latestValue", versionedSynchronizer.readReplica(TEST_INSTANCE_ID, "versionedTable", "1"));
+
+        versionedSource.emit("test/versionedTable", new RowChange("1", List.of(new RowChange.CellChange("cf1", "name", "staleValue", 1500))));
+        Assert.assertEquals("latestValue", versionedSynchronizer.readReplica(TEST_INSTANCE_ID, "versionedTable", "1"));
+
+        dataClient.mutateRow(RowMutation.create("versionedTable", "1").deleteRow());
+        versionedSource.emit("test/versionedTable", new RowChange("1", List.of(RowChange.CellChange.deleted("cf1", "name", 2000, 0))));
+        Assert.assertNull(versionedSynchronizer.readReplica(TEST_INSTANCE_ID, "versionedTable", "1"));
+    }
+
+    @Test
+    public void rowDeletedDuringReplicaScanStaysDeleted() {
+        FakeChangeStreamSource scanSource = new FakeChangeStreamSource();
+        BigtableDataClient scanClient = Mockito.mock(BigtableDataClient.class);
+        Mockito.when(scanClient.readRows(any(Query.class))).thenAnswer(invocation -> {
+            List<Row> scannedRows = new ArrayList<>();
+            Query query = invocation.getArgument(0);
+            dataClient.readRows(query).forEach(scannedRows::add);
+            // the row is deleted after the scan read it but before the scan finished
+            dataClient.mutateRow(RowMutation.create("replicatedTable", "1").deleteRow());
+            scanSource.emit("test/replicatedTable", new RowChange("1", List.of(new RowChange.CellChange("cf1", null, null))));
+            ServerStream<Row> rows = Mockito.mock(ServerStream.class);
+            Mockito.when(rows.iterator()).thenReturn(scannedRows.iterator());
+            return rows;
+        });
+        BigtableClientRouter clientRouter = new BigtableClientRouter(dataClientMap);
+        clientRouter.addRoute(TEST_INSTANCE_ID, BigtableClientRouter.Operation.SCAN, scanClient);
+        ChangeStreamCacheSynchronizer scanSynchronizer = new ChangeStreamCacheSynchronizer(scanSource, dataClientMap,
+                List.of(), List.of("test/replicatedTable"), "cf1", "name");
+        scanSynchronizer.setClientRouter(clientRouter);
+        scanSynchronizer.start();
+
+        Assert.assertTrue(scanSynchronizer.isReplicated(TEST_INSTANCE_ID, "replicatedTable"));
+        Assert.assertNull(scanSynchronizer.readReplica(TEST_INSTANCE_ID, "replicatedTable", "1"));
+    }
+
+    private static class FakeChangeStreamSource implements ChangeStreamSource {
+
+        private final Map<String, Consumer<RowChange>> consumers = new HashMap<>();
+
+        @Override
+        public void subscribe(String instanceID, String tableName, Consumer<RowChange> consumer) {
+            consumers.put(instanceID + "/" + tableName, consumer);
+        }
+
+        void emit(String table, RowChange rowChange) {
+            consumers.get(table).accept(rowChange);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
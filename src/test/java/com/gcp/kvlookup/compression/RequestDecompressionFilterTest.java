@@ -0,0 +1,113 @@
+package com.gcp.kvlookup.compression;
+
+import com.gcp.kvlookup.exception.KVLookUpException;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RequestDecompressionFilterTest {
+
+    private final RequestDecompressionFilter requestDecompressionFilter = new RequestDecompressionFilter(1);
+
+    @Test
+    public void inflatesGzipBody() throws Exception {
+        String body = "{\"tableName\":\"testTable\",\"rowKeyId\":\"1\"}";
+        AtomicReference<String> received = new AtomicReference<>();
+        AtomicReference<String> receivedEncoding = new AtomicReference<>();
+
+        requestDecompressionFilter.doFilter(gzipRequest(body.getBytes(StandardCharsets.UTF_8)), new MockHttpServletResponse(), new MockFilterChain() {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response) throws IOException {
+                received.set(new String(request.getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+                receivedEncoding.set(((HttpServletRequest) request).getHeader(HttpHeaders.CONTENT_ENCODING));
+            }
+        });
+
+        Assert.assertEquals(body, received.get());
+        Assert.assertNull(receivedEncoding.get());
+    }
+
+    @Test
+    public void rejectsBodiesOverTheInflatedLimit() throws Exception {
+        byte[] body = new byte[2 * 1024 * 1024];
+
+        requestDecompressionFilter.doFilter(gzipRequest(body), new MockHttpServletResponse(), new MockFilterChain() {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response) {
+                KVLookUpException exception = assertThrows(KVLookUpException.class, () -> request.getInputStream().readAllBytes());
+                Assert.assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, exception.getStatus());
+            }
+        });
+    }
+
+    @Test
+    public void rejectsMalformedGzipBodies() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/v1/test/insertData");
+        request.addHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        request.setContent("not gzip".getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain filterChain = new MockFilterChain();
+
+        requestDecompressionFilter.doFilter(request, response, filterChain);
+
+        Assert.assertEquals(400, response.getStatus());
+        Assert.assertNull(filterChain.getRequest());
+    }
+
+    @Test
+    public void reportsFinishedAtTheEndOfTheInflatedBody() throws Exception {
+        AtomicReference<Boolean> finishedBeforeRead = new AtomicReference<>();
+        AtomicReference<Boolean> finishedAfterRead = new AtomicReference<>();
+
+        requestDecompressionFilter.doFilter(gzipRequest(new byte[16]), new MockHttpServletResponse(), new MockFilterChain() {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response) throws IOException {
+                ServletInputStream inputStream = request.getInputStream();
+                finishedBeforeRead.set(inputStream.isFinished());
+                inputStream.readAllBytes();
+                finishedAfterRead.set(inputStream.isFinished());
+            }
+        });
+
+        Assert.assertFalse(finishedBeforeRead.get());
+        Assert.assertTrue(finishedAfterRead.get());
+    }
+
+    @Test
+    public void rejectsUnsupportedEncodings() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/v1/test/insertData");
+        request.addHeader(HttpHeaders.CONTENT_ENCODING, "br");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        requestDecompressionFilter.doFilter(request, response, new MockFilterChain());
+
+        Assert.assertEquals(415, response.getStatus());
+    }
+
+    private MockHttpServletRequest gzipRequest(byte[] body) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
+            gzipOutputStream.write(body);
+        }
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/v1/test/insertData");
+        request.addHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        request.setContent(outputStream.toByteArray());
+        return request;
+    }
+}
@@ -0,0 +1,130 @@
+package com.gcp.kvlookup.compression;
+
+import com.gcp.kvlookup.exception.KVLookUpException;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.google.protobuf.ByteString;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ValueCompressorTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static String document(int records, int seed) {
+        StringBuilder document = new StringBuilder("[");
+        for (int i = 0; i < records; i++) {
+            document.append("{\"memberId\":\"").append(seed * 1000 + i).append("\",\"planCode\":\"PLAN-")
+                    .append(i % 7).append("\",\"status\":\"ACTIVE\"},");
+        }
+        return document.append("{}]").toString();
+    }
+
+    private ValueCompressor valueCompressor(List<String> tables, Path dictionaryDirectory) {
+        return new ValueCompressor(Map.of(), new SimpleMeterRegistry(), tables, 3, 64, dictionaryDirectory.toString(), 16, 100);
+    }
+
+    @Test
+    public void roundTripsWithEachCodec() {
+        ValueCompressor valueCompressor = valueCompressor(List.of("instance/zstdTable:zstd", "instance/lz4Table:LZ4"), temporaryFolder.getRoot().toPath());
+        ByteString value = ByteString.copyFromUtf8(document(100, 1));
+
+        for (String table : List.of("zstdTable", "lz4Table")) {
+            ByteString stored = valueCompressor.encode("instance", table, "cf1", value);
+            Assert.assertTrue(stored.size() < value.size());
+            Assert.assertEquals(value, valueCompressor.decode("instance", table, stored));
+        }
+    }
+
+    @Test
+    public void storesSmallAndUnlistedValuesAsTheyAre() {
+        ValueCompressor valueCompressor = valueCompressor(List.of("instance/zstdTable:zstd"), temporaryFolder.getRoot().toPath());
+        ByteString small = ByteString.copyFromUtf8("{\"status\":\"ACTIVE\"}");
+        ByteString large = ByteString.copyFromUtf8(document(100, 1));
+
+        Assert.assertSame(small, valueCompressor.encode("instance", "zstdTable", "cf1", small));
+        Assert.assertSame(large, valueCompressor.encode("instance", "otherTable", "cf1", large));
+        Assert.assertSame(large, valueCompressor.decode("instance", "zstdTable", large));
+        Assert.assertSame(large, ValueCompressor.PASS_THROUGH.encode("instance", "zstdTable", "cf1", large));
+    }
+
+    @Test
+    public void usesTheDictionaryOfTheFamily() throws IOException {
+        ZstdDictTrainer trainer = new ZstdDictTrainer(1024 * 1024, 4 * 1024);
+        for (int seed = 0; seed < 500; seed++) {
+            trainer.addSample(document(5, seed).getBytes());
+        }
+        Path tableDirectory = Files.createDirectories(temporaryFolder.getRoot().toPath().resolve("instance").resolve("zstdTable"));
+        Files.write(tableDirectory.resolve("cf1-1.dict"), trainer.trainSamples());
+        ValueCompressor withDictionary = valueCompressor(List.of("instance/zstdTable:zstd"), temporaryFolder.getRoot().toPath());
+        withDictionary.loadDictionaries();
+        ValueCompressor withoutDictionary = valueCompressor(List.of("instance/zstdTable:zstd"), temporaryFolder.newFolder().toPath());
+        ByteString value = ByteString.copyFromUtf8(document(5, 1000));
+
+        ByteString stored = withDictionary.encode("instance", "zstdTable", "cf1", value);
+
+        Assert.assertTrue(stored.size() < withoutDictionary.encode("instance", "zstdTable", "cf1", value).size());
+        Assert.assertEquals(value, withDictionary.decode("instance", "zstdTable", stored));
+        assertThrows(KVLookUpException.class, () -> withoutDictionary.decode("instance", "zstdTable", stored));
+    }
+
+    @Test
+    public void loadsDictionariesTrainedByAnotherInstance() throws IOException {
+        Path dictionaryDirectory = temporaryFolder.getRoot().toPath();
+        ValueCompressor trainingPod = valueCompressor(List.of("instance/zstdTable:zstd"), dictionaryDirectory);
+        ValueCompressor readingPod = valueCompressor(List.of("instance/zstdTable:zstd"), dictionaryDirectory);
+        trainingPod.loadDictionaries();
+        readingPod.loadDictionaries();
+
+        // stands for trainDictionary on the training pod, which writes the file and registers it there only
+        ZstdDictTrainer trainer = new ZstdDictTrainer(1024 * 1024, 4 * 1024);
+        for (int seed = 0; seed < 500; seed++) {
+            trainer.addSample(document(5, seed).getBytes());
+        }
+        byte[] dictionary = trainer.trainSamples();
+        Path tableDirectory = Files.createDirectories(dictionaryDirectory.resolve("instance").resolve("zstdTable"));
+        Files.write(tableDirectory.resolve("cf1-" + Zstd.getDictIdFromDict(dictionary) + ".dict"), dictionary);
+        trainingPod.loadDictionaries();
+        ByteString value = ByteString.copyFromUtf8(document(5, 1000));
+
+        ByteString stored = trainingPod.encode("instance", "zstdTable", "cf1", value);
+
+        // assert
+        Assert.assertEquals(value, readingPod.decode("instance", "zstdTable", stored));
+        Assert.assertEquals(stored.size(), readingPod.encode("instance", "zstdTable", "cf1", value).size());
+    }
+
+    @Test
+    public void decodesOnlyListedTables() {
+        ValueCompressor compressing = valueCompressor(List.of("instance/zstdTable:zstd"), temporaryFolder.getRoot().toPath());
+        ValueCompressor noLongerCompressing = valueCompressor(List.of("instance/zstdTable:none"), temporaryFolder.getRoot().toPath());
+        ByteString value = ByteString.copyFromUtf8(document(100, 1));
+        ByteString stored = compressing.encode("instance", "zstdTable", "cf1", value);
+        // a binary value of another table that happens to start with the zstd codec byte
+        ByteString binary = ByteString.copyFrom(new byte[]{(byte) 0xF5, 1, 2, 3});
+
+        // assert
+        Assert.assertEquals(value, noLongerCompressing.decode("instance", "zstdTable", stored));
+        Assert.assertSame(value, noLongerCompressing.encode("instance", "zstdTable", "cf1", value));
+        Assert.assertSame(binary, compressing.decode("instance", "binaryTable", binary));
+        Assert.assertSame(stored, ValueCompressor.PASS_THROUGH.decode("instance", "zstdTable", stored));
+    }
+
+    @Test
+    public void rejectsInvalidTableConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> valueCompressor(List.of("zstdTable:zstd"), temporaryFolder.getRoot().toPath()));
+        assertThrows(IllegalArgumentException.class, () -> valueCompressor(List.of("instance/zstdTable:snappy"), temporaryFolder.getRoot().toPath()));
+    }
+}
@@ -0,0 +1,36 @@
+package com.gcp.kvlookup.config;
+
+import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+public class TracingConfigTest {
+
+    @After
+    public void tearDown() {
+        GlobalOpenTelemetry.resetForTest();
+    }
+
+    @Test
+    public void buildsTheOtlpExporter() {
+        ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+                .withUserConfiguration(TracingConfig.class)
+                .withPropertyValues("spring.application.name=gcp-kv-crud-rest-api",
+                        "app.tracing.enabled=true",
+                        "app.tracing.sampleRatio=1",
+                        "app.tracing.exporter=otlp",
+                        "app.tracing.otlp.endpoint=localhost:4317",
+                        "app.tracing.otlp.plaintext=true");
+
+        //call test method
+        contextRunner.run(context -> {
+            // assert, without a grpc sender on the classpath the exporter fails to build
+            Assert.assertNull(context.getStartupFailure());
+            Assert.assertTrue(context.getBean(OpenTelemetry.class) instanceof OpenTelemetrySdk);
+        });
+    }
+}
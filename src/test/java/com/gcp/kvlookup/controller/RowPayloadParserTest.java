@@ -0,0 +1,81 @@
+package com.gcp.kvlookup.controller;
+
+import com.gcp.kvlookup.exception.KVLookUpException;
+import com.gcp.kvlookup.model.RowPayload;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RowPayloadParserTest {
+
+    private final RowPayloadParser rowPayloadParser = new RowPayloadParser(2, 1, 1);
+
+    private RowPayload parse(String body) throws IOException {
+        return rowPayloadParser.parse(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String column(String name, String value) {
+        return "{\"columnFamily\":\"cf1\",\"columnName\":\"" + name + "\",\"columnValue\":\"" + value + "\"}";
+    }
+
+    @Test
+    public void readsColumnsInAnyFieldOrder() throws IOException {
+        String value = "café ".repeat(1000);
+        RowPayload row = parse("{\"data\":[" + column("name", value) + "," + column("npi", "12") + "],"
+                + "\"unknown\":{\"nested\":[1,2]},\"rowKeyId\":\"1\",\"tableName\":\"testTable\"}");
+
+        Assert.assertEquals("testTable", row.getTableName());
+        Assert.assertEquals("1", row.getRowKeyId());
+        Assert.assertEquals(2, row.getCellCount());
+        Assert.assertEquals("cf1", row.getFamily(1));
+        Assert.assertEquals("npi", row.getQualifier(1).toStringUtf8());
+        Assert.assertEquals(value, row.getValue(0).toStringUtf8());
+        Assert.assertEquals("name".length() + value.getBytes(StandardCharsets.UTF_8).length + "npi".length() + 2, row.getSizeInBytes());
+    }
+
+    @Test
+    public void rejectsIncompleteRows() {
+        KVLookUpException noColumns = assertThrows(KVLookUpException.class, () -> parse("{\"tableName\":\"testTable\",\"rowKeyId\":\"1\",\"data\":[]}"));
+        KVLookUpException noValue = assertThrows(KVLookUpException.class,
+                () -> parse("{\"tableName\":\"testTable\",\"rowKeyId\":\"1\",\"data\":[{\"columnFamily\":\"cf1\",\"columnName\":\"name\"}]}"));
+        KVLookUpException noTable = assertThrows(KVLookUpException.class, () -> parse("{\"rowKeyId\":\"1\",\"data\":[" + column("name", "a") + "]}"));
+
+        Assert.assertEquals(HttpStatus.BAD_REQUEST, noColumns.getStatus());
+        Assert.assertEquals(HttpStatus.BAD_REQUEST, noValue.getStatus());
+        Assert.assertEquals(HttpStatus.BAD_REQUEST, noTable.getStatus());
+        assertThrows(IOException.class, () -> parse("{\"tableName\":\"testTable\",\"rowKeyId\":"));
+    }
+
+    @Test
+    public void enforcesLimitsWhileParsing() {
+        String tooManyColumns = "{\"tableName\":\"testTable\",\"rowKeyId\":\"1\",\"data\":["
+                + column("a", "1") + "," + column("b", "2") + "," + column("c", "3") + "]}";
+        String tooLargeValue = "{\"tableName\":\"testTable\",\"rowKeyId\":\"1\",\"data\":[" + column("a", "x".repeat(1024 * 1024 + 1)) + "]}";
+        String tooLargeRow = "{\"tableName\":\"testTable\",\"rowKeyId\":\"1\",\"data\":["
+                + column("a", "x".repeat(600 * 1024)) + "," + column("b", "x".repeat(600 * 1024)) + "]}";
+
+        for (String body : new String[]{tooManyColumns, tooLargeValue, tooLargeRow}) {
+            KVLookUpException exception = assertThrows(KVLookUpException.class, () -> parse(body));
+            Assert.assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, exception.getStatus());
+        }
+    }
+
+    @Test
+    public void capsTheBodyBeforeATokenIsBuffered() {
+        // an ignored field is never checked against the value or row limits
+        String body = "{\"tableName\":\"testTable\",\"rowKeyId\":\"1\",\"unknown\":\"" + "x".repeat(3 * 1024 * 1024) + "\",\"data\":["
+                + column("a", "1") + "]}";
+
+        KVLookUpException exception = assertThrows(KVLookUpException.class, () -> parse(body));
+
+        // assert
+        Assert.assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, exception.getStatus());
+        Assert.assertTrue(exception.getMessage().startsWith("An insertData body"));
+    }
+}
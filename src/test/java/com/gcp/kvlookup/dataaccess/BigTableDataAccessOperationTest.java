@@ -1,6 +1,10 @@
 package com.gcp.kvlookup.dataaccess;
 
+import com.gcp.kvlookup.changestream.RowChange;
+import com.gcp.kvlookup.exception.KVLookUpException;
+import com.gcp.kvlookup.model.BigtableDeleteData;
 import com.gcp.kvlookup.model.BigtableTableData;
+import com.gcp.kvlookup.model.CellVersion;
 import com.gcp.kvlookup.model.ColumnData;
 import com.gcp.kvlookup.model.GCPBigtableTable;
 import com.gcp.kvlookup.service.KVLookUpService;
@@ -10,7 +14,9 @@ import com.google.cloud.bigtable.admin.v2.BigtableTableAdminSettings;
 import com.google.cloud.bigtable.admin.v2.models.CreateTableRequest;
 import com.google.cloud.bigtable.data.v2.BigtableDataClient;
 import com.google.cloud.bigtable.data.v2.BigtableDataSettings;
+import com.google.cloud.bigtable.data.v2.models.RowMutation;
 import com.google.cloud.bigtable.emulator.v2.BigtableEmulatorRule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Rule;
@@ -21,6 +27,7 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -133,4 +140,235 @@ public class BigTableDataAccessOperationTest {
 
         Assert.assertEquals(value, "columnValue");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void createTableWithGCRule() {
+        GCPBigtableTable bigtable = new GCPBigtableTable();
+        bigtable.setTableName("testTable3");
+        bigtable.setColumnFamily("cf1");
+        bigtable.setMaxVersions(1);
+        bigtable.setMaxAgeInSeconds(86400L);
+
+        //call test method
+        tableCreationConfig.createTable(TEST_INSTANCE_ID, bigtable);
+
+        // assert
+        Assert.assertTrue(adminClientMap.get("test").getTable("testTable3").getColumnFamilies().get(0).hasGCRule());
+    }
+
+    @Test
+    public void deleteFromTable() {
+        GCPBigtableTable bigtable = new GCPBigtableTable();
+        bigtable.setTableName("testTable4");
+        bigtable.setColumnFamily("cf1");
+
+        tableCreationConfig.createTable(TEST_INSTANCE_ID, bigtable);
+
+        ColumnData columnData = new ColumnData();
+        columnData.setColumnFamily("cf1");
+        columnData.setColumnName("name");
+        columnData.setColumnValue("columnValue");
+
+        for (String rowKeyId : List.of("1", "2")) {
+            BigtableTableData bigtableTableData = new BigtableTableData();
+            bigtableTableData.setTableName("testTable4");
+            bigtableTableData.setRowKeyId(rowKeyId);
+            bigtableTableData.setData(List.of(columnData));
+            tableCreationConfig.writeToTable(TEST_INSTANCE_ID, bigtableTableData);
+        }
+
+        BigtableDeleteData deleteData = new BigtableDeleteData();
+        deleteData.setTableName("testTable4");
+        deleteData.setRowKeyIds(List.of("1", "2"));
+
+        // call test method
+        tableCreationConfig.deleteFromTable(TEST_INSTANCE_ID, deleteData);
+
+        // assert
+        Assert.assertNull(dataClientMap.get("test").readRow("testTable4", "1"));
+        Assert.assertNull(dataClientMap.get("test").readRow("testTable4", "2"));
+    }
+
+    @Test
+    public void writeAndReadHashPrefixedTable() {
+        tableCreationConfig.setRowKeyEncoder(new RowKeyEncoder(List.of("saltedTable")));
+
+        GCPBigtableTable bigtable = new GCPBigtableTable();
+        bigtable.setTableName("saltedTable");
+        bigtable.setColumnFamily("cf1");
+        bigtable.setSplitCount(4);
+
+        tableCreationConfig.createTable(TEST_INSTANCE_ID, bigtable);
+
+        ColumnData columnData = new ColumnData();
+        columnData.setColumnFamily("cf1");
+        columnData.setColumnName("name");
+        columnData.setColumnValue("columnValue");
+
+        BigtableTableData bigtableTableData = new BigtableTableData();
+        bigtableTableData.setTableName("saltedTable");
+        bigtableTableData.setRowKeyId("1");
+        bigtableTableData.setData(List.of(columnData));
+
+        // call test methods
+        tableCreationConfig.writeToTable(TEST_INSTANCE_ID, bigtableTableData);
+        String value = tableCreationConfig.readCellDataById(TEST_INSTANCE_ID, "saltedTable", "1");
+
+        // assert
+        Assert.assertEquals("columnValue", value);
+        Assert.assertNull(dataClientMap.get("test").readRow("saltedTable", "1"));
+    }
+
+    @Test
+    public void readCellDataByIdShortCircuitsBloomFilterMiss() {
+        GCPBigtableTable bigtable = new GCPBigtableTable();
+        bigtable.setTableName("bloomTable");
+        bigtable.setColumnFamily("cf1");
+
+        tableCreationConfig.createTable(TEST_INSTANCE_ID, bigtable);
+
+        ColumnData columnData = new ColumnData();
+        columnData.setColumnFamily("cf1");
+        columnData.setColumnName("name");
+        columnData.setColumnValue("columnValue");
+
+        BigtableTableData bigtableTableData = new BigtableTableData();
+        bigtableTableData.setTableName("bloomTable");
+        bigtableTableData.setRowKeyId("1");
+        bigtableTableData.setData(List.of(columnData));
+        tableCreationConfig.writeToTable(TEST_INSTANCE_ID, bigtableTableData);
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        BloomFilterIndex bloomFilterIndex = new BloomFilterIndex(dataClientMap, meterRegistry, List.of("test/bloomTable"), 1000, 0.01, 60, true);
+        bloomFilterIndex.rebuild(TEST_INSTANCE_ID, "bloomTable");
+        tableCreationConfig.setBloomFilterIndex(bloomFilterIndex);
+
+        // written after the build, added by writeToTable
+        bigtableTableData.setRowKeyId("2");
+        tableCreationConfig.writeToTable(TEST_INSTANCE_ID, bigtableTableData);
+
+        //call test methods
+        Assert.assertEquals("columnValue", tableCreationConfig.readCellDataById(TEST_INSTANCE_ID, "bloomTable", "1"));
+        Assert.assertEquals("columnValue", tableCreationConfig.readCellDataById(TEST_INSTANCE_ID, "bloomTable", "2"));
+        assertThrows(KVLookUpException.class, () -> tableCreationConfig.readCellDataById(TEST_INSTANCE_ID, "bloomTable", "missing"));
+
+        // assert
+        Assert.assertEquals(1.0, meterRegistry.counter("kvlookup.bloomfilter.shortcircuited", "table", "test/bloomTable").count(), 0.0);
+    }
+
+    @Test
+    public void bloomFilterAddsRowsFromTheChangeStream() {
+        GCPBigtableTable bigtable = new GCPBigtableTable();
+        bigtable.setTableName("streamedBloomTable");
+        bigtable.setColumnFamily("cf1");
+
+        tableCreationConfig.createTable(TEST_INSTANCE_ID, bigtable);
+
+        BloomFilterIndex bloomFilterIndex = new BloomFilterIndex(dataClientMap, new SimpleMeterRegistry(), List.of("test/streamedBloomTable"), 1000, 0.01, 60, false);
+        bloomFilterIndex.rebuild(TEST_INSTANCE_ID, "streamedBloomTable");
+        tableCreationConfig.setBloomFilterIndex(bloomFilterIndex);
+
+        // written by another pod after the build
+        dataClientMap.get("test").mutateRow(RowMutation.create("streamedBloomTable", "1").setCell("cf1", "name", "columnValue"));
+
+        //call test method
+        bloomFilterIndex.onRowChange(TEST_INSTANCE_ID, "streamedBloomTable",
+                new RowChange("1", List.of(new RowChange.CellChange("cf1", "name", "columnValue", 1000))));
+
+        // assert
+        Assert.assertEquals("columnValue", tableCreationConfig.readCellDataById(TEST_INSTANCE_ID, "streamedBloomTable", "1"));
+    }
+
+    @Test
+    public void bloomFilterRefusesToStartForSeveralReplicasWithoutAChangeStream() {
+        BloomFilterIndex bloomFilterIndex = new BloomFilterIndex(dataClientMap, new SimpleMeterRegistry(), List.of("test/bloomTable"), 1000, 0.01, 60, false);
+
+        //call test method
+        assertThrows(IllegalStateException.class, bloomFilterIndex::start);
+    }
+
+    @Test
+    public void findByIndexFollowsWritesAndDeletes() {
+        GCPBigtableTable bigtable = new GCPBigtableTable();
+        bigtable.setTableName("indexedTable");
+        bigtable.setColumnFamily("cf1");
+        tableCreationConfig.createTable(TEST_INSTANCE_ID, bigtable);
+
+        SecondaryIndexes secondaryIndexes = new SecondaryIndexes(adminClientMap, dataClientMap,
+                List.of("test/indexedTable/cf1:npi/indexedTable_by_npi"), 1000);
+        secondaryIndexes.createIndexTables();
+        tableCreationConfig.setSecondaryIndexes(secondaryIndexes);
+
+        writeIndexedRow("1", "npi-a", "first");
+        writeIndexedRow("2", "npi-a", "second");
+        writeIndexedRow("3", "npi-b", "third");
+        // moves row 3 from npi-b to npi-a
+        writeIndexedRow("3", "npi-a", "third");
+
+        //call test method
+        Map<String, String> rows = tableCreationConfig.findByIndex(TEST_INSTANCE_ID, "indexedTable", "cf1:npi", "npi-a", 10);
+
+        // assert
+        Assert.assertEquals(Map.of("1", "first", "2", "second", "3", "third"), rows);
+        Assert.assertTrue(tableCreationConfig.findByIndex(TEST_INSTANCE_ID, "indexedTable", "cf1:npi", "npi-b", 10).isEmpty());
+        Assert.assertNull(dataClientMap.get("test").readRow("indexedTable_by_npi", "npi-b\u00003"));
+
+        BigtableDeleteData deleteData = new BigtableDeleteData();
+        deleteData.setTableName("indexedTable");
+        deleteData.setRowKeyIds(List.of("1"));
+        tableCreationConfig.deleteFromTable(TEST_INSTANCE_ID, deleteData);
+
+        Assert.assertEquals(Map.of("2", "second", "3", "third"),
+                tableCreationConfig.findByIndex(TEST_INSTANCE_ID, "indexedTable", "cf1:npi", "npi-a", 10));
+        Assert.assertNull(dataClientMap.get("test").readRow("indexedTable_by_npi", "npi-a\u00001"));
+        assertThrows(KVLookUpException.class,
+                () -> tableCreationConfig.findByIndex(TEST_INSTANCE_ID, "indexedTable", "cf1:name", "first", 10));
+    }
+
+    @Test
+    public void readCellVersionsWithinTimeRange() {
+        GCPBigtableTable bigtable = new GCPBigtableTable();
+        bigtable.setTableName("versionedTable");
+        bigtable.setColumnFamily("cf1");
+        tableCreationConfig.createTable(TEST_INSTANCE_ID, bigtable);
+        for (long version = 1; version <= 4; version++) {
+            dataClientMap.get("test").mutateRow(RowMutation.create("versionedTable", "1")
+                    .setCell("cf1", "name", version * 1000, "value" + version)
+                    .setCell("cf1", "other", version * 1000, "ignored"));
+        }
+
+        //call test methods
+        List<CellVersion> latest = tableCreationConfig.readCellVersions(TEST_INSTANCE_ID, "versionedTable", "1", null, null, 1);
+        List<CellVersion> inRange = tableCreationConfig.readCellVersions(TEST_INSTANCE_ID, "versionedTable", "1", 2000L, 4000L, 10);
+        List<CellVersion> limited = tableCreationConfig.readCellVersions(TEST_INSTANCE_ID, "versionedTable", "1", 1000L, null, 2);
+
+        // assert
+        Assert.assertEquals(1, latest.size());
+        Assert.assertEquals("value4", latest.get(0).getValue());
+        Assert.assertEquals(4000, latest.get(0).getTimestamp());
+        Assert.assertEquals(List.of("value3", "value2"), inRange.stream().map(CellVersion::getValue).collect(Collectors.toList()));
+        Assert.assertEquals(List.of(4000L, 3000L), limited.stream().map(CellVersion::getTimestamp).collect(Collectors.toList()));
+        Assert.assertTrue(tableCreationConfig.readCellVersions(TEST_INSTANCE_ID, "versionedTable", "1", 5000L, null, 1).isEmpty());
+        assertThrows(KVLookUpException.class,
+                () -> tableCreationConfig.readCellVersions(TEST_INSTANCE_ID, "versionedTable", "1", 4000L, 2000L, 1));
+        assertThrows(KVLookUpException.class,
+                () -> tableCreationConfig.readCellVersions(TEST_INSTANCE_ID, "versionedTable", "1", null, null, 0));
+    }
+
+    private void writeIndexedRow(String rowKeyId, String npi, String name) {
+        ColumnData npiData = new ColumnData();
+        npiData.setColumnFamily("cf1");
+        npiData.setColumnName("npi");
+        npiData.setColumnValue(npi);
+        ColumnData nameData = new ColumnData();
+        nameData.setColumnFamily("cf1");
+        nameData.setColumnName("name");
+        nameData.setColumnValue(name);
+
+        BigtableTableData bigtableTableData = new BigtableTableData();
+        bigtableTableData.setTableName("indexedTable");
+        bigtableTableData.setRowKeyId(rowKeyId);
+        bigtableTableData.setData(List.of(npiData, nameData));
+        tableCreationConfig.writeToTable(TEST_INSTANCE_ID, bigtableTableData);
+    }
+}
@@ -0,0 +1,86 @@
+package com.gcp.kvlookup.dataaccess;
+
+import com.google.cloud.bigtable.admin.v2.BigtableTableAdminClient;
+import com.google.cloud.bigtable.admin.v2.BigtableTableAdminSettings;
+import com.google.cloud.bigtable.admin.v2.models.CreateTableRequest;
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.BigtableDataSettings;
+import com.google.cloud.bigtable.data.v2.models.RowMutation;
+import com.google.cloud.bigtable.emulator.v2.BigtableEmulatorRule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public class InstanceGroupReaderTest {
+
+    @Rule
+    public final BigtableEmulatorRule bigtableEmulator = BigtableEmulatorRule.create();
+
+    private static final String TEST_PROJECT_ID = "test";
+    private static final String PREFERRED_INSTANCE_ID = "test";
+    private static final String FALLBACK_INSTANCE_ID = "replica";
+
+    private final Map<String, BigtableDataClient> dataClientMap = new HashMap<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private InstanceGroupReader instanceGroupReader;
+
+    @Before
+    public void setUp() throws IOException {
+        for (String instanceId : List.of(PREFERRED_INSTANCE_ID, FALLBACK_INSTANCE_ID)) {
+            BigtableDataSettings.Builder dataSettings = BigtableDataSettings.newBuilderForEmulator(bigtableEmulator.getPort());
+            dataSettings.setInstanceId(instanceId);
+            dataSettings.setProjectId(TEST_PROJECT_ID);
+            dataClientMap.put(instanceId, BigtableDataClient.create(dataSettings.build()));
+        }
+        instanceGroupReader = new InstanceGroupReader(dataClientMap, meterRegistry, List.of("grp/test/replica", ""),
+                1000, 5000, "cf1", "name");
+    }
+
+    @After
+    public void tearDown() {
+        instanceGroupReader.stop();
+    }
+
+    @Test
+    public void readsFromPreferredInstance() throws IOException {
+        createTableWithRow(PREFERRED_INSTANCE_ID, "groupTable", "preferredValue");
+        createTableWithRow(FALLBACK_INSTANCE_ID, "groupTable", "fallbackValue");
+
+        Optional<String> value = instanceGroupReader.read("grp", "groupTable", "1");
+
+        Assert.assertEquals(Optional.of("preferredValue"), value);
+        Assert.assertEquals(1.0, meterRegistry.counter("kvlookup.instancegroup.reads", "group", "grp", "instance", PREFERRED_INSTANCE_ID).count(), 0.0);
+        Assert.assertTrue(instanceGroupReader.isGroup("grp"));
+        Assert.assertFalse(instanceGroupReader.isGroup(PREFERRED_INSTANCE_ID));
+    }
+
+    @Test
+    public void fallsBackWhenPreferredInstanceFails() throws IOException {
+        // the table only exists on the fallback instance so the preferred read fails with NOT_FOUND
+        createTableWithRow(FALLBACK_INSTANCE_ID, "fallbackTable", "fallbackValue");
+
+        Optional<String> value = instanceGroupReader.read("grp", "fallbackTable", "1");
+
+        Assert.assertEquals(Optional.of("fallbackValue"), value);
+        Assert.assertEquals(1.0, meterRegistry.counter("kvlookup.instancegroup.reads", "group", "grp", "instance", FALLBACK_INSTANCE_ID).count(), 0.0);
+    }
+
+    private void createTableWithRow(String instanceId, String tableName, String value) throws IOException {
+        BigtableTableAdminSettings.Builder tableAdminSettings = BigtableTableAdminSettings.newBuilderForEmulator(bigtableEmulator.getPort());
+        tableAdminSettings.setProjectId(TEST_PROJECT_ID);
+        tableAdminSettings.setInstanceId(instanceId);
+        try (BigtableTableAdminClient tableAdminClient = BigtableTableAdminClient.create(tableAdminSettings.build())) {
+            tableAdminClient.createTable(CreateTableRequest.of(tableName).addFamily("cf1"));
+        }
+        dataClientMap.get(instanceId).mutateRow(RowMutation.create(tableName, "1").setCell("cf1", "name", value));
+    }
+}
@@ -0,0 +1,31 @@
+package com.gcp.kvlookup.dataaccess;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class RowKeyEncoderTest {
+
+    private final RowKeyEncoder rowKeyEncoder = new RowKeyEncoder(List.of("saltedTable", ""));
+
+    @Test
+    public void encodeAndDecodeHashPrefixedKey() {
+        String encoded = rowKeyEncoder.encode("saltedTable", "12345");
+
+        Assert.assertNotEquals("12345", encoded);
+        Assert.assertTrue(encoded.endsWith("#12345"));
+        Assert.assertEquals(encoded, rowKeyEncoder.encode("saltedTable", "12345"));
+        Assert.assertEquals("12345", rowKeyEncoder.decode("saltedTable", encoded));
+    }
+
+    @Test
+    public void leavesOtherTablesUnchanged() {
+        Assert.assertEquals("12345", rowKeyEncoder.encode("testTable", "12345"));
+    }
+
+    @Test
+    public void uniformSplits() {
+        Assert.assertEquals(List.of("4000", "8000", "c000"), RowKeyEncoder.uniformSplits(4));
+    }
+}
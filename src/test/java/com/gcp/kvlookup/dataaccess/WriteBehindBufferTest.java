@@ -0,0 +1,170 @@
+package com.gcp.kvlookup.dataaccess;
+
+import com.gcp.kvlookup.cache.InMemoryLookupCache;
+import com.gcp.kvlookup.cache.LookupCache;
+import com.gcp.kvlookup.compression.ValueCompressor;
+import com.gcp.kvlookup.exception.KVLookUpException;
+import com.gcp.kvlookup.model.BigtableTableData;
+import com.gcp.kvlookup.model.ColumnData;
+import com.google.cloud.bigtable.admin.v2.BigtableTableAdminClient;
+import com.google.cloud.bigtable.admin.v2.BigtableTableAdminSettings;
+import com.google.cloud.bigtable.admin.v2.models.CreateTableRequest;
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.BigtableDataSettings;
+import com.google.cloud.bigtable.emulator.v2.BigtableEmulatorRule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.springframework.http.HttpStatus;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+
+public class WriteBehindBufferTest {
+
+    // Initialize the emulator Rule
+    @Rule
+    public final BigtableEmulatorRule bigtableEmulator = BigtableEmulatorRule.create();
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static final String TEST_INSTANCE_ID = "test";
+    private static final String TEST_PROJECT_ID = "test";
+    private Map<String, BigtableDataClient> dataClientMap = new HashMap<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private WriteBehindBuffer writeBehindBuffer;
+
+    @Before
+    public void setUp() throws Exception {
+        BigtableTableAdminSettings.Builder tableAdminSettings = BigtableTableAdminSettings.newBuilderForEmulator(bigtableEmulator.getPort());
+        tableAdminSettings.setProjectId(TEST_PROJECT_ID);
+        tableAdminSettings.setInstanceId(TEST_INSTANCE_ID);
+        BigtableTableAdminClient tableAdminClient = BigtableTableAdminClient.create(tableAdminSettings.build());
+        tableAdminClient.createTable(CreateTableRequest.of("asyncTable").addFamily("cf1"));
+
+        BigtableDataSettings.Builder dataSettings = BigtableDataSettings.newBuilderForEmulator(bigtableEmulator.getPort());
+        dataSettings.setInstanceId(TEST_INSTANCE_ID);
+        dataSettings.setProjectId(TEST_PROJECT_ID);
+        dataClientMap.put("test", BigtableDataClient.create(dataSettings.build()));
+
+        writeBehindBuffer = new WriteBehindBuffer(dataClientMap, meterRegistry,
+                temporaryFolder.getRoot().toPath().resolve("write-behind.log").toString(),
+                temporaryFolder.getRoot().toPath().resolve("dead-letter.jsonl").toString(), true, 1, 100, 10, 10, 1);
+        writeBehindBuffer.start();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException, IOException {
+        writeBehindBuffer.stop();
+    }
+
+    private static BigtableTableData row(String tableName, String rowKeyId) {
+        ColumnData columnData = new ColumnData();
+        columnData.setColumnFamily("cf1");
+        columnData.setColumnName("name");
+        columnData.setColumnValue("columnValue");
+
+        BigtableTableData bigtableTableData = new BigtableTableData();
+        bigtableTableData.setTableName(tableName);
+        bigtableTableData.setRowKeyId(rowKeyId);
+        bigtableTableData.setData(List.of(columnData));
+        return bigtableTableData;
+    }
+
+    @Test
+    public void rowsFailingAfterRetriesGoToTheDeadLetterFile() throws InterruptedException, IOException {
+        writeBehindBuffer.enqueue(TEST_INSTANCE_ID, row("missingTable", "1"));
+
+        Path deadLetterPath = temporaryFolder.getRoot().toPath().resolve("dead-letter.jsonl");
+        for (int attempt = 0; attempt < 50 && !Files.exists(deadLetterPath); attempt++) {
+            Thread.sleep(100);
+        }
+        List<String> lines = Files.readAllLines(deadLetterPath);
+        Assert.assertEquals(1, lines.size());
+        Assert.assertTrue(lines.get(0).contains("\"tableName\":\"missingTable\""));
+    }
+
+    @Test
+    public void batchesFailingUnexpectedlyGoToTheDeadLetterFile() throws InterruptedException, IOException {
+        ValueCompressor valueCompressor = Mockito.mock(ValueCompressor.class);
+        Mockito.when(valueCompressor.encode(anyString(), anyString(), anyString(), anyString())).thenThrow(new IllegalStateException("codec failure"));
+        writeBehindBuffer.setValueCompressor(valueCompressor);
+
+        //call test method
+        writeBehindBuffer.enqueue(TEST_INSTANCE_ID, row("asyncTable", "4"));
+
+        // assert
+        Path deadLetterPath = temporaryFolder.getRoot().toPath().resolve("dead-letter.jsonl");
+        for (int attempt = 0; attempt < 50 && !Files.exists(deadLetterPath); attempt++) {
+            Thread.sleep(100);
+        }
+        List<String> lines = Files.readAllLines(deadLetterPath);
+        Assert.assertEquals(1, lines.size());
+        Assert.assertTrue(lines.get(0).contains("\"rowKeyId\":\"4\""));
+        Assert.assertEquals(1.0, meterRegistry.counter("kvlookup.writebehind.flushfailed").count(), 0.0);
+    }
+
+    @Test
+    public void rejectsRowsOfIndexedTables() {
+        SecondaryIndexes secondaryIndexes = Mockito.mock(SecondaryIndexes.class);
+        Mockito.when(secondaryIndexes.isIndexed(TEST_INSTANCE_ID, "asyncTable")).thenReturn(true);
+        writeBehindBuffer.setSecondaryIndexes(secondaryIndexes);
+
+        KVLookUpException exception = assertThrows(KVLookUpException.class, () -> writeBehindBuffer.enqueue(TEST_INSTANCE_ID, row("asyncTable", "3")));
+
+        // assert
+        Assert.assertEquals(HttpStatus.BAD_REQUEST, exception.getStatus());
+        Assert.assertEquals(0, writeBehindBuffer.getQueueDepth());
+    }
+
+    @Test
+    public void flushInvalidatesCachedValues() throws InterruptedException {
+        InMemoryLookupCache lookupCache = new InMemoryLookupCache(300, 100);
+        writeBehindBuffer.setLookupCache(lookupCache);
+        // stands for a read between enqueue and flush caching the value bigtable still holds, the buffer itself does
+        // not invalidate on enqueue so only the flush can remove it
+        lookupCache.put(LookupCache.key(TEST_INSTANCE_ID, "asyncTable", "2"), "oldValue");
+        writeBehindBuffer.enqueue(TEST_INSTANCE_ID, row("asyncTable", "2"));
+
+        for (int attempt = 0; attempt < 50 && lookupCache.size() > 0; attempt++) {
+            Thread.sleep(100);
+        }
+        Assert.assertNull(lookupCache.get(LookupCache.key(TEST_INSTANCE_ID, "asyncTable", "2")));
+    }
+
+    @Test
+    public void enqueuedRowsAreFlushed() throws InterruptedException {
+        ColumnData columnData = new ColumnData();
+        columnData.setColumnFamily("cf1");
+        columnData.setColumnName("name");
+        columnData.setColumnValue("columnValue");
+
+        BigtableTableData bigtableTableData = new BigtableTableData();
+        bigtableTableData.setTableName("asyncTable");
+        bigtableTableData.setRowKeyId("1");
+        bigtableTableData.setData(List.of(columnData));
+
+        // call test method
+        writeBehindBuffer.enqueue(TEST_INSTANCE_ID, bigtableTableData);
+
+        // assert
+        for (int attempt = 0; attempt < 50 && dataClientMap.get("test").readRow("asyncTable", "1") == null; attempt++) {
+            Thread.sleep(100);
+        }
+        Assert.assertNotNull(dataClientMap.get("test").readRow("asyncTable", "1"));
+        Assert.assertEquals(0, writeBehindBuffer.getQueueDepth());
+    }
+}
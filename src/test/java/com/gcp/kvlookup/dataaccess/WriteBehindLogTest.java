@@ -0,0 +1,53 @@
+package com.gcp.kvlookup.dataaccess;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+public class WriteBehindLogTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void replaysPendingRecordsAfterReopen() throws IOException {
+        Path logPath = temporaryFolder.getRoot().toPath().resolve("write-behind.log");
+
+        WriteBehindLog log = new WriteBehindLog(logPath, 1024);
+        int firstEnd = log.append("first".getBytes(StandardCharsets.UTF_8));
+        log.append("second".getBytes(StandardCharsets.UTF_8));
+        log.release(firstEnd);
+        log.close();
+
+        WriteBehindLog reopened = new WriteBehindLog(logPath, 1024);
+        List<WriteBehindLog.Record> records = reopened.readPending();
+        reopened.close();
+
+        Assert.assertEquals(1, records.size());
+        Assert.assertEquals("second", new String(records.get(0).getPayload(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void wrapsAroundOnceHeadIsReleased() throws IOException {
+        Path logPath = temporaryFolder.getRoot().toPath().resolve("write-behind.log");
+        byte[] payload = new byte[20];
+
+        WriteBehindLog log = new WriteBehindLog(logPath, 80);
+        log.append(payload);
+        int secondEnd = log.append(payload);
+        log.append(payload);
+        // no room left at the end and the head has not moved yet
+        Assert.assertEquals(-1, log.append(payload));
+
+        log.release(secondEnd);
+        Assert.assertTrue(log.append(payload) > 0);
+        Assert.assertEquals(2, log.readPending().size());
+        log.close();
+    }
+}
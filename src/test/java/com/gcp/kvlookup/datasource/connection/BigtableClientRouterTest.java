@@ -0,0 +1,50 @@
+package com.gcp.kvlookup.datasource.connection;
+
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.BigtableDataSettings;
+import com.google.cloud.bigtable.emulator.v2.BigtableEmulatorRule;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class BigtableClientRouterTest {
+
+    @Rule
+    public final BigtableEmulatorRule bigtableEmulator = BigtableEmulatorRule.create();
+
+    private static final String TEST_INSTANCE_ID = "test";
+    private static final String TEST_PROJECT_ID = "test";
+
+    @Test
+    public void routesConfiguredOperationsToProfileClient() throws IOException {
+        BigtableDataClient defaultClient = createClient("default");
+        BigtableDataClient batchClient = createClient("batch");
+        BigtableClientRouter clientRouter = new BigtableClientRouter(Map.of(TEST_INSTANCE_ID, defaultClient));
+        clientRouter.addRoute(TEST_INSTANCE_ID, BigtableClientRouter.Operation.SCAN, batchClient);
+        clientRouter.addRoute(TEST_INSTANCE_ID, BigtableClientRouter.Operation.BULK_WRITE, batchClient);
+
+        Assert.assertSame(batchClient, clientRouter.get(TEST_INSTANCE_ID, BigtableClientRouter.Operation.SCAN));
+        Assert.assertSame(batchClient, clientRouter.get(TEST_INSTANCE_ID, BigtableClientRouter.Operation.BULK_WRITE));
+        Assert.assertSame(defaultClient, clientRouter.get(TEST_INSTANCE_ID, BigtableClientRouter.Operation.POINT_READ));
+        Assert.assertNull(clientRouter.get("unknown", BigtableClientRouter.Operation.SCAN));
+    }
+
+    @Test
+    public void parsesOperationPropertyNames() {
+        Assert.assertEquals(BigtableClientRouter.Operation.BULK_WRITE, BigtableClientRouter.Operation.fromPropertyName("bulkWrite"));
+        assertThrows(IllegalArgumentException.class, () -> BigtableClientRouter.Operation.fromPropertyName("admin"));
+    }
+
+    private BigtableDataClient createClient(String appProfileId) throws IOException {
+        BigtableDataSettings.Builder dataSettings = BigtableDataSettings.newBuilderForEmulator(bigtableEmulator.getPort());
+        dataSettings.setInstanceId(TEST_INSTANCE_ID);
+        dataSettings.setProjectId(TEST_PROJECT_ID);
+        dataSettings.setAppProfileId(appProfileId);
+        return BigtableDataClient.create(dataSettings.build());
+    }
+}
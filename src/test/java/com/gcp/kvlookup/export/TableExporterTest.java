@@ -0,0 +1,141 @@
+package com.gcp.kvlookup.export;
+
+import com.gcp.kvlookup.exception.KVLookUpException;
+import com.gcp.kvlookup.model.ExportJob;
+import com.google.cloud.bigtable.admin.v2.BigtableTableAdminClient;
+import com.google.cloud.bigtable.admin.v2.BigtableTableAdminSettings;
+import com.google.cloud.bigtable.admin.v2.models.CreateTableRequest;
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.BigtableDataSettings;
+import com.google.cloud.bigtable.data.v2.models.BulkMutation;
+import com.google.cloud.bigtable.data.v2.models.Mutation;
+import com.google.cloud.bigtable.emulator.v2.BigtableEmulatorRule;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.http.HttpStatus;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TableExporterTest {
+
+    @Rule
+    public final BigtableEmulatorRule bigtableEmulator = BigtableEmulatorRule.create();
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static final String TEST_INSTANCE_ID = "test";
+    private static final String TEST_PROJECT_ID = "test";
+    private Map<String, BigtableDataClient> dataClientMap = new HashMap<>();
+    private TableExporter tableExporter;
+
+    @Before
+    public void setUp() throws IOException {
+        BigtableTableAdminSettings.Builder tableAdminSettings = BigtableTableAdminSettings.newBuilderForEmulator(bigtableEmulator.getPort());
+        tableAdminSettings.setProjectId(TEST_PROJECT_ID);
+        tableAdminSettings.setInstanceId(TEST_INSTANCE_ID);
+        BigtableTableAdminClient tableAdminClient = BigtableTableAdminClient.create(tableAdminSettings.build());
+        tableAdminClient.createTable(CreateTableRequest.of("exportTable").addFamily("cf1").addSplit("member5"));
+
+        BigtableDataSettings.Builder dataSettings = BigtableDataSettings.newBuilderForEmulator(bigtableEmulator.getPort());
+        dataSettings.setInstanceId(TEST_INSTANCE_ID);
+        dataSettings.setProjectId(TEST_PROJECT_ID);
+        BigtableDataClient dataClient = BigtableDataClient.create(dataSettings.build());
+        BulkMutation bulkMutation = BulkMutation.create("exportTable");
+        for (int i = 0; i < 100; i++) {
+            bulkMutation.add("member" + i, Mutation.create().setCell("cf1", "name", "value" + i));
+        }
+        dataClient.bulkMutateRows(bulkMutation);
+        dataClientMap.put(TEST_INSTANCE_ID, dataClient);
+
+        tableExporter = new TableExporter(dataClientMap, temporaryFolder.getRoot().getPath(), 2, 60);
+    }
+
+    @After
+    public void tearDown() {
+        tableExporter.stop();
+    }
+
+    @Test
+    public void exportsEveryRowToAvro() throws Exception {
+        //call test method
+        ExportJob job = tableExporter.export(TEST_INSTANCE_ID, "exportTable");
+        long deadline = System.currentTimeMillis() + 10000;
+        while (ExportJob.RUNNING.equals(job.getStatus()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+
+        // assert
+        Assert.assertEquals(ExportJob.COMPLETED, job.getStatus());
+        Assert.assertEquals(100, job.getRowsExported());
+        Assert.assertEquals(job.getShardsTotal(), job.getShardsCompleted());
+        Assert.assertSame(job, tableExporter.getJob(job.getJobId()).get());
+        Path jobDirectory = Paths.get(temporaryFolder.getRoot().getPath(), TEST_INSTANCE_ID, "exportTable", job.getJobId());
+        Assert.assertTrue(Files.exists(jobDirectory.resolve("_SUCCESS")));
+
+        Set<String> rowKeys = new HashSet<>();
+        List<String> files = job.getFiles();
+        for (String file : files) {
+            try (DataFileReader<GenericRecord> reader = new DataFileReader<>(new File(file), new GenericDatumReader<>(TableExporter.ROW_SCHEMA))) {
+                for (GenericRecord record : reader) {
+                    String rowKey = record.get("rowKey").toString();
+                    Assert.assertTrue(rowKeys.add(rowKey));
+                    GenericRecord cell = ((List<GenericRecord>) record.get("cells")).get(0);
+                    ByteBuffer value = (ByteBuffer) cell.get("value");
+                    Assert.assertEquals("value" + rowKey.substring("member".length()), StandardCharsets.UTF_8.decode(value).toString());
+                }
+            }
+        }
+        Assert.assertEquals(100, rowKeys.size());
+    }
+
+    @Test
+    public void rejectsNamesOutsideTheExportDirectory() {
+        KVLookUpException traversal = assertThrows(KVLookUpException.class, () -> tableExporter.export(TEST_INSTANCE_ID, "../exportTable"));
+        Assert.assertEquals(HttpStatus.BAD_REQUEST, traversal.getStatus());
+        KVLookUpException unknownInstance = assertThrows(KVLookUpException.class, () -> tableExporter.export("../test", "exportTable"));
+        Assert.assertEquals(HttpStatus.BAD_REQUEST, unknownInstance.getStatus());
+
+        // assert
+        Assert.assertEquals(0, temporaryFolder.getRoot().list().length);
+    }
+
+    @Test
+    public void evictsFinishedJobsAfterTheRetention() throws Exception {
+        tableExporter.stop();
+        tableExporter = new TableExporter(dataClientMap, temporaryFolder.getRoot().getPath(), 2, 0);
+        ExportJob job = tableExporter.export(TEST_INSTANCE_ID, "exportTable");
+        long deadline = System.currentTimeMillis() + 10000;
+        while (ExportJob.RUNNING.equals(job.getStatus()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        Thread.sleep(5);
+
+        //call test method
+        ExportJob nextJob = tableExporter.export(TEST_INSTANCE_ID, "exportTable");
+
+        // assert
+        Assert.assertFalse(tableExporter.getJob(job.getJobId()).isPresent());
+        Assert.assertTrue(tableExporter.getJob(nextJob.getJobId()).isPresent());
+    }
+}
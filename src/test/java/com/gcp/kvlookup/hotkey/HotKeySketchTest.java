@@ -0,0 +1,43 @@
+package com.gcp.kvlookup.hotkey;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+public class HotKeySketchTest {
+
+    @Test
+    public void keepsHeavyHittersAmongManyColdKeys() {
+        HotKeySketch sketch = new HotKeySketch(1024, 10);
+        Random random = new Random(7);
+        for (int i = 0; i < 200_000; i++) {
+            if (i % 4 == 0) {
+                sketch.add("hot-" + random.nextInt(3));
+            } else {
+                sketch.add("cold-" + random.nextInt(100_000));
+            }
+        }
+
+        Map<String, Long> top = sketch.top(3);
+        Assert.assertEquals(Map.of("hot-0", 0L, "hot-1", 0L, "hot-2", 0L).keySet(), top.keySet());
+        for (long count : top.values()) {
+            Assert.assertTrue(count >= 50_000 / 3 - 2_000);
+        }
+        Assert.assertEquals(10, sketch.top(100).size());
+    }
+
+    @Test
+    public void decayHalvesEstimates() {
+        HotKeySketch sketch = new HotKeySketch(64, 4);
+        for (int i = 0; i < 100; i++) {
+            sketch.add("key");
+        }
+
+        sketch.decay();
+
+        Assert.assertEquals(50, sketch.estimate("key"));
+        Assert.assertEquals(50L, (long) sketch.top(1).get("key"));
+    }
+}
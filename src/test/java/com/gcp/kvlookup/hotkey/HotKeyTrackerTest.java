@@ -0,0 +1,55 @@
+package com.gcp.kvlookup.hotkey;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+public class HotKeyTrackerTest {
+
+    @Test
+    public void servesOnlyHotKeysFromCache() {
+        HotKeyTracker tracker = new HotKeyTracker(new SimpleMeterRegistry(), 256, 5, 2, 60, true, 1, 3, 60, 1000);
+        for (int i = 0; i < 3; i++) {
+            tracker.recordRead("test", "testTable", "1");
+        }
+        tracker.recordWrite("test", "testTable", "2");
+        tracker.refreshHotKeys();
+
+        tracker.cacheIfHot("test", "testTable", "1", "value1");
+        tracker.cacheIfHot("test", "testTable", "2", "value2");
+        Assert.assertEquals("value1", tracker.getCached("test", "testTable", "1"));
+        Assert.assertNull(tracker.getCached("test", "testTable", "2"));
+
+        tracker.invalidate("test", "testTable", List.of("1"));
+        Assert.assertNull(tracker.getCached("test", "testTable", "1"));
+
+        Map<?, ?> table = (Map<?, ?>) tracker.getHotKeys().get("test/testTable");
+        Assert.assertEquals(3L, table.get("reads"));
+        Assert.assertEquals(1L, table.get("writes"));
+    }
+
+    @Test
+    public void ignoresTablesPastMaxTables() {
+        HotKeyTracker tracker = new HotKeyTracker(new SimpleMeterRegistry(), 256, 5, 1, 60, false, 1, 1, 60, 1000);
+        tracker.recordRead("test", "table1", "1");
+        tracker.recordRead("test", "table2", "1");
+
+        Assert.assertEquals(List.of("test/table1"), List.copyOf(tracker.getHotKeys().keySet()));
+    }
+
+    @Test
+    public void dropsTablesIdleForAWholeDecayInterval() {
+        HotKeyTracker tracker = new HotKeyTracker(new SimpleMeterRegistry(), 256, 5, 1, 60, false, 1, 1, 60, 1000);
+        tracker.recordRead("test", "madeUpTable", "1");
+        tracker.decay();
+        Assert.assertEquals(List.of("test/madeUpTable"), List.copyOf(tracker.getHotKeys().keySet()));
+
+        tracker.decay();
+        tracker.recordRead("test", "testTable", "1");
+
+        Assert.assertEquals(List.of("test/testTable"), List.copyOf(tracker.getHotKeys().keySet()));
+    }
+}
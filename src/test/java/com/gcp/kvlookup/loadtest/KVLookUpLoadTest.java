@@ -0,0 +1,202 @@
+package com.gcp.kvlookup.loadtest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.gcp.kvlookup.KVLookupApplication;
+import com.google.cloud.bigtable.emulator.v2.BigtableEmulatorRule;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Starts the application against the bigtable emulator, seeds a table through the API and drives a mixed read, write
+    and delete workload over zipfian keys. Throughput and p50/p99/p99.9 per endpoint are printed and written to
+    target/loadtest/results.json, and the run fails when an endpoint regresses past the baseline recorded on the same
+    machine.
+
+    Run with mvn -Ploadtest test, see the Load Testing section of the README for the knobs.
+ */
+public class KVLookUpLoadTest {
+
+    @ClassRule
+    public static final BigtableEmulatorRule bigtableEmulator = BigtableEmulatorRule.create();
+
+    private static final String INSTANCE_ID = "test";
+    private static final String TABLE_NAME = "loadTestTable";
+    private static final int KEYS = Integer.getInteger("loadtest.keys", 10000);
+    private static final int THREADS = Integer.getInteger("loadtest.threads", 16);
+    private static final int WARMUP_SECONDS = Integer.getInteger("loadtest.warmupSeconds", 10);
+    private static final int DURATION_SECONDS = Integer.getInteger("loadtest.durationSeconds", 60);
+    private static final double ZIPFIAN_CONSTANT = Double.parseDouble(System.getProperty("loadtest.zipfianConstant", "0.99"));
+    private static final int READ_PERCENT = Integer.getInteger("loadtest.readPercent", 80);
+    private static final int WRITE_PERCENT = Integer.getInteger("loadtest.writePercent", 15);
+    private static final double TOLERANCE = Double.parseDouble(System.getProperty("loadtest.tolerance", "0.25"));
+    private static final Path BASELINE = Paths.get(System.getProperty("loadtest.baseline", "src/test/resources/loadtest/baseline.json"));
+    private static final Path RESULTS = Paths.get("target", "loadtest", "results.json");
+
+    private final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final ZipfianGenerator keyGenerator = new ZipfianGenerator(KEYS, ZIPFIAN_CONSTANT);
+    private ConfigurableApplicationContext context;
+    private String baseUrl;
+
+    @Before
+    public void setUp() {
+        context = new SpringApplicationBuilder(KVLookupApplication.class).properties(
+                "server.port=0",
+                "gcp.projectId=test",
+                "gcp.instanceId.list=" + INSTANCE_ID,
+                "gcp.bigtable.emulatorHost=localhost:" + bigtableEmulator.getPort(),
+                "spring.autoconfigure.exclude=com.google.cloud.spring.autoconfigure.core.GcpContextAutoConfiguration",
+                "logging.level.root=WARN").run();
+        baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/v1/" + INSTANCE_ID;
+    }
+
+    @After
+    public void tearDown() {
+        context.close();
+    }
+
+    @Test
+    public void mixedWorkload() throws Exception {
+        send("createTable", HttpRequest.newBuilder(URI.create(baseUrl + "/createTable"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"tableName\":\"" + TABLE_NAME + "\",\"columnFamily\":\"cf1\"}")).build());
+        seed();
+
+        runWorkload(WARMUP_SECONDS);
+        Map<String, LatencyRecorder.EndpointStats> results = runWorkload(DURATION_SECONDS).summarize(DURATION_SECONDS);
+
+        System.out.printf("%n%-12s %10s %8s %10s %10s %10s %10s%n", "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p99.9 ms");
+        results.forEach((endpoint, stats) -> System.out.printf("%-12s %10d %8d %10.1f %10.2f %10.2f %10.2f%n", endpoint,
+                stats.getRequests(), stats.getErrors(), stats.getThroughput(), stats.getP50Millis(), stats.getP99Millis(), stats.getP999Millis()));
+        Files.createDirectories(RESULTS.getParent());
+        objectMapper.writeValue(RESULTS.toFile(), results);
+
+        if (Boolean.getBoolean("loadtest.updateBaseline")) {
+            Files.createDirectories(BASELINE.toAbsolutePath().getParent());
+            objectMapper.writeValue(BASELINE.toFile(), results);
+            return;
+        }
+        // baselines are only meaningful for the machine they were recorded on, so none is shipped with the repository
+        Assume.assumeTrue("No baseline at " + BASELINE + ", record one on this machine with -Dloadtest.updateBaseline=true",
+                Files.exists(BASELINE));
+        Map<String, LatencyRecorder.EndpointStats> baseline = objectMapper.readValue(BASELINE.toFile(),
+                new TypeReference<Map<String, LatencyRecorder.EndpointStats>>() {
+                });
+        List<String> regressions = new ArrayList<>();
+        baseline.forEach((endpoint, expected) -> {
+            LatencyRecorder.EndpointStats actual = results.get(endpoint);
+            if (actual == null) {
+                regressions.add(endpoint + " was not exercised");
+                return;
+            }
+            if (actual.getP99Millis() > expected.getP99Millis() * (1 + TOLERANCE)) {
+                regressions.add(String.format("%s p99 %.2fms exceeds baseline %.2fms", endpoint, actual.getP99Millis(), expected.getP99Millis()));
+            }
+            if (actual.getThroughput() < expected.getThroughput() * (1 - TOLERANCE)) {
+                regressions.add(String.format("%s throughput %.1f req/s below baseline %.1f req/s", endpoint, actual.getThroughput(), expected.getThroughput()));
+            }
+            if (actual.getErrors() > 0) {
+                regressions.add(endpoint + " had " + actual.getErrors() + " errors");
+            }
+        });
+        Assert.assertTrue(String.join("\n", regressions), regressions.isEmpty());
+    }
+
+    private void seed() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int key = 0; key < KEYS; key++) {
+            int rowKey = key;
+            futures.add(executor.submit(() -> send("seed", insertRequest(rowKey))));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+    }
+
+    private LatencyRecorder runWorkload(int seconds) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Future<LatencyRecorder>> futures = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            futures.add(executor.submit(() -> {
+                LatencyRecorder recorder = new LatencyRecorder();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    long rowKey = keyGenerator.next(random);
+                    int operation = random.nextInt(100);
+                    if (operation < READ_PERCENT) {
+                        timed(recorder, "readCellData", HttpRequest.newBuilder(URI.create(baseUrl + "/readCellData?tableName=" + TABLE_NAME + "&id=" + rowKey)).GET().build());
+                    } else if (operation < READ_PERCENT + WRITE_PERCENT) {
+                        timed(recorder, "insertData", insertRequest(rowKey));
+                    } else {
+                        timed(recorder, "deleteData", HttpRequest.newBuilder(URI.create(baseUrl + "/deleteData"))
+                                .header("Content-Type", "application/json")
+                                .method("DELETE", HttpRequest.BodyPublishers.ofString("{\"tableName\":\"" + TABLE_NAME + "\",\"rowKeyIds\":[\"" + rowKey + "\"]}")).build());
+                    }
+                }
+                return recorder;
+            }));
+        }
+        LatencyRecorder merged = new LatencyRecorder();
+        for (Future<LatencyRecorder> future : futures) {
+            merged.merge(future.get());
+        }
+        executor.shutdown();
+        return merged;
+    }
+
+    private HttpRequest insertRequest(long rowKey) {
+        String body = "{\"tableName\":\"" + TABLE_NAME + "\",\"rowKeyId\":\"" + rowKey + "\",\"data\":[{\"columnFamily\":\"cf1\",\"columnName\":\"name\",\"columnValue\":\"value-" + rowKey + "\"}]}";
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/insertData"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+    }
+
+    private void timed(LatencyRecorder recorder, String endpoint, HttpRequest request) {
+        long start = System.nanoTime();
+        boolean success;
+        try {
+            int status = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            // reads of deleted keys are expected to miss
+            success = status < 300 || (status == 404 && "readCellData".equals(endpoint));
+        } catch (Exception e) {
+            success = false;
+        }
+        recorder.record(endpoint, System.nanoTime() - start, success);
+    }
+
+    private Void send(String endpoint, HttpRequest request) throws Exception {
+        int status = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        if (status >= 300) {
+            throw new IllegalStateException(endpoint + " failed with status " + status);
+        }
+        return null;
+    }
+}
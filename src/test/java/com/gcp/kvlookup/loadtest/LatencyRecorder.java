@@ -0,0 +1,130 @@
+package com.gcp.kvlookup.loadtest;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+    Latencies per endpoint for one worker thread, merged once the run is over so recording needs no synchronization.
+ */
+class LatencyRecorder {
+
+    private final Map<String, Samples> samples = new HashMap<>();
+
+    void record(String endpoint, long latencyNanos, boolean success) {
+        Samples endpointSamples = samples.computeIfAbsent(endpoint, key -> new Samples());
+        if (!success) {
+            endpointSamples.errors++;
+        }
+        if (endpointSamples.count == endpointSamples.latencies.length) {
+            endpointSamples.latencies = Arrays.copyOf(endpointSamples.latencies, endpointSamples.latencies.length * 2);
+        }
+        endpointSamples.latencies[endpointSamples.count++] = latencyNanos;
+    }
+
+    void merge(LatencyRecorder other) {
+        other.samples.forEach((endpoint, otherSamples) -> {
+            Samples endpointSamples = samples.computeIfAbsent(endpoint, key -> new Samples());
+            long[] merged = Arrays.copyOf(endpointSamples.latencies, endpointSamples.count + otherSamples.count);
+            System.arraycopy(otherSamples.latencies, 0, merged, endpointSamples.count, otherSamples.count);
+            endpointSamples.latencies = merged;
+            endpointSamples.count = merged.length;
+            endpointSamples.errors += otherSamples.errors;
+        });
+    }
+
+    Map<String, EndpointStats> summarize(double durationSeconds) {
+        Map<String, EndpointStats> stats = new TreeMap<>();
+        samples.forEach((endpoint, endpointSamples) -> {
+            long[] sorted = Arrays.copyOf(endpointSamples.latencies, endpointSamples.count);
+            Arrays.sort(sorted);
+            stats.put(endpoint, new EndpointStats(sorted.length, endpointSamples.errors, sorted.length / durationSeconds,
+                    percentileMillis(sorted, 0.50), percentileMillis(sorted, 0.99), percentileMillis(sorted, 0.999)));
+        });
+        return stats;
+    }
+
+    private static double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    private static class Samples {
+        private long[] latencies = new long[1024];
+        private int count;
+        private long errors;
+    }
+
+    static class EndpointStats {
+        private long requests;
+        private long errors;
+        private double throughput;
+        private double p50Millis;
+        private double p99Millis;
+        private double p999Millis;
+
+        EndpointStats() {
+        }
+
+        EndpointStats(long requests, long errors, double throughput, double p50Millis, double p99Millis, double p999Millis) {
+            this.requests = requests;
+            this.errors = errors;
+            this.throughput = throughput;
+            this.p50Millis = p50Millis;
+            this.p99Millis = p99Millis;
+            this.p999Millis = p999Millis;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public double getThroughput() {
+            return throughput;
+        }
+
+        public double getP50Millis() {
+            return p50Millis;
+        }
+
+        public double getP99Millis() {
+            return p99Millis;
+        }
+
+        public double getP999Millis() {
+            return p999Millis;
+        }
+
+        public void setRequests(long requests) {
+            this.requests = requests;
+        }
+
+        public void setErrors(long errors) {
+            this.errors = errors;
+        }
+
+        public void setThroughput(double throughput) {
+            this.throughput = throughput;
+        }
+
+        public void setP50Millis(double p50Millis) {
+            this.p50Millis = p50Millis;
+        }
+
+        public void setP99Millis(double p99Millis) {
+            this.p99Millis = p99Millis;
+        }
+
+        public void setP999Millis(double p999Millis) {
+            this.p999Millis = p999Millis;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.gcp.kvlookup.loadtest;
+
+import com.google.common.hash.Hashing;
+
+import java.util.Random;
+
+/*
+    Zipfian key ranks as in Gray et al. "Quickly generating billion-record synthetic databases" (the YCSB generator).
+    Ranks are scrambled with a hash so the hot keys are spread over the key space instead of sitting next to each other.
+ */
+class ZipfianGenerator {
+
+    private final long items;
+    private final double theta;
+    private final double zetan;
+    private final double alpha;
+    private final double eta;
+
+    ZipfianGenerator(long items, double theta) {
+        this.items = items;
+        this.theta = theta;
+        this.zetan = zeta(items, theta);
+        this.alpha = 1.0 / (1.0 - theta);
+        this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta(2, theta) / zetan);
+    }
+
+    long nextRank(Random random) {
+        double u = random.nextDouble();
+        double uz = u * zetan;
+        if (uz < 1.0) {
+            return 0;
+        }
+        if (uz < 1.0 + Math.pow(0.5, theta)) {
+            return 1;
+        }
+        return Math.min(items - 1, (long) (items * Math.pow(eta * u - eta + 1, alpha)));
+    }
+
+    long next(Random random) {
+        return Math.floorMod(Hashing.murmur3_128().hashLong(nextRank(random)).asLong(), items);
+    }
+
+    private static double zeta(long n, double theta) {
+        double sum = 0;
+        for (long i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+}
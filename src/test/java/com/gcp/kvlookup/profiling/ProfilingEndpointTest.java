@@ -0,0 +1,73 @@
+package com.gcp.kvlookup.profiling;
+
+import com.gcp.kvlookup.exception.KVLookUpException;
+import com.gcp.kvlookup.profiling.Stages.Stage;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ProfilingEndpointTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ProfilingEndpoint profilingEndpoint;
+
+    @After
+    public void tearDown() {
+        profilingEndpoint.closeRecording();
+    }
+
+    @Test
+    public void recordsStageEventsWithOutcomes() throws IOException {
+        profilingEndpoint = new ProfilingEndpoint("default", 60, 10, 0, temporaryFolder.getRoot().getPath());
+        Assert.assertEquals("NONE", profilingEndpoint.status().get("state"));
+
+        Assert.assertEquals(200, profilingEndpoint.start(30L).getStatus());
+        Assert.assertEquals(HttpStatus.CONFLICT.value(), profilingEndpoint.start(null).getStatus());
+        Assert.assertEquals("RUNNING", profilingEndpoint.status().get("state"));
+
+        Stages.inStage(Stage.SERVICE, "findCellDataById", "test", "testTable", Optional::empty);
+        Stages.runInStage(Stage.BIGTABLE_RPC, "mutateRow", "test", "testTable", () -> {
+        });
+        assertThrows(KVLookUpException.class, () -> Stages.inStage(Stage.DATA_ACCESS, "findCellDataById", "test", "testTable", () -> {
+            throw KVLookUpException.notFound();
+        }));
+        assertThrows(StackOverflowError.class, () -> Stages.inStage(Stage.SERIALIZATION, "decodeValue", "test", "testTable", () -> {
+            throw new StackOverflowError();
+        }));
+        WebEndpointResponse<Resource> response = profilingEndpoint.stop();
+
+        Assert.assertEquals(200, response.getStatus());
+        List<RecordedEvent> events = RecordingFile.readAllEvents(response.getBody().getFile().toPath()).stream()
+                .filter(event -> event.getEventType().getName().equals(StageEvent.NAME))
+                .collect(Collectors.toList());
+        Map<String, String> outcomes = events.stream().collect(Collectors.toMap(event -> event.getString("stage"), event -> event.getString("outcome")));
+        Assert.assertEquals(Map.of("service", Stages.MISS, "bigtableRpc", Stages.OK, "dataAccess", "404",
+                "serialization", "StackOverflowError"), outcomes);
+        Assert.assertEquals("testTable", events.get(0).getString("table"));
+        Assert.assertEquals("NONE", profilingEndpoint.status().get("state"));
+    }
+
+    @Test
+    public void stopWithoutRecordingIsNotFound() throws IOException {
+        profilingEndpoint = new ProfilingEndpoint("default", 60, 10, 0, temporaryFolder.getRoot().getPath());
+
+        Assert.assertEquals(404, profilingEndpoint.stop().getStatus());
+    }
+}
@@ -0,0 +1,106 @@
+package com.gcp.kvlookup.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.List;
+import java.util.Map;
+
+public class RateLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    public void allowsBurstThenRejects() {
+        RateLimiter rateLimiter = new RateLimiter(meterRegistry, 1, 3, 1000, 1000, 100, List.of(""));
+
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(0, rateLimiter.acquire("client1", "test", "testTable"));
+        }
+
+        Assert.assertTrue(rateLimiter.acquire("client1", "test", "testTable") > 0);
+        Assert.assertEquals(0, rateLimiter.acquire("client2", "test", "testTable"));
+        Assert.assertEquals(1.0, meterRegistry.counter("kvlookup.ratelimit.rejected", "scope", RateLimiter.CLIENT).count(), 0.0);
+    }
+
+    @Test
+    public void appliesTableOverridesAndRuntimeChanges() {
+        RateLimiter rateLimiter = new RateLimiter(meterRegistry, 1000, 1000, 1000, 1000, 100, List.of("table/test/hotTable/1/1"));
+
+        Assert.assertEquals(0, rateLimiter.acquire("client1", "test", "hotTable"));
+        Assert.assertTrue(rateLimiter.acquire("client1", "test", "hotTable") > 0);
+        Assert.assertEquals("1.0/1", rateLimiter.getLimits().get("table/test/hotTable"));
+
+        rateLimiter.setLimit(RateLimiter.CLIENT, "client2", 1, 1);
+        Assert.assertEquals(0, rateLimiter.acquire("client2", "test", "testTable"));
+        Assert.assertTrue(rateLimiter.acquire("client2", "test", "testTable") > 0);
+    }
+
+    @Test
+    public void tableRejectionGivesTheClientPermitBack() {
+        RateLimiter rateLimiter = new RateLimiter(meterRegistry, 1, 2, 1000, 1000, 100, List.of("table/test/hotTable/1/1"));
+
+        Assert.assertEquals(0, rateLimiter.acquire("client1", "test", "hotTable"));
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(rateLimiter.acquire("client1", "test", "hotTable") > 0);
+        }
+
+        // only the first request counted against the client's burst of 2
+        Assert.assertEquals(0, rateLimiter.acquire("client1", "test", "otherTable"));
+        Assert.assertEquals(0.0, meterRegistry.counter("kvlookup.ratelimit.rejected", "scope", RateLimiter.CLIENT).count(), 0.0);
+    }
+
+    @Test
+    public void idsBeyondMaxTrackedKeysGetTheirOwnBucket() {
+        RateLimiter rateLimiter = new RateLimiter(meterRegistry, 0.001, 1, 1000000, 1000000, 10, List.of(""));
+
+        Assert.assertEquals(0, rateLimiter.acquire("client1", "test", "testTable"));
+        for (int i = 0; i < 100; i++) {
+            rateLimiter.acquire("random" + i, "test", "testTable");
+        }
+
+        // every random id gets its own bucket instead of sharing one, so none of them is rejected
+        Assert.assertEquals(0.0, meterRegistry.counter("kvlookup.ratelimit.rejected", "scope", RateLimiter.CLIENT).count(), 0.0);
+    }
+
+    @Test
+    public void evictionKeepsBucketsThatAreNotRefilled() {
+        // new clients refill within a nanosecond, busyClient stays empty for a thousand seconds
+        RateLimiter rateLimiter = new RateLimiter(meterRegistry, 1000000000, 1, 1000000, 1000000, 10, List.of("client/busyClient/0.001/1"));
+        Assert.assertEquals(0, rateLimiter.acquire("busyClient", "test", "testTable"));
+
+        //call test method
+        for (int i = 0; i < 100; i++) {
+            rateLimiter.acquire("random" + i, "test", "testTable");
+        }
+
+        // assert
+        Assert.assertTrue(rateLimiter.acquire("busyClient", "test", "testTable") > 0);
+    }
+
+    @Test
+    public void interceptorRespondsTooManyRequestsWithRetryAfter() throws Exception {
+        RateLimiter rateLimiter = new RateLimiter(meterRegistry, 0.5, 1, 1000, 1000, 100, List.of(""));
+        RateLimitInterceptor rateLimitInterceptor = new RateLimitInterceptor(rateLimiter, "X-Client-Id");
+
+        Assert.assertTrue(rateLimitInterceptor.preHandle(readRequest(), new MockHttpServletResponse(), null));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        Assert.assertFalse(rateLimitInterceptor.preHandle(readRequest(), response, null));
+
+        Assert.assertEquals(429, response.getStatus());
+        Assert.assertEquals("2", response.getHeader(HttpHeaders.RETRY_AFTER));
+    }
+
+    private MockHttpServletRequest readRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/v1/test/readCellData");
+        request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, Map.of("instanceID", "test"));
+        request.addHeader("X-Client-Id", "batch-job");
+        request.setParameter("tableName", "testTable");
+        return request;
+    }
+}
@@ -0,0 +1,77 @@
+package com.gcp.kvlookup.scheduling;
+
+import com.gcp.kvlookup.exception.KVLookUpException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RequestLanesTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private RequestLanes requestLanes;
+
+    @Before
+    public void setUp() {
+        requestLanes = new RequestLanes(meterRegistry, 2, 10, 1, 1, 1, 1, 1, 1);
+    }
+
+    @After
+    public void tearDown() {
+        requestLanes.stop();
+    }
+
+    @Test
+    public void runsOnLaneThreadAndRecordsQueueTime() throws Exception {
+        //call test method
+        String threadName = requestLanes.submit(RequestLanes.Lane.ONLINE, () -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS);
+
+        // assert
+        Assert.assertTrue(threadName.startsWith("lane-online-"));
+        Assert.assertEquals(1, meterRegistry.timer("kvlookup.lane.queue.time", "lane", "online").count());
+    }
+
+    @Test
+    public void rejectsWhenLaneQueueIsFullWithoutAffectingOtherLanes() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> running = requestLanes.submit(RequestLanes.Lane.BATCH, () -> awaitQuietly(release));
+        CompletableFuture<Boolean> queued = requestLanes.submit(RequestLanes.Lane.BATCH, () -> true);
+
+        //call test method
+        CompletableFuture<Boolean> rejected = requestLanes.submit(RequestLanes.Lane.BATCH, () -> true);
+
+        // assert
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> rejected.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ((KVLookUpException) exception.getCause()).getStatus());
+        Assert.assertEquals(1.0, meterRegistry.counter("kvlookup.lane.rejected", "lane", "batch").count(), 0.0);
+        Assert.assertEquals("online", requestLanes.submit(RequestLanes.Lane.ONLINE, () -> "online").get(5, TimeUnit.SECONDS));
+
+        release.countDown();
+        Assert.assertTrue(running.get(5, TimeUnit.SECONDS));
+        Assert.assertTrue(queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void directRunsOnCallingThread() throws Exception {
+        Assert.assertEquals(Thread.currentThread().getName(),
+                RequestLanes.DIRECT.submit(RequestLanes.Lane.BATCH, () -> Thread.currentThread().getName()).get());
+    }
+
+    private static boolean awaitQuietly(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
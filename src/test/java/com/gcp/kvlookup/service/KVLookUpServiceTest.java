@@ -1,6 +1,10 @@
 package com.gcp.kvlookup.service;
 
+import com.gcp.kvlookup.cache.InMemoryLookupCache;
+import com.gcp.kvlookup.cache.LookupCache;
 import com.gcp.kvlookup.dataaccess.BigTableDataAccessOperation;
+import com.gcp.kvlookup.dataaccess.InstanceGroupReader;
+import com.gcp.kvlookup.exception.KVLookUpException;
 
 
 import java.io.IOException;
@@ -8,6 +12,7 @@ import java.io.IOException;
 import com.gcp.kvlookup.model.BigtableTableData;
 import com.gcp.kvlookup.model.ColumnData;
 import com.gcp.kvlookup.model.GCPBigtableTable;
+import com.gcp.kvlookup.model.TableOperationResult;
 import com.google.api.core.ApiFuture;
 import com.google.api.gax.rpc.NotFoundException;
 import com.google.cloud.bigtable.admin.v2.BigtableInstanceAdminSettings;
@@ -22,9 +27,11 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ExecutionException;
 
 import com.google.cloud.bigtable.emulator.v2.BigtableEmulatorRule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Rule;
@@ -32,6 +39,9 @@ import org.junit.Test;
 import com.google.cloud.bigtable.data.v2.models.Row;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.springframework.http.HttpStatus;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 
 @RunWith(JUnit4.class)
@@ -154,4 +164,111 @@ public class KVLookUpServiceTest {
 
         adminClientMap.get("test").getTable("deleteTableTest");
     }
+
+    @Test
+    public void createAndDeleteTables() {
+        List<GCPBigtableTable> tables = new LinkedList<>();
+        for (String tableName : List.of("bulkTable1", "bulkTable2", "bulkTable3")) {
+            GCPBigtableTable bigtable = new GCPBigtableTable();
+            bigtable.setTableName(tableName);
+            bigtable.setColumnFamily("cf1");
+            tables.add(bigtable);
+        }
+        tableCreationConfig.setAdminParallelism(2);
+
+        //call test methods
+        List<TableOperationResult> created = service.createTables(TEST_INSTANCE_ID, tables);
+        List<TableOperationResult> deleted = service.deleteTable(TEST_INSTANCE_ID, List.of("bulkTable1", "bulkTable2", "missingTable"));
+
+        // assert
+        Assert.assertEquals(3, created.size());
+        Assert.assertTrue(created.stream().allMatch(TableOperationResult::isSuccessful));
+        Assert.assertEquals(TableOperationResult.DELETED, deleted.get(0).getStatus());
+        Assert.assertEquals(TableOperationResult.DELETED, deleted.get(1).getStatus());
+        Assert.assertEquals(TableOperationResult.NOT_FOUND, deleted.get(2).getStatus());
+        Assert.assertTrue(adminClientMap.get("test").exists("bulkTable3"));
+    }
+
+    @Test
+    public void readCellDataByIdUsesCacheAndInvalidatesOnWrite() throws Exception {
+        InMemoryLookupCache lookupCache = new InMemoryLookupCache(60, 100);
+        service.setLookupCache(lookupCache);
+
+        GCPBigtableTable bigtable = new GCPBigtableTable();
+        bigtable.setTableName("cachedTable");
+        bigtable.setColumnFamily("cf1");
+        service.createTable(TEST_INSTANCE_ID, bigtable);
+
+        ColumnData columnData = new ColumnData();
+        columnData.setColumnFamily("cf1");
+        columnData.setColumnName("name");
+        columnData.setColumnValue("columnValue");
+
+        BigtableTableData bigtableTableData = new BigtableTableData();
+        bigtableTableData.setTableName("cachedTable");
+        bigtableTableData.setRowKeyId("1");
+        bigtableTableData.setData(List.of(columnData));
+        service.insertDataToTable(TEST_INSTANCE_ID, bigtableTableData);
+
+        //call test methods
+        service.readCellDataById(TEST_INSTANCE_ID, "cachedTable", "1");
+        Assert.assertEquals("columnValue", lookupCache.get(LookupCache.key(TEST_INSTANCE_ID, "cachedTable", "1")));
+
+        columnData.setColumnValue("updatedValue");
+        service.insertDataToTable(TEST_INSTANCE_ID, bigtableTableData);
+
+        // assert
+        Assert.assertNull(lookupCache.get(LookupCache.key(TEST_INSTANCE_ID, "cachedTable", "1")));
+        Assert.assertEquals("updatedValue", service.readCellDataById(TEST_INSTANCE_ID, "cachedTable", "1"));
+    }
+
+    @Test
+    public void findCellDataByIdReturnsEmptyOnMiss() throws Exception {
+        GCPBigtableTable bigtable = new GCPBigtableTable();
+        bigtable.setTableName("missTable");
+        bigtable.setColumnFamily("cf1");
+        service.createTable(TEST_INSTANCE_ID, bigtable);
+
+        //call test methods
+        Optional<String> value = service.findCellDataById(TEST_INSTANCE_ID, "missTable", "unknown");
+
+        // assert
+        Assert.assertFalse(value.isPresent());
+        KVLookUpException exception = assertThrows(KVLookUpException.class, () -> service.readCellDataById(TEST_INSTANCE_ID, "missTable", "unknown"));
+        Assert.assertEquals(HttpStatus.NOT_FOUND, exception.getStatus());
+        Assert.assertEquals(0, exception.getStackTrace().length);
+    }
+
+    @Test
+    public void groupReadsUseCacheAndGroupsAreRejectedElsewhere() throws Exception {
+        InMemoryLookupCache lookupCache = new InMemoryLookupCache(60, 100);
+        service.setLookupCache(lookupCache);
+        InstanceGroupReader instanceGroupReader = new InstanceGroupReader(dataClientMap, new SimpleMeterRegistry(),
+                List.of("grp/test"), 1000, 5000, "cf1", "name");
+        service.setInstanceGroupReader(instanceGroupReader);
+
+        GCPBigtableTable bigtable = new GCPBigtableTable();
+        bigtable.setTableName("groupTable");
+        bigtable.setColumnFamily("cf1");
+        service.createTable(TEST_INSTANCE_ID, bigtable);
+        dataClientMap.get(TEST_INSTANCE_ID).mutateRow(RowMutation.create("groupTable", "1").setCell("cf1", "name", "columnValue"));
+
+        try {
+            //call test methods
+            Assert.assertEquals("columnValue", service.readCellDataById("grp", "groupTable", "1"));
+            Assert.assertEquals("columnValue", lookupCache.get(LookupCache.key(TEST_INSTANCE_ID, "groupTable", "1")));
+
+            // served from the cache of the group's first instance once bigtable no longer has the row
+            dataClientMap.get(TEST_INSTANCE_ID).mutateRow(RowMutation.create("groupTable", "1").deleteRow());
+            Assert.assertEquals("columnValue", service.readCellDataById("grp", "groupTable", "1"));
+
+            KVLookUpException exception = assertThrows(KVLookUpException.class,
+                    () -> service.readCellVersions("grp", "groupTable", "1", null, null, 1));
+            Assert.assertEquals(HttpStatus.BAD_REQUEST, exception.getStatus());
+            exception = assertThrows(KVLookUpException.class, () -> service.deleteDataFromTable("grp", null));
+            Assert.assertEquals(HttpStatus.BAD_REQUEST, exception.getStatus());
+        } finally {
+            instanceGroupReader.stop();
+        }
+    }
 }
@@ -0,0 +1,118 @@
+package com.gcp.kvlookup.snapshot;
+
+import com.google.cloud.bigtable.admin.v2.BigtableTableAdminClient;
+import com.google.cloud.bigtable.admin.v2.BigtableTableAdminSettings;
+import com.google.cloud.bigtable.admin.v2.models.CreateTableRequest;
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.BigtableDataSettings;
+import com.google.cloud.bigtable.data.v2.models.BulkMutation;
+import com.google.cloud.bigtable.data.v2.models.Mutation;
+import com.google.cloud.bigtable.emulator.v2.BigtableEmulatorRule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class SnapshotStoreTest {
+
+    // Initialize the emulator Rule
+    @Rule
+    public final BigtableEmulatorRule bigtableEmulator = BigtableEmulatorRule.create();
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static final String TEST_INSTANCE_ID = "test";
+    private static final String TEST_PROJECT_ID = "test";
+    private Map<String, BigtableDataClient> dataClientMap = new HashMap<>();
+    private SnapshotStore snapshotStore;
+
+    @Before
+    public void setUp() throws IOException {
+        BigtableTableAdminSettings.Builder tableAdminSettings = BigtableTableAdminSettings.newBuilderForEmulator(bigtableEmulator.getPort());
+        tableAdminSettings.setProjectId(TEST_PROJECT_ID);
+        tableAdminSettings.setInstanceId(TEST_INSTANCE_ID);
+        BigtableTableAdminClient tableAdminClient = BigtableTableAdminClient.create(tableAdminSettings.build());
+        tableAdminClient.createTable(CreateTableRequest.of("staticTable").addFamily("cf1"));
+
+        BigtableDataSettings.Builder dataSettings = BigtableDataSettings.newBuilderForEmulator(bigtableEmulator.getPort());
+        dataSettings.setInstanceId(TEST_INSTANCE_ID);
+        dataSettings.setProjectId(TEST_PROJECT_ID);
+        BigtableDataClient dataClient = BigtableDataClient.create(dataSettings.build());
+        BulkMutation bulkMutation = BulkMutation.create("staticTable");
+        for (int i = 0; i < 100; i++) {
+            bulkMutation.add("member" + i, Mutation.create().setCell("cf1", "name", "value" + i));
+        }
+        dataClient.bulkMutateRows(bulkMutation);
+        dataClientMap.put("test", dataClient);
+
+        snapshotStore = new SnapshotStore(dataClientMap, new SimpleMeterRegistry(), List.of("test/staticTable"),
+                temporaryFolder.getRoot().getPath(), 1440, 2, "cf1", "name");
+    }
+
+    @After
+    public void tearDown() {
+        snapshotStore.stop();
+    }
+
+    @Test
+    public void refreshAndRead() throws Exception {
+        Assert.assertFalse(snapshotStore.hasSnapshot(TEST_INSTANCE_ID, "staticTable"));
+
+        //call test method
+        snapshotStore.refresh(TEST_INSTANCE_ID, "staticTable");
+
+        // assert
+        Assert.assertTrue(snapshotStore.hasSnapshot(TEST_INSTANCE_ID, "staticTable"));
+        Assert.assertEquals("value0", snapshotStore.read(TEST_INSTANCE_ID, "staticTable", "member0"));
+        Assert.assertEquals("value42", snapshotStore.read(TEST_INSTANCE_ID, "staticTable", "member42"));
+        Assert.assertEquals("value99", snapshotStore.read(TEST_INSTANCE_ID, "staticTable", "member99"));
+        Assert.assertNull(snapshotStore.read(TEST_INSTANCE_ID, "staticTable", "member100"));
+    }
+
+    @Test
+    public void restartServesLatestSnapshotAndRemovesStaleOnes() throws Exception {
+        snapshotStore.refresh(TEST_INSTANCE_ID, "staticTable");
+        Path tableDirectory = temporaryFolder.getRoot().toPath().resolve(TEST_INSTANCE_ID).resolve("staticTable");
+        Path latest = listDirectories(tableDirectory).get(0);
+        // left behind by an export that was interrupted
+        Files.createDirectories(tableDirectory.resolve("1").resolve("shard-0"));
+
+        SnapshotStore restarted = new SnapshotStore(dataClientMap, new SimpleMeterRegistry(), List.of("test/staticTable"),
+                temporaryFolder.getRoot().getPath(), 1440, 2, "cf1", "name");
+        try {
+            restarted.start();
+
+            Assert.assertTrue(restarted.hasSnapshot(TEST_INSTANCE_ID, "staticTable"));
+            Assert.assertEquals("value42", restarted.read(TEST_INSTANCE_ID, "staticTable", "member42"));
+            Assert.assertEquals(List.of(latest), listDirectories(tableDirectory));
+            Assert.assertTrue(restarted.initialRefreshDelayMillis() > TimeUnit.MINUTES.toMillis(1430));
+        } finally {
+            restarted.stop();
+        }
+    }
+
+    @Test
+    public void refreshesImmediatelyWithoutSnapshotOnDisk() {
+        Assert.assertEquals(0, snapshotStore.initialRefreshDelayMillis());
+    }
+
+    private static List<Path> listDirectories(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.gcp.kvlookup.startup;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+
+public class StartupReporterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final StartupReporter startupReporter = new StartupReporter(meterRegistry, true, false);
+
+    private void serve(String path) throws ServletException, IOException {
+        startupReporter.doFilter(new MockHttpServletRequest("GET", path), new MockHttpServletResponse(), new MockFilterChain());
+    }
+
+    @Test
+    public void recordsOnlyTheFirstApiRequest() throws ServletException, IOException {
+        serve("/actuator/health");
+        Assert.assertEquals(-1, startupReporter.getFirstRequestMillis());
+        Assert.assertEquals(-1.0, meterRegistry.get("kvlookup.startup.first.request.seconds").gauge().value(), 0.0);
+
+        serve("/v1/instance/readCellData");
+        long firstRequestMillis = startupReporter.getFirstRequestMillis();
+        Assert.assertTrue(firstRequestMillis > 0);
+        Assert.assertEquals(firstRequestMillis / 1000.0, meterRegistry.get("kvlookup.startup.first.request.seconds").gauge().value(), 0.0);
+
+        serve("/v1/instance/readCellData");
+        Assert.assertEquals(firstRequestMillis, startupReporter.getFirstRequestMillis());
+    }
+
+    @Test
+    public void recordsReadyTimeAfterWarmUp() {
+        GenericApplicationContext context = new GenericApplicationContext();
+        context.refresh();
+
+        startupReporter.onApplicationEvent(new ApplicationReadyEvent(new SpringApplication(), new String[0], context));
+
+        Assert.assertTrue(startupReporter.getReadyMillis() > 0);
+        Assert.assertEquals(startupReporter.getReadyMillis() / 1000.0, meterRegistry.get("kvlookup.startup.ready.seconds").gauge().value(), 0.0);
+        context.close();
+    }
+}
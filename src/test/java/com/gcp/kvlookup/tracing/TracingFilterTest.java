@@ -0,0 +1,63 @@
+package com.gcp.kvlookup.tracing;
+
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import java.util.List;
+
+public class TracingFilterTest {
+
+    private static final String TRACE_ID = "4bf92f3577b34da6a3ce929d0e0e4736";
+    private static final String PARENT_SPAN_ID = "00f067aa0ba902b7";
+
+    private final InMemorySpanExporter spanExporter = new InMemorySpanExporter();
+    private TracingFilter tracingFilter;
+    private Tracer tracer;
+
+    @Before
+    public void setUp() {
+        OpenTelemetrySdk openTelemetry = OpenTelemetrySdk.builder()
+                .setTracerProvider(SdkTracerProvider.builder().addSpanProcessor(SimpleSpanProcessor.create(spanExporter)).build())
+                .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+                .build();
+        tracer = openTelemetry.getTracer(Spans.INSTRUMENTATION_NAME);
+        tracingFilter = new TracingFilter(openTelemetry, tracer);
+    }
+
+    @Test
+    public void continuesCallerTraceAndParentsLayerSpans() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/v1/test/readCellData");
+        request.addHeader("traceparent", "00-" + TRACE_ID + "-" + PARENT_SPAN_ID + "-01");
+
+        tracingFilter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain() {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response) {
+                Spans.inSpan(tracer, "KVLookUpService.findCellDataById", "test", "testTable", () -> "columnValue");
+            }
+        });
+
+        List<SpanData> spans = spanExporter.getFinishedSpans();
+        Assert.assertEquals(2, spans.size());
+        SpanData layerSpan = spans.get(0);
+        SpanData serverSpan = spans.get(1);
+        Assert.assertEquals(SpanKind.SERVER, serverSpan.getKind());
+        Assert.assertEquals(TRACE_ID, serverSpan.getTraceId());
+        Assert.assertEquals(PARENT_SPAN_ID, serverSpan.getParentSpanId());
+        Assert.assertEquals(serverSpan.getSpanId(), layerSpan.getParentSpanId());
+        Assert.assertEquals("testTable", layerSpan.getAttributes().get(Spans.TABLE));
+    }
+}